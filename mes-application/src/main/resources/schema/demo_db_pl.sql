@@ -1703,6 +1703,86 @@ END;
 $$;
 
 
+--
+-- Name: update_resourcestock(bigint, bigint, numeric, numeric, numeric, numeric); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_resourcestock(_location_id bigint, _product_id bigint, _quantity numeric, _quantityinadditionalunit numeric, _reservedquantity numeric, _totalvalue numeric) RETURNS void
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF _location_id IS NULL OR _product_id IS NULL THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO materialflowresources_resourcestock AS rs
+        (location_id, product_id, quantity, quantityinadditionalunit, reservedquantity, availablequantity, totalvalue)
+        VALUES (_location_id, _product_id, _quantity, _quantityinadditionalunit, _reservedquantity, _quantity - _reservedquantity, _totalvalue)
+    ON CONFLICT (location_id, product_id) DO UPDATE
+        SET quantity = rs.quantity + EXCLUDED.quantity,
+            quantityinadditionalunit = rs.quantityinadditionalunit + EXCLUDED.quantityinadditionalunit,
+            reservedquantity = rs.reservedquantity + EXCLUDED.reservedquantity,
+            availablequantity = rs.availablequantity + EXCLUDED.availablequantity,
+            totalvalue = rs.totalvalue + EXCLUDED.totalvalue;
+END;
+$$;
+
+
+--
+-- Name: update_resourcestock_for_reservation_trigger(); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_resourcestock_for_reservation_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.location_id IS NOT DISTINCT FROM NEW.location_id AND OLD.product_id IS NOT DISTINCT FROM NEW.product_id
+        AND OLD.quantity IS NOT DISTINCT FROM NEW.quantity THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM update_resourcestock(OLD.location_id, OLD.product_id, 0, 0, -COALESCE(OLD.quantity, 0), 0);
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM update_resourcestock(NEW.location_id, NEW.product_id, 0, 0, COALESCE(NEW.quantity, 0), 0);
+    END IF;
+
+    RETURN NULL;
+END;
+$$;
+
+
+--
+-- Name: update_resourcestock_for_resource_trigger(); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_resourcestock_for_resource_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.location_id IS NOT DISTINCT FROM NEW.location_id AND OLD.product_id IS NOT DISTINCT FROM NEW.product_id
+        AND OLD.quantity IS NOT DISTINCT FROM NEW.quantity AND OLD.quantityinadditionalunit IS NOT DISTINCT FROM NEW.quantityinadditionalunit
+        AND OLD.price IS NOT DISTINCT FROM NEW.price THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM update_resourcestock(OLD.location_id, OLD.product_id, -COALESCE(OLD.quantity, 0),
+            -COALESCE(OLD.quantityinadditionalunit, 0), 0, -COALESCE(OLD.quantity * OLD.price, 0));
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM update_resourcestock(NEW.location_id, NEW.product_id, COALESCE(NEW.quantity, 0),
+            COALESCE(NEW.quantityinadditionalunit, 0), 0, COALESCE(NEW.quantity * NEW.price, 0));
+    END IF;
+
+    RETURN NULL;
+END;
+$$;
+
+
 --
 -- Name: update_sequences(); Type: FUNCTION; Schema: public; Owner: -
 --
@@ -1726,6 +1806,116 @@ END;
 $$;
 
 
+--
+-- Name: update_storagelocationpallets(bigint, bigint, integer, integer); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_storagelocationpallets(_storagelocation_id bigint, _palletnumber_id bigint, _resourcescount integer, _deliveredproductscount integer) RETURNS void
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF _storagelocation_id IS NULL OR _palletnumber_id IS NULL THEN
+        RETURN;
+    END IF;
+
+    INSERT INTO materialflowresources_storagelocationpallet AS slp
+        (storagelocation_id, palletnumber_id, resourcescount, deliveredproductscount)
+        VALUES (_storagelocation_id, _palletnumber_id, _resourcescount, _deliveredproductscount)
+    ON CONFLICT (storagelocation_id, palletnumber_id) DO UPDATE
+        SET resourcescount = slp.resourcescount + EXCLUDED.resourcescount,
+            deliveredproductscount = slp.deliveredproductscount + EXCLUDED.deliveredproductscount;
+END;
+$$;
+
+
+--
+-- Name: update_storagelocationpallets_for_deliveredproduct_trigger(); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_storagelocationpallets_for_deliveredproduct_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.storagelocation_id IS NOT DISTINCT FROM NEW.storagelocation_id
+        AND OLD.palletnumber_id IS NOT DISTINCT FROM NEW.palletnumber_id AND OLD.delivery_id IS NOT DISTINCT FROM NEW.delivery_id THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') AND EXISTS (SELECT 1 FROM deliveries_delivery
+        WHERE id = OLD.delivery_id AND state NOT IN ('06received', '04declined')) THEN
+        PERFORM update_storagelocationpallets(OLD.storagelocation_id, OLD.palletnumber_id, 0, -1);
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') AND EXISTS (SELECT 1 FROM deliveries_delivery
+        WHERE id = NEW.delivery_id AND state NOT IN ('06received', '04declined')) THEN
+        PERFORM update_storagelocationpallets(NEW.storagelocation_id, NEW.palletnumber_id, 0, 1);
+    END IF;
+
+    RETURN NULL;
+END;
+$$;
+
+
+--
+-- Name: update_storagelocationpallets_for_delivery_trigger(); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_storagelocationpallets_for_delivery_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+DECLARE
+    _sign integer;
+    pallet record;
+BEGIN
+    IF COALESCE(OLD.state NOT IN ('06received', '04declined'), false) = COALESCE(NEW.state NOT IN ('06received', '04declined'), false) THEN
+        RETURN NULL;
+    END IF;
+
+    IF COALESCE(NEW.state NOT IN ('06received', '04declined'), false) THEN
+        _sign := 1;
+    ELSE
+        _sign := -1;
+    END IF;
+
+    FOR pallet IN SELECT storagelocation_id, palletnumber_id, count(*) AS deliveredproductscount
+                FROM deliveries_deliveredproduct WHERE delivery_id = NEW.id
+                GROUP BY storagelocation_id, palletnumber_id
+    LOOP
+        PERFORM update_storagelocationpallets(pallet.storagelocation_id, pallet.palletnumber_id, 0,
+            _sign * pallet.deliveredproductscount::integer);
+    END LOOP;
+
+    RETURN NULL;
+END;
+$$;
+
+
+--
+-- Name: update_storagelocationpallets_for_resource_trigger(); Type: FUNCTION; Schema: public; Owner: -
+--
+
+CREATE FUNCTION update_storagelocationpallets_for_resource_trigger() RETURNS trigger
+    LANGUAGE plpgsql
+    AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.storagelocation_id IS NOT DISTINCT FROM NEW.storagelocation_id
+        AND OLD.palletnumber_id IS NOT DISTINCT FROM NEW.palletnumber_id THEN
+        RETURN NULL;
+    END IF;
+
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        PERFORM update_storagelocationpallets(OLD.storagelocation_id, OLD.palletnumber_id, -1, 0);
+    END IF;
+
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        PERFORM update_storagelocationpallets(NEW.storagelocation_id, NEW.palletnumber_id, 1, 0);
+    END IF;
+
+    RETURN NULL;
+END;
+$$;
+
+
 SET default_tablespace = '';
 
 SET default_with_oids = false;
@@ -1769,6 +1959,37 @@ CREATE SEQUENCE advancedgenealogy_batch_id_seq
 ALTER SEQUENCE advancedgenealogy_batch_id_seq OWNED BY advancedgenealogy_batch.id;
 
 
+--
+-- Name: advancedgenealogy_batchedge; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE advancedgenealogy_batchedge (
+    id bigint NOT NULL,
+    producedbatch_id bigint NOT NULL,
+    usedbatch_id bigint NOT NULL,
+    trackingrecord_id bigint NOT NULL
+);
+
+
+--
+-- Name: advancedgenealogy_batchedge_id_seq; Type: SEQUENCE; Schema: public; Owner: -
+--
+
+CREATE SEQUENCE advancedgenealogy_batchedge_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+--
+-- Name: advancedgenealogy_batchedge_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: -
+--
+
+ALTER SEQUENCE advancedgenealogy_batchedge_id_seq OWNED BY advancedgenealogy_batchedge.id;
+
+
 --
 -- Name: advancedgenealogy_batchstatechange; Type: TABLE; Schema: public; Owner: -
 --
@@ -8610,6 +8831,44 @@ CREATE SEQUENCE basic_log_id_seq
 ALTER SEQUENCE basic_log_id_seq OWNED BY basic_log.id;
 
 
+--
+-- Name: basic_backgroundjob; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE basic_backgroundjob (
+    id bigint NOT NULL,
+    type character varying(255) NOT NULL,
+    jobkey character varying(255),
+    state character varying(255) DEFAULT '01queued'::character varying NOT NULL,
+    progress integer DEFAULT 0 NOT NULL,
+    message text,
+    resulturl character varying(2048),
+    createuser character varying(255),
+    createdate timestamp without time zone,
+    startdate timestamp without time zone,
+    finishdate timestamp without time zone
+);
+
+
+--
+-- Name: basic_backgroundjob_id_seq; Type: SEQUENCE; Schema: public; Owner: -
+--
+
+CREATE SEQUENCE basic_backgroundjob_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+--
+-- Name: basic_backgroundjob_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: -
+--
+
+ALTER SEQUENCE basic_backgroundjob_id_seq OWNED BY basic_backgroundjob.id;
+
+
 --
 -- Name: basic_palletnumber_id_seq; Type: SEQUENCE; Schema: public; Owner: -
 --
@@ -15967,7 +16226,12 @@ CREATE SEQUENCE materialflowresources_resourcedto_id_seq
 CREATE TABLE materialflowresources_resourcestock (
     id bigint NOT NULL,
     location_id bigint,
-    product_id bigint
+    product_id bigint,
+    quantity numeric DEFAULT 0 NOT NULL,
+    quantityinadditionalunit numeric DEFAULT 0 NOT NULL,
+    reservedquantity numeric DEFAULT 0 NOT NULL,
+    availablequantity numeric DEFAULT 0 NOT NULL,
+    totalvalue numeric DEFAULT 0 NOT NULL
 );
 
 
@@ -16019,20 +16283,6 @@ CREATE VIEW materialflowresources_resourcestockdto AS
             sum(warehouseminimalstate_warehouseminimumstate.minimumstate) AS quantity
            FROM warehouseminimalstate_warehouseminimumstate
           GROUP BY warehouseminimalstate_warehouseminimumstate.product_id, warehouseminimalstate_warehouseminimumstate.location_id
-        ), quantities AS (
-         SELECT materialflowresources_resource.product_id,
-            materialflowresources_resource.location_id,
-            sum(materialflowresources_resource.quantity) AS quantity,
-            sum(materialflowresources_resource.quantityinadditionalunit) AS quantityinadditionalunit,
-            sum((materialflowresources_resource.quantity * materialflowresources_resource.price)) AS totalvalue
-           FROM materialflowresources_resource
-          GROUP BY materialflowresources_resource.product_id, materialflowresources_resource.location_id
-        ), reserved_quantities AS (
-         SELECT materialflowresources_reservation.product_id,
-            materialflowresources_reservation.location_id,
-            sum(materialflowresources_reservation.quantity) AS quantity
-           FROM materialflowresources_reservation
-          GROUP BY materialflowresources_reservation.product_id, materialflowresources_reservation.location_id
         ), ordered_quantities AS (
          SELECT dop.product_id,
             dd.location_id,
@@ -16047,22 +16297,20 @@ CREATE VIEW materialflowresources_resourcestockdto AS
     (rs.product_id)::integer AS product_id,
     COALESCE(oq.quantity, (0)::numeric) AS orderedquantity,
     COALESCE(ms.quantity, (0)::numeric) AS minimumstate,
-    COALESCE(q.quantity, (0)::numeric) AS quantity,
-    COALESCE(q.quantityinadditionalunit, (0)::numeric) AS quantityinadditionalunit,
-    COALESCE(rq.quantity, (0)::numeric) AS reservedquantity,
-    (COALESCE(q.quantity, (0)::numeric) - COALESCE(rq.quantity, (0)::numeric)) AS availablequantity,
+    rs.quantity,
+    rs.quantityinadditionalunit,
+    rs.reservedquantity,
+    rs.availablequantity,
     location.number AS locationnumber,
     location.name AS locationname,
     product.number AS productnumber,
     product.name AS productname,
     product.unit AS productunit,
-    COALESCE(q.totalvalue, (0)::numeric) AS totalvalue,
+    rs.totalvalue,
     family.number AS familynumber
-   FROM (((((((materialflowresources_resourcestock rs
+   FROM (((((materialflowresources_resourcestock rs
      LEFT JOIN ordered_quantities oq ON (((oq.product_id = rs.product_id) AND (oq.location_id = rs.location_id))))
      LEFT JOIN minimum_states ms ON (((ms.product_id = rs.product_id) AND (ms.location_id = rs.location_id))))
-     LEFT JOIN quantities q ON (((q.product_id = rs.product_id) AND (q.location_id = rs.location_id))))
-     LEFT JOIN reserved_quantities rq ON (((rq.product_id = rs.product_id) AND (rq.location_id = rs.location_id))))
      JOIN materialflow_location location ON ((location.id = rs.location_id)))
      JOIN basic_product product ON ((product.id = rs.product_id)))
      LEFT JOIN basic_product family ON ((product.parent_id = family.id)));
@@ -16275,6 +16523,18 @@ CREATE SEQUENCE materialflowresources_storagelocationhistory_id_seq
 ALTER SEQUENCE materialflowresources_storagelocationhistory_id_seq OWNED BY materialflowresources_storagelocationhistory.id;
 
 
+--
+-- Name: materialflowresources_storagelocationpallet; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE materialflowresources_storagelocationpallet (
+    storagelocation_id bigint NOT NULL,
+    palletnumber_id bigint NOT NULL,
+    resourcescount integer DEFAULT 0 NOT NULL,
+    deliveredproductscount integer DEFAULT 0 NOT NULL
+);
+
+
 --
 -- Name: materialflowresources_warehousestock_id_seq; Type: SEQUENCE; Schema: public; Owner: -
 --
@@ -17716,6 +17976,35 @@ CREATE SEQUENCE ordersupplies_columnforcoverages_id_seq
 ALTER SEQUENCE ordersupplies_columnforcoverages_id_seq OWNED BY ordersupplies_columnforcoverages.id;
 
 
+--
+-- Name: ordersupplies_coveragechangedproduct; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE ordersupplies_coveragechangedproduct (
+    id bigint NOT NULL,
+    product_id bigint NOT NULL
+);
+
+
+--
+-- Name: ordersupplies_coveragechangedproduct_id_seq; Type: SEQUENCE; Schema: public; Owner: -
+--
+
+CREATE SEQUENCE ordersupplies_coveragechangedproduct_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+--
+-- Name: ordersupplies_coveragechangedproduct_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: -
+--
+
+ALTER SEQUENCE ordersupplies_coveragechangedproduct_id_seq OWNED BY ordersupplies_coveragechangedproduct.id;
+
+
 --
 -- Name: ordersupplies_coveragelocation; Type: TABLE; Schema: public; Owner: -
 --
@@ -19876,6 +20165,22 @@ CREATE SEQUENCE productioncounting_productionbalance_id_seq
 ALTER SEQUENCE productioncounting_productionbalance_id_seq OWNED BY productioncounting_productionbalance.id;
 
 
+--
+-- Name: productioncounting_productionbalancequantity; Type: TABLE; Schema: public; Owner: -
+--
+
+CREATE TABLE productioncounting_productionbalancequantity (
+    order_id bigint NOT NULL,
+    technologyoperationcomponent_id bigint,
+    product_id bigint NOT NULL,
+    role character varying(255) NOT NULL,
+    wasteunit character varying(255),
+    usedquantity numeric DEFAULT 0 NOT NULL,
+    wastesquantity numeric DEFAULT 0 NOT NULL,
+    wasteusedquantity numeric DEFAULT 0 NOT NULL
+);
+
+
 --
 -- Name: productioncounting_productioncountingquantitysetcomponent; Type: TABLE; Schema: public; Owner: -
 --
@@ -24004,6 +24309,13 @@ ALTER SEQUENCE zmbak_tpctable_id_seq OWNED BY zmbak_tpctable.id;
 ALTER TABLE ONLY advancedgenealogy_batch ALTER COLUMN id SET DEFAULT nextval('advancedgenealogy_batch_id_seq'::regclass);
 
 
+--
+-- Name: id; Type: DEFAULT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY advancedgenealogy_batchedge ALTER COLUMN id SET DEFAULT nextval('advancedgenealogy_batchedge_id_seq'::regclass);
+
+
 --
 -- Name: id; Type: DEFAULT; Schema: public; Owner: -
 --
@@ -24914,6 +25226,13 @@ ALTER TABLE ONLY basic_faulttype ALTER COLUMN id SET DEFAULT nextval('basic_faul
 ALTER TABLE ONLY basic_log ALTER COLUMN id SET DEFAULT nextval('basic_log_id_seq'::regclass);
 
 
+--
+-- Name: id; Type: DEFAULT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY basic_backgroundjob ALTER COLUMN id SET DEFAULT nextval('basic_backgroundjob_id_seq'::regclass);
+
+
 --
 -- Name: id; Type: DEFAULT; Schema: public; Owner: -
 --
@@ -26104,6 +26423,13 @@ ALTER TABLE ONLY ordersgroups_ordersgroup ALTER COLUMN id SET DEFAULT nextval('o
 ALTER TABLE ONLY ordersupplies_columnforcoverages ALTER COLUMN id SET DEFAULT nextval('ordersupplies_columnforcoverages_id_seq'::regclass);
 
 
+--
+-- Name: id; Type: DEFAULT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY ordersupplies_coveragechangedproduct ALTER COLUMN id SET DEFAULT nextval('ordersupplies_coveragechangedproduct_id_seq'::regclass);
+
+
 --
 -- Name: id; Type: DEFAULT; Schema: public; Owner: -
 --
@@ -27253,6 +27579,25 @@ COPY advancedgenealogyfororders_genealogyproductincomponent (id, trackingrecord_
 SELECT pg_catalog.setval('advancedgenealogyfororders_genealogyproductincomponent_id_seq', 1, false);
 
 
+--
+-- Data for Name: advancedgenealogy_batchedge; Type: TABLE DATA; Schema: public; Owner: -
+--
+
+INSERT INTO advancedgenealogy_batchedge (producedbatch_id, usedbatch_id, trackingrecord_id)
+    SELECT e.producedbatch_id, e.usedbatch_id, e.trackingrecord_id FROM (
+        SELECT tr.producedbatch_id, ubs.batch_id AS usedbatch_id, tr.id AS trackingrecord_id, ubs.id AS edge_order
+            FROM advancedgenealogy_trackingrecord tr
+            JOIN advancedgenealogy_usedbatchsimple ubs ON ubs.trackingrecord_id = tr.id
+            WHERE tr.entitytype = '01simple' AND tr.state = '02accepted' AND tr.producedbatch_id IS NOT NULL AND ubs.batch_id IS NOT NULL
+        UNION ALL
+        SELECT tr.producedbatch_id, gpib.batch_id AS usedbatch_id, tr.id AS trackingrecord_id, gpib.id AS edge_order
+            FROM advancedgenealogy_trackingrecord tr
+            JOIN advancedgenealogyfororders_genealogyproductincomponent gpic ON gpic.trackingrecord_id = tr.id
+            JOIN advancedgenealogyfororders_genealogyproductinbatch gpib ON gpib.genealogyproductincomponent_id = gpic.id
+            WHERE tr.entitytype = '02forOrder' AND tr.state = '02accepted' AND tr.producedbatch_id IS NOT NULL AND gpib.batch_id IS NOT NULL
+    ) e ORDER BY e.trackingrecord_id, e.edge_order;
+
+
 --
 -- Data for Name: arch_advancedgenealogy_trackingrecord; Type: TABLE DATA; Schema: public; Owner: -
 --
@@ -32393,7 +32738,7 @@ SELECT pg_catalog.setval('materialflowresources_resourcedto_id_seq', 1, false);
 -- Data for Name: materialflowresources_resourcestock; Type: TABLE DATA; Schema: public; Owner: -
 --
 
-COPY materialflowresources_resourcestock (id, location_id, product_id) FROM stdin;
+COPY materialflowresources_resourcestock (id, location_id, product_id, quantity, quantityinadditionalunit, reservedquantity, availablequantity, totalvalue) FROM stdin;
 \.
 
 
@@ -32404,6 +32749,27 @@ COPY materialflowresources_resourcestock (id, location_id, product_id) FROM stdi
 SELECT pg_catalog.setval('materialflowresources_resourcestock_id_seq', 1, false);
 
 
+--
+-- Data for Name: materialflowresources_resourcestock; Type: TABLE DATA; Schema: public; Owner: -
+--
+
+INSERT INTO materialflowresources_resourcestock (location_id, product_id, quantity, quantityinadditionalunit, reservedquantity, availablequantity, totalvalue)
+    SELECT s.location_id, s.product_id, SUM(s.quantity), SUM(s.quantityinadditionalunit), SUM(s.reservedquantity),
+            SUM(s.quantity) - SUM(s.reservedquantity), SUM(s.totalvalue) FROM (
+        SELECT r.location_id, r.product_id, COALESCE(r.quantity, 0) AS quantity,
+                COALESCE(r.quantityinadditionalunit, 0) AS quantityinadditionalunit, 0 AS reservedquantity,
+                COALESCE(r.quantity * r.price, 0) AS totalvalue
+            FROM materialflowresources_resource r
+            WHERE r.location_id IS NOT NULL AND r.product_id IS NOT NULL
+        UNION ALL
+        SELECT rr.location_id, rr.product_id, 0 AS quantity, 0 AS quantityinadditionalunit,
+                COALESCE(rr.quantity, 0) AS reservedquantity, 0 AS totalvalue
+            FROM materialflowresources_reservation rr
+            WHERE rr.location_id IS NOT NULL AND rr.product_id IS NOT NULL
+    ) s
+    GROUP BY s.location_id, s.product_id;
+
+
 --
 -- Name: materialflowresources_resourcestockdto_id_seq; Type: SEQUENCE SET; Schema: public; Owner: -
 --
@@ -32441,6 +32807,25 @@ COPY materialflowresources_storagelocation (id, number, state, location_id, prod
 \.
 
 
+--
+-- Data for Name: materialflowresources_storagelocationpallet; Type: TABLE DATA; Schema: public; Owner: -
+--
+
+INSERT INTO materialflowresources_storagelocationpallet (storagelocation_id, palletnumber_id, resourcescount, deliveredproductscount)
+    SELECT p.storagelocation_id, p.palletnumber_id, SUM(p.resourcescount), SUM(p.deliveredproductscount) FROM (
+        SELECT r.storagelocation_id, r.palletnumber_id, 1 AS resourcescount, 0 AS deliveredproductscount
+            FROM materialflowresources_resource r
+            WHERE r.storagelocation_id IS NOT NULL AND r.palletnumber_id IS NOT NULL
+        UNION ALL
+        SELECT dp.storagelocation_id, dp.palletnumber_id, 0 AS resourcescount, 1 AS deliveredproductscount
+            FROM deliveries_deliveredproduct dp
+            JOIN deliveries_delivery d ON d.id = dp.delivery_id
+            WHERE d.state NOT IN ('06received', '04declined')
+                AND dp.storagelocation_id IS NOT NULL AND dp.palletnumber_id IS NOT NULL
+    ) p
+    GROUP BY p.storagelocation_id, p.palletnumber_id;
+
+
 --
 -- Name: materialflowresources_storagelocation_id_seq; Type: SEQUENCE SET; Schema: public; Owner: -
 --
@@ -33932,6 +34317,29 @@ COPY productioncounting_trackingoperationproductoutcomponent (id, productiontrac
 SELECT pg_catalog.setval('productioncounting_trackingoperationproductoutcomponent_id_seq', 1, false);
 
 
+--
+-- Data for Name: productioncounting_productionbalancequantity; Type: TABLE DATA; Schema: public; Owner: -
+--
+
+INSERT INTO productioncounting_productionbalancequantity (order_id, technologyoperationcomponent_id, product_id, role, wasteunit, usedquantity, wastesquantity, wasteusedquantity)
+    SELECT q.order_id, q.technologyoperationcomponent_id, q.product_id, q.role, q.wasteunit,
+            SUM(q.usedquantity), SUM(q.wastesquantity), SUM(q.wasteusedquantity) FROM (
+        SELECT pt.order_id, pt.technologyoperationcomponent_id, c.product_id, '01used' AS role, c.wasteunit,
+                COALESCE(c.usedquantity, 0) AS usedquantity, 0 AS wastesquantity, COALESCE(c.wasteusedquantity, 0) AS wasteusedquantity
+            FROM productioncounting_trackingoperationproductincomponent c
+            JOIN productioncounting_productiontracking pt ON pt.id = c.productiontracking_id
+            WHERE pt.state = '02accepted'
+        UNION ALL
+        SELECT pt.order_id, pt.technologyoperationcomponent_id, c.product_id, '02produced' AS role, NULL AS wasteunit,
+                COALESCE(c.usedquantity, 0) AS usedquantity, COALESCE(c.wastesquantity, 0) AS wastesquantity, 0 AS wasteusedquantity
+            FROM productioncounting_trackingoperationproductoutcomponent c
+            JOIN productioncounting_productiontracking pt ON pt.id = c.productiontracking_id
+            WHERE pt.state = '02accepted'
+    ) q
+    GROUP BY q.order_id, q.technologyoperationcomponent_id, q.product_id, q.role, q.wasteunit
+    HAVING SUM(q.usedquantity) <> 0 OR SUM(q.wastesquantity) <> 0 OR SUM(q.wasteusedquantity) <> 0;
+
+
 --
 -- Name: productioncounting_trackingoperationproductoutcomponentdto_id_s; Type: SEQUENCE SET; Schema: public; Owner: -
 --
@@ -36162,6 +36570,14 @@ ALTER TABLE ONLY advancedgenealogy_batch
     ADD CONSTRAINT advancedgenealogy_batch_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: advancedgenealogy_batchedge_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY advancedgenealogy_batchedge
+    ADD CONSTRAINT advancedgenealogy_batchedge_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: advancedgenealogy_batchlogging_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -37290,6 +37706,14 @@ ALTER TABLE ONLY basic_log
     ADD CONSTRAINT basic_log_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: basic_backgroundjob_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY basic_backgroundjob
+    ADD CONSTRAINT basic_backgroundjob_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: basic_palletnumber_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -38762,6 +39186,14 @@ ALTER TABLE ONLY materialflowresources_storagelocationhistory
     ADD CONSTRAINT materialflowresources_storagelocationhistory_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: materialflowresources_storagelocationpallet_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY materialflowresources_storagelocationpallet
+    ADD CONSTRAINT materialflowresources_storagelocationpallet_pkey PRIMARY KEY (storagelocation_id, palletnumber_id);
+
+
 --
 -- Name: materialflowresources_warehousestockreport_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -39018,6 +39450,14 @@ ALTER TABLE ONLY ordersupplies_columnforcoverages
     ADD CONSTRAINT ordersupplies_columnforcoverages_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: ordersupplies_coveragechangedproduct_pkey; Type: CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY ordersupplies_coveragechangedproduct
+    ADD CONSTRAINT ordersupplies_coveragechangedproduct_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: ordersupplies_coveragelocation_pkey; Type: CONSTRAINT; Schema: public; Owner: -
 --
@@ -40831,6 +41271,13 @@ CREATE INDEX arch_technologies_barcodeoperationcom_operationcomponent_id_idx ON
 CREATE INDEX arch_technologies_barcodeoperationcomponent_order_id_idx ON arch_technologies_barcodeoperationcomponent USING btree (order_id);
 
 
+--
+-- Name: basic_backgroundjob_active_jobkey_idx; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE UNIQUE INDEX basic_backgroundjob_active_jobkey_idx ON basic_backgroundjob USING btree (type, jobkey) WHERE ((state)::text = ANY ((ARRAY['01queued'::character varying, '02running'::character varying])::text[]));
+
+
 --
 -- Name: basicproductioncounting_productioncountingqu_typeofmaterial_idx; Type: INDEX; Schema: public; Owner: -
 --
@@ -40845,6 +41292,27 @@ CREATE INDEX basicproductioncounting_productioncountingqu_typeofmaterial_idx ON
 CREATE INDEX idx_adv_atchstatechange_batch_id ON advancedgenealogy_batchstatechange USING btree (batch_id);
 
 
+--
+-- Name: idx_adv_batchedge_producedbatch_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX idx_adv_batchedge_producedbatch_id ON advancedgenealogy_batchedge USING btree (producedbatch_id, usedbatch_id);
+
+
+--
+-- Name: idx_adv_batchedge_trackingrecord_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX idx_adv_batchedge_trackingrecord_id ON advancedgenealogy_batchedge USING btree (trackingrecord_id);
+
+
+--
+-- Name: idx_adv_batchedge_usedbatch_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX idx_adv_batchedge_usedbatch_id ON advancedgenealogy_batchedge USING btree (usedbatch_id, producedbatch_id);
+
+
 --
 -- Name: idx_ass_signmenttoshift_masterorder_id; Type: INDEX; Schema: public; Owner: -
 --
@@ -41356,11 +41824,18 @@ CREATE INDEX idx_mat_position_product_id ON materialflowresources_position USING
 CREATE INDEX idx_mat_position_resource_id ON materialflowresources_position USING btree (resource_id);
 
 
+--
+-- Name: idx_mat_resource_location_id_product_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX idx_mat_resource_location_id_product_id ON materialflowresources_resource USING btree (location_id, product_id);
+
+
 --
 -- Name: idx_mat_resource_palletnumber_id; Type: INDEX; Schema: public; Owner: -
 --
 
-CREATE INDEX idx_mat_resource_palletnumber_id ON materialflowresources_resource USING btree (palletnumber_id);
+CREATE INDEX idx_mat_resource_palletnumber_id ON materialflowresources_resource USING btree (palletnumber_id, id);
 
 
 --
@@ -41370,6 +41845,13 @@ CREATE INDEX idx_mat_resource_palletnumber_id ON materialflowresources_resource
 CREATE INDEX idx_mat_resource_product_id ON materialflowresources_resource USING btree (product_id);
 
 
+--
+-- Name: idx_mat_resourcestock_location_id_product_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE UNIQUE INDEX idx_mat_resourcestock_location_id_product_id ON materialflowresources_resourcestock USING btree (location_id, product_id);
+
+
 --
 -- Name: idx_mat_resourcestock_product_id; Type: INDEX; Schema: public; Owner: -
 --
@@ -41377,6 +41859,13 @@ CREATE INDEX idx_mat_resource_product_id ON materialflowresources_resource USING
 CREATE INDEX idx_mat_resourcestock_product_id ON materialflowresources_resourcestock USING btree (product_id);
 
 
+--
+-- Name: idx_ord_coverageproduct_materialrequirementcoverage_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX idx_ord_coverageproduct_materialrequirementcoverage_id ON ordersupplies_coverageproduct USING btree (materialrequirementcoverage_id);
+
+
 --
 -- Name: idx_ord_coverageproduct_product_id; Type: INDEX; Schema: public; Owner: -
 --
@@ -41384,6 +41873,20 @@ CREATE INDEX idx_mat_resourcestock_product_id ON materialflowresources_resources
 CREATE INDEX idx_ord_coverageproduct_product_id ON ordersupplies_coverageproduct USING btree (product_id);
 
 
+--
+-- Name: idx_ord_coverageproductselected_coverageproduct_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX idx_ord_coverageproductselected_coverageproduct_id ON ordersupplies_coverageproductselected USING btree (coverageproduct_id);
+
+
+--
+-- Name: idx_ord_eproductlogging_coverageproduct_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX idx_ord_eproductlogging_coverageproduct_id ON ordersupplies_coverageproductlogging USING btree (coverageproduct_id);
+
+
 --
 -- Name: idx_ord_eproductlogging_delivery_id; Type: INDEX; Schema: public; Owner: -
 --
@@ -41643,6 +42146,20 @@ CREATE INDEX idx_pro_issue_productincomponent_id ON productflowthrudivision_issu
 CREATE INDEX idx_pro_kingstatechange_productiontracking_id ON productioncounting_productiontrackingstatechange USING btree (productiontracking_id);
 
 
+--
+-- Name: idx_pro_productionbalancequantity_key; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE UNIQUE INDEX idx_pro_productionbalancequantity_key ON productioncounting_productionbalancequantity USING btree (order_id, COALESCE(technologyoperationcomponent_id, (0)::bigint), product_id, role, COALESCE(wasteunit, ''::character varying));
+
+
+--
+-- Name: idx_pro_productionbalancequantity_product_id; Type: INDEX; Schema: public; Owner: -
+--
+
+CREATE INDEX idx_pro_productionbalancequantity_product_id ON productioncounting_productionbalancequantity USING btree (product_id);
+
+
 --
 -- Name: idx_pro_productstoissue_product_id; Type: INDEX; Schema: public; Owner: -
 --
@@ -42247,6 +42764,20 @@ CREATE TRIGGER assignmenttoshift_assignmenttoshift_trigger_externalnumber BEFORE
 CREATE TRIGGER cmmsmachineparts_maintenanceevent_trigger_number BEFORE INSERT ON cmmsmachineparts_maintenanceevent FOR EACH ROW EXECUTE PROCEDURE generate_and_set_maintenanceevent_number_trigger();
 
 
+--
+-- Name: deliveries_deliveredproduct_trigger_storagelocationpallets; Type: TRIGGER; Schema: public; Owner: -
+--
+
+CREATE TRIGGER deliveries_deliveredproduct_trigger_storagelocationpallets AFTER INSERT OR DELETE OR UPDATE ON deliveries_deliveredproduct FOR EACH ROW EXECUTE PROCEDURE update_storagelocationpallets_for_deliveredproduct_trigger();
+
+
+--
+-- Name: deliveries_delivery_trigger_storagelocationpallets; Type: TRIGGER; Schema: public; Owner: -
+--
+
+CREATE TRIGGER deliveries_delivery_trigger_storagelocationpallets AFTER UPDATE OF state ON deliveries_delivery FOR EACH ROW EXECUTE PROCEDURE update_storagelocationpallets_for_delivery_trigger();
+
+
 --
 -- Name: goodfood_confectionprotocol_trigger_externalnumber; Type: TRIGGER; Schema: public; Owner: -
 --
@@ -42275,6 +42806,27 @@ CREATE TRIGGER goodfood_pallet_trigger_externalnumber BEFORE INSERT ON goodfood_
 CREATE TRIGGER materialflowresources_document_trigger_number BEFORE INSERT ON materialflowresources_document FOR EACH ROW EXECUTE PROCEDURE generate_and_set_document_number_trigger();
 
 
+--
+-- Name: materialflowresources_reservation_trigger_resourcestock; Type: TRIGGER; Schema: public; Owner: -
+--
+
+CREATE TRIGGER materialflowresources_reservation_trigger_resourcestock AFTER INSERT OR DELETE OR UPDATE ON materialflowresources_reservation FOR EACH ROW EXECUTE PROCEDURE update_resourcestock_for_reservation_trigger();
+
+
+--
+-- Name: materialflowresources_resource_trigger_resourcestock; Type: TRIGGER; Schema: public; Owner: -
+--
+
+CREATE TRIGGER materialflowresources_resource_trigger_resourcestock AFTER INSERT OR DELETE OR UPDATE ON materialflowresources_resource FOR EACH ROW EXECUTE PROCEDURE update_resourcestock_for_resource_trigger();
+
+
+--
+-- Name: materialflowresources_resource_trigger_storagelocationpallets; Type: TRIGGER; Schema: public; Owner: -
+--
+
+CREATE TRIGGER materialflowresources_resource_trigger_storagelocationpallets AFTER INSERT OR DELETE OR UPDATE ON materialflowresources_resource FOR EACH ROW EXECUTE PROCEDURE update_storagelocationpallets_for_resource_trigger();
+
+
 --
 -- Name: repairs_repairorder_trigger_number; Type: TRIGGER; Schema: public; Owner: -
 --
@@ -43114,6 +43666,30 @@ ALTER TABLE ONLY advancedgenealogy_batch
     ADD CONSTRAINT batch_supplier_fkey FOREIGN KEY (supplier_id) REFERENCES basic_company(id) DEFERRABLE;
 
 
+--
+-- Name: batchedge_producedbatch_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY advancedgenealogy_batchedge
+    ADD CONSTRAINT batchedge_producedbatch_fkey FOREIGN KEY (producedbatch_id) REFERENCES advancedgenealogy_batch(id) ON DELETE CASCADE DEFERRABLE;
+
+
+--
+-- Name: batchedge_trackingrecord_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY advancedgenealogy_batchedge
+    ADD CONSTRAINT batchedge_trackingrecord_fkey FOREIGN KEY (trackingrecord_id) REFERENCES advancedgenealogy_trackingrecord(id) ON DELETE CASCADE DEFERRABLE;
+
+
+--
+-- Name: batchedge_usedbatch_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY advancedgenealogy_batchedge
+    ADD CONSTRAINT batchedge_usedbatch_fkey FOREIGN KEY (usedbatch_id) REFERENCES advancedgenealogy_batch(id) ON DELETE CASCADE DEFERRABLE;
+
+
 --
 -- Name: batchstatechange_batch_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
 --
@@ -48674,6 +49250,14 @@ ALTER TABLE ONLY arch_productflowthrudivision_productstoissue
     ADD CONSTRAINT productincomponent_productstoissue_fkey FOREIGN KEY (productincomponent_id) REFERENCES technologies_operationproductincomponent(id) DEFERRABLE;
 
 
+--
+-- Name: productionbalancequantity_order_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY productioncounting_productionbalancequantity
+    ADD CONSTRAINT productionbalancequantity_order_fkey FOREIGN KEY (order_id) REFERENCES orders_order(id) ON DELETE CASCADE DEFERRABLE;
+
+
 --
 -- Name: productioncounting_productionrecord_d_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
 --
@@ -50810,6 +51394,22 @@ ALTER TABLE ONLY materialflowresources_storagelocationhistory
     ADD CONSTRAINT storagelocationhistory_storagelocation_fkey FOREIGN KEY (storagelocation_id) REFERENCES materialflowresources_storagelocation(id) DEFERRABLE;
 
 
+--
+-- Name: storagelocationpallet_palletnumber_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY materialflowresources_storagelocationpallet
+    ADD CONSTRAINT storagelocationpallet_palletnumber_fkey FOREIGN KEY (palletnumber_id) REFERENCES basic_palletnumber(id) ON DELETE CASCADE DEFERRABLE;
+
+
+--
+-- Name: storagelocationpallet_storagelocation_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
+--
+
+ALTER TABLE ONLY materialflowresources_storagelocationpallet
+    ADD CONSTRAINT storagelocationpallet_storagelocation_fkey FOREIGN KEY (storagelocation_id) REFERENCES materialflowresources_storagelocation(id) ON DELETE CASCADE DEFERRABLE;
+
+
 --
 -- Name: subassembly_workstation_fkey; Type: FK CONSTRAINT; Schema: public; Owner: -
 --
@@ -27,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.qcadoo.mes.advancedGenealogy.tree.BatchGenealogyGraphService;
 import com.qcadoo.mes.advancedGenealogyForOrders.workPlansColumnExtension.AGFOcolumnLoader;
 import com.qcadoo.plugin.api.Module;
 
@@ -36,11 +37,15 @@ public class AdvancedGenealogyForOrdersOnStartupService extends Module {
     @Autowired
     private AGFOcolumnLoader agfoColumnLoader;
 
+    @Autowired
+    private BatchGenealogyGraphService batchGenealogyGraphService;
+
     @Override
     @Transactional
     public void multiTenantEnable() {
         agfoColumnLoader.addAGFOcolumnsForOrders();
         agfoColumnLoader.addAGFOcolumnsForProducts();
+        batchGenealogyGraphService.rebuildEdges(true);
     }
 
     @Override
@@ -48,6 +53,7 @@ public class AdvancedGenealogyForOrdersOnStartupService extends Module {
     public void multiTenantDisable() {
         agfoColumnLoader.deleteAGFOcolumnsForOrders();
         agfoColumnLoader.deleteAGFOcolumnsForProducts();
+        batchGenealogyGraphService.removeForOrderEdges();
     }
 
 }
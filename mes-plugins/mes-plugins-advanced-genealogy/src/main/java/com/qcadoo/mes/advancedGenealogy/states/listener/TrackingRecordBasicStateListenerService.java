@@ -0,0 +1,54 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.advancedGenealogy.states.listener;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.advancedGenealogy.tree.BatchGenealogyGraphService;
+import com.qcadoo.mes.states.StateChangeContext;
+import com.qcadoo.plugin.api.PluginUtils;
+
+@Service
+public class TrackingRecordBasicStateListenerService {
+
+    private static final String L_ADVANCED_GENEALOGY_FOR_ORDERS = "advancedGenealogyForOrders";
+
+    @Autowired
+    private BatchGenealogyGraphService batchGenealogyGraphService;
+
+    public void addBatchEdges(final StateChangeContext stateChangeContext) {
+        if (!stateChangeContext.isOwnerValid()) {
+            return;
+        }
+
+        batchGenealogyGraphService.addEdges(stateChangeContext.getOwner().getId(),
+                PluginUtils.isEnabled(L_ADVANCED_GENEALOGY_FOR_ORDERS));
+    }
+
+    public void removeBatchEdges(final StateChangeContext stateChangeContext) {
+        batchGenealogyGraphService.removeEdges(stateChangeContext.getOwner().getId());
+    }
+
+}
@@ -27,26 +27,25 @@ import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.ENTITY_TYPE
 import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.NUMBER;
 import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.PARENT;
 import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.PRIORITY;
-import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.SUPPLIER;
-import static com.qcadoo.mes.advancedGenealogy.constants.BatchFields.TRACKING_RECORDS;
-import static com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordFields.STATE;
-import static com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordFields.USED_BATCHES_SIMPLE;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import com.qcadoo.mes.advancedGenealogy.constants.AdvancedGenealogyConstants;
-import com.qcadoo.mes.advancedGenealogy.constants.BatchFields;
-import com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordFields;
-import com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordType;
-import com.qcadoo.mes.advancedGenealogy.states.constants.TrackingRecordState;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.EntityList;
+import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.plugin.api.PluginAccessor;
 
 @Service
@@ -54,18 +53,33 @@ public class AdvancedGenealogyTreeService {
 
     private static final String L_BATCH = "batch";
 
+    private static final String L_ID = "id";
+
+    private static final String L_ADVANCED_GENEALOGY_FOR_ORDERS = "advancedGenealogyForOrders";
+
+    private static final int L_BATCHES_QUERY_SIZE = 1000;
+
     @Autowired
     private PluginAccessor pluginAccessor;
 
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
+    @Autowired
+    private BatchGenealogyGraphService batchGenealogyGraphService;
+
     public List<Entity> getProducedFromTree(final Entity batch, final boolean includeDrafts, final boolean makeIdsUnique) {
         List<Entity> tree = new ArrayList<Entity>();
 
-        addChild(tree, batch, makeIdsUnique);
+        Long batchId = batch.getId();
+
+        addChild(tree, batch, null, makeIdsUnique);
 
-        generateProducedFromTree(batch, tree, includeDrafts, makeIdsUnique);
+        SetMultimap<Long, Long> usedBatches = batchGenealogyGraphService.getUsedBatches(batchId, includeDrafts,
+                isEnabled(L_ADVANCED_GENEALOGY_FOR_ORDERS));
+
+        generateTree(batch, batchId, usedBatches, getBatches(usedBatches.values()), tree, Sets.newHashSet(batchId),
+                Sets.newHashSet(batchId), makeIdsUnique);
 
         return tree;
     }
@@ -73,156 +87,70 @@ public class AdvancedGenealogyTreeService {
     public List<Entity> getUsedToProduceTree(final Entity batch, final boolean includeDrafts, final boolean makeIdsUnique) {
         List<Entity> tree = new ArrayList<Entity>();
 
-        long realParentId = batch.getId();
+        Long batchId = batch.getId();
 
-        addChild(tree, batch, true);
+        addChild(tree, batch, null, true);
 
-        generateUsedToProduceTree(batch, tree, includeDrafts, true, realParentId);
+        SetMultimap<Long, Long> producedBatches = batchGenealogyGraphService.getProducedBatches(batchId, includeDrafts,
+                isEnabled(L_ADVANCED_GENEALOGY_FOR_ORDERS));
 
-        return tree;
-    }
+        generateTree(batch, batchId, producedBatches, getBatches(producedBatches.values()), tree, Sets.newHashSet(batchId),
+                Sets.newHashSet(batchId), true);
 
-    private boolean addChild(final List<Entity> tree, final Entity child, final boolean makeIdsUnique) {
-        child.setField(PARENT, null);
-        return addToList(tree, child, makeIdsUnique);
+        return tree;
     }
 
-    private boolean addChild(final List<Entity> tree, final Entity child, final Entity parent, final boolean makeIdsUnique) {
+    private void addChild(final List<Entity> tree, final Entity child, final Entity parent, final boolean makeIdsUnique) {
         child.setField(PARENT, parent);
-        return addToList(tree, child, makeIdsUnique);
-    }
-
-    private boolean addToList(final List<Entity> tree, final Entity child, final boolean makeIdsUnique) {
         child.setField(PRIORITY, 1);
         child.setField(ENTITY_TYPE, L_BATCH);
 
-        if (checkIfTreeContainsEntity(tree, child)) {
-            return false;
-        } else {
-            if (makeIdsUnique) {
-                child.setId((long) tree.size());
-            }
-            tree.add(child);
-            return true;
+        if (makeIdsUnique) {
+            child.setId((long) tree.size());
         }
-    }
 
-    private boolean checkIfTreeContainsEntity(final List<Entity> tree, final Entity child) {
-        for (Entity entity : tree) {
-            if (child.getField(PARENT).equals(entity.getField(PARENT)) && entity.getField(NUMBER).equals(child.getField(NUMBER))) {
-                Entity supplierChild = child.getBelongsToField(SUPPLIER);
-                Entity supplierEntity = entity.getBelongsToField(SUPPLIER);
-                if (supplierChild != null && supplierEntity != null && supplierChild.equals(supplierEntity)) {
-                    return true;
-                }
-                return true;
-            }
-        }
-        return false;
+        tree.add(child);
     }
 
-    private void generateUsedToProduceTree(final Entity parent, final List<Entity> tree, final boolean includeDrafts,
-            final boolean makeIdsUnique, final long realParentId) {
-        List<Entity> batches = getDD().find().list().getEntities();
-
-        for (Entity producedBatch : batches) {
-            EntityList trackingRecords = producedBatch.getHasManyField(TRACKING_RECORDS);
-            for (Entity trackingRecord : trackingRecords) {
-                String type = trackingRecord.getStringField(ENTITY_TYPE);
-                if (type == null) {
-                    continue;
-                }
-
-                String state = trackingRecord.getStringField(STATE);
-
-                if (!TrackingRecordState.ACCEPTED.getStringValue().equals(state)) {
-                    boolean isDraftAndWeIncludeDrafts = TrackingRecordState.DRAFT.getStringValue().equals(state) && includeDrafts;
-
-                    if (!isDraftAndWeIncludeDrafts) {
-                        continue;
-                    }
-                }
-
-                if (TrackingRecordType.SIMPLE.equals(type)) {
-                    EntityList usedBatches = trackingRecord.getHasManyField(USED_BATCHES_SIMPLE);
-                    for (Entity usedBatch : usedBatches) {
-                        Entity batch = usedBatch.getBelongsToField(L_BATCH);
-                        if (batch.getId().equals(realParentId)) {
-                            long realId = producedBatch.getId();
-                            boolean addedChild = addChild(tree, producedBatch, parent, makeIdsUnique);
-                            if (addedChild) {
-                                generateUsedToProduceTree(producedBatch, tree, includeDrafts, makeIdsUnique, realId);
-                            }
-                        }
-                    }
-                } else if (TrackingRecordType.FOR_ORDER.equals(type) && isEnabled("advancedGenealogyForOrders")) {
-                    EntityList genealogyProductInComponents = trackingRecord.getHasManyField("genealogyProductInComponents");
-                    for (Entity genealogyProductInComponent : genealogyProductInComponents) {
-                        EntityList productInBatches = genealogyProductInComponent.getHasManyField("productInBatches");
-                        for (Entity producedInBatch : productInBatches) {
-                            Entity batch = producedInBatch.getBelongsToField(L_BATCH);
-                            if (batch == null) {
-                                continue;
-                            }
-                            if (batch.getId().equals(realParentId)) {
-                                long realId = producedBatch.getId();
-                                boolean addedChild = addChild(tree, producedBatch, parent, makeIdsUnique);
-                                if (addedChild) {
-                                    generateUsedToProduceTree(producedBatch, tree, includeDrafts, makeIdsUnique, realId);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-        }
-    }
-
-    private void generateProducedFromTree(final Entity producedBatch, final List<Entity> tree, final boolean includeDrafts,
+    /**
+     * Children of a node are taken in order of tracking records, a batch occurs once under the same parent and batches already
+     * present on the path from the root are skipped, so cycles in the genealogy can't make the tree infinite. A batch which
+     * occurs in the tree again is added as a copy of its entity.
+     */
+    private void generateTree(final Entity parent, final Long parentBatchId, final SetMultimap<Long, Long> children,
+            final Map<Long, Entity> batches, final List<Entity> tree, final Set<Long> path, final Set<Long> placedBatchIds,
             final boolean makeIdsUnique) {
-        EntityList trackingRecords = producedBatch.getHasManyField(BatchFields.TRACKING_RECORDS);
-        for (Entity trackingRecord : trackingRecords) {
-            String type = trackingRecord.getStringField(TrackingRecordFields.ENTITY_TYPE);
-            if (type == null) {
+        Set<Object> childNumbers = Sets.newHashSet();
+
+        for (Long childBatchId : children.get(parentBatchId)) {
+            Entity batch = batches.get(childBatchId);
+
+            if ((batch == null) || path.contains(childBatchId) || !childNumbers.add(batch.getField(NUMBER))) {
                 continue;
             }
 
-            String state = trackingRecord.getStringField(STATE);
+            Entity child = placedBatchIds.add(childBatchId) ? batch : batch.copy();
 
-            if (!TrackingRecordState.ACCEPTED.getStringValue().equals(state)) {
-                boolean isDraftAndWeIncludeDrafts = TrackingRecordState.DRAFT.getStringValue().equals(state) && includeDrafts;
+            addChild(tree, child, parent, makeIdsUnique);
 
-                if (!isDraftAndWeIncludeDrafts) {
-                    continue;
-                }
-            }
+            path.add(childBatchId);
+
+            generateTree(child, childBatchId, children, batches, tree, path, placedBatchIds, makeIdsUnique);
 
-            if (TrackingRecordType.SIMPLE.equals(type)) {
-                EntityList usedBatches = trackingRecord.getHasManyField(USED_BATCHES_SIMPLE);
-                for (Entity usedBatch : usedBatches) {
-                    Entity batch = usedBatch.getBelongsToField(L_BATCH);
-                    boolean addedChild = addChild(tree, batch, producedBatch, makeIdsUnique);
-                    if (addedChild) {
-                        generateProducedFromTree(batch, tree, includeDrafts, makeIdsUnique);
-                    }
-                }
-            } else if (TrackingRecordType.FOR_ORDER.equals(type) && isEnabled("advancedGenealogyForOrders")) {
-                EntityList genealogyProductInComponents = trackingRecord.getHasManyField("genealogyProductInComponents");
-                for (Entity genealogyProductInComponent : genealogyProductInComponents) {
-                    EntityList productInBatches = genealogyProductInComponent.getHasManyField("productInBatches");
-                    for (Entity producedInBatch : productInBatches) {
-                        Entity batch = producedInBatch.getBelongsToField(L_BATCH);
-                        if (batch == null) {
-                            continue;
-                        }
-                        boolean addedChild = addChild(tree, batch, producedBatch, makeIdsUnique);
-                        if (addedChild) {
-                            generateProducedFromTree(batch, tree, includeDrafts, makeIdsUnique);
-                        }
-                    }
-                }
+            path.remove(childBatchId);
+        }
+    }
+
+    private Map<Long, Entity> getBatches(final Collection<Long> batchIds) {
+        Map<Long, Entity> batches = Maps.newHashMap();
+
+        for (List<Long> ids : Lists.partition(Lists.newArrayList(Sets.newHashSet(batchIds)), L_BATCHES_QUERY_SIZE)) {
+            for (Entity batch : getDD().find().add(SearchRestrictions.in(L_ID, ids)).list().getEntities()) {
+                batches.put(batch.getId(), batch);
             }
         }
+
+        return batches;
     }
 
     private DataDefinition getDD() {
@@ -0,0 +1,157 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.advancedGenealogy.tree;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordType;
+import com.qcadoo.mes.advancedGenealogy.states.constants.TrackingRecordStateStringValues;
+
+/**
+ * Batch to batch edges of accepted tracking records are kept in advancedgenealogy_batchedge table, so trees of related batches
+ * are read with a single recursive query over indexed edges instead of walking tracking records entity by entity. Edges of
+ * draft records are read from tracking records directly, only when drafts are requested.
+ */
+@Service
+public class BatchGenealogyGraphService {
+
+    private static final String SIMPLE_EDGES = "SELECT tr.producedbatch_id, ubs.batch_id AS usedbatch_id, tr.id AS trackingrecord_id, "
+            + "ubs.id AS edge_order FROM advancedgenealogy_trackingrecord tr "
+            + "JOIN advancedgenealogy_usedbatchsimple ubs ON ubs.trackingrecord_id = tr.id "
+            + "WHERE tr.entitytype = :simpleType AND tr.producedbatch_id IS NOT NULL AND ubs.batch_id IS NOT NULL ";
+
+    private static final String FOR_ORDER_EDGES = "SELECT tr.producedbatch_id, gpib.batch_id AS usedbatch_id, "
+            + "tr.id AS trackingrecord_id, gpib.id AS edge_order FROM advancedgenealogy_trackingrecord tr "
+            + "JOIN advancedgenealogyfororders_genealogyproductincomponent gpic ON gpic.trackingrecord_id = tr.id "
+            + "JOIN advancedgenealogyfororders_genealogyproductinbatch gpib ON gpib.genealogyproductincomponent_id = gpic.id "
+            + "WHERE tr.entitytype = :forOrderType AND tr.producedbatch_id IS NOT NULL AND gpib.batch_id IS NOT NULL ";
+
+    private static final String ACCEPTED_EDGES = "SELECT producedbatch_id, usedbatch_id, trackingrecord_id, id AS edge_order "
+            + "FROM advancedgenealogy_batchedge ";
+
+    private static final String INSERT_EDGES = "INSERT INTO advancedgenealogy_batchedge "
+            + "(producedbatch_id, usedbatch_id, trackingrecord_id) SELECT e.producedbatch_id, e.usedbatch_id, e.trackingrecord_id FROM (";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void addEdges(final Long trackingRecordId, final boolean includeForOrders) {
+        removeEdges(trackingRecordId);
+
+        String restriction = "AND tr.id = :trackingRecordId ";
+
+        jdbcTemplate.update(INSERT_EDGES + getSourceEdges(restriction, includeForOrders) + ") e ORDER BY e.edge_order",
+                getParameters(Collections.singletonMap("trackingRecordId", trackingRecordId)));
+    }
+
+    public void removeEdges(final Long trackingRecordId) {
+        jdbcTemplate.update("DELETE FROM advancedgenealogy_batchedge WHERE trackingrecord_id = :trackingRecordId",
+                Collections.singletonMap("trackingRecordId", trackingRecordId));
+    }
+
+    /**
+     * Fills edges of all accepted tracking records again, e.g. for data entered before the edges were maintained.
+     */
+    public void rebuildEdges(final boolean includeForOrders) {
+        jdbcTemplate.update("DELETE FROM advancedgenealogy_batchedge", Collections.emptyMap());
+
+        String restriction = "AND tr.state = :acceptedState ";
+
+        jdbcTemplate.update(INSERT_EDGES + getSourceEdges(restriction, includeForOrders)
+                + ") e ORDER BY e.trackingrecord_id, e.edge_order", getParameters(Collections.emptyMap()));
+    }
+
+    public void removeForOrderEdges() {
+        jdbcTemplate.update("DELETE FROM advancedgenealogy_batchedge e USING advancedgenealogy_trackingrecord tr "
+                + "WHERE tr.id = e.trackingrecord_id AND tr.entitytype = :forOrderType", getParameters(Collections.emptyMap()));
+    }
+
+    /**
+     * @return batches used to produce given batch and, recursively, batches used to produce them, by produced batch id
+     */
+    public SetMultimap<Long, Long> getUsedBatches(final Long producedBatchId, final boolean includeDrafts,
+            final boolean includeForOrders) {
+        return getEdges(producedBatchId, "producedbatch_id", "usedbatch_id", includeDrafts, includeForOrders);
+    }
+
+    /**
+     * @return batches produced from given batch and, recursively, batches produced from them, by used batch id
+     */
+    public SetMultimap<Long, Long> getProducedBatches(final Long usedBatchId, final boolean includeDrafts,
+            final boolean includeForOrders) {
+        return getEdges(usedBatchId, "usedbatch_id", "producedbatch_id", includeDrafts, includeForOrders);
+    }
+
+    private SetMultimap<Long, Long> getEdges(final Long batchId, final String fromColumn, final String toColumn,
+            final boolean includeDrafts, final boolean includeForOrders) {
+        String edges = ACCEPTED_EDGES;
+
+        if (includeDrafts) {
+            edges = edges + "UNION ALL " + getSourceEdges("AND tr.state = :draftState ", includeForOrders);
+        }
+
+        String query = "WITH RECURSIVE reachable (batch_id) AS (SELECT CAST(:batchId AS bigint) UNION SELECT e." + toColumn
+                + " FROM (" + edges + ") e JOIN reachable r ON e." + fromColumn + " = r.batch_id) SELECT e." + fromColumn
+                + " AS from_id, e." + toColumn + " AS to_id FROM (" + edges + ") e JOIN reachable r ON e." + fromColumn
+                + " = r.batch_id ORDER BY e.trackingrecord_id, e.edge_order";
+
+        SetMultimap<Long, Long> children = LinkedHashMultimap.create();
+
+        jdbcTemplate.query(query, getParameters(Collections.singletonMap("batchId", batchId)), rs -> {
+            children.put(rs.getLong("from_id"), rs.getLong("to_id"));
+        });
+
+        return children;
+    }
+
+    private String getSourceEdges(final String restriction, final boolean includeForOrders) {
+        String edges = SIMPLE_EDGES + restriction;
+
+        if (includeForOrders) {
+            edges = edges + "UNION ALL " + FOR_ORDER_EDGES + restriction;
+        }
+
+        return edges;
+    }
+
+    private Map<String, Object> getParameters(final Map<String, Object> parameters) {
+        Map<String, Object> params = Maps.newHashMap(parameters);
+
+        params.put("simpleType", TrackingRecordType.SIMPLE);
+        params.put("forOrderType", TrackingRecordType.FOR_ORDER);
+        params.put("acceptedState", TrackingRecordStateStringValues.ACCEPTED);
+        params.put("draftState", TrackingRecordStateStringValues.DRAFT);
+
+        return params;
+    }
+
+}
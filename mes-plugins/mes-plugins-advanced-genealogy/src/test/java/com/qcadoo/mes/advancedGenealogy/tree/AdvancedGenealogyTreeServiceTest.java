@@ -25,10 +25,10 @@ package com.qcadoo.mes.advancedGenealogy.tree;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import java.util.LinkedList;
 import java.util.List;
 
 import org.junit.Before;
@@ -38,14 +38,14 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
 import com.qcadoo.mes.advancedGenealogy.constants.AdvancedGenealogyConstants;
-import com.qcadoo.mes.advancedGenealogy.constants.TrackingRecordType;
-import com.qcadoo.mes.advancedGenealogy.states.constants.TrackingRecordState;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.EntityList;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
 import com.qcadoo.model.api.search.SearchResult;
 import com.qcadoo.plugin.api.Plugin;
 import com.qcadoo.plugin.api.PluginAccessor;
@@ -67,19 +67,15 @@ public class AdvancedGenealogyTreeServiceTest {
     private PluginAccessor pluginAccessor;
 
     @Mock
-    private SearchResult searchResult;
+    private BatchGenealogyGraphService batchGenealogyGraphService;
 
     @Mock
-    private Entity batch1Tr;
+    private SearchResult searchResult;
 
     @Mock
     private Entity parent1, parent2;
 
-    private EntityList mockEntityList(List<Entity> list) {
-        EntityList entityList = mock(EntityList.class);
-        when(entityList.iterator()).thenReturn(list.iterator());
-        return entityList;
-    }
+    private final SetMultimap<Long, Long> noEdges = ImmutableSetMultimap.of();
 
     @Before
     public void init() {
@@ -89,6 +85,7 @@ public class AdvancedGenealogyTreeServiceTest {
 
         ReflectionTestUtils.setField(treeService, "dataDefinitionService", dataDefinitionService);
         ReflectionTestUtils.setField(treeService, "pluginAccessor", pluginAccessor);
+        ReflectionTestUtils.setField(treeService, "batchGenealogyGraphService", batchGenealogyGraphService);
 
         when(pluginAccessor.getPlugin("advancedGenealogyForOrders")).thenReturn(null);
 
@@ -98,22 +95,17 @@ public class AdvancedGenealogyTreeServiceTest {
         when(batch1.getId()).thenReturn(1L);
         when(batch2.getId()).thenReturn(2L);
 
-        EntityList batch1Trs = mockEntityList(asList(batch1Tr));
-        when(batch1.getHasManyField("trackingRecords")).thenReturn(batch1Trs);
-        when(batch1Tr.getStringField("entityType")).thenReturn(TrackingRecordType.SIMPLE);
-        when(batch1Tr.getStringField("state")).thenReturn(TrackingRecordState.DRAFT.getStringValue());
-        Entity batch1TrUsedBatch1 = mock(Entity.class);
-        when(batch1TrUsedBatch1.getBelongsToField("batch")).thenReturn(batch2);
-        EntityList batch1TrUsedBatches = mockEntityList(asList(batch1TrUsedBatch1));
-        when(batch1Tr.getHasManyField("usedBatchesSimple")).thenReturn(batch1TrUsedBatches);
-
-        EntityList batch2Trs = mockEntityList(new LinkedList<Entity>());
-        when(batch2.getHasManyField("trackingRecords")).thenReturn(batch2Trs);
+        // batch1 is produced from batch2 by a draft tracking record
+        when(batchGenealogyGraphService.getUsedBatches(1L, true, false)).thenReturn(ImmutableSetMultimap.of(1L, 2L));
+        when(batchGenealogyGraphService.getUsedBatches(1L, false, false)).thenReturn(noEdges);
+        when(batchGenealogyGraphService.getProducedBatches(2L, true, false)).thenReturn(ImmutableSetMultimap.of(2L, 1L));
+        when(batchGenealogyGraphService.getProducedBatches(2L, false, false)).thenReturn(noEdges);
 
         SearchCriteriaBuilder searchCriteriaBuilder = Mockito.mock(SearchCriteriaBuilder.class);
         when(dataDefinition.find()).thenReturn(searchCriteriaBuilder);
+        when(searchCriteriaBuilder.add(any(SearchCriterion.class))).thenReturn(searchCriteriaBuilder);
         when(searchCriteriaBuilder.list()).thenReturn(searchResult);
-        when(searchResult.getEntities()).thenReturn(asList(batch1));
+        when(searchResult.getEntities()).thenReturn(asList(batch1, batch2));
 
         String number1 = "QWD33";
         String number2 = "POS22";
@@ -127,8 +119,8 @@ public class AdvancedGenealogyTreeServiceTest {
     public void shouldReturnOnlyTheRootIfThereAreNoRelatedBatchesForProducedFromTree() {
         // given
         Entity batch = mock(Entity.class);
-        EntityList trackingRecords = mockEntityList(new LinkedList<Entity>());
-        when(batch.getHasManyField("trackingRecords")).thenReturn(trackingRecords);
+        when(batch.getId()).thenReturn(3L);
+        when(batchGenealogyGraphService.getUsedBatches(3L, true, false)).thenReturn(noEdges);
 
         // when
         List<Entity> tree = treeService.getProducedFromTree(batch, true, false);
@@ -142,8 +134,8 @@ public class AdvancedGenealogyTreeServiceTest {
     public void shouldReturnOnlyTheRootIfThereAreNoRelatedBatchesForUsedToProduceTree() {
         // given
         Entity batch = mock(Entity.class);
-
-        when(searchResult.getEntities()).thenReturn(new LinkedList<Entity>());
+        when(batch.getId()).thenReturn(3L);
+        when(batchGenealogyGraphService.getProducedBatches(3L, true, false)).thenReturn(noEdges);
 
         // when
         List<Entity> tree = treeService.getUsedToProduceTree(batch, true, false);
@@ -196,17 +188,7 @@ public class AdvancedGenealogyTreeServiceTest {
         // given
         Plugin plugin = mock(Plugin.class);
         when(pluginAccessor.getPlugin("advancedGenealogyForOrders")).thenReturn(plugin);
-        when(batch1Tr.getStringField("entityType")).thenReturn(TrackingRecordType.FOR_ORDER);
-
-        Entity genProdInComp = mock(Entity.class);
-        EntityList genProdInComps = mockEntityList(asList(genProdInComp));
-
-        Entity prodInBatch = mock(Entity.class);
-        when(prodInBatch.getBelongsToField("batch")).thenReturn(batch2);
-
-        EntityList prodInBatches = mockEntityList(asList(prodInBatch));
-        when(genProdInComp.getHasManyField("productInBatches")).thenReturn(prodInBatches);
-        when(batch1Tr.getHasManyField("genealogyProductInComponents")).thenReturn(genProdInComps);
+        when(batchGenealogyGraphService.getUsedBatches(1L, true, true)).thenReturn(ImmutableSetMultimap.of(1L, 2L));
 
         // when
         List<Entity> tree = treeService.getProducedFromTree(batch1, true, false);
@@ -222,17 +204,7 @@ public class AdvancedGenealogyTreeServiceTest {
         // given
         Plugin plugin = mock(Plugin.class);
         when(pluginAccessor.getPlugin("advancedGenealogyForOrders")).thenReturn(plugin);
-        when(batch1Tr.getStringField("entityType")).thenReturn(TrackingRecordType.FOR_ORDER);
-
-        Entity genProdInComp = mock(Entity.class);
-        EntityList genProdInComps = mockEntityList(asList(genProdInComp));
-
-        Entity prodInBatch = mock(Entity.class);
-        when(prodInBatch.getBelongsToField("batch")).thenReturn(batch2);
-
-        EntityList prodInBatches = mockEntityList(asList(prodInBatch));
-        when(genProdInComp.getHasManyField("productInBatches")).thenReturn(prodInBatches);
-        when(batch1Tr.getHasManyField("genealogyProductInComponents")).thenReturn(genProdInComps);
+        when(batchGenealogyGraphService.getProducedBatches(2L, true, true)).thenReturn(ImmutableSetMultimap.of(2L, 1L));
 
         // when
         List<Entity> tree = treeService.getUsedToProduceTree(batch2, true, false);
@@ -242,4 +214,19 @@ public class AdvancedGenealogyTreeServiceTest {
         assertEquals(batch2, tree.get(0));
         assertEquals(batch1, tree.get(1));
     }
+
+    @Test
+    public void shouldNotFollowCyclesInGenealogy() {
+        // given
+        when(batchGenealogyGraphService.getUsedBatches(1L, true, false)).thenReturn(
+                ImmutableSetMultimap.of(1L, 2L, 2L, 1L));
+
+        // when
+        List<Entity> tree = treeService.getProducedFromTree(batch1, true, false);
+
+        // then
+        assertEquals(2, tree.size());
+        assertEquals(batch1, tree.get(0));
+        assertEquals(batch2, tree.get(1));
+    }
 }
@@ -29,6 +29,7 @@ import com.qcadoo.model.api.Entity;
 import com.qcadoo.view.api.ViewDefinitionState;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -180,13 +181,12 @@ public interface BasicProductionCountingService {
     List<Entity> getUsedMaterialsFromProductionCountingQuantities(final Entity order, final boolean onlyComponents);
 
     /**
-     * Get materials from production counting quantities for order and operation
+     * Get materials from production counting quantities of all operations of given orders
      *
-     * @param order
-     * @param operationComponent
-     * @return
+     * @param orderIds
+     * @return production counting quantities which belong to operations
      */
-    List<Entity> getMaterialsForOperationFromProductionCountingQuantities(final Entity order, final Entity operationComponent);
+    List<Entity> getMaterialsForOperationsFromProductionCountingQuantities(final Collection<Long> orderIds);
 
     /**
      * Get needed product quantites from production counting quantities
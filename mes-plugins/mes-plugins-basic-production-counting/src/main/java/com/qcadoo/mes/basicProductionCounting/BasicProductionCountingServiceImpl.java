@@ -73,6 +73,7 @@ import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
+import com.qcadoo.model.api.search.JoinType;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchOrders;
 import com.qcadoo.model.api.search.SearchRestrictions;
@@ -97,6 +98,10 @@ public class BasicProductionCountingServiceImpl implements BasicProductionCounti
 
     private static final String PRODUCTION_FLOW = "productionFlow";
 
+    private static final String ORDER_ALIAS = "ord";
+
+    private static final int ORDERS_QUERY_SIZE = 1000;
+
     private static final String inComponentHQL = "select opic from #technologies_operationProductInComponent opic "
             + "left join opic.operationComponent toc " + "left join toc.technology tech " + "where tech.id = :techId";
 
@@ -488,12 +493,18 @@ public class BasicProductionCountingServiceImpl implements BasicProductionCounti
     }
 
     @Override
-    public List<Entity> getMaterialsForOperationFromProductionCountingQuantities(final Entity order,
-            final Entity operationComponent) {
-        SearchCriteriaBuilder scb = order.getHasManyField(OrderFieldsBPC.PRODUCTION_COUNTING_QUANTITIES).find()
-                .add(SearchRestrictions.belongsTo(ProductionCountingQuantityFields.TECHNOLOGY_OPERATION_COMPONENT,
-                        operationComponent));
-        return scb.list().getEntities();
+    public List<Entity> getMaterialsForOperationsFromProductionCountingQuantities(final Collection<Long> orderIds) {
+        List<Entity> productionCountingQuantities = Lists.newArrayList();
+
+        for (List<Long> ids : Lists.partition(Lists.newArrayList(orderIds), ORDERS_QUERY_SIZE)) {
+            productionCountingQuantities.addAll(getProductionCountingQuantityDD().find()
+                    .createAlias(ProductionCountingQuantityFields.ORDER, ORDER_ALIAS, JoinType.INNER)
+                    .add(SearchRestrictions.in(ORDER_ALIAS + ".id", ids))
+                    .add(SearchRestrictions.isNotNull(ProductionCountingQuantityFields.TECHNOLOGY_OPERATION_COMPONENT)).list()
+                    .getEntities());
+        }
+
+        return productionCountingQuantities;
     }
 
     @Override
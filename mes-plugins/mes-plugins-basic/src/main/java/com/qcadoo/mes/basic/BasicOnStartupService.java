@@ -27,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobService;
 import com.qcadoo.plugin.api.Module;
 
 @Component
@@ -56,6 +57,16 @@ public class BasicOnStartupService extends Module {
     @Autowired
     private ExchangeRatesUpdateService exchangeRatesUpdateService;
 
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    @Override
+    public void multiTenantEnableOnStartup() {
+        super.multiTenantEnableOnStartup();
+
+        backgroundJobService.failInterruptedJobs();
+    }
+
     @Override
     @Transactional
     public void multiTenantEnable() {
@@ -0,0 +1,57 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic;
+
+/**
+ * Paging options for {@link LookupUtils#getGridResponse}.
+ *
+ * By default grid pages are fetched with LIMIT/OFFSET. Seek paging remembers sort key (sort column value and id) of the last row
+ * of each served page, per tenant, and fetches next pages with a keyset condition, so deep pages don't have to skip all preceding
+ * rows. Records have to contain id field to use it. Records are counted exactly in both modes.
+ */
+public final class GridPagingOptions {
+
+    private static final GridPagingOptions OFFSET = new GridPagingOptions(false);
+
+    private static final GridPagingOptions SEEK = new GridPagingOptions(true);
+
+    private final boolean seek;
+
+    private GridPagingOptions(final boolean seek) {
+        this.seek = seek;
+    }
+
+    public static GridPagingOptions offset() {
+        return OFFSET;
+    }
+
+    public static GridPagingOptions seek() {
+        return SEEK;
+    }
+
+    public boolean isSeek() {
+        return seek;
+    }
+
+}
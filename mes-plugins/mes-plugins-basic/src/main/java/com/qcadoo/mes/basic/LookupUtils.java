@@ -1,12 +1,17 @@
 package com.qcadoo.mes.basic;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,69 +20,153 @@ import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.qcadoo.tenant.api.MultiTenantService;
 
 @Service
 public class LookupUtils {
 
+    private static final String L_ID = "id";
+
+    private static final String L_SEEK_VALUE = "seekValue";
+
+    private static final String L_SEEK_ID = "seekId";
+
     @Autowired
     private NamedParameterJdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Class<?>, RecordMetadata> recordsMetadata = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Integer, Cache<String, Map<Integer, SeekKey>>> seekKeys = Maps.newConcurrentMap();
+
     public <R> GridResponse<R> getGridResponse(String query, String sidx, String sord, Integer page, int perPage, R recordExample) {
         return getGridResponse(query, sidx, sord, page, perPage, recordExample, new HashMap<>());
     }
 
     public <R> GridResponse<R> getGridResponse(String query, String sidx, String sord, Integer page, int perPage, R recordExample, Map<String, Object> parameters) {
+        return getGridResponse(query, sidx, sord, page, perPage, recordExample, parameters, GridPagingOptions.offset());
+    }
+
+    public <R> GridResponse<R> getGridResponse(String query, String sidx, String sord, Integer page, int perPage, R recordExample, Map<String, Object> parameters, GridPagingOptions options) {
         sidx = sidx != null ? sidx.toLowerCase() : "";
         sord = sord != null ? sord.toLowerCase() : "";
 
+        RecordMetadata metadata = getRecordMetadata(recordExample.getClass());
+
         Preconditions.checkState(Arrays.asList("asc", "desc", "").contains(sord));
-        Preconditions.checkState(Arrays.asList(recordExample.getClass().getDeclaredFields()).stream().map(Field::getName).map(String::toLowerCase).collect(Collectors.toList()).contains(sidx));
+        Preconditions.checkState(metadata.containsField(sidx));
 
-        query += addQueryWhereForObject(recordExample);
+        String where = addQueryWhereForObject(metadata, recordExample);
 
-        parameters.putAll(getParametersForObject(recordExample));
+        query += where;
 
-        String queryCount = String.format(query, "COUNT(*)", "");
-        String queryRecords = String.format(query, "*", "ORDER BY " + sidx + " " + sord) + String.format(" LIMIT %d OFFSET %d", perPage, perPage * (page - 1));
+        parameters.putAll(getParametersForObject(metadata, recordExample));
 
+        String queryCount = String.format(query, "COUNT(*)", "");
         Integer countRecords = jdbcTemplate.queryForObject(queryCount, parameters, Long.class).intValue();
-        List<R> records = jdbcTemplate.query(queryRecords, parameters, new BeanPropertyRowMapper(recordExample.getClass()));
+        List<R> records;
+
+        if (options.isSeek() && metadata.containsField(L_ID)) {
+            records = getRecordsWithSeek(metadata, query, where, sidx, sord, page, perPage, parameters);
+        } else {
+            String queryRecords = String.format(query, "*", "ORDER BY " + sidx + " " + sord) + String.format(" LIMIT %d OFFSET %d", perPage, perPage * (page - 1));
+
+            records = jdbcTemplate.query(queryRecords, parameters, metadata.<R> getRowMapper());
+        }
 
         return new GridResponse<>(page, Double.valueOf(Math.ceil((1.0 * countRecords) / perPage)).intValue(), countRecords, records);
     }
 
-    private String addQueryWhereForObject(Object object) {
+    private <R> List<R> getRecordsWithSeek(final RecordMetadata metadata, final String query, final String where, final String sidx,
+            final String sord, final Integer page, final int perPage, final Map<String, Object> parameters) {
+        String seekKeysKey = query + new TreeMap<>(parameters) + sidx + sord + perPage;
+        Map<Integer, SeekKey> pagesSeekKeys = getTenantSeekKeys().asMap().computeIfAbsent(seekKeysKey,
+                key -> new ConcurrentHashMap<>());
+        SeekKey previousPageSeekKey = pagesSeekKeys.get(page - 1);
+
+        boolean descending = "desc".equals(sord);
+        String direction = descending ? " DESC" : " ASC";
+        String orderBy = L_ID.equals(sidx) ? L_ID + direction : sidx + direction + ", " + L_ID + direction;
+
+        Map<String, Object> seekParameters = Maps.newHashMap(parameters);
+        StringBuilder queryRecords = new StringBuilder(String.format(query, "*", ""));
+
+        if (page > 1 && previousPageSeekKey != null) {
+            queryRecords.append(where.isEmpty() ? " WHERE " : " AND ");
+            queryRecords.append(getSeekCondition(sidx, descending, previousPageSeekKey, seekParameters));
+            queryRecords.append(" ORDER BY ").append(orderBy).append(String.format(" LIMIT %d", perPage));
+        } else {
+            queryRecords.append(" ORDER BY ").append(orderBy).append(String.format(" LIMIT %d OFFSET %d", perPage, perPage * (page - 1)));
+        }
+
+        List<R> records = jdbcTemplate.query(queryRecords.toString(), seekParameters, metadata.<R> getRowMapper());
+
+        if (!records.isEmpty()) {
+            R lastRecord = records.get(records.size() - 1);
+            Object lastRecordId = metadata.getValue(lastRecord, L_ID);
+
+            if (lastRecordId != null) {
+                pagesSeekKeys.put(page, new SeekKey(metadata.getValue(lastRecord, sidx), lastRecordId));
+            }
+        }
+
+        return records;
+    }
+
+    private Cache<String, Map<Integer, SeekKey>> getTenantSeekKeys() {
+        return seekKeys.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> CacheBuilder.newBuilder()
+                .maximumSize(1000).expireAfterAccess(10, TimeUnit.MINUTES).build());
+    }
+
+    private String getSeekCondition(final String sidx, final boolean descending, final SeekKey seekKey, final Map<String, Object> parameters) {
+        parameters.put(L_SEEK_ID, seekKey.getId());
+
+        String idOperator = descending ? " < " : " > ";
+
+        if (L_ID.equals(sidx)) {
+            return "(" + L_ID + idOperator + ":" + L_SEEK_ID + ")";
+        }
+
+        // PostgreSQL puts nulls last in ascending and first in descending order
+        if (seekKey.getValue() == null) {
+            if (descending) {
+                return String.format("(%s IS NOT NULL OR %s < :%s)", sidx, L_ID, L_SEEK_ID);
+            } else {
+                return String.format("(%s IS NULL AND %s > :%s)", sidx, L_ID, L_SEEK_ID);
+            }
+        }
+
+        parameters.put(L_SEEK_VALUE, seekKey.getValue());
+
+        if (descending) {
+            return String.format("((%s, %s) < (:%s, :%s))", sidx, L_ID, L_SEEK_VALUE, L_SEEK_ID);
+        } else {
+            return String.format("((%s, %s) > (:%s, :%s) OR %s IS NULL)", sidx, L_ID, L_SEEK_VALUE, L_SEEK_ID, sidx);
+        }
+    }
+
+    private RecordMetadata getRecordMetadata(final Class<?> recordClass) {
+        return recordsMetadata.computeIfAbsent(recordClass, RecordMetadata::new);
+    }
+
+    private String addQueryWhereForObject(RecordMetadata metadata, Object object) {
         List<String> items = new ArrayList<>();
 
         if (object != null) {
-            for (Field field : object.getClass().getDeclaredFields()) {
-                try {
-                    field.setAccessible(true);
-                    Object value = field.get(object);
-                    if (value != null) {
-                        if (value instanceof Number) {
-                            items.add(String.format("%s = :%s", field.getName(), field.getName()));
-
-                        } else if (value instanceof Date) {
-                            items.add(String.format("%s = :%s", field.getName(), field.getName()));
-
-                        } else if (value instanceof Boolean) {
-                            items.add(String.format("%s = :%s", field.getName(), field.getName()));
-
-                        } else if (value instanceof String) {
-                            SearchAttribute.SEARCH_TYPE searchType = field.isAnnotationPresent(SearchAttribute.class) ? field.getAnnotation(SearchAttribute.class).searchType() : SearchAttribute.SEARCH_TYPE.LIKE;
-
-                            if (searchType == SearchAttribute.SEARCH_TYPE.EXACT_MATCH) {
-                                items.add(String.format("lower(%s) = lower(:%s)", field.getName(), field.getName()));
-
-                            } else {
-                                items.add(String.format("lower(%s) like lower(:%s)", field.getName(), field.getName()));
-                            }
-                        }
-                    }
+            for (RecordField recordField : metadata.getFields()) {
+                Object value = recordField.getValue(object);
+                if (value != null) {
+                    if (value instanceof Number || value instanceof Date || value instanceof Boolean) {
+                        items.add(recordField.getEqualsCondition());
 
-                } catch (IllegalArgumentException | IllegalAccessException ex) {
-                    throw new RuntimeException(ex);
+                    } else if (value instanceof String) {
+                        items.add(recordField.getStringCondition());
+                    }
                 }
             }
         }
@@ -91,36 +180,137 @@ public class LookupUtils {
         return where;
     }
 
-    private Map<String, Object> getParametersForObject(Object object) {
+    private Map<String, Object> getParametersForObject(RecordMetadata metadata, Object object) {
         Map<String, Object> parameters = new HashMap<>();
 
         if (object != null) {
-            for (Field field : object.getClass().getDeclaredFields()) {
-                try {
-                    field.setAccessible(true);
-                    Object value = field.get(object);
-                    if (value != null) {
-                        if (value instanceof String) {
-                            SearchAttribute.SEARCH_TYPE searchType = field.isAnnotationPresent(SearchAttribute.class) ? field.getAnnotation(SearchAttribute.class).searchType() : SearchAttribute.SEARCH_TYPE.LIKE;
-
-                            if (searchType == SearchAttribute.SEARCH_TYPE.EXACT_MATCH) {
-                                parameters.put(field.getName(), value);
-
-                            } else {
-                                parameters.put(field.getName(), "%" + value + "%");
-                            }
-
-                        } else {
-                            parameters.put(field.getName(), value);
-                        }
-                    }
+            for (RecordField recordField : metadata.getFields()) {
+                Object value = recordField.getValue(object);
+                if (value != null) {
+                    if (value instanceof String && recordField.getSearchType() == SearchAttribute.SEARCH_TYPE.LIKE) {
+                        parameters.put(recordField.getName(), "%" + value + "%");
 
-                } catch (IllegalArgumentException | IllegalAccessException ex) {
-                    throw new RuntimeException(ex);
+                    } else {
+                        parameters.put(recordField.getName(), value);
+                    }
                 }
             }
         }
 
         return parameters;
     }
+
+    private static final class RecordMetadata {
+
+        private final List<RecordField> fields = new ArrayList<>();
+
+        private final Map<String, RecordField> fieldsByLowerCaseName = new HashMap<>();
+
+        private final BeanPropertyRowMapper<?> rowMapper;
+
+        RecordMetadata(final Class<?> recordClass) {
+            for (Field field : recordClass.getDeclaredFields()) {
+                if (field.isSynthetic() || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+
+                RecordField recordField = new RecordField(field);
+
+                fields.add(recordField);
+                fieldsByLowerCaseName.put(field.getName().toLowerCase(), recordField);
+            }
+
+            rowMapper = new BeanPropertyRowMapper<>(recordClass);
+        }
+
+        List<RecordField> getFields() {
+            return fields;
+        }
+
+        boolean containsField(final String lowerCaseName) {
+            return fieldsByLowerCaseName.containsKey(lowerCaseName);
+        }
+
+        Object getValue(final Object record, final String lowerCaseName) {
+            return fieldsByLowerCaseName.get(lowerCaseName).getValue(record);
+        }
+
+        @SuppressWarnings("unchecked")
+        <R> BeanPropertyRowMapper<R> getRowMapper() {
+            return (BeanPropertyRowMapper<R>) rowMapper;
+        }
+
+    }
+
+    private static final class RecordField {
+
+        private final Field field;
+
+        private final SearchAttribute.SEARCH_TYPE searchType;
+
+        private final String equalsCondition;
+
+        private final String stringCondition;
+
+        RecordField(final Field field) {
+            field.setAccessible(true);
+
+            this.field = field;
+            this.searchType = field.isAnnotationPresent(SearchAttribute.class) ? field.getAnnotation(SearchAttribute.class).searchType() : SearchAttribute.SEARCH_TYPE.LIKE;
+            this.equalsCondition = String.format("%s = :%s", field.getName(), field.getName());
+
+            if (searchType == SearchAttribute.SEARCH_TYPE.EXACT_MATCH) {
+                this.stringCondition = String.format("lower(%s) = lower(:%s)", field.getName(), field.getName());
+            } else {
+                this.stringCondition = String.format("lower(%s) like lower(:%s)", field.getName(), field.getName());
+            }
+        }
+
+        String getName() {
+            return field.getName();
+        }
+
+        SearchAttribute.SEARCH_TYPE getSearchType() {
+            return searchType;
+        }
+
+        String getEqualsCondition() {
+            return equalsCondition;
+        }
+
+        String getStringCondition() {
+            return stringCondition;
+        }
+
+        Object getValue(final Object record) {
+            try {
+                return field.get(record);
+            } catch (IllegalArgumentException | IllegalAccessException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+    }
+
+    private static final class SeekKey {
+
+        private final Object value;
+
+        private final Object id;
+
+        SeekKey(final Object value, final Object id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        Object getValue() {
+            return value;
+        }
+
+        Object getId() {
+            return id;
+        }
+
+    }
+
 }
@@ -9,6 +9,7 @@ import com.qcadoo.mes.basic.shift.Shift;
 import com.qcadoo.mes.basic.util.DateTimeRange;
 import com.qcadoo.model.api.Entity;
 import org.joda.time.DateTime;
+import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -16,6 +17,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class ShiftExceptionService {
@@ -34,6 +36,33 @@ public class ShiftExceptionService {
             exceptions = timetableExceptionService.findFor(productionLine, shiftEntity, dateOfDay);
         }
 
+        return applyExceptions(shiftWorkDateTime, exceptions, shift, dateOfDay);
+    }
+
+    /**
+     * Finds exceptions of the shift on the production line which fall within the given days, so that work times of many days
+     * can be computed with {@link #getShiftWorkDateTimes(Shift, DateTime, List)} without querying for every day.
+     */
+    public List<Entity> findExceptions(final Entity productionLine, final Shift shift, final Date fromDate, final Date toDate) {
+        return timetableExceptionService.findFor(productionLine, shift.getEntity(), fromDate, toDate);
+    }
+
+    public List<DateTimeRange> getShiftWorkDateTimes(final Shift shift, final DateTime dateOfDay, final List<Entity> exceptions) {
+        LocalDate day = dateOfDay.toLocalDate();
+
+        List<Entity> exceptionsOfDay = exceptions.stream()
+                .filter(exception -> !day.isBefore(
+                        new LocalDate(exception.getDateField(ShiftTimetableExceptionFields.FROM_DATE)))
+                        && !day.isAfter(new LocalDate(exception.getDateField(ShiftTimetableExceptionFields.TO_DATE))))
+                .collect(Collectors.toList());
+
+        return applyExceptions(getShiftWorkDateTimes(shift, dateOfDay), exceptionsOfDay, shift, dateOfDay.toDate());
+    }
+
+    private List<DateTimeRange> applyExceptions(List<DateTimeRange> shiftWorkDateTime, final List<Entity> exceptions,
+            final Shift shift, final Date dateOfDay) {
+        Entity shiftEntity = shift.getEntity();
+
         Shift shiftForDay = new Shift(shiftEntity, new DateTime(dateOfDay), false);
 
         for (Entity exception : exceptions) {
@@ -52,6 +81,10 @@ public class ShiftExceptionService {
     }
 
     public List<DateTimeRange> getShiftWorkDateTimes(final Entity productionLine, final Shift shift, DateTime dateOfDay) {
+        return manageExceptions(getShiftWorkDateTimes(shift, dateOfDay), productionLine, shift, dateOfDay.toDate());
+    }
+
+    private List<DateTimeRange> getShiftWorkDateTimes(final Shift shift, final DateTime dateOfDay) {
         List<TimeRange> shiftWorkTime = Lists.newArrayList();
         List<DateTimeRange> shiftWorkDateTime = Lists.newArrayList();
         if (shift.worksAt(dateOfDay.dayOfWeek().get())) {
@@ -61,8 +94,6 @@ public class ShiftExceptionService {
             shiftWorkDateTime.add(new DateTimeRange(dateOfDay, range));
         }
 
-        shiftWorkDateTime = manageExceptions(shiftWorkDateTime, productionLine, shift, dateOfDay.toDate());
-
         return shiftWorkDateTime;
     }
 
@@ -30,6 +30,7 @@ import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.mes.basic.constants.ShiftFields;
 import com.qcadoo.mes.basic.constants.TimetableExceptionType;
 import com.qcadoo.mes.basic.shift.Shift;
+import com.qcadoo.mes.basic.shift.ShiftCalendarService;
 import com.qcadoo.mes.basic.util.DateTimeRange;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
@@ -53,7 +54,6 @@ import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.joda.time.DateTime;
-import org.joda.time.DateTimeConstants;
 import org.joda.time.IllegalFieldValueException;
 import org.joda.time.Interval;
 import org.joda.time.LocalTime;
@@ -90,12 +90,6 @@ public class ShiftsServiceImpl implements ShiftsService {
 
     private static final String FROM_DATE_FIELD = "fromDate";
 
-    private static final long STEP = DateTimeConstants.MILLIS_PER_WEEK;
-
-    private static final long MAX_TIMESTAMP = new DateTime(2100, 1, 1, 0, 0, 0, 0).toDate().getTime();
-
-    private static final long MIN_TIMESTAMP = new DateTime(2000, 1, 1, 0, 0, 0, 0).toDate().getTime();
-
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
@@ -105,6 +99,9 @@ public class ShiftsServiceImpl implements ShiftsService {
     @Autowired
     private ShiftExceptionService shiftExceptionService;
 
+    @Autowired
+    private ShiftCalendarService shiftCalendarService;
+
     private static final String[] WEEK_DAYS = { L_MONDAY, L_TUESDAY, L_WENSDAY, L_THURSDAY, L_FRIDAY, L_SATURDAY, L_SUNDAY };
 
     private static final Map<Integer, String> DAY_OF_WEEK = buildDayNumToNameMap();
@@ -345,70 +342,12 @@ public class ShiftsServiceImpl implements ShiftsService {
 
     @Override
     public Date findDateToForOrder(final Date dateFrom, final long seconds) {
-        if (dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_SHIFT).find().list()
-                .getTotalNumberOfEntities() == 0) {
-            return null;
-        }
-
-        long start = dateFrom.getTime();
-        long remaining = seconds;
-
-        while (remaining >= 0) {
-            List<ShiftHour> hours = getHoursForAllShifts(new Date(start), new Date(start + STEP));
-
-            for (ShiftHour hour : hours) {
-                long diff = (hour.getDateTo().getTime() - hour.getDateFrom().getTime()) / 1000;
-
-                if (diff >= remaining) {
-                    return new Date(hour.getDateFrom().getTime() + (remaining * 1000));
-                } else {
-                    remaining -= diff;
-                }
-            }
-
-            start += STEP;
-
-            if (start > MAX_TIMESTAMP) {
-                return null;
-            }
-        }
-
-        return null;
+        return shiftCalendarService.addWorkingSeconds(dateFrom, seconds).orElse(null);
     }
 
     @Override
     public Date findDateFromForOrder(final Date dateTo, final long seconds) {
-        if (dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_SHIFT).find().list()
-                .getTotalNumberOfEntities() == 0) {
-            return null;
-        }
-
-        long stop = dateTo.getTime();
-        long remaining = seconds;
-
-        while (remaining >= 0) {
-            List<ShiftHour> hours = getHoursForAllShifts(new Date(stop - STEP), new Date(stop));
-
-            for (int i = hours.size() - 1; i >= 0; i--) {
-                ShiftHour hour = hours.get(i);
-
-                long diff = (hour.getDateTo().getTime() - hour.getDateFrom().getTime()) / 1000;
-
-                if (diff >= remaining) {
-                    return new Date(hour.getDateTo().getTime() - (remaining * 1000));
-                } else {
-                    remaining -= diff;
-                }
-            }
-
-            stop -= STEP;
-
-            if (stop < MIN_TIMESTAMP) {
-                return null;
-            }
-        }
-
-        return null;
+        return shiftCalendarService.subtractWorkingSeconds(dateTo, seconds).orElse(null);
     }
 
     @Override
@@ -29,6 +29,22 @@ class TimetableExceptionService {
         return findFor(Lists.newArrayList(productionLine.getId()), Lists.newArrayList(shift.getId()), date, type);
     }
 
+    List<Entity> findFor(final Entity productionLine, final Entity shift, final Date fromDate, final Date toDate) {
+        StringBuilder query = new StringBuilder();
+
+        query.append("SELECT timetableException FROM #basic_shiftTimetableException timetableException");
+        query.append(" JOIN timetableException.productionLines productionLine");
+        query.append(" JOIN timetableException.shifts shift");
+        query.append(" WHERE productionLine.id = :productionLine");
+        query.append(" AND shift.id = :shift");
+        query.append(
+                " AND to_char(timetableException.fromDate,'yyyy-MM-dd') <= :toDate AND to_char(timetableException.toDate,'yyyy-MM-dd') >= :fromDate");
+
+        return getShiftTimetableExceptionDD().find(query.toString()).setLong("productionLine", productionLine.getId())
+                .setLong("shift", shift.getId()).setParameter("fromDate", DateUtils.toDateString(fromDate))
+                .setParameter("toDate", DateUtils.toDateString(toDate)).list().getEntities();
+    }
+
     private List<Entity> findFor(final List<Long> productionLineIds, final List<Long> shiftIds, final Date date,
             final String type) {
         List<Entity> shiftTimetableExceptions = Lists.newArrayList();
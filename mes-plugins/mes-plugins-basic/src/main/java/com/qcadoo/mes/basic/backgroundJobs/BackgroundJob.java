@@ -0,0 +1,44 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.backgroundJobs;
+
+/**
+ * Long running generation executed by {@link BackgroundJobService} outside of the request thread.
+ */
+public interface BackgroundJob {
+
+    /**
+     * Runs the job. Implementations should report progress and check for cancellation between their steps using the given
+     * context. Exceptions thrown mark the job as failed.
+     */
+    void run(final BackgroundJobContext context) throws Exception;
+
+    /**
+     * Called when the job won't complete: it was rejected because the queue is full, it failed or it was cancelled. Jobs which
+     * mark their entities as generated should reset them here, so the generation can be started again.
+     */
+    default void onFailure() {
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.backgroundJobs;
+
+public class BackgroundJobContext {
+
+    private final Long jobId;
+
+    private final BackgroundJobService backgroundJobService;
+
+    private String resultUrl;
+
+    BackgroundJobContext(final Long jobId, final BackgroundJobService backgroundJobService) {
+        this.jobId = jobId;
+        this.backgroundJobService = backgroundJobService;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    /**
+     * @param progress
+     *            percent of work done, from 0 to 100
+     */
+    public void setProgress(final int progress) {
+        backgroundJobService.updateProgress(jobId, Math.max(0, Math.min(100, progress)));
+    }
+
+    public boolean isCancelled() {
+        return backgroundJobService.isCancelled(jobId);
+    }
+
+    public String getResultUrl() {
+        return resultUrl;
+    }
+
+    /**
+     * @param resultUrl
+     *            application relative url under which the result can be downloaded, e.g. a saved report url
+     */
+    public void setResultUrl(final String resultUrl) {
+        this.resultUrl = resultUrl;
+    }
+
+}
@@ -0,0 +1,319 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.backgroundJobs;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.security.api.SecurityService;
+import com.qcadoo.tenant.api.MultiTenantCallback;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Runs long generations on a bounded executor instead of the request thread. Every job is persisted in basic_backgroundjob, so
+ * its state and progress can be polled (see BackgroundJobsController) and it can be cancelled by the user who submitted it.
+ * The executor is wrapped like the application executor used by @Async, so jobs run in the tenant and security context of the
+ * submitting request.
+ */
+@Service
+public class BackgroundJobService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackgroundJobService.class);
+
+    private static final int L_KEEP_DAYS = 7;
+
+    private static final String L_SELECT_JOB = "SELECT id, type, state, progress, message, resulturl AS resultUrl, "
+            + "createdate AS createDate, startdate AS startDate, finishdate AS finishDate FROM basic_backgroundjob "
+            + "WHERE id = :id AND createuser = :createUser";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SecurityService securityService;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    @Autowired
+    @Qualifier("backgroundJobExecutor")
+    private Executor backgroundJobExecutor;
+
+    /**
+     * Submits job for background execution. When called inside transaction the job is handed over to the executor only after
+     * commit, so it sees everything saved by the submitting request.
+     *
+     * @return id of the job, to be used for polling its state
+     */
+    public Long submit(final String type, final BackgroundJob job) {
+        return submit(type, null, job).get();
+    }
+
+    /**
+     * Submits job like {@link #submit(String, BackgroundJob)}, unless a queued or running job of the same type was submitted
+     * for the same key, e.g. id of the generated entity.
+     *
+     * @return id of the job or empty if a job for the key is already queued or running
+     */
+    public Optional<Long> submit(final String type, final String key, final BackgroundJob job) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("type", type);
+        params.put("key", key);
+        params.put("createUser", securityService.getCurrentUserName());
+
+        List<Long> jobIds = jdbcTemplate.queryForList("INSERT INTO basic_backgroundjob (type, jobkey, createuser, createdate) "
+                + "VALUES (:type, :key, :createUser, now()) "
+                + "ON CONFLICT (type, jobkey) WHERE state IN ('01queued', '02running') DO NOTHING RETURNING id", params,
+                Long.class);
+
+        if (jobIds.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Long jobId = jobIds.get(0);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCommit() {
+                    execute(jobId, job);
+                }
+            });
+        } else {
+            execute(jobId, job);
+        }
+
+        return Optional.of(jobId);
+    }
+
+    public boolean isActive(final String type, final String key) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("type", type);
+        params.put("key", key);
+        params.put("activeStates", Lists.newArrayList(BackgroundJobState.QUEUED, BackgroundJobState.RUNNING));
+
+        return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM basic_backgroundjob "
+                + "WHERE type = :type AND jobkey = :key AND state IN (:activeStates))", params, Boolean.class);
+    }
+
+    public boolean isActive(final String type) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("type", type);
+        params.put("activeStates", Lists.newArrayList(BackgroundJobState.QUEUED, BackgroundJobState.RUNNING));
+
+        return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM basic_backgroundjob "
+                + "WHERE type = :type AND state IN (:activeStates))", params, Boolean.class);
+    }
+
+    private void execute(final Long jobId, final BackgroundJob job) {
+        try {
+            backgroundJobExecutor.execute(() -> run(jobId, job));
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Background job " + jobId + " rejected, queue is full");
+
+            finish(jobId, BackgroundJobState.FAILED, null, "queue is full");
+
+            onFailure(jobId, job);
+        }
+    }
+
+    private void run(final Long jobId, final BackgroundJob job) {
+        if (!start(jobId)) {
+            onFailure(jobId, job);
+
+            return;
+        }
+
+        BackgroundJobContext context = new BackgroundJobContext(jobId, this);
+
+        try {
+            job.run(context);
+
+            if (context.isCancelled()) {
+                onFailure(jobId, job);
+            } else {
+                finish(jobId, BackgroundJobState.FINISHED, context.getResultUrl(), null);
+            }
+        } catch (Exception e) {
+            LOG.warn("Background job " + jobId + " failed", e);
+
+            finish(jobId, BackgroundJobState.FAILED, null, e.getMessage());
+
+            onFailure(jobId, job);
+        }
+    }
+
+    private void onFailure(final Long jobId, final BackgroundJob job) {
+        try {
+            job.onFailure();
+        } catch (Exception e) {
+            LOG.error("Background job " + jobId + " couldn't be rolled back", e);
+        }
+    }
+
+    private boolean start(final Long jobId) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("id", jobId);
+        params.put("running", BackgroundJobState.RUNNING);
+        params.put("queued", BackgroundJobState.QUEUED);
+
+        return jdbcTemplate.update("UPDATE basic_backgroundjob SET state = :running, startdate = now() "
+                + "WHERE id = :id AND state = :queued", params) > 0;
+    }
+
+    private void finish(final Long jobId, final String state, final String resultUrl, final String message) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("id", jobId);
+        params.put("state", state);
+        params.put("finished", BackgroundJobState.FINISHED);
+        params.put("resultUrl", resultUrl);
+        params.put("message", message);
+        params.put("activeStates", Lists.newArrayList(BackgroundJobState.QUEUED, BackgroundJobState.RUNNING));
+
+        jdbcTemplate.update("UPDATE basic_backgroundjob SET state = :state, "
+                + "progress = CASE WHEN :state = :finished THEN 100 ELSE progress END, "
+                + "resulturl = :resultUrl, message = :message, finishdate = now() "
+                + "WHERE id = :id AND state IN (:activeStates)", params);
+    }
+
+    void updateProgress(final Long jobId, final int progress) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("id", jobId);
+        params.put("progress", progress);
+
+        jdbcTemplate.update("UPDATE basic_backgroundjob SET progress = :progress WHERE id = :id", params);
+    }
+
+    boolean isCancelled(final Long jobId) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("id", jobId);
+
+        List<String> states = jdbcTemplate.queryForList("SELECT state FROM basic_backgroundjob WHERE id = :id", params,
+                String.class);
+
+        return states.isEmpty() || BackgroundJobState.CANCELLED.equals(states.get(0));
+    }
+
+    public Optional<BackgroundJobDto> getJob(final Long jobId) {
+        List<BackgroundJobDto> jobs = jdbcTemplate.query(L_SELECT_JOB, getUserJobParams(jobId),
+                BeanPropertyRowMapper.newInstance(BackgroundJobDto.class));
+
+        if (jobs.isEmpty()) {
+            return Optional.empty();
+        } else {
+            return Optional.of(jobs.get(0));
+        }
+    }
+
+    public Optional<String> getResultUrl(final Long jobId) {
+        return getJob(jobId).filter(job -> BackgroundJobState.FINISHED.equals(job.getState())).map(
+                BackgroundJobDto::getResultUrl);
+    }
+
+    /**
+     * Marks queued or running job as cancelled. Queued job won't be started, running job stops when it checks for cancellation
+     * next time.
+     *
+     * @return true if job was cancelled
+     */
+    public boolean cancel(final Long jobId) {
+        Map<String, Object> params = getUserJobParams(jobId);
+
+        params.put("cancelled", BackgroundJobState.CANCELLED);
+        params.put("activeStates", Lists.newArrayList(BackgroundJobState.QUEUED, BackgroundJobState.RUNNING));
+
+        return jdbcTemplate.update("UPDATE basic_backgroundjob SET state = :cancelled, finishdate = now() "
+                + "WHERE id = :id AND createuser = :createUser AND state IN (:activeStates)", params) > 0;
+    }
+
+    private Map<String, Object> getUserJobParams(final Long jobId) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("id", jobId);
+        params.put("createUser", securityService.getCurrentUserName());
+
+        return params;
+    }
+
+    /**
+     * Marks jobs which were queued or running when the application stopped as failed. They won't be resumed, and their keys
+     * have to be released so the generations can be started again.
+     */
+    public void failInterruptedJobs() {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("failed", BackgroundJobState.FAILED);
+        params.put("activeStates", Lists.newArrayList(BackgroundJobState.QUEUED, BackgroundJobState.RUNNING));
+
+        int interrupted = jdbcTemplate.update("UPDATE basic_backgroundjob SET state = :failed, "
+                + "message = 'interrupted by restart', finishdate = now() WHERE state IN (:activeStates)", params);
+
+        if (interrupted > 0) {
+            LOG.warn("Marked " + interrupted + " interrupted background jobs as failed");
+        }
+    }
+
+    public void deleteOldJobsTrigger() {
+        multiTenantService.doInMultiTenantContext(new MultiTenantCallback() {
+
+            @Override
+            public void invoke() {
+                deleteOldJobs();
+            }
+
+        });
+    }
+
+    public void deleteOldJobs() {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("keepDays", L_KEEP_DAYS);
+
+        jdbcTemplate.update("DELETE FROM basic_backgroundjob WHERE createdate < now() - :keepDays * interval '1 day'", params);
+    }
+
+}
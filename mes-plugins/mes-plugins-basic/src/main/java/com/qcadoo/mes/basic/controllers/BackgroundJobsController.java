@@ -0,0 +1,87 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.controllers;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobDto;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobService;
+
+@Controller
+@RequestMapping("/rest/backgroundJobs")
+public class BackgroundJobsController {
+
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE, value = "{id}")
+    public ResponseEntity<BackgroundJobDto> getJob(@PathVariable Long id) {
+        Optional<BackgroundJobDto> job = backgroundJobService.getJob(id);
+
+        if (job.isPresent()) {
+            return new ResponseEntity<>(job.get(), HttpStatus.OK);
+        } else {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @ResponseBody
+    @RequestMapping(method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE, value = "{id}/cancel")
+    public Map<String, Object> cancel(@PathVariable Long id) {
+        Map<String, Object> response = Maps.newHashMap();
+
+        response.put("cancelled", backgroundJobService.cancel(id));
+
+        return response;
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "{id}/result")
+    public String getResult(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        Optional<String> resultUrl = backgroundJobService.getResultUrl(id);
+
+        if (resultUrl.isPresent()) {
+            return "redirect:" + resultUrl.get();
+        }
+
+        response.sendError(HttpServletResponse.SC_NOT_FOUND);
+
+        return null;
+    }
+
+}
@@ -0,0 +1,63 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.reports.xls;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.view.AbstractView;
+
+public abstract class AbstractStreamingXlsxView extends AbstractView {
+
+    public AbstractStreamingXlsxView() {
+        setContentType(StreamingXlsxWriter.CONTENT_TYPE);
+    }
+
+    @Override
+    protected boolean generatesDownloadContent() {
+        return true;
+    }
+
+    @Override
+    protected final void renderMergedOutputModel(final Map<String, Object> model, final HttpServletRequest request,
+            final HttpServletResponse response) throws Exception {
+        try (StreamingXlsxWriter writer = new StreamingXlsxWriter(getRowAccessWindow())) {
+            buildExcelDocument(model, writer, request, response);
+
+            response.setContentType(getContentType());
+            writer.write(response.getOutputStream());
+            response.flushBuffer();
+        }
+    }
+
+    protected int getRowAccessWindow() {
+        return StreamingXlsxWriter.DEFAULT_ROW_ACCESS_WINDOW;
+    }
+
+    protected abstract void buildExcelDocument(final Map<String, Object> model, final StreamingXlsxWriter writer,
+            final HttpServletRequest request, final HttpServletResponse response) throws Exception;
+
+}
@@ -0,0 +1,93 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.reports.xls;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Runs report queries so that their rows are fetched from the database in chunks instead of being loaded at once. The
+ * PostgreSQL driver honours the fetch size only inside a transaction, so each query runs in a read-only one.
+ */
+@Service
+public class StreamingQueryService {
+
+    public static final int DEFAULT_FETCH_SIZE = 500;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Transactional(readOnly = true)
+    public void query(final String query, final Map<String, ?> params, final RowCallbackHandler rowCallbackHandler) {
+        createJdbcTemplate().query(query, params, rowCallbackHandler);
+    }
+
+    /**
+     * Passes consecutive rows with the same key to the consumer as one group, so a query ordered by the key can be processed
+     * group by group while holding only the rows of the current group.
+     */
+    @Transactional(readOnly = true)
+    public <T, K> void queryGroups(final String query, final Map<String, ?> params, final RowMapper<T> rowMapper,
+            final Function<T, K> keyFunction, final Consumer<List<T>> groupConsumer) {
+        List<T> group = Lists.newArrayList();
+
+        createJdbcTemplate().query(query, params, (RowCallbackHandler) rs -> {
+            T row = rowMapper.mapRow(rs, rs.getRow());
+
+            if (!group.isEmpty() && !Objects.equals(keyFunction.apply(group.get(0)), keyFunction.apply(row))) {
+                groupConsumer.accept(Lists.newArrayList(group));
+                group.clear();
+            }
+
+            group.add(row);
+        });
+
+        if (!group.isEmpty()) {
+            groupConsumer.accept(group);
+        }
+    }
+
+    private NamedParameterJdbcTemplate createJdbcTemplate() {
+        JdbcTemplate streamingJdbcTemplate = new JdbcTemplate(((JdbcTemplate) jdbcTemplate.getJdbcOperations())
+                .getDataSource());
+
+        streamingJdbcTemplate.setFetchSize(DEFAULT_FETCH_SIZE);
+
+        return new NamedParameterJdbcTemplate(streamingJdbcTemplate);
+    }
+
+}
@@ -0,0 +1,273 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.reports.xls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Writes xlsx reports row by row. Only the last rows of the current sheet are kept in memory, older ones are flushed to a
+ * temporary file, so rows have to be written in order and must not be revisited once the window has moved on.
+ *
+ * Cell styles and fonts are registered once per workbook under a key and then shared by all cells using them.
+ *
+ * Columns can't be auto sized, because only rows in the window would be measured. Widths of columns are tracked instead from
+ * rows passed to {@link #fitColumnWidths(Row)} and set on the sheet when next sheet is created or the workbook is written.
+ */
+public class StreamingXlsxWriter implements Closeable {
+
+    public static final int DEFAULT_ROW_ACCESS_WINDOW = 100;
+
+    public static final String CONTENT_TYPE = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+
+    private static final int MAX_COLUMN_WIDTH = 255 * 256;
+
+    private static final int CHARACTER_WIDTH = 256;
+
+    private static final int COLUMN_PADDING = 2;
+
+    private final SXSSFWorkbook workbook;
+
+    private final DataFormat dataFormat;
+
+    private final Map<String, CellStyle> styles = Maps.newHashMap();
+
+    private final Map<String, Font> fonts = Maps.newHashMap();
+
+    private final Map<Integer, Integer> columnWidths = Maps.newHashMap();
+
+    private final DataFormatter dataFormatter = new DataFormatter();
+
+    private Sheet sheet;
+
+    private int rowNumber;
+
+    public StreamingXlsxWriter() {
+        this(DEFAULT_ROW_ACCESS_WINDOW);
+    }
+
+    public StreamingXlsxWriter(final int rowAccessWindow) {
+        workbook = new SXSSFWorkbook(rowAccessWindow);
+        workbook.setCompressTempFiles(true);
+        dataFormat = workbook.createDataFormat();
+    }
+
+    public Workbook getWorkbook() {
+        return workbook;
+    }
+
+    public Sheet createSheet(final String name) {
+        applyColumnWidths();
+
+        sheet = workbook.createSheet(WorkbookUtil.createSafeSheetName(name));
+        rowNumber = 0;
+
+        return sheet;
+    }
+
+    public Sheet getSheet() {
+        return sheet;
+    }
+
+    public Row nextRow() {
+        return sheet.createRow(rowNumber++);
+    }
+
+    public void skipRows(final int count) {
+        rowNumber += count;
+    }
+
+    public int getRowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Widens columns of the current sheet to fit values of cells of the given row.
+     */
+    public void fitColumnWidths(final Row row) {
+        for (Cell cell : row) {
+            String value;
+
+            if (cell.getCellType() == Cell.CELL_TYPE_STRING) {
+                value = cell.getStringCellValue();
+            } else if (cell.getCellType() == Cell.CELL_TYPE_NUMERIC) {
+                value = dataFormatter.formatCellValue(cell);
+            } else {
+                continue;
+            }
+
+            fitColumnWidth(cell.getColumnIndex(), value == null ? 0 : value.length());
+        }
+    }
+
+    /**
+     * Widens column of the current sheet to fit the given number of characters.
+     */
+    public void fitColumnWidth(final int column, final int characters) {
+        columnWidths.merge(column, characters, Math::max);
+    }
+
+    private void applyColumnWidths() {
+        if (sheet != null) {
+            for (Map.Entry<Integer, Integer> columnWidth : columnWidths.entrySet()) {
+                sheet.setColumnWidth(columnWidth.getKey(),
+                        Math.min((columnWidth.getValue() + COLUMN_PADDING) * CHARACTER_WIDTH, MAX_COLUMN_WIDTH));
+            }
+        }
+
+        columnWidths.clear();
+    }
+
+    public CellStyle getStyle(final String key, final Consumer<CellStyle> initializer) {
+        CellStyle style = styles.get(key);
+
+        if (style == null) {
+            style = workbook.createCellStyle();
+            initializer.accept(style);
+            styles.put(key, style);
+        }
+
+        return style;
+    }
+
+    public CellStyle getDataFormatStyle(final String format) {
+        return getStyle("dataFormat:" + format, style -> style.setDataFormat(dataFormat.getFormat(format)));
+    }
+
+    public Font getFont(final String key, final Consumer<Font> initializer) {
+        Font font = fonts.get(key);
+
+        if (font == null) {
+            font = workbook.createFont();
+            initializer.accept(font);
+            fonts.put(key, font);
+        }
+
+        return font;
+    }
+
+    public short getDataFormat(final String format) {
+        return dataFormat.getFormat(format);
+    }
+
+    public Cell createCell(final Row row, final int column, final String value) {
+        Cell cell = row.createCell(column);
+        cell.setCellValue(value);
+
+        return cell;
+    }
+
+    public Cell createCell(final Row row, final int column, final String value, final CellStyle style) {
+        Cell cell = createCell(row, column, value);
+        cell.setCellStyle(style);
+
+        return cell;
+    }
+
+    public Cell createCell(final Row row, final int column, final Date value, final CellStyle style) {
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(style);
+
+        if (value != null) {
+            cell.setCellValue(value);
+        }
+
+        return cell;
+    }
+
+    public Cell createCell(final Row row, final int column, final BigDecimal value, final CellStyle style) {
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(style);
+
+        if (value != null) {
+            cell.setCellValue(value.doubleValue());
+        }
+
+        return cell;
+    }
+
+    public Cell createCell(final Row row, final int column, final double value, final CellStyle style) {
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(style);
+        cell.setCellValue(value);
+
+        return cell;
+    }
+
+    /**
+     * Returns a handler which maps each row of a JDBC result set and writes it straight into the next sheet row, so the
+     * whole result never has to be materialized.
+     */
+    public <T> RowCallbackHandler rowHandler(final RowMapper<T> rowMapper, final RowWriter<T> rowWriter) {
+        return new RowCallbackHandler() {
+
+            private int resultRowNumber = 0;
+
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                rowWriter.writeRow(nextRow(), rowMapper.mapRow(rs, resultRowNumber++));
+            }
+
+        };
+    }
+
+    public void write(final OutputStream outputStream) throws IOException {
+        applyColumnWidths();
+        workbook.write(outputStream);
+    }
+
+    @Override
+    public void close() {
+        workbook.dispose();
+    }
+
+    public interface RowWriter<T> {
+
+        void writeRow(final Row row, final T value);
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.reports.xls;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import org.apache.poi.ss.usermodel.Sheet;
+
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Counterpart of the framework xls document service which writes saved reports as xlsx through {@link StreamingXlsxWriter}.
+ * Only a window of rows of each sheet is kept in memory, so rows of a sheet have to be created in ascending order. The writer is
+ * passed to subclasses, so they share its cell styles and let it track column widths.
+ *
+ * Generated files are served by {@link SavedXlsxReportController}.
+ */
+public abstract class XlsxDocumentService {
+
+    public static final String XLSX_EXTENSION = ".xlsx";
+
+    private static final String L_FILE_NAME = "fileName";
+
+    public void generateDocument(final Entity entity, final Locale locale) throws IOException {
+        try (StreamingXlsxWriter writer = new StreamingXlsxWriter();
+                OutputStream outputStream = new FileOutputStream(getFilePath(entity))) {
+            Sheet sheet = writer.createSheet(getReportTitle(locale));
+
+            addHeader(writer, sheet, locale, entity);
+            addSeries(writer, sheet, entity);
+            addExtraSheets(writer, entity, locale);
+
+            writer.write(outputStream);
+        }
+    }
+
+    protected Sheet createSheet(final StreamingXlsxWriter writer, final String title) {
+        return writer.createSheet(title);
+    }
+
+    protected void addExtraSheets(final StreamingXlsxWriter writer, final Entity entity, final Locale locale) {
+    }
+
+    public abstract String getReportTitle(final Locale locale);
+
+    protected abstract void addHeader(final StreamingXlsxWriter writer, final Sheet sheet, final Locale locale,
+            final Entity entity);
+
+    protected abstract void addSeries(final StreamingXlsxWriter writer, final Sheet sheet, final Entity entity);
+
+    public static String getFilePath(final Entity entity) {
+        return entity.getStringField(L_FILE_NAME) + XLSX_EXTENSION;
+    }
+
+    public static String getSavedReportUrl(final String pluginIdentifier, final String modelName, final Long id) {
+        return "/generateSavedXlsxReport/" + pluginIdentifier + "/" + modelName + XLSX_EXTENSION + "?id=" + id;
+    }
+
+}
@@ -0,0 +1,377 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Immutable, compiled working time calendar.
+ * 
+ * Working time is kept as sorted, non-overlapping [start, end) intervals (epoch millis) together with prefix sums of their
+ * durations, so adding or subtracting working time from a given date is a binary search instead of walking the calendar.
+ * 
+ * @since 1.5
+ */
+public final class ShiftCalendar {
+
+    private static final ShiftCalendar EMPTY = new ShiftCalendar(new long[0], new long[0]);
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    private final long[] starts;
+
+    private final long[] ends;
+
+    // workedBefore[i] - working millis in intervals 0..i-1, workedBefore[size] - total working millis
+    private final long[] workedBefore;
+
+    private ShiftCalendar(final long[] starts, final long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+        this.workedBefore = new long[starts.length + 1];
+
+        for (int i = 0; i < starts.length; i++) {
+            workedBefore[i + 1] = workedBefore[i] + (ends[i] - starts[i]);
+        }
+    }
+
+    public static ShiftCalendar empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Merges working time of given calendars, e.g. of all shifts.
+     */
+    public static ShiftCalendar union(final List<ShiftCalendar> calendars) {
+        Builder builder = builder();
+
+        for (ShiftCalendar calendar : calendars) {
+            for (int i = 0; i < calendar.size(); i++) {
+                builder.addWorkTime(calendar.starts[i], calendar.ends[i]);
+            }
+        }
+
+        return builder.build();
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public long getStart(final int index) {
+        return starts[index];
+    }
+
+    public long getEnd(final int index) {
+        return ends[index];
+    }
+
+    /**
+     * Returns the date at which given amount of working seconds, counted from dateFrom, elapses.
+     * 
+     * @return empty if calendar does not contain enough working time after dateFrom
+     */
+    public Optional<Date> addWorkingSeconds(final Date dateFrom, final long seconds) {
+        if (seconds < 0) {
+            return Optional.empty();
+        }
+
+        long from = dateFrom.getTime();
+        int first = firstEndingAfter(from);
+
+        if (first == size()) {
+            return Optional.empty();
+        }
+
+        long effectiveFrom = Math.max(from, starts[first]);
+        long target = workedBefore[first] + (effectiveFrom - starts[first]) + seconds * MILLIS_PER_SECOND;
+
+        if (target > workedBefore[size()]) {
+            return Optional.empty();
+        }
+
+        int index = firstReaching(target, first);
+
+        return Optional.of(new Date(starts[index] + (target - workedBefore[index])));
+    }
+
+    /**
+     * Returns the date from which given amount of working seconds elapses exactly at dateTo.
+     * 
+     * @return empty if calendar does not contain enough working time before dateTo
+     */
+    public Optional<Date> subtractWorkingSeconds(final Date dateTo, final long seconds) {
+        if (seconds < 0) {
+            return Optional.empty();
+        }
+
+        long to = dateTo.getTime();
+        int last = lastStartingBefore(to);
+
+        if (last < 0) {
+            return Optional.empty();
+        }
+
+        long effectiveTo = Math.min(to, ends[last]);
+        long target = workedBefore[last] + (effectiveTo - starts[last]) - seconds * MILLIS_PER_SECOND;
+
+        if (target < 0) {
+            return Optional.empty();
+        }
+
+        int index = lastStartedAt(target, last);
+
+        return Optional.of(new Date(starts[index] + (target - workedBefore[index])));
+    }
+
+    /**
+     * Returns working time (in seconds) between given dates.
+     */
+    public long getWorkingSecondsBetween(final Date dateFrom, final Date dateTo) {
+        return (workedUntil(dateTo.getTime()) - workedUntil(dateFrom.getTime())) / MILLIS_PER_SECOND;
+    }
+
+    private long workedUntil(final long time) {
+        int index = firstEndingAfter(time);
+
+        if (index == size()) {
+            return workedBefore[size()];
+        }
+
+        return workedBefore[index] + Math.max(0, time - starts[index]);
+    }
+
+    private int firstEndingAfter(final long time) {
+        int low = 0;
+        int high = size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (ends[mid] > time) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private int lastStartingBefore(final long time) {
+        int low = 0;
+        int high = size();
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (starts[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low - 1;
+    }
+
+    private int firstReaching(final long worked, final int fromIndex) {
+        int low = fromIndex;
+        int high = size() - 1;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (workedBefore[mid + 1] >= worked) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+    private int lastStartedAt(final long worked, final int toIndex) {
+        int low = 0;
+        int high = toIndex;
+
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+
+            if (workedBefore[mid] <= worked) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    public static final class Builder {
+
+        private long[] workStarts = new long[64];
+
+        private long[] workEnds = new long[64];
+
+        private int workSize;
+
+        private long[] freeStarts = new long[8];
+
+        private long[] freeEnds = new long[8];
+
+        private int freeSize;
+
+        private Builder() {
+        }
+
+        public Builder addWorkTime(final long from, final long to) {
+            if (from < to) {
+                if (workSize == workStarts.length) {
+                    workStarts = Arrays.copyOf(workStarts, workSize * 2);
+                    workEnds = Arrays.copyOf(workEnds, workSize * 2);
+                }
+
+                workStarts[workSize] = from;
+                workEnds[workSize] = to;
+                workSize++;
+            }
+
+            return this;
+        }
+
+        public Builder addFreeTime(final long from, final long to) {
+            if (from < to) {
+                if (freeSize == freeStarts.length) {
+                    freeStarts = Arrays.copyOf(freeStarts, freeSize * 2);
+                    freeEnds = Arrays.copyOf(freeEnds, freeSize * 2);
+                }
+
+                freeStarts[freeSize] = from;
+                freeEnds[freeSize] = to;
+                freeSize++;
+            }
+
+            return this;
+        }
+
+        /**
+         * Builds calendar containing work time with free time cut out of it.
+         */
+        public ShiftCalendar build() {
+            long[][] work = merge(workStarts, workEnds, workSize);
+            long[][] free = merge(freeStarts, freeEnds, freeSize);
+
+            long[][] result = subtract(work[0], work[1], free[0], free[1]);
+
+            if (result[0].length == 0) {
+                return EMPTY;
+            }
+
+            return new ShiftCalendar(result[0], result[1]);
+        }
+
+        private static long[][] merge(final long[] starts, final long[] ends, final int size) {
+            int[] order = IntStream.range(0, size).boxed().sorted((a, b) -> Long.compare(starts[a], starts[b]))
+                    .mapToInt(Integer::intValue).toArray();
+
+            long[] mergedStarts = new long[size];
+            long[] mergedEnds = new long[size];
+            int mergedSize = 0;
+
+            for (int index : order) {
+                if (mergedSize > 0 && starts[index] <= mergedEnds[mergedSize - 1]) {
+                    mergedEnds[mergedSize - 1] = Math.max(mergedEnds[mergedSize - 1], ends[index]);
+                } else {
+                    mergedStarts[mergedSize] = starts[index];
+                    mergedEnds[mergedSize] = ends[index];
+                    mergedSize++;
+                }
+            }
+
+            return new long[][] { Arrays.copyOf(mergedStarts, mergedSize), Arrays.copyOf(mergedEnds, mergedSize) };
+        }
+
+        private static long[][] subtract(final long[] starts, final long[] ends, final long[] cutStarts, final long[] cutEnds) {
+            Preconditions.checkArgument(starts.length == ends.length && cutStarts.length == cutEnds.length);
+
+            long[] resultStarts = new long[starts.length + cutStarts.length];
+            long[] resultEnds = new long[starts.length + cutStarts.length];
+            int resultSize = 0;
+            int cut = 0;
+
+            for (int i = 0; i < starts.length; i++) {
+                long start = starts[i];
+                long end = ends[i];
+
+                while (cut < cutStarts.length && cutEnds[cut] <= start) {
+                    cut++;
+                }
+
+                int current = cut;
+
+                while (current < cutStarts.length && cutStarts[current] < end) {
+                    if (cutStarts[current] > start) {
+                        resultStarts[resultSize] = start;
+                        resultEnds[resultSize] = cutStarts[current];
+                        resultSize++;
+                    }
+
+                    start = Math.max(start, cutEnds[current]);
+
+                    if (start >= end) {
+                        break;
+                    }
+
+                    current++;
+                }
+
+                if (start < end) {
+                    resultStarts[resultSize] = start;
+                    resultEnds[resultSize] = end;
+                    resultSize++;
+                }
+            }
+
+            return new long[][] { Arrays.copyOf(resultStarts, resultSize), Arrays.copyOf(resultEnds, resultSize) };
+        }
+
+    }
+
+}
@@ -0,0 +1,329 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.commons.dateTime.TimeRange;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ShiftFields;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.mes.basic.constants.TimetableExceptionType;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Keeps compiled working time calendar of all shifts (with their timetable exceptions), separately for each tenant.
+ * 
+ * Calendar is compiled lazily, only for days around the dates it is asked about. When working time runs out of the compiled
+ * days, they are doubled and calendar is compiled again, but never beyond 2000 - 2100. Calendars are invalidated by shift and
+ * shift timetable exception model hooks.
+ */
+@Service
+public class ShiftCalendarService {
+
+    private static final LocalDate CALENDAR_FROM = new LocalDate(2000, 1, 1);
+
+    private static final LocalDate CALENDAR_TO = new LocalDate(2100, 1, 1);
+
+    private static final int L_INITIAL_DAYS = 92;
+
+    private static final String[][] DAY_FIELDS = { {}, { ShiftFields.MONDAY_WORKING, ShiftFields.MONDAY_HOURS },
+            { ShiftFields.TUESDAY_WORKING, ShiftFields.TUESDAY_HOURS }, { ShiftFields.WENSDAY_WORKING, ShiftFields.WENSDAY_HOURS },
+            { ShiftFields.THURSDAY_WORKING, ShiftFields.THURSDAY_HOURS }, { ShiftFields.FRIDAY_WORKING, ShiftFields.FRIDAY_HOURS },
+            { ShiftFields.SATURDAY_WORKING, ShiftFields.SATURDAY_HOURS }, { ShiftFields.SUNDAY_WORKING, ShiftFields.SUNDAY_HOURS } };
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final Object compilationLock = new Object();
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final ConcurrentMap<Integer, CompiledCalendar> calendars = Maps.newConcurrentMap();
+
+    /**
+     * Returns the date at which given amount of working seconds of all shifts, counted from dateFrom, elapses.
+     * 
+     * @return empty if there are no shifts or not enough working time after dateFrom until 2100
+     */
+    public Optional<Date> addWorkingSeconds(final Date dateFrom, final long seconds) {
+        LocalDate from = max(new LocalDate(dateFrom), CALENDAR_FROM);
+        int days = L_INITIAL_DAYS;
+
+        while (from.isBefore(CALENDAR_TO)) {
+            LocalDate to = min(from.plusDays(days), CALENDAR_TO);
+            CompiledCalendar compiled = getCalendar(from, to);
+
+            if (!compiled.hasShifts()) {
+                return Optional.empty();
+            }
+
+            Optional<Date> dateTo = compiled.getCalendar().addWorkingSeconds(dateFrom, seconds);
+
+            if (dateTo.isPresent() || !to.isBefore(CALENDAR_TO)) {
+                return dateTo;
+            }
+
+            days = Math.max(days, Days.daysBetween(from, compiled.getTo()).getDays()) * 2;
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the date from which given amount of working seconds of all shifts elapses exactly at dateTo.
+     * 
+     * @return empty if there are no shifts or not enough working time before dateTo since 2000
+     */
+    public Optional<Date> subtractWorkingSeconds(final Date dateTo, final long seconds) {
+        LocalDate to = min(new LocalDate(dateTo).plusDays(1), CALENDAR_TO);
+        int days = L_INITIAL_DAYS;
+
+        while (to.isAfter(CALENDAR_FROM)) {
+            LocalDate from = max(to.minusDays(days), CALENDAR_FROM);
+            CompiledCalendar compiled = getCalendar(from, to);
+
+            if (!compiled.hasShifts()) {
+                return Optional.empty();
+            }
+
+            Optional<Date> dateFrom = compiled.getCalendar().subtractWorkingSeconds(dateTo, seconds);
+
+            if (dateFrom.isPresent() || !from.isAfter(CALENDAR_FROM)) {
+                return dateFrom;
+            }
+
+            days = Math.max(days, Days.daysBetween(compiled.getFrom(), to).getDays()) * 2;
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Returns calendar of current tenant compiled at least for days from given from (inclusive) to given to (exclusive).
+     */
+    CompiledCalendar getCalendar(final LocalDate from, final LocalDate to) {
+        Integer tenantId = multiTenantService.getCurrentTenantId();
+        CompiledCalendar compiled = calendars.get(tenantId);
+
+        if ((compiled != null) && compiled.covers(from, to)) {
+            return compiled;
+        }
+
+        synchronized (compilationLock) {
+            compiled = calendars.get(tenantId);
+
+            if ((compiled != null) && compiled.covers(from, to)) {
+                return compiled;
+            }
+
+            LocalDate compiledFrom = (compiled == null) ? from : min(compiled.getFrom(), from);
+            LocalDate compiledTo = (compiled == null) ? to : max(compiled.getTo(), to);
+            long compiledVersion = version.get();
+
+            compiled = compile(getShiftDD().find().list().getEntities(), compiledFrom, compiledTo);
+
+            if (compiledVersion == version.get()) {
+                calendars.put(tenantId, compiled);
+            }
+
+            return compiled;
+        }
+    }
+
+    /**
+     * Drops compiled calendar of current tenant. When called inside transaction calendar is dropped once again after its
+     * completion, so that calendar compiled concurrently from not yet committed data won't be used.
+     */
+    public void invalidate() {
+        Integer tenantId = multiTenantService.getCurrentTenantId();
+
+        doInvalidate(tenantId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    doInvalidate(tenantId);
+                }
+            });
+        }
+    }
+
+    private void doInvalidate(final Integer tenantId) {
+        version.incrementAndGet();
+        calendars.remove(tenantId);
+    }
+
+    private CompiledCalendar compile(final List<Entity> shifts, final LocalDate from, final LocalDate to) {
+        List<ShiftCalendar> shiftCalendars = Lists.newArrayList();
+
+        for (Entity shift : shifts) {
+            shiftCalendars.add(compileShift(shift, from, to));
+        }
+
+        return new CompiledCalendar(from, to, !shifts.isEmpty(), ShiftCalendar.union(shiftCalendars));
+    }
+
+    private ShiftCalendar compileShift(final Entity shift, final LocalDate from, final LocalDate to) {
+        ShiftCalendar.Builder builder = ShiftCalendar.builder();
+
+        long fromMillis = toMillis(from, LocalTime.MIDNIGHT);
+        long toMillis = toMillis(to, LocalTime.MIDNIGHT);
+
+        List<List<TimeRange>> workingHoursPerDay = getWorkingHoursPerDay(shift);
+
+        // working hours of the day before can pass midnight
+        for (LocalDate day = from.minusDays(1); day.isBefore(to); day = day.plusDays(1)) {
+            for (TimeRange timeRange : workingHoursPerDay.get(day.getDayOfWeek())) {
+                long workFrom = toMillis(day, timeRange.getFrom());
+                long workTo = timeRange.getFrom().isAfter(timeRange.getTo()) ? toMillis(day.plusDays(1), timeRange.getTo())
+                        : toMillis(day, timeRange.getTo());
+
+                builder.addWorkTime(Math.max(workFrom, fromMillis), Math.min(workTo, toMillis));
+            }
+        }
+
+        List<Entity> timetableExceptions = shift.getHasManyField(ShiftFields.TIMETABLE_EXCEPTIONS);
+
+        for (Entity timetableException : timetableExceptions) {
+            long exceptionFrom = Math.max(
+                    timetableException.getDateField(ShiftTimetableExceptionFields.FROM_DATE).getTime(), fromMillis);
+            long exceptionTo = Math.min(timetableException.getDateField(ShiftTimetableExceptionFields.TO_DATE).getTime(),
+                    toMillis);
+
+            if (TimetableExceptionType.WORK_TIME.getStringValue().equals(
+                    timetableException.getStringField(ShiftTimetableExceptionFields.TYPE))) {
+                builder.addWorkTime(exceptionFrom, exceptionTo);
+            } else {
+                builder.addFreeTime(exceptionFrom, exceptionTo);
+            }
+        }
+
+        return builder.build();
+    }
+
+    private List<List<TimeRange>> getWorkingHoursPerDay(final Entity shift) {
+        List<List<TimeRange>> workingHoursPerDay = Lists.newArrayList();
+
+        workingHoursPerDay.add(Lists.newArrayList());
+
+        for (int dayOfWeek = DateTimeConstants.MONDAY; dayOfWeek <= DateTimeConstants.SUNDAY; dayOfWeek++) {
+            String[] dayFields = DAY_FIELDS[dayOfWeek];
+
+            if (shift.getBooleanField(dayFields[0])) {
+                workingHoursPerDay.add(Lists.newArrayList(new WorkingHours(shift.getStringField(dayFields[1])).getTimeRanges()));
+            } else {
+                workingHoursPerDay.add(Lists.newArrayList());
+            }
+        }
+
+        return workingHoursPerDay;
+    }
+
+    private long toMillis(final LocalDate day, final LocalTime time) {
+        long localMillis = day.toLocalDateTime(time).toDateTime(DateTimeZone.UTC).getMillis();
+
+        return DateTimeZone.getDefault().convertLocalToUTC(localMillis, false);
+    }
+
+    private DataDefinition getShiftDD() {
+        return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_SHIFT);
+    }
+
+    private static LocalDate min(final LocalDate first, final LocalDate second) {
+        return first.isBefore(second) ? first : second;
+    }
+
+    private static LocalDate max(final LocalDate first, final LocalDate second) {
+        return first.isAfter(second) ? first : second;
+    }
+
+    /**
+     * Calendar with working time of days from given from (inclusive) to given to (exclusive) only.
+     */
+    static final class CompiledCalendar {
+
+        private final LocalDate from;
+
+        private final LocalDate to;
+
+        private final boolean hasShifts;
+
+        private final ShiftCalendar calendar;
+
+        private CompiledCalendar(final LocalDate from, final LocalDate to, final boolean hasShifts,
+                final ShiftCalendar calendar) {
+            this.from = from;
+            this.to = to;
+            this.hasShifts = hasShifts;
+            this.calendar = calendar;
+        }
+
+        LocalDate getFrom() {
+            return from;
+        }
+
+        LocalDate getTo() {
+            return to;
+        }
+
+        boolean hasShifts() {
+            return hasShifts;
+        }
+
+        ShiftCalendar getCalendar() {
+            return calendar;
+        }
+
+        boolean covers(final LocalDate coveredFrom, final LocalDate coveredTo) {
+            return !from.isAfter(coveredFrom) && !to.isBefore(coveredTo);
+        }
+
+    }
+
+}
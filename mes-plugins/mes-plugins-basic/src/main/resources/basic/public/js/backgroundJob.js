@@ -0,0 +1,66 @@
+var thatObject = this;
+
+QCD = QCD || {};
+QCD.translations = QCD.translations || {};
+
+QCD.translate = function (key) {
+    var msg = QCD.translations[key];
+    return msg === undefined ? '[' + key + ']' : msg;
+};
+
+thatObject.addOnChangeListener({
+    onSetValue: function (value) {
+        if (!value || !value.content || !value.content.value) {
+            return;
+        }
+
+        waitForBackgroundJob(value.content.value);
+    }
+});
+
+function waitForBackgroundJob(jobId) {
+    $.ajax({
+        dataType: "json",
+        url: '/rest/rest/backgroundJobs/' + jobId + '.html',
+        success: function (job) {
+            if (job.state === '01queued' || job.state === '02running') {
+                setTimeout(function () {
+                    waitForBackgroundJob(jobId);
+                }, 3000);
+            } else {
+                onBackgroundJobDone(job);
+            }
+        }
+    });
+}
+
+function onBackgroundJobDone(job) {
+    if (job.state === '03finished') {
+        var content = QCD.translate('basic.backgroundJob.finished');
+
+        if (job.resultUrl) {
+            content += ' <a href="/rest/rest/backgroundJobs/' + job.id + '/result.html" target="_blank">'
+                + QCD.translate('basic.backgroundJob.result') + '</a>';
+        }
+
+        showBackgroundJobMessage('success', content);
+    } else if (job.state === '05cancelled') {
+        showBackgroundJobMessage('info', QCD.translate('basic.backgroundJob.cancelled'));
+    } else {
+        showBackgroundJobMessage('failure', QCD.translate('basic.backgroundJob.failed') + (job.message ? ' ' + $('<div/>').text(job.message).html() : ''));
+    }
+
+    var form = mainController.getComponentByReferenceName("form");
+
+    if (form) {
+        form.performRefresh();
+    }
+}
+
+function showBackgroundJobMessage(type, content) {
+    mainController.showMessage({
+        type: type,
+        title: '',
+        content: content
+    });
+}
@@ -33,18 +33,21 @@ import java.util.List;
 
 import junit.framework.Assert;
 
+import org.joda.time.LocalDateTime;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.qcadoo.mes.basic.shift.ShiftCalendarService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.EntityList;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.tenant.api.MultiTenantService;
 
 public class ShiftsServiceTest {
 
@@ -56,6 +59,9 @@ public class ShiftsServiceTest {
     @Mock
     private DataDefinition dataDefinition;
 
+    @Mock
+    private MultiTenantService multiTenantService;
+
     @Mock
     private Entity entity, shift, exception;
 
@@ -68,7 +74,12 @@ public class ShiftsServiceTest {
         shiftsService = new ShiftsServiceImpl();
         MockitoAnnotations.initMocks(this);
 
+        ShiftCalendarService shiftCalendarService = new ShiftCalendarService();
+        ReflectionTestUtils.setField(shiftCalendarService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(shiftCalendarService, "multiTenantService", multiTenantService);
+
         ReflectionTestUtils.setField(shiftsService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(shiftsService, "shiftCalendarService", shiftCalendarService);
     }
 
     private EntityList mockEntityList(List<Entity> list) {
@@ -173,10 +184,9 @@ public class ShiftsServiceTest {
     @Test
     public void shouldReturnDateFrom() throws Exception {
         // given
-        Date dateTo = mock(Date.class);
+        Date dateTo = new LocalDateTime(2016, 6, 15, 12, 0).toDate();
         shifts.add(shift);
-        exceptions = mockEntityList(new ArrayList<Entity>());
-        exceptions.add(exception);
+        exceptions = new ArrayList<Entity>();
         String hours = "07:00-15:00";
         SearchCriteriaBuilder builder = mock(SearchCriteriaBuilder.class);
         SearchResult result = mock(SearchResult.class);
@@ -186,24 +196,26 @@ public class ShiftsServiceTest {
         when(result.getTotalNumberOfEntities()).thenReturn(1);
         when(result.getEntities()).thenReturn(shifts);
 
-        when(shift.getField("mondayWorking")).thenReturn(true);
+        when(shift.getBooleanField("mondayWorking")).thenReturn(true);
         when(shift.getStringField("mondayHours")).thenReturn(hours);
-        when(shift.getField("tuesdayWorking")).thenReturn(true);
+        when(shift.getBooleanField("tuesdayWorking")).thenReturn(true);
         when(shift.getStringField("tuesdayHours")).thenReturn(hours);
-        when(shift.getField("wensdayWorking")).thenReturn(true);
+        when(shift.getBooleanField("wensdayWorking")).thenReturn(true);
         when(shift.getStringField("wensdayHours")).thenReturn(hours);
-        when(shift.getField("thursdayWorking")).thenReturn(true);
+        when(shift.getBooleanField("thursdayWorking")).thenReturn(true);
         when(shift.getStringField("thursdayHours")).thenReturn(hours);
-        when(shift.getField("fridayWorking")).thenReturn(true);
+        when(shift.getBooleanField("fridayWorking")).thenReturn(true);
         when(shift.getStringField("fridayHours")).thenReturn(hours);
-        when(shift.getField("saturdayWorking")).thenReturn(true);
+        when(shift.getBooleanField("saturdayWorking")).thenReturn(true);
         when(shift.getStringField("saturdayHours")).thenReturn(hours);
-        when(shift.getField("sundayWorking")).thenReturn(true);
+        when(shift.getBooleanField("sundayWorking")).thenReturn(true);
         when(shift.getStringField("sundayHours")).thenReturn(hours);
 
-        when(shift.getHasManyField("timetableExceptions")).thenReturn((EntityList) exceptions);
+        EntityList timetableExceptions = mockEntityList(exceptions);
+        when(shift.getHasManyField("shiftTimetableExceptions")).thenReturn(timetableExceptions);
         // when
-        shiftsService.findDateFromForOrder(dateTo, 123L);
+        Date dateFrom = shiftsService.findDateFromForOrder(dateTo, 8 * 3600L);
         // then
+        assertEquals(new LocalDateTime(2016, 6, 14, 12, 0).toDate(), dateFrom);
     }
 }
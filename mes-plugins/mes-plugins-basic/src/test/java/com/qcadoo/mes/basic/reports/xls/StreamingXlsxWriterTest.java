@@ -0,0 +1,104 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.reports.xls;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StreamingXlsxWriterTest {
+
+    private StreamingXlsxWriter writer;
+
+    @Before
+    public final void init() {
+        writer = new StreamingXlsxWriter(1);
+    }
+
+    @After
+    public final void cleanUp() {
+        writer.close();
+    }
+
+    @Test
+    public final void shouldFitColumnWidthsToRowsAlreadyFlushed() {
+        // given
+        Sheet sheet = writer.createSheet("first");
+
+        Row longRow = writer.nextRow();
+        writer.createCell(longRow, 0, StringUtils.repeat("x", 40));
+        writer.fitColumnWidths(longRow);
+
+        Row shortRow = writer.nextRow();
+        writer.createCell(shortRow, 0, "x");
+        writer.createCell(shortRow, 1, "xxxx");
+        writer.fitColumnWidths(shortRow);
+
+        // when
+        writer.createSheet("second");
+
+        // then
+        assertEquals(42 * 256, sheet.getColumnWidth(0));
+        assertEquals(6 * 256, sheet.getColumnWidth(1));
+    }
+
+    @Test
+    public final void shouldNotCarryColumnWidthsOverToNextSheet() {
+        // given
+        writer.createSheet("first");
+        writer.fitColumnWidth(0, 40);
+
+        Sheet sheet = writer.createSheet("second");
+        int defaultWidth = sheet.getColumnWidth(0);
+        writer.fitColumnWidth(1, 10);
+
+        // when
+        writer.createSheet("third");
+
+        // then
+        assertEquals(defaultWidth, sheet.getColumnWidth(0));
+        assertEquals(12 * 256, sheet.getColumnWidth(1));
+    }
+
+    @Test
+    public final void shouldShareStyleRegisteredUnderKey() {
+        // given
+        CellStyle style = writer.getStyle("header", cellStyle -> cellStyle.setWrapText(true));
+
+        // when
+        CellStyle sameStyle = writer.getStyle("header", cellStyle -> cellStyle.setWrapText(false));
+
+        // then
+        assertSame(style, sameStyle);
+        assertEquals(true, sameStyle.getWrapText());
+    }
+
+}
@@ -0,0 +1,213 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.time.LocalDateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ShiftFields;
+import com.qcadoo.mes.basic.constants.ShiftTimetableExceptionFields;
+import com.qcadoo.mes.basic.constants.TimetableExceptionType;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.EntityList;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+public class ShiftCalendarServiceTest {
+
+    private static final String L_NIGHT_HOURS = "22:00-06:00";
+
+    private static final long L_HOUR = 3600L;
+
+    private static final Date L_MONDAY = new LocalDateTime(2020, 1, 6, 0, 0).toDate();
+
+    private ShiftCalendarService shiftCalendarService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
+    @Mock
+    private DataDefinition shiftDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Mock
+    private Entity shift;
+
+    private List<Entity> shifts;
+
+    private List<Entity> timetableExceptions;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        shiftCalendarService = new ShiftCalendarService();
+
+        ReflectionTestUtils.setField(shiftCalendarService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(shiftCalendarService, "multiTenantService", multiTenantService);
+
+        shifts = Lists.newArrayList(shift);
+        timetableExceptions = Lists.newArrayList();
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        given(dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_SHIFT)).willReturn(shiftDD);
+        given(shiftDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+        given(searchResult.getEntities()).willAnswer(invocation -> shifts);
+
+        // night shift from Monday to Friday
+        for (String workingField : Lists.newArrayList(ShiftFields.MONDAY_WORKING, ShiftFields.TUESDAY_WORKING,
+                ShiftFields.WENSDAY_WORKING, ShiftFields.THURSDAY_WORKING, ShiftFields.FRIDAY_WORKING)) {
+            given(shift.getBooleanField(workingField)).willReturn(true);
+        }
+
+        for (String hoursField : Lists.newArrayList(ShiftFields.MONDAY_HOURS, ShiftFields.TUESDAY_HOURS,
+                ShiftFields.WENSDAY_HOURS, ShiftFields.THURSDAY_HOURS, ShiftFields.FRIDAY_HOURS)) {
+            given(shift.getStringField(hoursField)).willReturn(L_NIGHT_HOURS);
+        }
+
+        EntityList timetableExceptionsList = mock(EntityList.class);
+
+        given(timetableExceptionsList.iterator()).willAnswer(invocation -> timetableExceptions.iterator());
+        given(shift.getHasManyField(ShiftFields.TIMETABLE_EXCEPTIONS)).willReturn(timetableExceptionsList);
+    }
+
+    @Test
+    public final void shouldAddWorkingSecondsOfShiftPassingMidnight() {
+        // when
+        Date dateTo = shiftCalendarService.addWorkingSeconds(L_MONDAY, 10 * L_HOUR).get();
+
+        // then
+        assertEquals(new LocalDateTime(2020, 1, 8, 0, 0).toDate(), dateTo);
+    }
+
+    @Test
+    public final void shouldSubtractWorkingSecondsOfShiftPassingMidnight() {
+        // when
+        Date dateFrom = shiftCalendarService.subtractWorkingSeconds(new LocalDateTime(2020, 1, 8, 0, 0).toDate(), 10 * L_HOUR)
+                .get();
+
+        // then
+        assertEquals(new LocalDateTime(2020, 1, 6, 22, 0).toDate(), dateFrom);
+    }
+
+    @Test
+    public final void shouldCompileMoreDaysWhenWorkingTimeRunsOutOfCompiledOnes() {
+        // when
+        Date dateTo = shiftCalendarService.addWorkingSeconds(L_MONDAY, 60 * 5 * 8 * L_HOUR).get();
+
+        // then
+        assertEquals(new LocalDateTime(2021, 2, 27, 6, 0).toDate(), dateTo);
+
+        verify(shiftDD, atLeast(2)).find();
+    }
+
+    @Test
+    public final void shouldCompileCalendarOncePerTenant() {
+        // when
+        shiftCalendarService.addWorkingSeconds(L_MONDAY, L_HOUR);
+        shiftCalendarService.addWorkingSeconds(L_MONDAY, 2 * L_HOUR);
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+
+        shiftCalendarService.addWorkingSeconds(L_MONDAY, L_HOUR);
+
+        // then
+        verify(shiftDD, times(2)).find();
+    }
+
+    @Test
+    public final void shouldCompileCalendarAgainAfterInvalidation() {
+        // given
+        shiftCalendarService.addWorkingSeconds(L_MONDAY, L_HOUR);
+
+        Entity timetableException = mock(Entity.class);
+
+        given(timetableException.getDateField(ShiftTimetableExceptionFields.FROM_DATE)).willReturn(
+                new LocalDateTime(2020, 1, 6, 22, 0).toDate());
+        given(timetableException.getDateField(ShiftTimetableExceptionFields.TO_DATE)).willReturn(
+                new LocalDateTime(2020, 1, 6, 23, 0).toDate());
+        given(timetableException.getStringField(ShiftTimetableExceptionFields.TYPE)).willReturn(
+                TimetableExceptionType.FREE_TIME.getStringValue());
+
+        timetableExceptions.add(timetableException);
+
+        // when
+        shiftCalendarService.invalidate();
+
+        Date dateTo = shiftCalendarService.addWorkingSeconds(L_MONDAY, L_HOUR).get();
+
+        // then
+        assertEquals(new LocalDateTime(2020, 1, 7, 0, 0).toDate(), dateTo);
+
+        verify(shiftDD, times(2)).find();
+    }
+
+    @Test
+    public final void shouldNotFindWorkingTimeWithoutShifts() {
+        // given
+        shifts = Collections.emptyList();
+
+        // when & then
+        assertFalse(shiftCalendarService.addWorkingSeconds(L_MONDAY, L_HOUR).isPresent());
+        assertFalse(shiftCalendarService.subtractWorkingSeconds(L_MONDAY, L_HOUR).isPresent());
+    }
+
+    @Test
+    public final void shouldNotFindWorkingTimeBeforeCalendarStart() {
+        // when & then
+        assertFalse(shiftCalendarService.subtractWorkingSeconds(new LocalDateTime(2000, 1, 20, 0, 0).toDate(), 100 * L_HOUR)
+                .isPresent());
+    }
+
+}
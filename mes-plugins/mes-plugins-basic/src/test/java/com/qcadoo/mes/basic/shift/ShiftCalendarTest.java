@@ -0,0 +1,132 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.basic.shift;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class ShiftCalendarTest {
+
+    private static final long HOUR = 3600L * 1000L;
+
+    private ShiftCalendar calendar;
+
+    @Before
+    public final void init() {
+        // work 8-16 and 20-28, free 10-12
+        calendar = ShiftCalendar.builder().addWorkTime(20 * HOUR, 28 * HOUR).addWorkTime(8 * HOUR, 12 * HOUR)
+                .addWorkTime(11 * HOUR, 16 * HOUR).addFreeTime(10 * HOUR, 12 * HOUR).build();
+    }
+
+    @Test
+    public final void shouldMergeOverlappingWorkTimeAndCutOutFreeTime() {
+        // then
+        assertEquals(3, calendar.size());
+        assertEquals(8 * HOUR, calendar.getStart(0));
+        assertEquals(10 * HOUR, calendar.getEnd(0));
+        assertEquals(12 * HOUR, calendar.getStart(1));
+        assertEquals(16 * HOUR, calendar.getEnd(1));
+        assertEquals(20 * HOUR, calendar.getStart(2));
+        assertEquals(28 * HOUR, calendar.getEnd(2));
+    }
+
+    @Test
+    public final void shouldAddWorkingSecondsSkippingFreeTime() {
+        // when
+        Optional<Date> result = calendar.addWorkingSeconds(new Date(9 * HOUR), 3 * 3600L);
+
+        // then
+        assertTrue(result.isPresent());
+        assertEquals(14 * HOUR, result.get().getTime());
+    }
+
+    @Test
+    public final void shouldStartFromNearestWorkingTimeWhenAddingZeroSeconds() {
+        // when
+        Optional<Date> result = calendar.addWorkingSeconds(new Date(17 * HOUR), 0L);
+
+        // then
+        assertEquals(20 * HOUR, result.get().getTime());
+    }
+
+    @Test
+    public final void shouldReturnEmptyWhenThereIsNotEnoughWorkingTime() {
+        // when
+        Optional<Date> result = calendar.addWorkingSeconds(new Date(21 * HOUR), 8 * 3600L);
+
+        // then
+        assertFalse(result.isPresent());
+    }
+
+    @Test
+    public final void shouldSubtractWorkingSecondsSkippingFreeTime() {
+        // when
+        Optional<Date> result = calendar.subtractWorkingSeconds(new Date(22 * HOUR), 8 * 3600L);
+
+        // then
+        assertEquals(8 * HOUR, result.get().getTime());
+    }
+
+    @Test
+    public final void shouldSubtractToStartOfWorkingTime() {
+        // when
+        Optional<Date> result = calendar.subtractWorkingSeconds(new Date(18 * HOUR), 4 * 3600L);
+
+        // then
+        assertEquals(12 * HOUR, result.get().getTime());
+    }
+
+    @Test
+    public final void shouldCountWorkingSecondsBetweenDates() {
+        // when
+        long seconds = calendar.getWorkingSecondsBetween(new Date(9 * HOUR), new Date(21 * HOUR));
+
+        // then
+        assertEquals(6 * 3600L, seconds);
+    }
+
+    @Test
+    public final void shouldUnionCalendars() {
+        // given
+        ShiftCalendar other = ShiftCalendar.builder().addWorkTime(15 * HOUR, 21 * HOUR).build();
+
+        // when
+        ShiftCalendar union = ShiftCalendar.union(Lists.newArrayList(calendar, other));
+
+        // then
+        assertEquals(2, union.size());
+        assertEquals(12 * HOUR, union.getStart(1));
+        assertEquals(28 * HOUR, union.getEnd(1));
+    }
+
+}
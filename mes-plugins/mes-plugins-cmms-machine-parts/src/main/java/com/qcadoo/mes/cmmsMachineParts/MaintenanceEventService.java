@@ -23,6 +23,7 @@
  */
 package com.qcadoo.mes.cmmsMachineParts;
 
+import com.qcadoo.mes.basic.constants.BasicConstants;
 import com.qcadoo.mes.cmmsMachineParts.constants.CmmsMachinePartsConstants;
 import com.qcadoo.mes.cmmsMachineParts.constants.MaintenanceEventFields;
 import com.qcadoo.mes.cmmsMachineParts.constants.MaintenanceEventType;
@@ -113,25 +114,32 @@ public class MaintenanceEventService {
     }
 
     public boolean existsNewEventsToNotification(Long currentUserId) {
+        return countNewEventsToNotification(getFactoryIdForUser(currentUserId)) > 0;
+    }
+
+    public Optional<Long> getFactoryIdForUser(final Long userId) {
         Entity user = dataDefinitionService.get(QcadooSecurityConstants.PLUGIN_IDENTIFIER, QcadooSecurityConstants.MODEL_USER)
-                .get(currentUserId);
+                .get(userId);
         Entity factory = user.getBelongsToField("factory");
 
-       SearchCriteriaBuilder scb = getMaintenanceEventDD()
+        return Optional.ofNullable(factory).map(Entity::getId);
+    }
+
+    public long countNewEventsToNotification(final Optional<Long> factoryId) {
+        SearchCriteriaBuilder scb = getMaintenanceEventDD()
                 .find()
                 .setProjection(SearchProjections.alias(SearchProjections.rowCount(), "countrows"))
                 .add(SearchRestrictions.eq(MaintenanceEventFields.SOUND_NOTIFICATIONS, true));
 
-        if (factory != null) {
-            scb = scb.add(SearchRestrictions.belongsTo("factory", factory));
+        if (factoryId.isPresent()) {
+            scb = scb.add(SearchRestrictions.belongsTo(MaintenanceEventFields.FACTORY, BasicConstants.PLUGIN_IDENTIFIER,
+                    BasicConstants.MODEL_FACTORY, factoryId.get()));
         }
 
         scb = scb.addOrder(SearchOrders.asc("countrows"));
 
         Entity entity = scb.setFirstResult(0).setMaxResults(1).uniqueResult();
-        if (entity.getLongField("countrows") > 0) {
-            return true;
-        }
-        return false;
+
+        return entity.getLongField("countrows");
     }
 }
@@ -62,7 +62,7 @@ public class SourceCostReportsListeners {
     }
 
     private void generateWorkerCostsReport(ViewDefinitionState view, Entity sourceCost, Date dateFrom, Date dateTo) {
-        String url = "/cmmsMachineParts/workerCosts.xls?sourceCost=" + (sourceCost == null ? "" : sourceCost.getId()) + "&dateFrom=" + df.format(dateFrom) + "&dateTo=" + df.format(dateTo);
+        String url = "/cmmsMachineParts/workerCosts.xlsx?sourceCost=" + (sourceCost == null ? "" : sourceCost.getId()) + "&dateFrom=" + df.format(dateFrom) + "&dateTo=" + df.format(dateTo);
         view.redirectTo(url, true, false);
     }
 }
@@ -1,7 +1,6 @@
 package com.qcadoo.mes.cmmsMachineParts.notification;
 
 import com.qcadoo.localization.api.TranslationService;
-import com.qcadoo.mes.cmmsMachineParts.MaintenanceEventService;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.view.api.notifications.Notification;
 import com.qcadoo.view.api.notifications.NotificationDataComponent;
@@ -16,7 +15,7 @@ import java.util.Optional;
 public class MaintenanceEnentsNotification implements NotificationDataComponent {
 
     @Autowired
-    private MaintenanceEventService maintenanceEventService;
+    private MaintenanceEventsNotificationService maintenanceEventsNotificationService;
 
     @Autowired
     private TranslationService translationService;
@@ -27,7 +26,7 @@ public class MaintenanceEnentsNotification implements NotificationDataComponent
     @Override
     public Optional<Notification> registerNotification() {
         if (securityService.hasCurrentUserRole("ROLE_EVENTS_NOTIFICATION")
-                && maintenanceEventService.existsNewEventsToNotification(securityService.getCurrentUserId())) {
+                && maintenanceEventsNotificationService.existsNewEventsToNotification(securityService.getCurrentUserId())) {
             Notification notification = new Notification(NotificationType.information, translationService.translate(
                     "cmmsMachineParts.maintenanceEvent.notification.newEventNotification", LocaleContextHolder.getLocale()),
                     true, true);
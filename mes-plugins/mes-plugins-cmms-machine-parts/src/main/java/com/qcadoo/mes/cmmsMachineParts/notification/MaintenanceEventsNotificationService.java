@@ -0,0 +1,136 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.cmmsMachineParts.notification;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.cmmsMachineParts.MaintenanceEventService;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Keeps factories of users and counts of new events to notify per factory, both per tenant, so that notification polls of many
+ * terminals don't load users and count events each time. Counts are dropped by maintenance event hooks, factories by user hooks.
+ */
+@Service
+public class MaintenanceEventsNotificationService {
+
+    private static final int EXPIRATION_MINUTES = 5;
+
+    private static final Long L_ALL_FACTORIES = 0L;
+
+    @Autowired
+    private MaintenanceEventService maintenanceEventService;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Integer, Cache<Long, Long>> factoryIdsByUser = Maps.newConcurrentMap();
+
+    private final ConcurrentMap<Integer, Cache<Long, Long>> newEventsCountsByFactory = Maps.newConcurrentMap();
+
+    private final AtomicLong version = new AtomicLong();
+
+    public boolean existsNewEventsToNotification(final Long userId) {
+        Long factoryId = get(getTenantCache(factoryIdsByUser), userId,
+                () -> maintenanceEventService.getFactoryIdForUser(userId).orElse(L_ALL_FACTORIES));
+
+        Long newEventsCount = get(getTenantCache(newEventsCountsByFactory), factoryId, () -> maintenanceEventService
+                .countNewEventsToNotification(L_ALL_FACTORIES.equals(factoryId) ? Optional.empty() : Optional.of(factoryId)));
+
+        return newEventsCount > 0;
+    }
+
+    /**
+     * Drops cached factory of given user
+     * 
+     * @param userId
+     *            user id
+     */
+    public void invalidateUser(final Long userId) {
+        if (userId == null) {
+            return;
+        }
+
+        Cache<Long, Long> tenantFactoryIdsByUser = getTenantCache(factoryIdsByUser);
+
+        invalidate(() -> tenantFactoryIdsByUser.invalidate(userId));
+    }
+
+    /**
+     * Drops cached counts of new events of all factories of current tenant
+     */
+    public void invalidateEvents() {
+        invalidate(getTenantCache(newEventsCountsByFactory)::invalidateAll);
+    }
+
+    private Cache<Long, Long> getTenantCache(final ConcurrentMap<Integer, Cache<Long, Long>> caches) {
+        return caches.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> CacheBuilder.newBuilder()
+                .maximumSize(1000).expireAfterWrite(EXPIRATION_MINUTES, TimeUnit.MINUTES).build());
+    }
+
+    private void invalidate(final Runnable invalidation) {
+        version.incrementAndGet();
+        invalidation.run();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    version.incrementAndGet();
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    private Long get(final Cache<Long, Long> cache, final Long key, final Supplier<Long> loader) {
+        Long value = cache.getIfPresent(key);
+
+        if (value == null) {
+            long loadedVersion = version.get();
+
+            value = loader.get();
+
+            if (loadedVersion == version.get()) {
+                cache.put(key, value);
+            }
+        }
+
+        return value;
+    }
+
+}
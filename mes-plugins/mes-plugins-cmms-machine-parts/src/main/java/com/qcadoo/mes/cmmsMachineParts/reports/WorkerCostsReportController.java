@@ -24,7 +24,7 @@ public class WorkerCostsReportController {
 
     private static final SimpleDateFormat df = new SimpleDateFormat(DateUtils.L_DATE_FORMAT);
 
-    @RequestMapping(value = "/cmmsMachineParts/workerCosts.xls", method = RequestMethod.GET)
+    @RequestMapping(value = "/cmmsMachineParts/workerCosts.xlsx", method = RequestMethod.GET)
     public ModelAndView generatePlannedEventsReport(@RequestParam("sourceCost") final Long sourceCost, @RequestParam("dateFrom") String dateFromString, @RequestParam("dateTo") String dateToString) {
         try {
             HashMap<String, Object> filtersMap = new HashMap<>();
@@ -1,7 +1,6 @@
 package com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents;
 
-import com.google.common.base.Function;
-import com.google.common.collect.*;
+import com.qcadoo.mes.basic.reports.xls.StreamingQueryService;
 import com.qcadoo.mes.cmmsMachineParts.constants.CmmsMachinePartsConstants;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents.dto.MachinePartDTO;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents.dto.MaintenanceEventDTO;
@@ -12,17 +11,18 @@ import com.qcadoo.model.api.Entity;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service public class MaintenanceEventsXLSDataProvider {
 
-    @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+    @Autowired private StreamingQueryService streamingQueryService;
 
     @Autowired private DataDefinitionService dataDefinitionService;
 
@@ -64,45 +64,31 @@ import java.util.stream.Collectors;
                     + "LEFT JOIN basic_faulttype faulttype ON maintenanceevent.faulttype_id = faulttype.id\n"
                     + "LEFT JOIN cmmsmachineparts_sourcecost sourcecost ON maintenanceevent.sourcecost_id = sourcecost.id\n";
 
-    private final static String ORDER_BY = " ORDER BY maintenanceevent.number";
+    private final static String ORDER_BY = " ORDER BY maintenanceevent.number, maintenanceevent.id";
 
-    public List<MaintenanceEventDTO> getEvents(final Map<String, Object> filters) {
-        List<MaintenanceEventDTO> events = Lists.newArrayList();
+    /**
+     * Passes events to the consumer one by one, ordered by number. Rows of the query are streamed and grouped by event, so
+     * only the rows of the current event are held in memory.
+     */
+    public void processEvents(final Map<String, Object> filters, final Consumer<MaintenanceEventDTO> eventConsumer) {
         String _query = buildQuery(filters);
-        events = jdbcTemplate.query(_query, new BeanPropertyRowMapper(MaintenanceEventDTO.class));
-        List<MaintenanceEventDTO> finalEvents = processResults(events);
-        finalEvents.sort((e1, e2) -> e1.getNumber().compareTo(e2.getNumber()));
-        return finalEvents;
+        streamingQueryService.queryGroups(_query, Collections.emptyMap(), new BeanPropertyRowMapper<>(
+                MaintenanceEventDTO.class), MaintenanceEventDTO::getId, subEvents -> eventConsumer.accept(toEvent(subEvents)));
     }
 
-    private List<MaintenanceEventDTO> processResults(List<MaintenanceEventDTO> events) {
-        Multimap<Long, MaintenanceEventDTO> eventsMap = ArrayListMultimap.create();
-        eventsMap = Multimaps.index(events, new Function<MaintenanceEventDTO, Long>() {
+    private MaintenanceEventDTO toEvent(final List<MaintenanceEventDTO> subEvents) {
+        MaintenanceEventDTO maintenanceEventDTO = subEvents.get(0);
 
-            @Override public Long apply(MaintenanceEventDTO maintenanceEventDTO) {
-                return maintenanceEventDTO.getId();
-            }
-        });
+        List<WorkTimeDTO> workTimes = fillWorkTimes(subEvents);
+        maintenanceEventDTO.setWorkTimes(workTimes);
 
-        Map<Long, MaintenanceEventDTO> _events = Maps.newHashMap();
-        for (Long eID : eventsMap.keySet()) {
-            _events.put(eID, eventsMap.get(eID).iterator().next());
-        }
-        List<MaintenanceEventDTO> finalEvents = Lists.newArrayList(_events.values());
-        for (MaintenanceEventDTO maintenanceEventDTO : finalEvents) {
-            List<MaintenanceEventDTO> _subEvents = Lists.newArrayList(eventsMap.get(maintenanceEventDTO.getId()));
-
-            List<WorkTimeDTO> workTimes = fillWorkTimes(_subEvents);
-            maintenanceEventDTO.setWorkTimes(workTimes);
+        List<MachinePartDTO> parts = fillParts(subEvents);
+        maintenanceEventDTO.setMachineParts(parts);
 
-            List<MachinePartDTO> parts = fillParts(_subEvents);
-            maintenanceEventDTO.setMachineParts(parts);
+        List<StateChangeDTO> hists = fillHist(subEvents);
+        maintenanceEventDTO.setStateChange(hists);
 
-            List<StateChangeDTO> hists = fillHist(_subEvents);
-            maintenanceEventDTO.setStateChange(hists);
-
-        }
-        return finalEvents;
+        return maintenanceEventDTO;
     }
 
     private List<StateChangeDTO> fillHist(List<MaintenanceEventDTO> subEvents) {
@@ -2,6 +2,7 @@ package com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents;
 
 import com.google.common.collect.Lists;
 import com.qcadoo.localization.api.TranslationService;
+import com.qcadoo.mes.basic.reports.xls.StreamingXlsxWriter;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents.dto.MachinePartDTO;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents.dto.MaintenanceEventDTO;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents.dto.StateChangeDTO;
@@ -11,9 +12,8 @@ import com.qcadoo.model.api.NumberService;
 import org.apache.poi.hssf.util.HSSFColor;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.DataFormat;
 import org.apache.poi.ss.usermodel.Font;
-import org.apache.poi.xssf.usermodel.*;
+import org.apache.poi.ss.usermodel.Row;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -34,266 +34,188 @@ public class MaintenanceEventsXlsService {
     @Autowired
     private MaintenanceEventsXLSDataProvider dataProvider;
 
-    public void buildExcelDocument(final XSSFWorkbook xssfWorkbook, final Map<String, Object> filters, final Locale locale) {
-        XSSFSheet sheet = xssfWorkbook.createSheet(translationService.translate("cmmsMachineParts.eventsList.report.title",
-                locale));
-        fillHeaderRow(xssfWorkbook, sheet, 0, locale);
-
-        DataFormat dataFormat = xssfWorkbook.createDataFormat();
-        CellStyle numberStyle = xssfWorkbook.createCellStyle();
-        numberStyle.setDataFormat(dataFormat.getFormat("0.00###"));
-
-        CellStyle dateStyle = xssfWorkbook.createCellStyle();
-        dateStyle.setDataFormat(dataFormat.getFormat("yyyy-mm-dd"));
+    public void buildExcelDocument(final StreamingXlsxWriter writer, final Map<String, Object> filters, final Locale locale) {
+        writer.createSheet(translationService.translate("cmmsMachineParts.eventsList.report.title", locale));
+        fillHeaderRow(writer, locale);
+
+        Font font = writer.getFont("normal", f -> {
+            f.setFontHeightInPoints((short) 10);
+            f.setFontName("ARIAL");
+            f.setItalic(false);
+            f.setBold(false);
+            f.setBoldweight(Font.BOLDWEIGHT_NORMAL);
+            f.setColor(HSSFColor.BLACK.index);
+        });
+        writer.getWorkbook().getCellStyleAt((short) 0).setFont(font);
+
+        CellStyle numberStyle = writer.getDataFormatStyle("0.00###");
+        CellStyle dateStyle = writer.getDataFormatStyle("yyyy-mm-dd");
+        CellStyle dateTimeStyle = writer.getDataFormatStyle("yyyy-mm-dd hh:mm");
+        CellStyle timeStyle = writer.getDataFormatStyle("[HH]:MM:SS");
+
+        dataProvider.processEvents(filters,
+                maintenanceEventDTO -> fillEventsRows(writer, maintenanceEventDTO, numberStyle, dateStyle, dateTimeStyle,
+                        timeStyle, locale));
+    }
 
-        CellStyle dateTimeStyle = xssfWorkbook.createCellStyle();
-        dateTimeStyle.setDataFormat(dataFormat.getFormat("yyyy-mm-dd hh:mm"));
+    private void fillEventsRows(StreamingXlsxWriter writer, MaintenanceEventDTO event, CellStyle numberStyle,
+            CellStyle dateStyle, CellStyle dateTimeStyle, CellStyle timeStyle, Locale locale) {
+        int rowsToAdd = Math.max(event.subListSize(), 1);
 
-        CellStyle timeStyle = xssfWorkbook.createCellStyle();
-        timeStyle.setDataFormat(dataFormat.getFormat("[HH]:MM:SS"));
+        // rows are written one after another, so each row gets its work time and part before the next one is created
+        for (int i = 0; i < rowsToAdd; i++) {
+            Row eventLine = writer.nextRow();
 
-        List<MaintenanceEventDTO> events = dataProvider.getEvents(filters);
-        int rowCounter = 1;
-        for (MaintenanceEventDTO maintenanceEventDTO : events) {
-            rowCounter = fillEventsRows(xssfWorkbook, sheet, maintenanceEventDTO, rowCounter, numberStyle, dateStyle,
-                    dateTimeStyle, timeStyle, locale);
+            if (i == 0) {
+                fillEvent(event, eventLine, locale);
+                fillStateChanges(event, eventLine, dateStyle, dateTimeStyle, locale);
+            } else {
+                Cell subnumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.NUMBER.getPosition());
+                subnumber.setCellValue(event.getNumber());
+            }
+            if (i < event.getWorkTimes().size()) {
+                fillWorkTime(event.getWorkTimes().get(i), eventLine, timeStyle);
+            }
+            if (i < event.getMachineParts().size()) {
+                fillMachinePart(event.getMachineParts().get(i), eventLine, numberStyle);
+            }
         }
-
     }
 
-    private int fillEventsRows(XSSFWorkbook xssfWorkbook, XSSFSheet sheet, MaintenanceEventDTO event, int rowCounter,
-            CellStyle numberStyle, CellStyle dateStyle, CellStyle dateTimeStyle, CellStyle timeStyle, Locale locale) {
-        int rowCounterCopy = rowCounter;
-        int partsCounter = rowCounterCopy;
-        int realizationsCounter = rowCounterCopy;
-
-        XSSFFont font = xssfWorkbook.createFont();
-        font.setFontHeightInPoints((short) 10);
-        font.setFontName("ARIAL");
-        font.setItalic(false);
-        font.setBold(false);
-        font.setBoldweight(Font.BOLDWEIGHT_NORMAL);
-
-        font.setColor(HSSFColor.BLACK.index);
-
-        XSSFRow eventLine = sheet.createRow(rowCounterCopy);
-
-        XSSFCell number = eventLine.createCell(MaintenanceEventsElementsReportEnum.NUMBER.getPosition());
+    private void fillEvent(MaintenanceEventDTO event, Row eventLine, Locale locale) {
+        Cell number = eventLine.createCell(MaintenanceEventsElementsReportEnum.NUMBER.getPosition());
         number.setCellValue(event.getNumber());
-        number.getCellStyle().setFont(font);
 
-        XSSFCell type = eventLine.createCell(MaintenanceEventsElementsReportEnum.TYPE.getPosition());
+        Cell type = eventLine.createCell(MaintenanceEventsElementsReportEnum.TYPE.getPosition());
         type.setCellValue(XlsDataType.getValue(translationService, locale, event.getType()));
 
-        XSSFCell factoryNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.FACTORY_NUMBER.getPosition());
+        Cell factoryNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.FACTORY_NUMBER.getPosition());
         factoryNumber.setCellValue(event.getFactoryNumber());
 
-        XSSFCell divisionNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.DIVISION_NUMBER.getPosition());
+        Cell divisionNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.DIVISION_NUMBER.getPosition());
         divisionNumber.setCellValue(event.getDivisionNumber());
 
-        XSSFCell productionLineNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.PRODUCTION_LINE_NUMBER
+        Cell productionLineNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.PRODUCTION_LINE_NUMBER
                 .getPosition());
         productionLineNumber.setCellValue(event.getProductionLineNumber());
 
-        XSSFCell workstationNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.WORKSTATION_NUMBER.getPosition());
+        Cell workstationNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.WORKSTATION_NUMBER.getPosition());
         workstationNumber.setCellValue(event.getWorkstationNumber());
 
-        XSSFCell subassemblyNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.SUNASSEMBY_NUMBER.getPosition());
+        Cell subassemblyNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.SUNASSEMBY_NUMBER.getPosition());
         subassemblyNumber.setCellValue(event.getSubassemblyNumber());
 
-        XSSFCell faultTypeName = eventLine.createCell(MaintenanceEventsElementsReportEnum.FAULT_TYPE_NAME.getPosition());
+        Cell faultTypeName = eventLine.createCell(MaintenanceEventsElementsReportEnum.FAULT_TYPE_NAME.getPosition());
         faultTypeName.setCellValue(event.getFaultTypeName());
 
-        XSSFCell description = eventLine.createCell(MaintenanceEventsElementsReportEnum.DESCRIPTION.getPosition());
+        Cell description = eventLine.createCell(MaintenanceEventsElementsReportEnum.DESCRIPTION.getPosition());
         description.setCellValue(event.getDescription());
 
-        XSSFCell personReceiving = eventLine.createCell(MaintenanceEventsElementsReportEnum.PERSON_RECEIVING.getPosition());
+        Cell personReceiving = eventLine.createCell(MaintenanceEventsElementsReportEnum.PERSON_RECEIVING.getPosition());
         personReceiving.setCellValue(event.getPersonReceiving());
 
-        XSSFCell sourceCost = eventLine.createCell(MaintenanceEventsElementsReportEnum.SOURCE_COST.getPosition());
+        Cell sourceCost = eventLine.createCell(MaintenanceEventsElementsReportEnum.SOURCE_COST.getPosition());
         sourceCost.setCellValue(event.getSourceCost());
 
-        int rowsToAdd = event.subListSize();
-        if (rowsToAdd > 0) {
-            for (int i = 1; i < rowsToAdd; i++) {
-                int r = rowCounterCopy + i;
-                XSSFRow subEventLine = sheet.createRow(r);
-                XSSFCell subnumber = subEventLine.createCell(MaintenanceEventsElementsReportEnum.NUMBER.getPosition());
-                subnumber.setCellValue(event.getNumber());
-            }
-        }
+        Cell solutionDescription = eventLine.createCell(MaintenanceEventsElementsReportEnum.SOLUTION_DESCRIPTION
+                .getPosition());
+        solutionDescription.setCellValue(event.getSolutionDescription());
+    }
 
-        boolean first = true;
-        if (rowsToAdd > 0) {
-            for (WorkTimeDTO workTime : event.getWorkTimes()) {
-
-                if (first) {
-                    XSSFCell staffWorkTimeWorker = eventLine
-                            .createCell(MaintenanceEventsElementsReportEnum.STAFF_WORK_TIME_WORKER.getPosition());
-                    staffWorkTimeWorker.setCellValue(workTime.getStaffWorkTimeWorker());
-
-                    XSSFCell staffWorkTimeLaborTime = eventLine
-                            .createCell(MaintenanceEventsElementsReportEnum.STAFF_WORK_TIME_LABOR_TIME.getPosition());
-                    if (workTime.getStaffWorkTimeLaborTime() != null) {
-                        staffWorkTimeLaborTime.setCellStyle(timeStyle);
-                        staffWorkTimeLaborTime.setCellValue(convertTimeInternal(XlsDataType.getValue(workTime
-                                .getStaffWorkTimeLaborTime())));
-                        staffWorkTimeLaborTime.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    }
-                    first = false;
-
-                } else {
-                    realizationsCounter++;
-                    XSSFRow subEventLine = sheet.getRow(realizationsCounter);
-
-                    XSSFCell staffWorkTimeWorker = subEventLine
-                            .createCell(MaintenanceEventsElementsReportEnum.STAFF_WORK_TIME_WORKER.getPosition());
-                    staffWorkTimeWorker.setCellValue(workTime.getStaffWorkTimeWorker());
-
-                    XSSFCell staffWorkTimeLaborTime = subEventLine
-                            .createCell(MaintenanceEventsElementsReportEnum.STAFF_WORK_TIME_LABOR_TIME.getPosition());
-                    if (workTime.getStaffWorkTimeLaborTime() != null) {
-
-                        staffWorkTimeLaborTime.setCellStyle(timeStyle);
-                        staffWorkTimeLaborTime.setCellValue(convertTimeInternal(XlsDataType.getValue(workTime
-                                .getStaffWorkTimeLaborTime())));
-                        staffWorkTimeLaborTime.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    }
-                }
-            }
+    private void fillWorkTime(WorkTimeDTO workTime, Row eventLine, CellStyle timeStyle) {
+        Cell staffWorkTimeWorker = eventLine.createCell(MaintenanceEventsElementsReportEnum.STAFF_WORK_TIME_WORKER
+                .getPosition());
+        staffWorkTimeWorker.setCellValue(workTime.getStaffWorkTimeWorker());
 
-            first = true;
-            for (MachinePartDTO part : event.getMachineParts()) {
-                if (first) {
-                    XSSFCell partNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.PART_NUMBER.getPosition());
-                    partNumber.setCellValue(part.getPartNumber());
-
-                    XSSFCell partName = eventLine.createCell(MaintenanceEventsElementsReportEnum.PART_NAME.getPosition());
-                    partName.setCellValue(part.getPartName());
-
-                    XSSFCell warehouseNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.WAREHOUSE_NUMBER
-                            .getPosition());
-                    warehouseNumber.setCellValue(part.getWarehouseNumber());
-
-                    XSSFCell partPlannedQuantity = eventLine.createCell(MaintenanceEventsElementsReportEnum.PART_PLANNED_QUANTITY
-                            .getPosition());
-                    partPlannedQuantity.setCellStyle(numberStyle);
-                    partPlannedQuantity.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    if (part.getPartPlannedQuantity() != null) {
-                        partPlannedQuantity.setCellValue(part.getPartPlannedQuantity().setScale(5).doubleValue());
-                    }
-                    XSSFCell partUnit = eventLine.createCell(MaintenanceEventsElementsReportEnum.PART_UNIT.getPosition());
-                    partUnit.setCellValue(part.getPartUnit());
-
-                    XSSFCell value = eventLine.createCell(MaintenanceEventsElementsReportEnum.VALUE.getPosition());
-                    value.setCellStyle(numberStyle);
-                    value.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    if (part.getValue() != null) {
-                        value.setCellValue(part.getValue().setScale(5).doubleValue());
-                    }
-                    first = false;
-
-                } else {
-                    partsCounter++;
-                    XSSFRow subEventLine = sheet.getRow(partsCounter);
-
-                    XSSFCell partNumber = subEventLine.createCell(MaintenanceEventsElementsReportEnum.PART_NUMBER.getPosition());
-                    partNumber.setCellValue(part.getPartNumber());
-
-                    XSSFCell partName = subEventLine.createCell(MaintenanceEventsElementsReportEnum.PART_NAME.getPosition());
-                    partName.setCellValue(part.getPartName());
-
-                    XSSFCell warehouseNumber = subEventLine.createCell(MaintenanceEventsElementsReportEnum.WAREHOUSE_NUMBER
-                            .getPosition());
-                    warehouseNumber.setCellValue(part.getWarehouseNumber());
-
-                    XSSFCell partPlannedQuantity = subEventLine
-                            .createCell(MaintenanceEventsElementsReportEnum.PART_PLANNED_QUANTITY.getPosition());
-                    partPlannedQuantity.setCellStyle(numberStyle);
-                    partPlannedQuantity.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    if (part.getPartPlannedQuantity() != null) {
-                        partPlannedQuantity.setCellValue(part.getPartPlannedQuantity().setScale(5).doubleValue());
-                    }
-                    XSSFCell partUnit = subEventLine.createCell(MaintenanceEventsElementsReportEnum.PART_UNIT.getPosition());
-                    partUnit.setCellValue(part.getPartUnit());
-
-                    XSSFCell value = subEventLine.createCell(MaintenanceEventsElementsReportEnum.VALUE.getPosition());
-                    value.setCellStyle(numberStyle);
-                    value.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    if (part.getValue() != null) {
-                        value.setCellValue(part.getValue().setScale(5).doubleValue());
-                    }
-                }
-            }
+        Cell staffWorkTimeLaborTime = eventLine.createCell(MaintenanceEventsElementsReportEnum.STAFF_WORK_TIME_LABOR_TIME
+                .getPosition());
+        if (workTime.getStaffWorkTimeLaborTime() != null) {
+            staffWorkTimeLaborTime.setCellStyle(timeStyle);
+            staffWorkTimeLaborTime.setCellValue(convertTimeInternal(XlsDataType.getValue(workTime.getStaffWorkTimeLaborTime())));
+            staffWorkTimeLaborTime.setCellType(Cell.CELL_TYPE_NUMERIC);
         }
+    }
 
-        fillStateChanges(event, eventLine, dateStyle, dateTimeStyle, locale);
+    private void fillMachinePart(MachinePartDTO part, Row eventLine, CellStyle numberStyle) {
+        Cell partNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.PART_NUMBER.getPosition());
+        partNumber.setCellValue(part.getPartNumber());
 
-        XSSFCell solutionDescription = eventLine.createCell(MaintenanceEventsElementsReportEnum.SOLUTION_DESCRIPTION
-                .getPosition());
-        solutionDescription.setCellValue(event.getSolutionDescription());
+        Cell partName = eventLine.createCell(MaintenanceEventsElementsReportEnum.PART_NAME.getPosition());
+        partName.setCellValue(part.getPartName());
 
-        if (rowsToAdd > 1) {
-            return rowCounter + rowsToAdd;
-        } else {
-            return rowCounter + 1;
-        }
+        Cell warehouseNumber = eventLine.createCell(MaintenanceEventsElementsReportEnum.WAREHOUSE_NUMBER.getPosition());
+        warehouseNumber.setCellValue(part.getWarehouseNumber());
 
+        Cell partPlannedQuantity = eventLine.createCell(MaintenanceEventsElementsReportEnum.PART_PLANNED_QUANTITY.getPosition());
+        partPlannedQuantity.setCellStyle(numberStyle);
+        partPlannedQuantity.setCellType(Cell.CELL_TYPE_NUMERIC);
+        if (part.getPartPlannedQuantity() != null) {
+            partPlannedQuantity.setCellValue(part.getPartPlannedQuantity().setScale(5).doubleValue());
+        }
+        Cell partUnit = eventLine.createCell(MaintenanceEventsElementsReportEnum.PART_UNIT.getPosition());
+        partUnit.setCellValue(part.getPartUnit());
+
+        Cell value = eventLine.createCell(MaintenanceEventsElementsReportEnum.VALUE.getPosition());
+        value.setCellStyle(numberStyle);
+        value.setCellType(Cell.CELL_TYPE_NUMERIC);
+        if (part.getValue() != null) {
+            value.setCellValue(part.getValue().setScale(5).doubleValue());
+        }
     }
 
-    private void fillStateChanges(MaintenanceEventDTO event, XSSFRow eventLine, CellStyle dateStyle, CellStyle dateTimeStyle,
+    private void fillStateChanges(MaintenanceEventDTO event, Row eventLine, CellStyle dateStyle, CellStyle dateTimeStyle,
             Locale locale) {
 
-        XSSFCell createDate = eventLine.createCell(MaintenanceEventsElementsReportEnum.CREATE_DATE.getPosition());
+        Cell createDate = eventLine.createCell(MaintenanceEventsElementsReportEnum.CREATE_DATE.getPosition());
         if (event.getCreateDate() != null) {
             createDate.setCellValue(event.getCreateDate());
             createDate.setCellStyle(dateTimeStyle);
         }
-        XSSFCell createUser = eventLine.createCell(MaintenanceEventsElementsReportEnum.CREATE_USER.getPosition());
+        Cell createUser = eventLine.createCell(MaintenanceEventsElementsReportEnum.CREATE_USER.getPosition());
         createUser.setCellValue(event.getCreateUser());
 
-        XSSFCell dateBoot = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_BOOT.getPosition());
+        Cell dateBoot = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_BOOT.getPosition());
         dateBoot.setCellStyle(dateTimeStyle);
         Date _dateBoot = getDateForState(MaintenanceEventStateStringValues.IN_PROGRESS, event.getStateChange());
         if (_dateBoot != null) {
             dateBoot.setCellValue(_dateBoot);
         }
-        XSSFCell dateBootUser = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_BOOT_USER.getPosition());
+        Cell dateBootUser = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_BOOT_USER.getPosition());
         dateBootUser.setCellValue(getWorkerForState(MaintenanceEventStateStringValues.IN_PROGRESS, event.getStateChange()));
 
-        XSSFCell dateApplication = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_APPLICATION.getPosition());
+        Cell dateApplication = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_APPLICATION.getPosition());
         dateApplication.setCellStyle(dateTimeStyle);
 
         Date _dateApplication = getDateForState(MaintenanceEventStateStringValues.EDITED, event.getStateChange());
         if (_dateApplication != null) {
             dateApplication.setCellValue(_dateApplication);
         }
-        XSSFCell dateApplicationUser = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_APPLICATION_USER
+        Cell dateApplicationUser = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_APPLICATION_USER
                 .getPosition());
         dateApplicationUser.setCellValue(getWorkerForState(MaintenanceEventStateStringValues.EDITED, event.getStateChange()));
 
-        XSSFCell dateAcceptance = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_ACCEPTANCE.getPosition());
+        Cell dateAcceptance = eventLine.createCell(MaintenanceEventsElementsReportEnum.DATE_ACCEPTANCE.getPosition());
         dateAcceptance.setCellStyle(dateTimeStyle);
         Date _dateAcceptance = getDateForState(MaintenanceEventStateStringValues.ACCEPTED, event.getStateChange());
         if (_dateAcceptance != null) {
             dateAcceptance.setCellValue(_dateAcceptance);
         }
-        XSSFCell dateAcceptanceUser = eventLine
+        Cell dateAcceptanceUser = eventLine
                 .createCell(MaintenanceEventsElementsReportEnum.DATE_ACCEPTANCE_USER.getPosition());
         dateAcceptanceUser.setCellValue(getWorkerForState(MaintenanceEventStateStringValues.ACCEPTED, event.getStateChange()));
 
-        XSSFCell endDate = eventLine.createCell(MaintenanceEventsElementsReportEnum.END_DATE.getPosition());
+        Cell endDate = eventLine.createCell(MaintenanceEventsElementsReportEnum.END_DATE.getPosition());
         endDate.setCellStyle(dateTimeStyle);
 
         Date _endDate = getDateForState(MaintenanceEventStateStringValues.CLOSED, event.getStateChange());
         if (_endDate != null) {
             endDate.setCellValue(_endDate);
         }
-        XSSFCell endDateUser = eventLine.createCell(MaintenanceEventsElementsReportEnum.END_DATE_USER.getPosition());
+        Cell endDateUser = eventLine.createCell(MaintenanceEventsElementsReportEnum.END_DATE_USER.getPosition());
 
         endDateUser.setCellValue(getWorkerForState(MaintenanceEventStateStringValues.CLOSED, event.getStateChange()));
 
-        XSSFCell state = eventLine.createCell(MaintenanceEventsElementsReportEnum.STATE.getPosition());
+        Cell state = eventLine.createCell(MaintenanceEventsElementsReportEnum.STATE.getPosition());
         state.setCellValue(XlsDataType.getValue(translationService, locale, event.getState()));
     }
 
@@ -315,26 +237,25 @@ public class MaintenanceEventsXlsService {
         return "";
     }
 
-    private void fillHeaderRow(XSSFWorkbook xssfWorkbook, XSSFSheet sheet, Integer rowNum, Locale locale) {
-        XSSFRow headerLine = sheet.createRow(rowNum);
-
-        XSSFFont font = xssfWorkbook.createFont();
-        font.setFontHeightInPoints((short) 10);
-        font.setFontName("ARIAL");
-        font.setItalic(false);
-        font.setBold(true);
-        font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+    private void fillHeaderRow(StreamingXlsxWriter writer, Locale locale) {
+        Row headerLine = writer.nextRow();
 
-        font.setColor(HSSFColor.BLACK.index);
-        XSSFCellStyle style = xssfWorkbook.createCellStyle();
-        style.setFont(font);
+        Font font = writer.getFont("bold", f -> {
+            f.setFontHeightInPoints((short) 10);
+            f.setFontName("ARIAL");
+            f.setItalic(false);
+            f.setBold(true);
+            f.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            f.setColor(HSSFColor.BLACK.index);
+        });
+        CellStyle style = writer.getStyle("header", s -> s.setFont(font));
 
         Lists.newArrayList(MaintenanceEventsElementsReportEnum.values()).forEach(
                 e -> createHeaderCell(e, headerLine, style, locale));
     }
 
-    private void createHeaderCell(MaintenanceEventsElementsReportEnum e, XSSFRow headerLine, XSSFCellStyle style, Locale locale) {
-        XSSFCell headerCell = headerLine.createCell(e.getPosition());
+    private void createHeaderCell(MaintenanceEventsElementsReportEnum e, Row headerLine, CellStyle style, Locale locale) {
+        Cell headerCell = headerLine.createCell(e.getPosition());
         headerCell.setCellValue(e.getLabel(translationService, locale));
         headerCell.setCellStyle(style);
     }
@@ -1,7 +1,7 @@
 package com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents;
 
-import com.qcadoo.report.api.xls.abstractview.AbstractXLSXView;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.qcadoo.mes.basic.reports.xls.AbstractStreamingXlsxView;
+import com.qcadoo.mes.basic.reports.xls.StreamingXlsxWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Component;
@@ -11,15 +11,15 @@ import javax.servlet.http.HttpServletResponse;
 import java.util.Map;
 
 @Component
-public class MaintenanceEventsXlsView extends AbstractXLSXView {
+public class MaintenanceEventsXlsView extends AbstractStreamingXlsxView {
 
     @Autowired
     private MaintenanceEventsXlsService maintenanceEventsXlsService;
 
     @Override
-    protected void buildExcelDocument(Map<String, Object> filters, XSSFWorkbook xssfWorkbook, HttpServletRequest request,
+    protected void buildExcelDocument(Map<String, Object> filters, StreamingXlsxWriter writer, HttpServletRequest request,
             HttpServletResponse response){
-        maintenanceEventsXlsService.buildExcelDocument(xssfWorkbook, filters, LocaleContextHolder.getLocale());
+        maintenanceEventsXlsService.buildExcelDocument(writer, filters, LocaleContextHolder.getLocale());
     }
 
 }
@@ -1,20 +1,18 @@
 package com.qcadoo.mes.cmmsMachineParts.reports.xls.plannedEvents;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
+import com.qcadoo.mes.basic.reports.xls.StreamingQueryService;
 import com.qcadoo.mes.cmmsMachineParts.constants.CmmsMachinePartsConstants;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.plannedEvents.dto.MachinePartForEventDTO;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.plannedEvents.dto.PlannedEventDTO;
@@ -27,12 +25,12 @@ import com.qcadoo.model.api.Entity;
 public class PlannedEventsXLSDataProvider {
 
     @Autowired
-    private NamedParameterJdbcTemplate jdbcTemplate;
+    private StreamingQueryService streamingQueryService;
 
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
-    private final static String ORDER_BY = " ORDER BY event.id";
+    private final static String ORDER_BY = " ORDER BY event.\"number\", event.id";
 
     private final static String QUERY = "SELECT event.id as id, event.\"number\" as number, event.type as type, event.description as description, event.state as state, event.ownername as ownerName,\n"
             + "event.plannedseparately as plannedSeparately, event.requiresshutdown as requiresShutdown, event.basedon as basedOn, event.solutiondescription as solutionDescription, \n"
@@ -64,8 +62,11 @@ public class PlannedEventsXLSDataProvider {
             + "LEFT JOIN materialflowresources_position docpos ON docpos.document_id = doc.id\n"
             + "LEFT JOIN basic_product product ON docpos.product_id = product.id\n";
 
-    public List<PlannedEventDTO> getEvents(final Map<String, Object> filters) {
-        List<PlannedEventDTO> events;
+    /**
+     * Passes events to the consumer one by one, ordered by number. Rows of the query are streamed and grouped by event, so
+     * only the rows of the current event are held in memory.
+     */
+    public void processEvents(final Map<String, Object> filters, final Consumer<PlannedEventDTO> eventConsumer) {
         Map<String, String> _filter = (Map<String, String>) filters.get("filtersMap");
         Long helperModelId = Long.valueOf(_filter.get("PLANED_EVENT_FILTER"));
         Entity helperEntity = dataDefinitionService.get(CmmsMachinePartsConstants.PLUGIN_IDENTIFIER, "plannedEventXLSHelper")
@@ -75,30 +76,24 @@ public class PlannedEventsXLSDataProvider {
             _query = QUERY + " where " + PlannedEventsFilterUtils.processFilter(helperEntity.getStringField("query"));
         }
         _query = _query + ORDER_BY;
-        events = jdbcTemplate.query(_query, new BeanPropertyRowMapper(PlannedEventDTO.class));
 
-        Multimap<Long, PlannedEventDTO> eventsMap = Multimaps.index(events, PlannedEventDTO::getId);
+        streamingQueryService.queryGroups(_query, Collections.emptyMap(), new BeanPropertyRowMapper<>(PlannedEventDTO.class),
+                PlannedEventDTO::getId, subEvents -> eventConsumer.accept(toEvent(subEvents)));
+    }
 
-        Map<Long, PlannedEventDTO> _events = Maps.newHashMap();
-        for (Long eID : eventsMap.keySet()) {
-            _events.put(eID, eventsMap.get(eID).iterator().next());
-        }
-        List<PlannedEventDTO> finalEvents = Lists.newArrayList(_events.values());
-        for (PlannedEventDTO plannedEventDTO : finalEvents) {
-            List<PlannedEventDTO> _subEvents = Lists.newArrayList(eventsMap.get(plannedEventDTO.getId()));
+    private PlannedEventDTO toEvent(final List<PlannedEventDTO> subEvents) {
+        PlannedEventDTO plannedEventDTO = subEvents.get(0);
 
-            List<PlannedEventRealizationDTO> realizationDTOs = fillRealizations(plannedEventDTO, _subEvents);
-            plannedEventDTO.setRealizations(realizationDTOs);
+        List<PlannedEventRealizationDTO> realizationDTOs = fillRealizations(plannedEventDTO, subEvents);
+        plannedEventDTO.setRealizations(realizationDTOs);
 
-            List<MachinePartForEventDTO> partsDTOs = fillParts(plannedEventDTO, _subEvents);
-            plannedEventDTO.setParts(partsDTOs);
+        List<MachinePartForEventDTO> partsDTOs = fillParts(plannedEventDTO, subEvents);
+        plannedEventDTO.setParts(partsDTOs);
 
-            List<PlannedEventStateChangeDTO> hists = fillHist(plannedEventDTO, _subEvents);
-            plannedEventDTO.setStateChanges(hists);
+        List<PlannedEventStateChangeDTO> hists = fillHist(plannedEventDTO, subEvents);
+        plannedEventDTO.setStateChanges(hists);
 
-        }
-        finalEvents.sort((e1, e2) -> e1.getNumber().compareTo(e2.getNumber()));
-        return finalEvents;
+        return plannedEventDTO;
     }
 
     private List<PlannedEventStateChangeDTO> fillHist(Object plannedEventDTO, List<PlannedEventDTO> subEvents) {
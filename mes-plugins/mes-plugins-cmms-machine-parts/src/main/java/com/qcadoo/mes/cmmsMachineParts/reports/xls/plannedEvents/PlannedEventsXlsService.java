@@ -2,6 +2,7 @@ package com.qcadoo.mes.cmmsMachineParts.reports.xls.plannedEvents;
 
 import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.localization.api.utils.DateUtils;
+import com.qcadoo.mes.basic.reports.xls.StreamingXlsxWriter;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.maintenanceEvents.XlsDataType;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.plannedEvents.dto.MachinePartForEventDTO;
 import com.qcadoo.mes.cmmsMachineParts.reports.xls.plannedEvents.dto.PlannedEventDTO;
@@ -13,9 +14,8 @@ import org.apache.poi.hssf.usermodel.HSSFFont;
 import org.apache.poi.hssf.util.HSSFColor;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
-import org.apache.poi.ss.usermodel.DataFormat;
 import org.apache.poi.ss.usermodel.Font;
-import org.apache.poi.xssf.usermodel.*;
+import org.apache.poi.ss.usermodel.Row;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
@@ -45,325 +45,266 @@ public class PlannedEventsXlsService {
         return translationService.translate(PlannedEventsXlsConstants.REPORT_TITLE, locale);
     }
 
-    public void buildExcelContent(final XSSFWorkbook workbook, final XSSFSheet sheet, final Map<String, Object> filters,
-            final Locale locale) {
-        List<PlannedEventDTO> events = plannedEventsXLSDataProvider.getEvents(filters);
-        fillHeaderRow(workbook, sheet, 0, locale);
-        DataFormat dataFormat = workbook.createDataFormat();
-        CellStyle numberStyle = workbook.createCellStyle();
-        numberStyle.setDataFormat(dataFormat.getFormat("0.00###"));
+    public void buildExcelContent(final StreamingXlsxWriter writer, final Map<String, Object> filters, final Locale locale) {
+        fillHeaderRow(writer, locale);
 
-        CellStyle dateStyle = workbook.createCellStyle();
-        dateStyle.setDataFormat(dataFormat.getFormat("yyyy-mm-dd"));
+        Font font = writer.getFont("normal", f -> {
+            f.setFontName(HSSFFont.FONT_ARIAL);
+            f.setFontHeightInPoints((short) 10);
+            f.setBoldweight(Font.BOLDWEIGHT_NORMAL);
+        });
+        writer.getWorkbook().getCellStyleAt((short) 0).setFont(font);
 
-        CellStyle dateTimeStyle = workbook.createCellStyle();
-        dateTimeStyle.setDataFormat(dataFormat.getFormat("yyyy-mm-dd hh:mm"));
+        CellStyle numberStyle = writer.getDataFormatStyle("0.00###");
+        CellStyle dateStyle = writer.getDataFormatStyle("yyyy-mm-dd");
+        CellStyle dateTimeStyle = writer.getDataFormatStyle("yyyy-mm-dd hh:mm");
+        CellStyle timeStyle = writer.getDataFormatStyle("[HH]:MM:SS");
 
-        CellStyle timeStyle = workbook.createCellStyle();
-        timeStyle.setDataFormat(dataFormat.getFormat("[HH]:MM:SS"));
-
-        int rowCounter = 1;
-        for (PlannedEventDTO plannedEventDTO : events) {
-            rowCounter = fillEventsRows(workbook, sheet, plannedEventDTO, rowCounter++, numberStyle, dateStyle, dateTimeStyle,
-                    timeStyle, locale);
-        }
+        plannedEventsXLSDataProvider.processEvents(filters,
+                plannedEventDTO -> fillEventsRows(writer, plannedEventDTO, numberStyle, dateStyle, dateTimeStyle, timeStyle, locale));
     }
 
-    private void fillHeaderRow(final XSSFWorkbook workbook, final XSSFSheet sheet, Integer rowNum, final Locale locale) {
-        XSSFRow headerLine = sheet.createRow(rowNum);
-        XSSFFont font = workbook.createFont();
-        font.setFontHeightInPoints((short) 10);
-        font.setFontName("ARIAL");
-        font.setItalic(false);
-        font.setBold(true);
-        font.setBoldweight(Font.BOLDWEIGHT_BOLD);
-
-        font.setColor(HSSFColor.BLACK.index);
-        XSSFCellStyle style = workbook.createCellStyle();
-
-        style.setFont(font);
+    private void fillHeaderRow(final StreamingXlsxWriter writer, final Locale locale) {
+        Row headerLine = writer.nextRow();
+        Font font = writer.getFont("bold", f -> {
+            f.setFontHeightInPoints((short) 10);
+            f.setFontName("ARIAL");
+            f.setItalic(false);
+            f.setBold(true);
+            f.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            f.setColor(HSSFColor.BLACK.index);
+        });
+        CellStyle style = writer.getStyle("header", s -> s.setFont(font));
 
         int colNumber = 0;
         for (String column : PlannedEventsXlsConstants.ALL_COLUMNS) {
-            XSSFCell headerCell = headerLine.createCell(colNumber);
+            Cell headerCell = headerLine.createCell(colNumber);
             headerCell.setCellValue(translationService.translate(column, locale));
             headerCell.setCellStyle(style);
             colNumber++;
         }
     }
 
-    private int fillEventsRows(final XSSFWorkbook workbook, final XSSFSheet sheet, final PlannedEventDTO event, int rowCounter,
-            CellStyle numberStyle, CellStyle dateStyle, CellStyle dateTimeStyle, CellStyle timeStyle, final Locale locale) {
-        Font font = workbook.createFont();
-        font.setFontName(HSSFFont.FONT_ARIAL);
-        font.setFontHeightInPoints((short) 10);
-        font.setBoldweight(Font.BOLDWEIGHT_NORMAL);
+    private void fillEventsRows(final StreamingXlsxWriter writer, final PlannedEventDTO event, CellStyle numberStyle,
+            CellStyle dateStyle, CellStyle dateTimeStyle, CellStyle timeStyle, final Locale locale) {
+        int rowsToAdd = Math.max(event.subListSize(), 1);
+
+        // rows are written one after another, so each row gets its realization and part before the next one is created
+        for (int i = 0; i < rowsToAdd; i++) {
+            Row eventLine = writer.nextRow();
 
-        int rowCounterCopy = rowCounter;
-        int partsCounter = rowCounterCopy;
-        int realizationsCounter = rowCounterCopy;
-        XSSFRow eventLine = sheet.createRow(rowCounterCopy);
+            if (i == 0) {
+                fillEvent(eventLine, event, numberStyle, dateStyle, dateTimeStyle, timeStyle, locale);
+                fillStateChange(eventLine, event, dateTimeStyle);
+            } else {
+                Cell subEventLineNumberCell = eventLine.createCell(0);
+                subEventLineNumberCell.setCellValue(event.getNumber());
+            }
+            if (i < event.getRealizations().size()) {
+                fillRealization(eventLine, event.getRealizations().get(i), timeStyle);
+            }
+            if (i < event.getParts().size()) {
+                fillPart(eventLine, event.getParts().get(i), numberStyle);
+            }
+        }
+    }
 
-        XSSFCell numberCell = eventLine.createCell(0);
+    private void fillEvent(final Row eventLine, final PlannedEventDTO event, CellStyle numberStyle, CellStyle dateStyle,
+            CellStyle dateTimeStyle, CellStyle timeStyle, final Locale locale) {
+        Cell numberCell = eventLine.createCell(0);
         numberCell.setCellValue(event.getNumber());
-        numberCell.getCellStyle().setFont(font);
-        XSSFCell typeCell = eventLine.createCell(1);
+        Cell typeCell = eventLine.createCell(1);
         typeCell.setCellValue(translationService.translate(event.getType(), locale));
 
-        XSSFCell factoryCell = eventLine.createCell(2);
+        Cell factoryCell = eventLine.createCell(2);
         factoryCell.setCellValue(event.getFactoryNumber());
 
-        XSSFCell divisionCell = eventLine.createCell(3);
+        Cell divisionCell = eventLine.createCell(3);
         divisionCell.setCellValue(event.getDivisionNumber());
 
-        XSSFCell productionLineCell = eventLine.createCell(4);
+        Cell productionLineCell = eventLine.createCell(4);
         productionLineCell.setCellValue(event.getProductionLineNumber());
 
-        XSSFCell workstationCell = eventLine.createCell(5);
+        Cell workstationCell = eventLine.createCell(5);
         workstationCell.setCellValue(event.getWorkstationNumber());
 
-        XSSFCell subassemblyCell = eventLine.createCell(6);
+        Cell subassemblyCell = eventLine.createCell(6);
         subassemblyCell.setCellValue(event.getSubassemblyNumber());
 
-        XSSFCell descriptionCell = eventLine.createCell(7);
+        Cell descriptionCell = eventLine.createCell(7);
         descriptionCell.setCellValue(event.getDescription());
 
-        XSSFCell ownerNameCell = eventLine.createCell(8);
+        Cell ownerNameCell = eventLine.createCell(8);
         ownerNameCell.setCellValue(event.getOwnerName());
 
-        XSSFCell plannedSeparatelyCell = eventLine.createCell(9);
+        Cell plannedSeparatelyCell = eventLine.createCell(9);
         plannedSeparatelyCell.setCellValue(getValue(event.getPlannedSeparately()));
 
-        XSSFCell requiresShutdownCell = eventLine.createCell(10);
+        Cell requiresShutdownCell = eventLine.createCell(10);
         requiresShutdownCell.setCellValue(getValue(event.getRequiresShutdown()));
 
-        XSSFCell basedOnCell = eventLine.createCell(11);
+        Cell basedOnCell = eventLine.createCell(11);
         basedOnCell.setCellValue(translationService.translate(event.getBasedOn(), locale));
 
-        XSSFCell dateCell = eventLine.createCell(12);
+        Cell dateCell = eventLine.createCell(12);
         if (event.getDate() != null) {
             dateCell.setCellValue(event.getDate());
             dateCell.setCellStyle(dateStyle);
         }
 
-        XSSFCell counterCell = eventLine.createCell(13);
+        Cell counterCell = eventLine.createCell(13);
         counterCell.setCellStyle(numberStyle);
         counterCell.setCellType(Cell.CELL_TYPE_NUMERIC);
         if (event.getCounter() != null) {
             counterCell.setCellValue(event.getCounter().setScale(5).doubleValue());
         }
 
-        XSSFCell counterToleranceCell = eventLine.createCell(14);
+        Cell counterToleranceCell = eventLine.createCell(14);
         counterToleranceCell.setCellStyle(numberStyle);
         counterToleranceCell.setCellType(Cell.CELL_TYPE_NUMERIC);
         if (event.getCounterTolerance() != null) {
             counterToleranceCell.setCellValue(event.getCounterTolerance().setScale(5).doubleValue());
         }
 
-        XSSFCell sourceCostNumberCell = eventLine.createCell(15);
+        Cell sourceCostNumberCell = eventLine.createCell(15);
         sourceCostNumberCell.setCellValue(event.getSourceCostNumber());
 
-        XSSFCell durationCell = eventLine.createCell(16);
+        Cell durationCell = eventLine.createCell(16);
         if (event.getDuration() != null) {
             durationCell.setCellStyle(timeStyle);
             durationCell.setCellValue(convertTimeInternal(XlsDataType.getValue(event.getDuration())));
             durationCell.setCellType(Cell.CELL_TYPE_NUMERIC);
         }
-        XSSFCell effectiveCounterCell = eventLine.createCell(17);
+        Cell effectiveCounterCell = eventLine.createCell(17);
         effectiveCounterCell.setCellStyle(numberStyle);
         effectiveCounterCell.setCellType(Cell.CELL_TYPE_NUMERIC);
         if (event.getEffectiveCounter() != null) {
             effectiveCounterCell.setCellValue(event.getEffectiveCounter().setScale(5).doubleValue());
         }
-        XSSFCell startDateCell = eventLine.createCell(18);
+        Cell startDateCell = eventLine.createCell(18);
         if (event.getStartDate() != null) {
             startDateCell.setCellValue(event.getStartDate());
             startDateCell.setCellStyle(dateTimeStyle);
         }
 
-        XSSFCell finishDateCell = eventLine.createCell(19);
+        Cell finishDateCell = eventLine.createCell(19);
         if (event.getFinishDate() != null) {
             finishDateCell.setCellValue(event.getFinishDate());
             finishDateCell.setCellStyle(dateTimeStyle);
         }
 
-        XSSFCell solutionDescriptionCell = eventLine.createCell(20);
+        Cell solutionDescriptionCell = eventLine.createCell(20);
         solutionDescriptionCell.setCellValue(event.getSolutionDescription());
+    }
 
-        // dodanie sub wierszy
-        int rowsToAdd = event.subListSize();
-        for (int i = 1; i < rowsToAdd; i++) {
-            int r = rowCounterCopy + i;
-            XSSFRow subEventLine = sheet.createRow(r);
-            XSSFCell subEventLineNumberCell = subEventLine.createCell(0);
-            subEventLineNumberCell.setCellValue(event.getNumber());
+    private void fillRealization(final Row eventLine, final PlannedEventRealizationDTO realization, CellStyle timeStyle) {
+        Cell realizationWorkerNameCell = eventLine.createCell(21);
+        realizationWorkerNameCell.setCellValue(realization.getRealizationWorkerName() + " "
+                + realization.getRealizationWorkerSurname());
+        Cell realizationDurationNumberCell = eventLine.createCell(22);
+        if (realization.getRealizationDuration() != null) {
+            realizationDurationNumberCell.setCellStyle(timeStyle);
+            realizationDurationNumberCell.setCellValue(convertTimeInternal(XlsDataType.getValue(realization
+                    .getRealizationDuration())));
+            realizationDurationNumberCell.setCellType(Cell.CELL_TYPE_NUMERIC);
         }
+    }
 
-        if (rowsToAdd > 0) {
-            boolean first = true;
-            for (PlannedEventRealizationDTO realization : event.getRealizations()) {
-
-                if (first) {
-                    XSSFCell realizationWorkerNameCell = eventLine.createCell(21);
-                    realizationWorkerNameCell.setCellValue(realization.getRealizationWorkerName() + " "
-                            + realization.getRealizationWorkerSurname());
-                    XSSFCell realizationDurationNumberCell = eventLine.createCell(22);
-                    if (realization.getRealizationDuration() != null) {
-                        realizationDurationNumberCell.setCellStyle(timeStyle);
-                        realizationDurationNumberCell.setCellValue(convertTimeInternal(XlsDataType.getValue(realization
-                                .getRealizationDuration())));
-                        realizationDurationNumberCell.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    }
-                    first = false;
-
-                } else {
-                    realizationsCounter++;
-                    XSSFRow subEventLine = sheet.getRow(realizationsCounter);
-                    XSSFCell realizationWorkerNameCell = subEventLine.createCell(21);
-                    realizationWorkerNameCell.setCellValue(realization.getRealizationWorkerName() + " "
-                            + realization.getRealizationWorkerSurname());
-                    XSSFCell realizationDurationNumberCell = subEventLine.createCell(22);
-                    if (realization.getRealizationDuration() != null) {
-                        realizationDurationNumberCell.setCellStyle(timeStyle);
-                        realizationDurationNumberCell.setCellValue(convertTimeInternal(XlsDataType.getValue(realization
-                                .getRealizationDuration())));
-                        realizationDurationNumberCell.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    }
-                }
-            }
-
-            first = true;
-            for (MachinePartForEventDTO part : event.getParts()) {
-                if (first) {
-                    XSSFCell machinePartNumberCell = eventLine.createCell(23);
-                    machinePartNumberCell.setCellValue(part.getMachinePartNumber());
-                    XSSFCell machinePartNameCell = eventLine.createCell(24);
-                    machinePartNameCell.setCellValue(part.getMachinePartName());
-
-                    XSSFCell machinePartQuantityCell = eventLine.createCell(25);
-                    machinePartQuantityCell.setCellStyle(numberStyle);
-                    machinePartQuantityCell.setCellType(Cell.CELL_TYPE_NUMERIC);
-
-                    if (part.getMachinePartPlannedQuantity() != null) {
-                        machinePartQuantityCell.setCellValue(part.getMachinePartPlannedQuantity().setScale(5).doubleValue());
-                    }
-                    XSSFCell machinePartUnitCell = eventLine.createCell(26);
-                    machinePartUnitCell.setCellValue(part.getMachinePartUnit());
-
-                    XSSFCell valueCell = eventLine.createCell(27);
-                    valueCell.setCellStyle(numberStyle);
-                    valueCell.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    if (part.getMachinePartPlannedQuantity() != null) {
-                        valueCell.setCellValue(convertNullToZero(part.getValue()).setScale(5).doubleValue());
-                    }
-                    first = false;
-
-                } else {
-                    partsCounter++;
-                    XSSFRow subEventLine = sheet.getRow(partsCounter);
-                    XSSFCell machinePartNumberCell = subEventLine.createCell(23);
-                    machinePartNumberCell.setCellValue(part.getMachinePartNumber());
-                    XSSFCell machinePartNameCell = subEventLine.createCell(24);
-                    machinePartNameCell.setCellValue(part.getMachinePartName());
-                    XSSFCell machinePartQuantityCell = subEventLine.createCell(25);
-                    machinePartQuantityCell.setCellStyle(numberStyle);
-                    machinePartQuantityCell.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    if (part.getMachinePartPlannedQuantity() != null) {
-                        machinePartQuantityCell.setCellValue(part.getMachinePartPlannedQuantity().setScale(5).doubleValue());
-                    }
-                    XSSFCell machinePartUnitCell = subEventLine.createCell(26);
-                    machinePartUnitCell.setCellValue(part.getMachinePartUnit());
-                    XSSFCell valueCell = subEventLine.createCell(27);
-                    valueCell.setCellStyle(numberStyle);
-                    valueCell.setCellType(Cell.CELL_TYPE_NUMERIC);
-                    if (part.getMachinePartPlannedQuantity() != null) {
-                        valueCell.setCellValue(convertNullToZero(part.getValue()).setScale(5).doubleValue());
-                    }
-                }
-            }
+    private void fillPart(final Row eventLine, final MachinePartForEventDTO part, CellStyle numberStyle) {
+        Cell machinePartNumberCell = eventLine.createCell(23);
+        machinePartNumberCell.setCellValue(part.getMachinePartNumber());
+        Cell machinePartNameCell = eventLine.createCell(24);
+        machinePartNameCell.setCellValue(part.getMachinePartName());
+
+        Cell machinePartQuantityCell = eventLine.createCell(25);
+        machinePartQuantityCell.setCellStyle(numberStyle);
+        machinePartQuantityCell.setCellType(Cell.CELL_TYPE_NUMERIC);
+        if (part.getMachinePartPlannedQuantity() != null) {
+            machinePartQuantityCell.setCellValue(part.getMachinePartPlannedQuantity().setScale(5).doubleValue());
         }
-
-        fillStateChange(eventLine, event, dateTimeStyle);
-
-        if (rowsToAdd > 1) {
-            return rowCounter + rowsToAdd;
-        } else {
-            return rowCounter + 1;
+        Cell machinePartUnitCell = eventLine.createCell(26);
+        machinePartUnitCell.setCellValue(part.getMachinePartUnit());
+
+        Cell valueCell = eventLine.createCell(27);
+        valueCell.setCellStyle(numberStyle);
+        valueCell.setCellType(Cell.CELL_TYPE_NUMERIC);
+        if (part.getMachinePartPlannedQuantity() != null) {
+            valueCell.setCellValue(convertNullToZero(part.getValue()).setScale(5).doubleValue());
         }
     }
 
-    private void fillStateChange(XSSFRow eventLine, PlannedEventDTO event, CellStyle dateTimeStyle) {
+    private void fillStateChange(Row eventLine, PlannedEventDTO event, CellStyle dateTimeStyle) {
         List<PlannedEventStateChangeDTO> states = event.getStateChanges();
 
-        XSSFCell createDateCell = eventLine.createCell(28);
+        Cell createDateCell = eventLine.createCell(28);
         if (event.getCreatedate() != null) {
             createDateCell.setCellValue(event.getCreatedate());
             createDateCell.setCellStyle(dateTimeStyle);
         }
-        XSSFCell stateAuthorCell = eventLine.createCell(29);
+        Cell stateAuthorCell = eventLine.createCell(29);
         stateAuthorCell.setCellValue(event.getCreateuser());
 
-        XSSFCell stateStartDateCell = eventLine.createCell(30);
+        Cell stateStartDateCell = eventLine.createCell(30);
         stateStartDateCell.setCellStyle(dateTimeStyle);
         Date stateStartDate = getDateForState(PlannedEventStateStringValues.IN_PLAN, states);
         if (stateStartDate != null) {
             stateStartDateCell.setCellValue(stateStartDate);
         }
 
-        XSSFCell stateStartDateWCell = eventLine.createCell(31);
+        Cell stateStartDateWCell = eventLine.createCell(31);
         stateStartDateWCell.setCellValue(getWorkerForState(PlannedEventStateStringValues.IN_PLAN, states));
 
-        XSSFCell stateStopDateCell = eventLine.createCell(32);
+        Cell stateStopDateCell = eventLine.createCell(32);
         stateStopDateCell.setCellStyle(dateTimeStyle);
         Date stateStopDate = getDateForState(PlannedEventStateStringValues.PLANNED, states);
         if (stateStopDate != null) {
             stateStopDateCell.setCellValue(stateStopDate);
         }
 
-        XSSFCell stateStopDateWCell = eventLine.createCell(33);
+        Cell stateStopDateWCell = eventLine.createCell(33);
         stateStopDateWCell.setCellValue(getWorkerForState(PlannedEventStateStringValues.PLANNED, states));
 
-        XSSFCell stateInRealizationDateCell = eventLine.createCell(34);
+        Cell stateInRealizationDateCell = eventLine.createCell(34);
         stateInRealizationDateCell.setCellStyle(dateTimeStyle);
         Date stateInRealizationDate = getFirstDateForState(PlannedEventStateStringValues.IN_REALIZATION, states);
         if (stateInRealizationDate != null) {
             stateInRealizationDateCell.setCellValue(stateInRealizationDate);
         }
 
-        XSSFCell stateInRealizationDateWCell = eventLine.createCell(35);
+        Cell stateInRealizationDateWCell = eventLine.createCell(35);
         stateInRealizationDateWCell.setCellValue(getFirstWorkerForState(PlannedEventStateStringValues.IN_REALIZATION, states));
 
-        XSSFCell stateInEditingDateCell = eventLine.createCell(36);
+        Cell stateInEditingDateCell = eventLine.createCell(36);
         stateInEditingDateCell.setCellStyle(dateTimeStyle);
         Date stateInEditingDate = getDateForState(PlannedEventStateStringValues.IN_EDITING, states);
         if (stateInEditingDate != null) {
             stateInEditingDateCell.setCellValue(stateInEditingDate);
         }
 
-        XSSFCell stateInEditingDateWCell = eventLine.createCell(37);
+        Cell stateInEditingDateWCell = eventLine.createCell(37);
         stateInEditingDateWCell.setCellValue(getWorkerForState(PlannedEventStateStringValues.IN_EDITING, states));
 
-        XSSFCell stateAcceptedDateDateCell = eventLine.createCell(38);
+        Cell stateAcceptedDateDateCell = eventLine.createCell(38);
         stateAcceptedDateDateCell.setCellStyle(dateTimeStyle);
         Date stateAcceptedDateDate = getDateForState(PlannedEventStateStringValues.ACCEPTED, states);
         if (stateAcceptedDateDate != null) {
             stateAcceptedDateDateCell.setCellValue(stateAcceptedDateDate);
         }
 
-        XSSFCell stateAcceptedDateWCell = eventLine.createCell(39);
+        Cell stateAcceptedDateWCell = eventLine.createCell(39);
         stateAcceptedDateWCell.setCellValue(getWorkerForState(PlannedEventStateStringValues.ACCEPTED, states));
 
-        XSSFCell stateRealizationDateCell = eventLine.createCell(40);
+        Cell stateRealizationDateCell = eventLine.createCell(40);
         stateRealizationDateCell.setCellStyle(dateTimeStyle);
         Date stateRealizationDate = getDateForState(PlannedEventStateStringValues.REALIZED, states);
         if (stateRealizationDate != null) {
             stateRealizationDateCell.setCellValue(stateRealizationDate);
         }
 
-        XSSFCell stateRealizationDateWCell = eventLine.createCell(41);
+        Cell stateRealizationDateWCell = eventLine.createCell(41);
         stateRealizationDateWCell.setCellValue(getWorkerForState(PlannedEventStateStringValues.REALIZED, states));
 
-        XSSFCell stateCell = eventLine.createCell(42);
+        Cell stateCell = eventLine.createCell(42);
         stateCell.setCellValue(translationService.translate(event.getState(), LocaleContextHolder.getLocale()));
     }
 
@@ -1,8 +1,7 @@
 package com.qcadoo.mes.cmmsMachineParts.reports.xls.plannedEvents;
 
-import com.qcadoo.report.api.xls.abstractview.AbstractXLSXView;
-import org.apache.poi.xssf.usermodel.XSSFSheet;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.qcadoo.mes.basic.reports.xls.AbstractStreamingXlsxView;
+import com.qcadoo.mes.basic.reports.xls.StreamingXlsxWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Component;
@@ -12,14 +11,14 @@ import javax.servlet.http.HttpServletResponse;
 import java.util.Map;
 
 @Component
-public class PlannedEventsXlsView  extends AbstractXLSXView {
+public class PlannedEventsXlsView  extends AbstractStreamingXlsxView {
 
     @Autowired
     private PlannedEventsXlsService plannedEventsXlsService;
 
-    @Override protected void buildExcelDocument(Map<String, Object> filters, XSSFWorkbook xssfWorkbook,
+    @Override protected void buildExcelDocument(Map<String, Object> filters, StreamingXlsxWriter writer,
             HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse){
-        XSSFSheet sheet = xssfWorkbook.createSheet( plannedEventsXlsService.getReportTitle(LocaleContextHolder.getLocale()));
-        plannedEventsXlsService.buildExcelContent(xssfWorkbook, sheet,filters, LocaleContextHolder.getLocale());
+        writer.createSheet(plannedEventsXlsService.getReportTitle(LocaleContextHolder.getLocale()));
+        plannedEventsXlsService.buildExcelContent(writer, filters, LocaleContextHolder.getLocale());
     }
 }
@@ -18,8 +18,16 @@ public class WorkerCostsRowMapper implements RowMapper<WorkerCostsDTO> {
         workerCosts.setEvent(rs.getString("number"));
         workerCosts.setType(rs.getString("type"));
         workerCosts.setWorkTime(rs.getInt("worktime"));
+        workerCosts.setWorkerTimeSum(getInteger(rs, "workertimesum"));
+        workerCosts.setCostSourceTimeSum(getInteger(rs, "costsourcetimesum"));
 
         return workerCosts;
     }
 
+    private Integer getInteger(final ResultSet rs, final String column) throws SQLException {
+        int value = rs.getInt(column);
+
+        return rs.wasNull() ? null : value;
+    }
+
 }
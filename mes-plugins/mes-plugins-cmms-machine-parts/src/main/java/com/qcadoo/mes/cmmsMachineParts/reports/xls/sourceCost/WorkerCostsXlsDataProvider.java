@@ -6,13 +6,13 @@ import java.util.Map;
 
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.reports.xls.StreamingQueryService;
 import com.qcadoo.mes.cmmsMachineParts.constants.SourceCostReportFilterFields;
-import com.qcadoo.mes.cmmsMachineParts.reports.xls.sourceCost.dto.WorkerCostsDTO;
 import com.qcadoo.mes.cmmsMachineParts.states.constants.MaintenanceEventStateStringValues;
 import com.qcadoo.mes.cmmsMachineParts.states.constants.PlannedEventStateStringValues;
 
@@ -20,7 +20,7 @@ import com.qcadoo.mes.cmmsMachineParts.states.constants.PlannedEventStateStringV
 public class WorkerCostsXlsDataProvider {
 
     @Autowired
-    private NamedParameterJdbcTemplate jdbcTemplate;
+    private StreamingQueryService streamingQueryService;
 
     private final static String plannedEventQuery = "SELECT cost.id as id, cost.number as sourcecost, worker.surname || ' ' || worker.name as worker,\n"
             + "event.number, event.type, realization.duration as worktime\n"
@@ -44,9 +44,9 @@ public class WorkerCostsXlsDataProvider {
             + allowedMaintenanceStates()
             + ")";
 
-    public List<WorkerCostsDTO> getCosts(Map<String, Object> filters) {
+    public void getCosts(final Map<String, Object> filters, final RowCallbackHandler rowCallbackHandler) {
         String query = prepareQuery(filters, plannedEventQuery, maintenanceEventQuery);
-        return jdbcTemplate.query(query, filters, new WorkerCostsRowMapper());
+        streamingQueryService.query(query, filters, rowCallbackHandler);
     }
 
 
@@ -57,13 +57,19 @@ public class WorkerCostsXlsDataProvider {
         DateTime fromDate = new DateTime((Date) filters.get("fromDate"));
         filters.put("fromDate", fromDate.plusHours(6).toDate());
 
-        StringBuilder builder = new StringBuilder("SELECT * FROM ( " + plannedEventQueryPart + " UNION ALL "
-                + maintenanceEventQueryPart + " ) AS events");
+        StringBuilder builder = new StringBuilder("SELECT events.*, row_number() OVER (ORDER BY sourcecost, worker, number) "
+                + "AS position FROM ( " + plannedEventQueryPart + " UNION ALL " + maintenanceEventQueryPart + " ) AS events");
         if (filters.get(SourceCostReportFilterFields.SOURCE_COST) != null) {
             builder.append(" WHERE id = :sourceCost");
         }
-        builder.append(" ORDER BY sourcecost, worker, number");
-        return builder.toString();
+
+        // sums are shown in the first row of each worker and source cost group
+        return "SELECT sourcecost, worker, number, type, worktime, "
+                + "CASE WHEN position = MIN(position) OVER (PARTITION BY sourcecost, worker) "
+                + "THEN SUM(COALESCE(worktime, 0)) OVER (PARTITION BY sourcecost, worker) END AS workertimesum, "
+                + "CASE WHEN position = MIN(position) OVER (PARTITION BY sourcecost) "
+                + "THEN SUM(COALESCE(worktime, 0)) OVER (PARTITION BY sourcecost) END AS costsourcetimesum "
+                + "FROM (" + builder + ") AS positions ORDER BY position";
     }
 
     private static String allowedMaintenanceStates() {
@@ -61,6 +61,9 @@ public class ColumnExtensionServiceImpl implements ColumnExtensionService {
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
+    @Autowired
+    private ColumnFillerRegistry columnFillerRegistry;
+
     public Map<Integer, Map<String, String>> getColumnsAttributesFromXML(final String plugin, final String file) {
         LOG.info("Loading data from " + file + ".xml ...");
 
@@ -117,6 +120,8 @@ public class ColumnExtensionServiceImpl implements ColumnExtensionService {
         column = column.getDataDefinition().save(column);
 
         if (column.isValid()) {
+            columnFillerRegistry.invalidate();
+
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Column for " + model + " saved {column=" + column.toString() + "}");
             }
@@ -135,6 +140,8 @@ public class ColumnExtensionServiceImpl implements ColumnExtensionService {
         for (Entity column : columns) {
             column.getDataDefinition().delete(column.getId());
         }
+
+        columnFillerRegistry.invalidate();
     }
 
     public boolean isColumnsEmpty(final String pluginIdentifier, final String model) {
@@ -0,0 +1,158 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.columnExtension;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Keeps column filler methods resolved to method handles bound to their beans, so printing a report with extendable columns
+ * doesn't load classes, look up beans and reflect on methods again for every call. Handles are dropped when columns are added or
+ * deleted and when the application context is refreshed.
+ */
+@Service
+public class ColumnFillerRegistry implements ApplicationListener<ContextRefreshedEvent> {
+
+    private static final String L_SEPARATOR = "#";
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final ConcurrentMap<String, MethodHandle> fillers = Maps.newConcurrentMap();
+
+    @Override
+    public void onApplicationEvent(final ContextRefreshedEvent event) {
+        invalidate();
+    }
+
+    public void invalidate() {
+        fillers.clear();
+    }
+
+    /**
+     * Gets distinct filler class names of given column definitions
+     * 
+     * @param columns
+     *            column definitions
+     * 
+     * @param columnFillerFieldName
+     *            name of the field holding filler class name
+     * 
+     * @return filler class names
+     */
+    public Set<String> getColumnFillers(final List<Entity> columns, final String columnFillerFieldName) {
+        Set<String> classNames = Sets.newLinkedHashSet();
+
+        for (Entity column : columns) {
+            classNames.add(column.getStringField(columnFillerFieldName));
+        }
+
+        return classNames;
+    }
+
+    /**
+     * Invokes given method of every filler once for all rows and merges returned column values
+     * 
+     * @param columnValues
+     *            column values by row, merged values are put here
+     * 
+     * @param classNames
+     *            filler class names
+     * 
+     * @param methodName
+     *            filler method name
+     * 
+     * @param rows
+     *            rows
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void fetchColumnValues(final Map<T, Map<String, String>> columnValues, final Collection<String> classNames,
+            final String methodName, final List<?> rows) {
+        for (String className : classNames) {
+            Map<T, Map<String, String>> values;
+
+            try {
+                values = (Map<T, Map<String, String>>) getFiller(className, methodName).invoke(rows);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to invoke column evaulator method", e);
+            }
+
+            for (Entry<T, Map<String, String>> entry : values.entrySet()) {
+                if (columnValues.containsKey(entry.getKey())) {
+                    columnValues.get(entry.getKey()).putAll(entry.getValue());
+                } else {
+                    columnValues.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private MethodHandle getFiller(final String className, final String methodName) {
+        return fillers.computeIfAbsent(className + L_SEPARATOR + methodName, key -> resolveFiller(className, methodName));
+    }
+
+    private MethodHandle resolveFiller(final String className, final String methodName) {
+        Class<?> clazz;
+
+        try {
+            clazz = Thread.currentThread().getContextClassLoader().loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Failed to find class: " + className, e);
+        }
+
+        Object bean = applicationContext.getBean(clazz);
+
+        if (bean == null) {
+            throw new IllegalStateException("Failed to find bean for class: " + className);
+        }
+
+        try {
+            Method method = clazz.getMethod(methodName, List.class);
+
+            return MethodHandles.publicLookup().unreflect(method).bindTo(bean);
+        } catch (NoSuchMethodException | SecurityException | IllegalAccessException e) {
+            throw new IllegalStateException("Failed to find column evaulator method in class: " + className, e);
+        }
+    }
+
+}
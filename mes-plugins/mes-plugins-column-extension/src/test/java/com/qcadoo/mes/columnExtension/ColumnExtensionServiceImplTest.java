@@ -58,6 +58,9 @@ public class ColumnExtensionServiceImplTest {
     @Mock
     private DataDefinitionService dataDefinitionService;
 
+    @Mock
+    private ColumnFillerRegistry columnFillerRegistry;
+
     @Mock
     private DataDefinition entityDD;
 
@@ -83,6 +86,7 @@ public class ColumnExtensionServiceImplTest {
         columnExtensionService = new ColumnExtensionServiceImpl();
 
         ReflectionTestUtils.setField(columnExtensionService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(columnExtensionService, "columnFillerRegistry", columnFillerRegistry);
 
     }
 
@@ -122,6 +126,7 @@ public class ColumnExtensionServiceImplTest {
 
         // then
         Assert.assertSame(entity, result);
+        verify(columnFillerRegistry).invalidate();
     }
 
     @Test
@@ -145,6 +150,7 @@ public class ColumnExtensionServiceImplTest {
 
         // then
         verify(entityDD).delete(entity.getId());
+        verify(columnFillerRegistry).invalidate();
     }
 
     @Test
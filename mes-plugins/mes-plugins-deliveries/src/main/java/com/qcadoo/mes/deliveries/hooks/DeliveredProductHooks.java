@@ -34,6 +34,7 @@ import com.qcadoo.mes.deliveries.constants.ParameterFieldsD;
 import com.qcadoo.mes.materialFlowResources.PalletValidatorService;
 import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
 import com.qcadoo.mes.materialFlowResources.constants.StorageLocationFields;
+import com.qcadoo.mes.materialFlowResources.service.StorageLocationPalletsService;
 import com.qcadoo.model.api.BigDecimalUtils;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
@@ -43,8 +44,6 @@ import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.plugin.api.PluginUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
-import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -84,7 +83,7 @@ public class DeliveredProductHooks {
     private NumberService numberService;
 
     @Autowired
-    private NamedParameterJdbcTemplate jdbcTemplate;
+    private StorageLocationPalletsService storageLocationPalletsService;
 
     public void onCreate(final DataDefinition deliveredProductDD, final Entity deliveredProduct) {
         reservationService.createDefaultReservationsForDeliveredProduct(deliveredProduct);
@@ -426,30 +425,8 @@ public class DeliveredProductHooks {
             Entity palletNumber = deliveredProduct.getBelongsToField(DeliveredProductFields.PALLET_NUMBER);
             if (palletNumber != null) {
 
-                String query = "SELECT count(DISTINCT palletsInStorageLocation.palletnumber_id) AS palletsCount     "
-                        + "   FROM (SELECT                                                                          "
-                        + "           resource.palletnumber_id,                                                     "
-                        + "           resource.storagelocation_id                                                   "
-                        + "         FROM materialflowresources_resource resource                                    "
-                        + "         UNION ALL SELECT                                                                "
-                        + "                     deliveredproduct.palletnumber_id,                                   "
-                        + "                     deliveredproduct.storagelocation_id                                 "
-                        + "                   FROM deliveries_delivery delivery                                     "
-                        + "                     JOIN deliveries_deliveredproduct deliveredproduct                   "
-                        + "                       ON deliveredproduct.delivery_id = delivery.id                     "
-                        + "                   WHERE                                                                 "
-                        + "                     delivery.state not in ('06received','04declined') AND                                      "
-                        + "                     deliveredproduct.id <> :deliveredProductId                          "
-                        + "        ) palletsInStorageLocation                                                       "
-                        + "   WHERE palletsInStorageLocation.storagelocation_id = :storageLocationId AND            "
-                        + "         palletsInStorageLocation.palletnumber_id <> :palletNumberId";
-
-                Long deliveredProductId = Optional.ofNullable(deliveredProduct.getId()).orElse(-1L);
-                Long palletsCount = jdbcTemplate.queryForObject(
-                        query,
-                        new MapSqlParameterSource().addValue("storageLocationId", storageLocation.getId())
-                                .addValue("palletNumberId", palletNumber.getId())
-                                .addValue("deliveredProductId", deliveredProductId), Long.class);
+                long palletsCount = storageLocationPalletsService.countOccupyingPallets(storageLocation.getId(),
+                        palletNumber.getId(), deliveredProduct.getId());
 
                 boolean valid = maxNumberOfPallets.compareTo(BigDecimal.valueOf(palletsCount)) > 0;
                 if (!valid) {
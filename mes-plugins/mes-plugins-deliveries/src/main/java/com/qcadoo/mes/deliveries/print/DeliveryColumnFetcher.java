@@ -27,20 +27,17 @@ import static com.qcadoo.mes.deliveries.constants.ColumnForDeliveriesFields.COLU
 import static com.qcadoo.mes.deliveries.constants.DeliveryFields.DELIVERED_PRODUCTS;
 import static com.qcadoo.mes.deliveries.constants.DeliveryFields.ORDERED_PRODUCTS;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.Lists;
+import com.qcadoo.mes.columnExtension.ColumnFillerRegistry;
 import com.qcadoo.mes.deliveries.DeliveriesService;
 import com.qcadoo.mes.deliveries.constants.DeliveredProductFields;
 import com.qcadoo.mes.deliveries.constants.OrderedProductFields;
@@ -53,7 +50,7 @@ public class DeliveryColumnFetcher {
     private DeliveriesService deliveriesService;
 
     @Autowired
-    private ApplicationContext applicationContext;
+    private ColumnFillerRegistry columnFillerRegistry;
 
     public List<DeliveryProduct> getDeliveryProducts(final Entity delivery) {
         Set<DeliveryProduct> productWithDeliveryProducts = new HashSet<DeliveryProduct>();
@@ -150,65 +147,12 @@ public class DeliveryColumnFetcher {
         return deliveryProductsColumnValues;
     }
 
-    @SuppressWarnings("unchecked")
     private void fetchColumnValues(final Map<DeliveryProduct, Map<String, String>> columnValues, final String methodName,
             final List<DeliveryProduct> deliveryProducts) {
-        List<Entity> columnsForDeliveries = deliveriesService.getColumnsForDeliveries();
+        Set<String> classNames = columnFillerRegistry.getColumnFillers(deliveriesService.getColumnsForDeliveries(),
+                COLUMN_FILLER);
 
-        Set<String> classNames = new HashSet<String>();
-
-        for (Entity columnForDeliveries : columnsForDeliveries) {
-            String className = columnForDeliveries.getStringField(COLUMN_FILLER);
-            classNames.add(className);
-        }
-
-        for (String className : classNames) {
-            Class<?> clazz;
-            try {
-                clazz = Thread.currentThread().getContextClassLoader().loadClass(className);
-            } catch (ClassNotFoundException e) {
-                throw new IllegalStateException("Failed to find class: " + className, e);
-            }
-
-            Object bean = applicationContext.getBean(clazz);
-
-            if (bean == null) {
-                throw new IllegalStateException("Failed to find bean for class: " + className);
-            }
-
-            Method method;
-
-            try {
-                method = clazz.getMethod(methodName, List.class);
-            } catch (SecurityException e) {
-                throw new IllegalStateException("Failed to find column evaulator method in class: " + className, e);
-            } catch (NoSuchMethodException e) {
-                throw new IllegalStateException("Failed to find column evaulator method in class: " + className, e);
-            }
-
-            Map<DeliveryProduct, Map<String, String>> values;
-
-            String invokeMethodError = "Failed to invoke column evaulator method";
-            try {
-                values = (Map<DeliveryProduct, Map<String, String>>) method.invoke(bean, deliveryProducts);
-            } catch (IllegalArgumentException e) {
-                throw new IllegalStateException(invokeMethodError, e);
-            } catch (IllegalAccessException e) {
-                throw new IllegalStateException(invokeMethodError, e);
-            } catch (InvocationTargetException e) {
-                throw new IllegalStateException(invokeMethodError, e);
-            }
-
-            for (Entry<DeliveryProduct, Map<String, String>> entry : values.entrySet()) {
-                if (columnValues.containsKey(entry.getKey())) {
-                    for (Entry<String, String> deepEntry : entry.getValue().entrySet()) {
-                        columnValues.get(entry.getKey()).put(deepEntry.getKey(), deepEntry.getValue());
-                    }
-                } else {
-                    columnValues.put(entry.getKey(), entry.getValue());
-                }
-            }
-        }
+        columnFillerRegistry.fetchColumnValues(columnValues, classNames, methodName, deliveryProducts);
     }
 
 }
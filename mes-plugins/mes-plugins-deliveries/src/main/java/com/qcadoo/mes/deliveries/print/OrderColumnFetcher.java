@@ -25,19 +25,15 @@ package com.qcadoo.mes.deliveries.print;
 
 import static com.qcadoo.mes.deliveries.constants.ColumnForOrdersFields.COLUMN_FILLER;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 
+import com.qcadoo.mes.columnExtension.ColumnFillerRegistry;
 import com.qcadoo.mes.deliveries.DeliveriesService;
 import com.qcadoo.model.api.Entity;
 
@@ -48,7 +44,7 @@ public class OrderColumnFetcher {
     private DeliveriesService deliveriesService;
 
     @Autowired
-    private ApplicationContext applicationContext;
+    private ColumnFillerRegistry columnFillerRegistry;
 
     public Map<Entity, Map<String, String>> getOrderedProductsColumnValues(final List<Entity> orderedProducts) {
         Map<Entity, Map<String, String>> orderProductsColumnValues = new HashMap<Entity, Map<String, String>>();
@@ -58,65 +54,11 @@ public class OrderColumnFetcher {
         return orderProductsColumnValues;
     }
 
-    @SuppressWarnings("unchecked")
     private void fetchColumnValues(final Map<Entity, Map<String, String>> columnValues, final String methodName,
             final List<Entity> orderedProducts) {
-        List<Entity> columnsForOrders = deliveriesService.getColumnsForOrders();
+        Set<String> classNames = columnFillerRegistry.getColumnFillers(deliveriesService.getColumnsForOrders(), COLUMN_FILLER);
 
-        Set<String> classNames = new HashSet<String>();
-
-        for (Entity columnForOrders : columnsForOrders) {
-            String className = columnForOrders.getStringField(COLUMN_FILLER);
-            classNames.add(className);
-        }
-
-        for (String className : classNames) {
-            Class<?> clazz;
-            try {
-                clazz = Thread.currentThread().getContextClassLoader().loadClass(className);
-            } catch (ClassNotFoundException e) {
-                throw new IllegalStateException("Failed to find class: " + className, e);
-            }
-
-            Object bean = applicationContext.getBean(clazz);
-
-            if (bean == null) {
-                throw new IllegalStateException("Failed to find bean for class: " + className);
-            }
-
-            Method method;
-
-            try {
-                method = clazz.getMethod(methodName, List.class);
-            } catch (SecurityException e) {
-                throw new IllegalStateException("Failed to find column evaulator method in class: " + className, e);
-            } catch (NoSuchMethodException e) {
-                throw new IllegalStateException("Failed to find column evaulator method in class: " + className, e);
-            }
-
-            Map<Entity, Map<String, String>> values;
-
-            String invokeMethodError = "Failed to invoke column evaulator method";
-            try {
-                values = (Map<Entity, Map<String, String>>) method.invoke(bean, orderedProducts);
-            } catch (IllegalArgumentException e) {
-                throw new IllegalStateException(invokeMethodError, e);
-            } catch (IllegalAccessException e) {
-                throw new IllegalStateException(invokeMethodError, e);
-            } catch (InvocationTargetException e) {
-                throw new IllegalStateException(invokeMethodError, e);
-            }
-
-            for (Entry<Entity, Map<String, String>> entry : values.entrySet()) {
-                if (columnValues.containsKey(entry.getKey())) {
-                    for (Entry<String, String> deepEntry : entry.getValue().entrySet()) {
-                        columnValues.get(entry.getKey()).put(deepEntry.getKey(), deepEntry.getValue());
-                    }
-                } else {
-                    columnValues.put(entry.getKey(), entry.getValue());
-                }
-            }
-        }
+        columnFillerRegistry.fetchColumnValues(columnValues, classNames, methodName, orderedProducts);
     }
 
 }
@@ -24,10 +24,10 @@
 package com.qcadoo.mes.ganttForOperations;
 
 import com.qcadoo.mes.operationTimeCalculations.OperationWorkTimeService;
+import com.qcadoo.mes.operationTimeCalculations.dto.OperationEffectiveDates;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.productionScheduling.constants.OrderTimeCalculationFields;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
-import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
 import com.qcadoo.mes.timeNormsForOperations.constants.TimeNormsConstants;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -66,10 +66,6 @@ public class OperationsGanttChartItemResolverImpl implements OperationsGanttChar
 
     private static final String ORDER_FIELD = "order";
 
-    private static final String EFFECTIVE_DATE_TO_FIELD = "effectiveDateTo";
-
-    private static final String EFFECTIVE_DATE_FROM_FIELD = "effectiveDateFrom";
-
     @Autowired
     private EntityTreeUtilsService entityTreeUtilsService;
 
@@ -94,13 +90,15 @@ public class OperationsGanttChartItemResolverImpl implements OperationsGanttChar
 
             Entity technology = order.getBelongsToField(OrderFields.TECHNOLOGY);
 
-            List<Entity> operations = dataDefinitionService
-                    .get(com.qcadoo.mes.technologies.constants.TechnologiesConstants.PLUGIN_IDENTIFIER,
-                            com.qcadoo.mes.technologies.constants.TechnologiesConstants.MODEL_TECHNOLOGY_OPERATION_COMPONENT)
-                    .find().add(SearchRestrictions.belongsTo(TechnologyOperationComponentFields.TECHNOLOGY, technology)).list()
-                    .getEntities();
+            if (technology == null) {
+                LOG.warn("Cannot find technology for " + order);
+                return Collections.emptyMap();
+            }
 
-            if (operations.isEmpty()) {
+            List<Entity> sortedOperationFromTree = entityTreeUtilsService.getSortedEntities(technology
+                    .getTreeField(TechnologyFields.OPERATION_COMPONENTS));
+
+            if (sortedOperationFromTree.isEmpty()) {
                 LOG.warn("Cannot find operations for " + order);
                 return Collections.emptyMap();
             }
@@ -117,16 +115,19 @@ public class OperationsGanttChartItemResolverImpl implements OperationsGanttChar
             Map<String, List<GanttChartItem>> items = new LinkedHashMap<String, List<GanttChartItem>>();
             Map<String, Integer> counters = new HashMap<String, Integer>();
 
-            List<Entity> sortedOperationFromTree = entityTreeUtilsService.getSortedEntities(order.getBelongsToField(
-                    OrderFields.TECHNOLOGY).getTreeField(TechnologyFields.OPERATION_COMPONENTS));
+            Map<Long, OperationEffectiveDates> effectiveDates = operationWorkTimeService
+                    .getOperationsEffectiveDates(Collections.singleton(orderId))
+                    .getOrDefault(orderId, Collections.emptyMap());
 
-            for (Entity operationFromTree : sortedOperationFromTree) {
-                Entity operation = operations.get(operations.indexOf(operationFromTree));
+            for (Entity operation : sortedOperationFromTree) {
+                OperationEffectiveDates operationEffectiveDates = effectiveDates.get(operation.getId());
 
-                Entity timeCalculation = operationWorkTimeService.createOrGetOperCompTimeCalculation(order, operation);
+                if (operationEffectiveDates == null) {
+                    continue;
+                }
 
-                Date dateFrom = timeCalculation.getDateField(EFFECTIVE_DATE_FROM_FIELD);
-                Date dateTo = timeCalculation.getDateField(EFFECTIVE_DATE_TO_FIELD);
+                Date dateFrom = operationEffectiveDates.getEffectiveDateFrom();
+                Date dateTo = operationEffectiveDates.getEffectiveDateTo();
 
                 if (dateFrom == null || dateTo == null || dateTo.before(scale.getDateFrom())) {
                     continue;
@@ -19,6 +19,7 @@ import org.springframework.util.StringUtils;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.GridPagingOptions;
 import com.qcadoo.mes.basic.GridResponse;
 import com.qcadoo.mes.basic.LookupUtils;
 import com.qcadoo.mes.basic.controllers.dataProvider.DataProvider;
@@ -54,20 +55,20 @@ public class DocumentPositionService {
             int perPage, final DocumentPositionDTO position) {
         String query = "SELECT %s FROM ( SELECT p.*, p.document_id AS document, product.number AS product, product.name AS productName, product.unit, additionalcode.code AS additionalcode, "
                 + "palletnumber.number AS palletnumber, location.number AS storagelocation, resource.number AS resource, \n"
-                + "(coalesce(r1.resourcesCount,0) < 2 AND p.quantity >= coalesce(resource.quantity,0)) AS lastResource "
+                + "(NOT EXISTS (SELECT 1 FROM materialflowresources_resource r1 WHERE r1.palletnumber_id = resource.palletnumber_id AND r1.id <> resource.id) "
+                + "AND p.quantity >= coalesce(resource.quantity,0)) AS lastResource "
                 + "	FROM materialflowresources_position p\n"
                 + "	LEFT JOIN basic_product product ON (p.product_id = product.id)\n"
                 + "	LEFT JOIN basic_additionalcode additionalcode ON (p.additionalcode_id = additionalcode.id)\n"
                 + "	LEFT JOIN basic_palletnumber palletnumber ON (p.palletnumber_id = palletnumber.id)\n"
                 + "	LEFT JOIN materialflowresources_resource resource ON (p.resource_id = resource.id)\n"
-                + " LEFT JOIN (SELECT palletnumber_id, count(id) as resourcesCount FROM materialflowresources_resource GROUP BY palletnumber_id) r1 ON r1.palletnumber_id = resource.palletnumber_id \n"
                 + "	LEFT JOIN materialflowresources_storagelocation location ON (p.storagelocation_id = location.id) WHERE p.document_id = :documentId %s) q ";
 
         Map<String, Object> parameters = Maps.newHashMap();
 
         parameters.put("documentId", documentId);
 
-        return lookupUtils.getGridResponse(query, _sidx, _sord, page, perPage, position, parameters);
+        return lookupUtils.getGridResponse(query, _sidx, _sord, page, perPage, position, parameters, GridPagingOptions.seek());
     }
 
     public void delete(final Long id) {
@@ -491,9 +492,8 @@ public class DocumentPositionService {
 
     public ResourceDTO getResourceByNumber(final String resource) {
         String query = "SELECT r.*, sl.number AS storageLocation, pn.number AS palletNumber, ac.code AS additionalCode, \n"
-                + "coalesce(r1.resourcesCount,0) < 2 AS lastResource "
+                + "NOT EXISTS (SELECT 1 FROM materialflowresources_resource r1 WHERE r1.palletnumber_id = r.palletnumber_id AND r1.id <> r.id) AS lastResource "
                 + "FROM materialflowresources_resource r \n"
-                + "LEFT JOIN (SELECT palletnumber_id, count(id) as resourcesCount FROM materialflowresources_resource GROUP BY palletnumber_id) r1 ON r1.palletnumber_id = r.palletnumber_id \n"
                 + "LEFT JOIN materialflowresources_storagelocation sl ON sl.id = storageLocation_id \n"
                 + "LEFT JOIN basic_additionalcode ac ON ac.id = additionalcode_id \n"
                 + "LEFT JOIN basic_palletnumber pn ON pn.id = r.palletnumber_id WHERE r.number = :resource";
@@ -84,10 +84,9 @@ public class ResourceLookupController extends BasicLookupController<ResourceDTO>
         StringBuilder queryBuilder = new StringBuilder();
         queryBuilder
                 .append("select %s from (select r.*, sl.number as storageLocation, pn.number as palletNumber, ac.code as additionalCode, bp.unit as unit, ");
-        queryBuilder.append("coalesce(r1.resourcesCount,0) < 2 AS lastResource ");
-        queryBuilder.append("FROM materialflowresources_resource r ");
         queryBuilder
-                .append("LEFT JOIN (SELECT palletnumber_id, count(id) as resourcesCount FROM materialflowresources_resource GROUP BY palletnumber_id) r1 ON r1.palletnumber_id = r.palletnumber_id \n");
+                .append("NOT EXISTS (SELECT 1 FROM materialflowresources_resource r1 WHERE r1.palletnumber_id = r.palletnumber_id AND r1.id <> r.id) AS lastResource ");
+        queryBuilder.append("FROM materialflowresources_resource r ");
         queryBuilder.append("LEFT JOIN materialflowresources_storagelocation sl on sl.id = storageLocation_id ");
         queryBuilder.append("LEFT JOIN basic_additionalcode ac on ac.id = additionalcode_id ");
         queryBuilder.append("LEFT JOIN basic_product bp on bp.number = :product ");
@@ -0,0 +1,126 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.dto;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Available quantities of resources in one warehouse, grouped by product, conversion and additional code. Quantities of
+ * resources without additional code are kept under null additional code.
+ */
+public final class WarehouseStockSnapshot {
+
+    private final Map<Long, List<Entry>> entriesByProduct;
+
+    private WarehouseStockSnapshot(final Map<Long, List<Entry>> entriesByProduct) {
+        this.entriesByProduct = entriesByProduct;
+    }
+
+    public static WarehouseStockSnapshot empty() {
+        return new WarehouseStockSnapshot(Collections.emptyMap());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public BigDecimal getAvailableQuantity(final Long productId) {
+        return entriesByProduct.getOrDefault(productId, Collections.emptyList()).stream().map(Entry::getAvailableQuantity)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public BigDecimal getAvailableQuantity(final Long productId, final BigDecimal conversion) {
+        return entriesByProduct.getOrDefault(productId, Collections.emptyList()).stream()
+                .filter(entry -> entry.hasConversion(conversion)).map(Entry::getAvailableQuantity)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public BigDecimal getAvailableQuantity(final Long productId, final BigDecimal conversion, final Long additionalCodeId) {
+        return entriesByProduct.getOrDefault(productId, Collections.emptyList()).stream()
+                .filter(entry -> entry.hasConversion(conversion))
+                .filter(entry -> Objects.equals(entry.getAdditionalCodeId(), additionalCodeId))
+                .map(Entry::getAvailableQuantity).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public static final class Builder {
+
+        private final Map<Long, List<Entry>> entriesByProduct = Maps.newHashMap();
+
+        private Builder() {
+        }
+
+        public Builder add(final Long productId, final BigDecimal conversion, final Long additionalCodeId,
+                final BigDecimal availableQuantity) {
+            entriesByProduct.computeIfAbsent(productId, id -> Lists.newArrayList()).add(
+                    new Entry(conversion, additionalCodeId, availableQuantity));
+
+            return this;
+        }
+
+        public WarehouseStockSnapshot build() {
+            return new WarehouseStockSnapshot(Maps.newHashMap(entriesByProduct));
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final BigDecimal conversion;
+
+        private final Long additionalCodeId;
+
+        private final BigDecimal availableQuantity;
+
+        private Entry(final BigDecimal conversion, final Long additionalCodeId, final BigDecimal availableQuantity) {
+            this.conversion = conversion;
+            this.additionalCodeId = additionalCodeId;
+            this.availableQuantity = availableQuantity == null ? BigDecimal.ZERO : availableQuantity;
+        }
+
+        private boolean hasConversion(final BigDecimal expectedConversion) {
+            if (conversion == null || expectedConversion == null) {
+                return Objects.equals(conversion, expectedConversion);
+            }
+
+            return conversion.compareTo(expectedConversion) == 0;
+        }
+
+        private Long getAdditionalCodeId() {
+            return additionalCodeId;
+        }
+
+        private BigDecimal getAvailableQuantity() {
+            return availableQuantity;
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.hooks;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.materialFlow.constants.UserLocationFields;
+import com.qcadoo.mes.materialFlowResources.service.DraftDocumentsNotificationService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Drops cached draft documents counts when documents or user locations change.
+ */
+@Service
+public class DraftDocumentsNotificationHooks {
+
+    @Autowired
+    private DraftDocumentsNotificationService draftDocumentsNotificationService;
+
+    public void onDocumentSave(final DataDefinition documentDD, final Entity document) {
+        draftDocumentsNotificationService.invalidateAll();
+    }
+
+    public boolean onDocumentDelete(final DataDefinition documentDD, final Entity document) {
+        draftDocumentsNotificationService.invalidateAll();
+
+        return true;
+    }
+
+    public void onUserLocationSave(final DataDefinition userLocationDD, final Entity userLocation) {
+        invalidateUserOf(userLocation);
+    }
+
+    public boolean onUserLocationDelete(final DataDefinition userLocationDD, final Entity userLocation) {
+        invalidateUserOf(userLocation);
+
+        return true;
+    }
+
+    private void invalidateUserOf(final Entity userLocation) {
+        Entity user = userLocation.getBelongsToField(UserLocationFields.USER);
+
+        if (user != null) {
+            draftDocumentsNotificationService.invalidate(user.getId());
+        }
+    }
+
+}
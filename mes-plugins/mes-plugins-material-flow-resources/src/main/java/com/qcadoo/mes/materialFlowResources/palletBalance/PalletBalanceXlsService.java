@@ -7,13 +7,12 @@ import java.util.Locale;
 import java.util.Map;
 
 import org.apache.commons.lang3.time.DateUtils;
-import org.apache.poi.hssf.usermodel.HSSFCell;
-import org.apache.poi.hssf.usermodel.HSSFCellStyle;
-import org.apache.poi.hssf.usermodel.HSSFPrintSetup;
-import org.apache.poi.hssf.usermodel.HSSFRow;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.PrintSetup;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeConstants;
@@ -23,12 +22,13 @@ import org.springframework.stereotype.Service;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.qcadoo.localization.api.TranslationService;
+import com.qcadoo.mes.basic.reports.xls.StreamingXlsxWriter;
+import com.qcadoo.mes.basic.reports.xls.XlsxDocumentService;
 import com.qcadoo.mes.materialFlowResources.constants.PalletBalanceFields;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.report.api.xls.XlsDocumentService;
 
 @Service
-public class PalletBalanceXlsService extends XlsDocumentService {
+public class PalletBalanceXlsService extends XlsxDocumentService {
 
     @Autowired
     private TranslationService translationService;
@@ -44,48 +44,48 @@ public class PalletBalanceXlsService extends XlsDocumentService {
         return translationService.translate("materialFlowResource.palletBalance.report.title", locale);
     }
 
-    private HSSFCell createRegularCell(StylesContainer stylesContainer, HSSFRow row, int column, String content) {
-        HSSFCell cell = row.createCell(column);
+    private Cell createRegularCell(StylesContainer stylesContainer, Row row, int column, String content) {
+        Cell cell = row.createCell(column);
         cell.setCellValue(content);
-        cell.setCellStyle(StylesContainer.aligned(stylesContainer.regularStyle, HSSFCellStyle.ALIGN_LEFT));
+        cell.setCellStyle(stylesContainer.regularStyle);
         return cell;
     }
 
-    private HSSFCell createNumericCell(StylesContainer stylesContainer, HSSFRow row, int column, int value) {
-        HSSFCell cell = row.createCell(column, HSSFCell.CELL_TYPE_NUMERIC);
+    private Cell createNumericCell(StylesContainer stylesContainer, Row row, int column, int value) {
+        Cell cell = row.createCell(column, Cell.CELL_TYPE_NUMERIC);
         cell.setCellValue(value);
-        cell.setCellStyle(StylesContainer.aligned(stylesContainer.regularStyle, HSSFCellStyle.ALIGN_LEFT));
+        cell.setCellStyle(stylesContainer.regularStyle);
         return cell;
     }
 
-    private HSSFCell createHeaderCell(StylesContainer stylesContainer, HSSFRow row, String content, int column, short align) {
-        HSSFCell cell = row.createCell(column);
+    private Cell createHeaderCell(StylesContainer stylesContainer, Row row, String content, int column, short align) {
+        Cell cell = row.createCell(column);
         cell.setCellValue(content);
-        cell.setCellStyle(StylesContainer.aligned(stylesContainer.headerStyle, align));
+        cell.setCellStyle(stylesContainer.headerStyle(align));
         return cell;
     }
 
     @Override
-    protected void addHeader(HSSFSheet sheet, Locale locale, Entity palletBalance) {
+    protected void addHeader(final StreamingXlsxWriter writer, Sheet sheet, Locale locale, Entity palletBalance) {
 
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+        final StylesContainer stylesContainer = new StylesContainer(writer);
 
         List<String> typesOfPallet = palletBalanceReportHelper.getTypesOfPallet();
-        HSSFRow headerRow = sheet.createRow(0);
-        HSSFRow typesOfPalletRow = sheet.createRow(1);
+        Row headerRow = sheet.createRow(0);
+        Row typesOfPalletRow = sheet.createRow(1);
         addDateHeader(sheet, locale, headerRow, stylesContainer);
         addTypesOfPalletHeader(sheet, locale, headerRow, typesOfPalletRow, stylesContainer, typesOfPallet);
+        writer.fitColumnWidths(typesOfPalletRow);
     }
 
-    private void addDateHeader(HSSFSheet sheet, Locale locale, HSSFRow headerRow, StylesContainer stylesContainer) {
+    private void addDateHeader(Sheet sheet, Locale locale, Row headerRow, StylesContainer stylesContainer) {
         sheet.addMergedRegion(new CellRangeAddress(0, 1, 0, 0));
         createHeaderCell(stylesContainer, headerRow,
                 translationService.translate("materialFlowResource.palletBalance.report.date", locale), 0,
-                HSSFCellStyle.ALIGN_CENTER);
+                CellStyle.ALIGN_CENTER);
     }
 
-    private void addTypesOfPalletHeader(HSSFSheet sheet, Locale locale, HSSFRow headerRow, HSSFRow typesOfPalletRow,
+    private void addTypesOfPalletHeader(Sheet sheet, Locale locale, Row headerRow, Row typesOfPalletRow,
             StylesContainer stylesContainer, List<String> typesOfPallet) {
 
         int columnIndex = 1;
@@ -100,12 +100,12 @@ public class PalletBalanceXlsService extends XlsDocumentService {
                         headerRow, columnIndex, columnIndex + 1, stylesContainer);
                 createHeaderCell(stylesContainer, typesOfPalletRow,
                         translationService.translate("materialFlowResource.palletBalance.report.header.movesIn", locale),
-                        columnIndex, HSSFCellStyle.ALIGN_LEFT);
+                        columnIndex, CellStyle.ALIGN_LEFT);
                 columnIndex++;
 
                 createHeaderCell(stylesContainer, typesOfPalletRow,
                         translationService.translate("materialFlowResource.palletBalance.report.header.movesOut", locale),
-                        columnIndex, HSSFCellStyle.ALIGN_LEFT);
+                        columnIndex, CellStyle.ALIGN_LEFT);
                 columnIndex++;
                 lastColumnIndex = columnIndex + typesOfPalletCount - 1;
 
@@ -115,7 +115,7 @@ public class PalletBalanceXlsService extends XlsDocumentService {
                         headerRow, columnIndex, lastColumnIndex, stylesContainer);
                 for (int i = 0; i < typesOfPalletCount; i++) {
                     createHeaderCell(stylesContainer, typesOfPalletRow, typesOfPallet.get(i), columnIndex + i,
-                            HSSFCellStyle.ALIGN_LEFT);
+                            CellStyle.ALIGN_LEFT);
                 }
                 columnIndex = lastColumnIndex + 1;
                 lastColumnIndex += typesOfPalletCount;
@@ -123,20 +123,19 @@ public class PalletBalanceXlsService extends XlsDocumentService {
         }
     }
 
-    private void addHeaderCell(HSSFSheet sheet, String content, HSSFRow headerRow, int columnIndex, int lastColumnIndex,
+    private void addHeaderCell(Sheet sheet, String content, Row headerRow, int columnIndex, int lastColumnIndex,
             StylesContainer stylesContainer) {
         sheet.addMergedRegion(new CellRangeAddress(0, 0, columnIndex, lastColumnIndex));
-        createHeaderCell(stylesContainer, headerRow, content, columnIndex, HSSFCellStyle.ALIGN_CENTER);
+        createHeaderCell(stylesContainer, headerRow, content, columnIndex, CellStyle.ALIGN_CENTER);
     }
 
     @Override
-    protected void addSeries(HSSFSheet sheet, Entity palletBalance) {
+    protected void addSeries(final StreamingXlsxWriter writer, Sheet sheet, Entity palletBalance) {
         sheet.getPrintSetup().setLandscape(true);
-        sheet.getPrintSetup().setPaperSize(HSSFPrintSetup.A3_PAPERSIZE);
+        sheet.getPrintSetup().setPaperSize(PrintSetup.A3_PAPERSIZE);
         sheet.getPrintSetup().setHResolution((short) 1);
 
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
+        final StylesContainer stylesContainer = new StylesContainer(writer);
 
         Date dateFrom = palletBalance.getDateField(PalletBalanceFields.DATE_FROM);
         Date dateTo = DateUtils.truncate(palletBalance.getDateField(PalletBalanceFields.DATE_TO), Calendar.DATE);
@@ -154,14 +153,13 @@ public class PalletBalanceXlsService extends XlsDocumentService {
         int columnIndex = 1;
 
         int rowIndex = 2;
-        int columnMax = 0;
         DateTime currentDate = new DateTime(dateFrom);
         while (currentDate.toDate().compareTo(dateTo) <= 0) {
             if (!includeWeekends && currentDate.getDayOfWeek() > DateTimeConstants.FRIDAY) {
                 currentDate = currentDate.plusDays(1);
                 continue;
             }
-            HSSFRow row = sheet.createRow(rowIndex);
+            Row row = sheet.createRow(rowIndex);
 
             createRegularCell(stylesContainer, row, 0, currentDate.toString("dd.MM.yyyy"));
             Date current = currentDate.toDate();
@@ -171,18 +169,15 @@ public class PalletBalanceXlsService extends XlsDocumentService {
             columnIndex = createRowPart(outbounds, row, columnIndex, typesOfPallet, current, stylesContainer);
             columnIndex = createMovesRowPart(moves, row, columnIndex, current, stylesContainer);
             createRowPart(finalState, row, columnIndex, typesOfPallet, current, stylesContainer);
+            writer.fitColumnWidths(row);
 
-            columnMax = columnIndex;
             columnIndex = 1;
             rowIndex++;
             currentDate = currentDate.plusDays(1);
         }
-        for (int i = 0; i <= columnMax; i++) {
-            sheet.autoSizeColumn(i, false);
-        }
     }
 
-    private int createRowPart(Map<Date, List<PalletBalanceRowDto>> data, HSSFRow row, int columnIndex,
+    private int createRowPart(Map<Date, List<PalletBalanceRowDto>> data, Row row, int columnIndex,
             List<String> typesOfPallet, Date currentDate, StylesContainer stylesContainer) {
         for (String typeOfPallet : typesOfPallet) {
             if (data.containsKey(currentDate)) {
@@ -198,7 +193,7 @@ public class PalletBalanceXlsService extends XlsDocumentService {
         return columnIndex;
     }
 
-    private int createMovesRowPart(Map<Date, Integer> data, HSSFRow row, int columnIndex, Date currentDate,
+    private int createMovesRowPart(Map<Date, Integer> data, Row row, int columnIndex, Date currentDate,
             StylesContainer stylesContainer) {
         if (data.containsKey(currentDate)) {
             createNumericCell(stylesContainer, row, columnIndex, data.get(currentDate));
@@ -214,35 +209,35 @@ public class PalletBalanceXlsService extends XlsDocumentService {
         return columnIndex;
     }
 
+    /**
+     * Looks up styles of the report in the writer, so each of them is created once per workbook. Header cells are aligned
+     * differently, so each alignment gets its own style.
+     */
     private static class StylesContainer {
 
-        private final HSSFCellStyle regularStyle;
-
-        private final HSSFCellStyle headerStyle;
-
-        StylesContainer(HSSFWorkbook workbook, FontsContainer fontsContainer) {
-            regularStyle = workbook.createCellStyle();
-            regularStyle.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
+        private final StreamingXlsxWriter writer;
 
-            headerStyle = workbook.createCellStyle();
-            headerStyle.setFont(fontsContainer.headerFont);
-        }
-
-        private static HSSFCellStyle aligned(HSSFCellStyle style, short align) {
-            style.setAlignment(align);
-            return style;
-        }
+        private final Font headerFont;
 
-    }
+        private final CellStyle regularStyle;
 
-    private static class FontsContainer {
+        StylesContainer(StreamingXlsxWriter writer) {
+            this.writer = writer;
 
-        private final Font headerFont;
+            headerFont = writer.getFont("palletBalance.header", font -> font.setBoldweight(Font.BOLDWEIGHT_BOLD));
 
-        FontsContainer(HSSFWorkbook workbook) {
+            regularStyle = writer.getStyle("palletBalance.regular", style -> {
+                style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+                style.setAlignment(CellStyle.ALIGN_LEFT);
+            });
+        }
 
-            headerFont = workbook.createFont();
-            headerFont.setBoldweight(Font.BOLDWEIGHT_BOLD);
+        private CellStyle headerStyle(short align) {
+            return writer.getStyle("palletBalance.header." + align, style -> {
+                style.setFont(headerFont);
+                style.setAlignment(align);
+            });
         }
+
     }
 }
@@ -6,11 +6,19 @@ import static com.qcadoo.model.api.search.SearchRestrictions.isNull;
 import static com.qcadoo.model.api.search.SearchRestrictions.or;
 
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
 import com.qcadoo.mes.materialFlow.constants.UserFieldsMF;
 import com.qcadoo.mes.materialFlow.constants.UserLocationFields;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
@@ -26,20 +34,35 @@ import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.security.constants.QcadooSecurityConstants;
+import com.qcadoo.tenant.api.MultiTenantService;
 
+/**
+ * Draft documents counts are kept per tenant and user, so that notification polls of many terminals don't query documents each
+ * time. Counts are dropped by document and user location hooks.
+ */
 @Service
 public class DraftDocumentsNotificationService {
 
     static final String ROLE_DOCUMENTS_NOTIFICATION = "ROLE_DOCUMENTS_NOTIFICATION";
 
+    private static final int COUNTS_EXPIRATION_MINUTES = 5;
+
     private final SecurityService securityService;
 
     private final DataDefinitionService dataDefinitionService;
 
+    private final MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Integer, Cache<Long, Integer>> draftDocumentsCounts = Maps.newConcurrentMap();
+
+    private final AtomicLong version = new AtomicLong();
+
     @Autowired
-    public DraftDocumentsNotificationService(SecurityService securityService, DataDefinitionService dataDefinitionService) {
+    public DraftDocumentsNotificationService(SecurityService securityService, DataDefinitionService dataDefinitionService,
+            MultiTenantService multiTenantService) {
         this.securityService = securityService;
         this.dataDefinitionService = dataDefinitionService;
+        this.multiTenantService = multiTenantService;
     }
 
     private DataDefinition userDataDefinition() {
@@ -54,7 +77,84 @@ public class DraftDocumentsNotificationService {
     public boolean shouldNotifyCurrentUser() {
         Long currentUserId = securityService.getCurrentUserId();
         return currentUserId != null && securityService.hasCurrentUserRole(ROLE_DOCUMENTS_NOTIFICATION)
-                && countDraftDocumentsForUser(currentUserId) > 0;
+                && getDraftDocumentsCount(currentUserId) > 0;
+    }
+
+    /**
+     * Drops cached count of given user, e.g. after change of user locations
+     * 
+     * @param userId
+     *            user id
+     */
+    public void invalidate(final Long userId) {
+        if (userId == null) {
+            return;
+        }
+
+        Cache<Long, Integer> tenantDraftDocumentsCounts = getTenantDraftDocumentsCounts();
+
+        doInvalidate(tenantDraftDocumentsCounts, userId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    doInvalidate(tenantDraftDocumentsCounts, userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops cached counts of all users of current tenant, e.g. after change of document
+     */
+    public void invalidateAll() {
+        Cache<Long, Integer> tenantDraftDocumentsCounts = getTenantDraftDocumentsCounts();
+
+        doInvalidateAll(tenantDraftDocumentsCounts);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    doInvalidateAll(tenantDraftDocumentsCounts);
+                }
+            });
+        }
+    }
+
+    private void doInvalidate(final Cache<Long, Integer> tenantDraftDocumentsCounts, final Long userId) {
+        version.incrementAndGet();
+        tenantDraftDocumentsCounts.invalidate(userId);
+    }
+
+    private void doInvalidateAll(final Cache<Long, Integer> tenantDraftDocumentsCounts) {
+        version.incrementAndGet();
+        tenantDraftDocumentsCounts.invalidateAll();
+    }
+
+    private Cache<Long, Integer> getTenantDraftDocumentsCounts() {
+        return draftDocumentsCounts.computeIfAbsent(multiTenantService.getCurrentTenantId(), tenantId -> CacheBuilder
+                .newBuilder().maximumSize(1000).expireAfterWrite(COUNTS_EXPIRATION_MINUTES, TimeUnit.MINUTES).build());
+    }
+
+    private int getDraftDocumentsCount(final Long userId) {
+        Cache<Long, Integer> tenantDraftDocumentsCounts = getTenantDraftDocumentsCounts();
+        Integer count = tenantDraftDocumentsCounts.getIfPresent(userId);
+
+        if (count == null) {
+            long loadedVersion = version.get();
+
+            count = countDraftDocumentsForUser(userId);
+
+            if (loadedVersion == version.get()) {
+                tenantDraftDocumentsCounts.put(userId, count);
+            }
+        }
+
+        return count;
     }
 
     int countDraftDocumentsForUser(Long currentUserId) {
@@ -31,7 +31,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.base.Strings;
-import com.qcadoo.mes.basic.constants.PalletNumberFields;
 import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
 import com.qcadoo.mes.materialFlowResources.constants.ResourceCorrectionFields;
 import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
@@ -57,31 +56,15 @@ public class ResourceCorrectionServiceImpl implements ResourceCorrectionService
     @Autowired
     private NumberService numberService;
 
+    @Autowired
+    private StorageLocationPalletsService storageLocationPalletsService;
+
     public long getPalletsCountInStorageLocation(final Entity newStorageLocation) {
-        StringBuilder hql = new StringBuilder();
-        hql.append("select count(distinct p.number) as palletsCount from #materialFlowResources_resource r ");
-        hql.append("join r.palletNumber p ");
-        hql.append("join r.storageLocation sl ");
-        hql.append("where sl.id = '").append(newStorageLocation.getId()).append("'");
-
-        Entity result = dataDefinitionService
-                .get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER, MaterialFlowResourcesConstants.MODEL_RESOURCE)
-                .find(hql.toString()).setMaxResults(1).uniqueResult();
-        return result.getLongField("palletsCount");
+        return storageLocationPalletsService.countResourcePallets(newStorageLocation.getId(), null);
     }
 
     public long getPalletsCountInStorageLocationWithoutPalletNumber(final Entity newStorageLocation, final Entity newPalletNumber) {
-        StringBuilder hql = new StringBuilder();
-        hql.append("select count(distinct p.number) as palletsCount from #materialFlowResources_resource r ");
-        hql.append("join r.palletNumber p ");
-        hql.append("join r.storageLocation sl ");
-        hql.append("where sl.id = '").append(newStorageLocation.getId()).append("' ");
-        hql.append("and p.number != '").append(newPalletNumber.getStringField(PalletNumberFields.NUMBER)).append("'");
-
-        Entity result = dataDefinitionService
-                .get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER, MaterialFlowResourcesConstants.MODEL_RESOURCE)
-                .find(hql.toString()).setMaxResults(1).uniqueResult();
-        return result.getLongField("palletsCount");
+        return storageLocationPalletsService.countResourcePallets(newStorageLocation.getId(), newPalletNumber.getId());
     }
 
     @Override
@@ -26,10 +26,13 @@ package com.qcadoo.mes.materialFlowResources.service;
 import static com.qcadoo.mes.materialFlowResources.constants.ResourceFields.QUANTITY;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hibernate.exception.LockAcquisitionException;
@@ -40,8 +43,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.qcadoo.mes.basic.CalculationQuantityService;
 import com.qcadoo.mes.basic.ParameterService;
@@ -56,6 +60,7 @@ import com.qcadoo.mes.materialFlowResources.constants.ReservationFields;
 import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
 import com.qcadoo.mes.materialFlowResources.constants.StorageLocationFields;
 import com.qcadoo.mes.materialFlowResources.constants.WarehouseAlgorithm;
+import com.qcadoo.mes.materialFlowResources.dto.WarehouseStockSnapshot;
 import com.qcadoo.mes.materialFlowResources.exceptions.InvalidResourceException;
 import com.qcadoo.mes.materialFlowResources.helpers.NotEnoughResourcesErrorMessageCopyToEntityHelper;
 import com.qcadoo.mes.materialFlowResources.helpers.NotEnoughResourcesErrorMessageHolder;
@@ -64,10 +69,6 @@ import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
-import com.qcadoo.model.api.search.SearchCriteriaBuilder;
-import com.qcadoo.model.api.search.SearchCriterion;
-import com.qcadoo.model.api.search.SearchOrder;
-import com.qcadoo.model.api.search.SearchOrders;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.api.validators.ErrorMessage;
 import com.qcadoo.security.api.UserService;
@@ -94,7 +95,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
     private PalletNumberDisposalService palletNumberDisposalService;
 
     @Autowired
-    private ResourceStockService resourceStockService;
+    private WarehouseStockService warehouseStockService;
 
     @Autowired
     private ReservationsService reservationsService;
@@ -189,8 +190,6 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             resource.setField(ResourceFields.CONVERSION, position.getField(PositionFields.CONVERSION));
         }
 
-        resourceStockService.createResourceStock(resource);
-
         resource = resourceDD.save(resource);
 
         if (!resource.isValid()) {
@@ -200,8 +199,8 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         position.setField("resourceReceiptDocument", resource.getId().toString());
     }
 
-    private Entity createResource(final Entity position, final Entity warehouse, final Entity resource,
-            final BigDecimal quantity, Object date) {
+    private Entity createResource(final Entity position, final Entity warehouse,
+            final Map<Long, Optional<Entity>> storageLocations, final Entity resource, final BigDecimal quantity, Object date) {
         Entity newResource = resource.getDataDefinition().create();
 
         if (position != null) {
@@ -225,8 +224,12 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         newResource.setField(ResourceFields.BATCH, resource.getField(PositionFields.BATCH));
         newResource.setField(ResourceFields.EXPIRATION_DATE, resource.getField(PositionFields.EXPIRATION_DATE));
         newResource.setField(ResourceFields.PRODUCTION_DATE, resource.getField(PositionFields.PRODUCTION_DATE));
+
+        Entity product = resource.getBelongsToField(ResourceFields.PRODUCT);
+
         newResource.setField(ResourceFields.STORAGE_LOCATION,
-                findStorageLocationForProduct(warehouse, resource.getBelongsToField(ResourceFields.PRODUCT)));
+                storageLocations.computeIfAbsent(product.getId(),
+                        productId -> Optional.ofNullable(findStorageLocationForProduct(warehouse, product))).orElse(null));
         newResource.setField(ResourceFields.PALLET_NUMBER, null);
         newResource.setField(ResourceFields.TYPE_OF_PALLET, null);
         newResource.setField(ResourceFields.ADDITIONAL_CODE, resource.getField(ResourceFields.ADDITIONAL_CODE));
@@ -239,8 +242,6 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
         newResource.setField(ResourceFields.QUANTITY_IN_ADDITIONAL_UNIT, quantityInAdditionalUnit);
 
-        resourceStockService.createResourceStock(newResource);
-
         return resource.getDataDefinition().save(newResource);
     }
 
@@ -257,97 +258,32 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         }
     }
 
-    private SearchCriteriaBuilder getSearchCriteriaForResourceForProductAndWarehouse(final Entity product, final Entity warehouse) {
-        return dataDefinitionService
-                .get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER, MaterialFlowResourcesConstants.MODEL_RESOURCE).find()
-                .add(SearchRestrictions.belongsTo(ResourceFields.LOCATION, warehouse))
-                .add(SearchRestrictions.belongsTo(ResourceFields.PRODUCT, product))
-                .add(SearchRestrictions.gt(ResourceFields.AVAILABLE_QUANTITY, BigDecimal.ZERO));
-
-    }
-
-    public Multimap<Long, BigDecimal> getQuantitiesInWarehouse(final Entity warehouse,
-            final Multimap<Entity, Entity> productsAndPositions) {
-        Multimap<Long, BigDecimal> result = ArrayListMultimap.create();
-
-        for (Map.Entry<Entity, Entity> productAndPosition : productsAndPositions.entries()) {
-            Entity additionalCode = productAndPosition.getValue().getBelongsToField(PositionFields.ADDITIONAL_CODE);
-            BigDecimal conversion = productAndPosition.getValue().getDecimalField(PositionFields.CONVERSION);
+    private Map<Long, BigDecimal> getQuantitiesInWarehouse(final Entity warehouse, final List<Entity> positions) {
+        Multimap<Long, BigDecimal> conversionsByProduct = HashMultimap.create();
 
-            List<Entity> resources = Lists.newArrayList();
-
-            if (additionalCode != null) {
-                SearchCriteriaBuilder scb = getSearchCriteriaForResourceForProductAndWarehouse(productAndPosition.getKey(),
-                        warehouse);
-
-                if (!StringUtils.isEmpty(productAndPosition.getKey().getStringField(ProductFields.ADDITIONAL_UNIT))) {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, conversion));
-                } else {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, BigDecimal.ONE));
-                }
-
-                resources = scb.add(SearchRestrictions.belongsTo(ResourceFields.ADDITIONAL_CODE, additionalCode)).list()
-                        .getEntities();
-
-                scb = getSearchCriteriaForResourceForProductAndWarehouse(productAndPosition.getKey(), warehouse);
-
-                if (!StringUtils.isEmpty(productAndPosition.getKey().getStringField(ProductFields.ADDITIONAL_UNIT))) {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, conversion));
-                } else {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, BigDecimal.ONE));
-                }
-
-                resources.addAll(scb
-                        .add(SearchRestrictions.or(SearchRestrictions.isNull(ResourceFields.ADDITIONAL_CODE),
-                                SearchRestrictions.ne("additionalCode.id", additionalCode.getId()))).list().getEntities());
-            }
-
-            if (resources.isEmpty()) {
-                SearchCriteriaBuilder scb = getSearchCriteriaForResourceForProductAndWarehouse(productAndPosition.getKey(),
-                        warehouse);
-
-                if (!StringUtils.isEmpty(productAndPosition.getKey().getStringField(ProductFields.ADDITIONAL_UNIT))) {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, conversion));
-                } else {
-                    scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, BigDecimal.ONE));
-                }
-
-                resources = scb.list().getEntities();
-            }
-
-            if (result.containsKey(productAndPosition.getKey().getId())) {
-                BigDecimal currentQuantity = result.get(productAndPosition.getKey().getId()).stream()
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+        for (Entity position : positions) {
+            Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-                result.put(productAndPosition.getKey().getId(),
-                        (resources.stream().map(res -> res.getDecimalField(ResourceFields.AVAILABLE_QUANTITY)).reduce(
-                                BigDecimal.ZERO, BigDecimal::add)).add(currentQuantity));
+            if (StringUtils.isNotEmpty(product.getStringField(ProductFields.ADDITIONAL_UNIT))) {
+                conversionsByProduct.put(product.getId(), position.getDecimalField(PositionFields.CONVERSION));
             } else {
-                result.put(
-                        productAndPosition.getKey().getId(),
-                        resources.stream().map(res -> res.getDecimalField(ResourceFields.AVAILABLE_QUANTITY))
-                                .reduce(BigDecimal.ZERO, BigDecimal::add));
+                conversionsByProduct.put(product.getId(), BigDecimal.ONE);
             }
         }
 
-        return result;
-    }
-
-    private Multimap<Entity, Entity> getProductsAndPositionsFromDocument(final Entity document) {
-        Multimap<Entity, Entity> map = ArrayListMultimap.create();
+        WarehouseStockSnapshot stockSnapshot = warehouseStockService.getStockSnapshot(warehouse, conversionsByProduct.keySet());
 
-        List<Entity> positions = document.getHasManyField(DocumentFields.POSITIONS);
+        Map<Long, BigDecimal> quantities = Maps.newHashMap();
 
-        positions.forEach(position -> map.put(position.getBelongsToField(PositionFields.PRODUCT), position));
+        for (Map.Entry<Long, Collection<BigDecimal>> productAndConversions : conversionsByProduct.asMap().entrySet()) {
+            Long productId = productAndConversions.getKey();
 
-        return map;
-    }
-
-    private BigDecimal getQuantityOfProductFromMultimap(final Multimap<Long, BigDecimal> quantitiesForWarehouse,
-            final Entity product) {
-        List<BigDecimal> quantities = Lists.newArrayList(quantitiesForWarehouse.get(product.getId()));
+            quantities.put(productId, productAndConversions.getValue().stream()
+                    .map(conversion -> stockSnapshot.getAvailableQuantity(productId, conversion))
+                    .reduce(BigDecimal.ZERO, BigDecimal::add));
+        }
 
-        return quantities.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        return quantities;
     }
 
     private void updateResourcesForReleaseDocuments(final Entity document) {
@@ -360,18 +296,21 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
         NotEnoughResourcesErrorMessageHolder errorMessageHolder = notEnoughResourcesErrorMessageHolderFactory.create();
 
-        Multimap<Long, BigDecimal> quantitiesForWarehouse = getQuantitiesInWarehouse(warehouse,
-                getProductsAndPositionsFromDocument(document));
+        List<Entity> positions = document.getHasManyField(DocumentFields.POSITIONS);
+
+        Map<Long, BigDecimal> quantitiesForWarehouse = getQuantitiesInWarehouse(warehouse, positions);
 
-        for (Entity position : document.getHasManyField(DocumentFields.POSITIONS)) {
+        WarehouseResources warehouseResources = createWarehouseResources(warehouse, positions);
+
+        for (Entity position : positions) {
             Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-            List<Entity> generatedPositions = updateResources(warehouse, position, warehouseAlgorithm);
+            List<Entity> generatedPositions = updateResources(warehouseResources, warehouse, position, warehouseAlgorithm);
 
             enoughResources = enoughResources && position.isValid();
 
             if (!position.isValid()) {
-                BigDecimal quantityInWarehouse = getQuantityOfProductFromMultimap(quantitiesForWarehouse, product);
+                BigDecimal quantityInWarehouse = quantitiesForWarehouse.getOrDefault(product.getId(), BigDecimal.ZERO);
 
                 BigDecimal quantity = position.getDecimalField(QUANTITY);
 
@@ -394,11 +333,33 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             }
         }
 
+        flushWarehouseResources(warehouseResources);
+
         if (!enoughResources) {
             NotEnoughResourcesErrorMessageCopyToEntityHelper.addError(document, warehouse, errorMessageHolder);
         }
     }
 
+    private WarehouseResources createWarehouseResources(final Entity warehouse, final List<Entity> positions) {
+        Set<Long> productIds = positions.stream().map(position -> position.getBelongsToField(PositionFields.PRODUCT).getId())
+                .collect(Collectors.toSet());
+
+        Entity documentPositionParameters = parameterService.getParameter().getBelongsToField(
+                ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS);
+
+        boolean fillResourceIrrespectiveOfConversion = documentPositionParameters
+                .getBooleanField("fillResourceIrrespectiveOfConversion");
+
+        return new WarehouseResources(dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
+                MaterialFlowResourcesConstants.MODEL_RESOURCE), warehouse, productIds, fillResourceIrrespectiveOfConversion);
+    }
+
+    private void flushWarehouseResources(final WarehouseResources warehouseResources) {
+        for (Entity palletNumberToDispose : warehouseResources.flush()) {
+            palletNumberDisposalService.tryToDispose(palletNumberToDispose);
+        }
+    }
+
     private void addPositionErrors(final Entity document, final Entity saved) {
         if (!saved.isValid()) {
             document.setNotValid();
@@ -429,13 +390,14 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         position.setField(PositionFields.GIVEN_QUANTITY, newPosition.getField(PositionFields.GIVEN_QUANTITY));
     }
 
-    private List<Entity> updateResources(final Entity warehouse, final Entity position,
-            final WarehouseAlgorithm warehouseAlgorithm) {
+    private List<Entity> updateResources(final WarehouseResources warehouseResources, final Entity warehouse,
+            final Entity position, final WarehouseAlgorithm warehouseAlgorithm) {
         List<Entity> newPositions = Lists.newArrayList();
 
         Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-        List<Entity> resources = getResourcesForWarehouseProductAndAlgorithm(warehouse, product, position, warehouseAlgorithm);
+        List<Entity> resources = getResourcesForWarehouseProductAndAlgorithm(warehouseResources, product, position,
+                warehouseAlgorithm);
 
         reservationsService.deleteReservationFromDocumentPosition(position);
 
@@ -468,11 +430,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 quantity = quantity.subtract(resourceAvailableQuantity, numberService.getMathContext());
 
                 if (resourceQuantity.compareTo(resourceAvailableQuantity) <= 0) {
-                    Entity palletNumberToDispose = resource.getBelongsToField(ResourceFields.PALLET_NUMBER);
-
-                    resource.getDataDefinition().delete(resource.getId());
-
-                    palletNumberDisposalService.tryToDispose(palletNumberToDispose);
+                    warehouseResources.markAsRemoved(resource);
                 } else {
                     BigDecimal newResourceQuantity = resourceQuantity.subtract(resourceAvailableQuantity);
                     BigDecimal quantityInAdditionalUnit = calculationQuantityService.calculateAdditionalQuantity(
@@ -482,11 +440,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                     resource.setField(ResourceFields.QUANTITY, newResourceQuantity);
                     resource.setField(ResourceFields.QUANTITY_IN_ADDITIONAL_UNIT, quantityInAdditionalUnit);
 
-                    Entity savedResource = resource.getDataDefinition().save(resource);
-
-                    if (!savedResource.isValid()) {
-                        throw new InvalidResourceException(savedResource);
-                    }
+                    warehouseResources.markAsChanged(resource);
                 }
 
                 newPosition.setField(PositionFields.QUANTITY, numberService.setScaleWithDefaultMathContext(resourceAvailableQuantity));
@@ -511,11 +465,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 resource.setField(ResourceFields.QUANTITY, numberService.setScaleWithDefaultMathContext(resourceQuantity));
                 resource.setField(ResourceFields.AVAILABLE_QUANTITY, resourceAvailableQuantity);
 
-                Entity savedResource = resource.getDataDefinition().save(resource);
-
-                if (!savedResource.isValid()) {
-                    throw new InvalidResourceException(savedResource);
-                }
+                warehouseResources.markAsChanged(resource);
 
                 newPosition.setField(PositionFields.QUANTITY, numberService.setScaleWithDefaultMathContext(quantity));
 
@@ -546,18 +496,24 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
         NotEnoughResourcesErrorMessageHolder errorMessageHolder = notEnoughResourcesErrorMessageHolderFactory.create();
 
-        Multimap<Long, BigDecimal> quantitiesForWarehouse = getQuantitiesInWarehouse(warehouseFrom,
-                getProductsAndPositionsFromDocument(document));
+        List<Entity> positions = document.getHasManyField(DocumentFields.POSITIONS);
 
-        for (Entity position : document.getHasManyField(DocumentFields.POSITIONS)) {
+        Map<Long, BigDecimal> quantitiesForWarehouse = getQuantitiesInWarehouse(warehouseFrom, positions);
+
+        WarehouseResources warehouseResources = createWarehouseResources(warehouseFrom, positions);
+
+        Map<Long, Optional<Entity>> storageLocations = Maps.newHashMap();
+
+        for (Entity position : positions) {
             Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-            List<Entity> generatedPositions = moveResources(warehouseFrom, warehouseTo, position, date, warehouseAlgorithm);
+            List<Entity> generatedPositions = moveResources(warehouseResources, warehouseFrom, warehouseTo, storageLocations,
+                    position, date, warehouseAlgorithm);
 
             enoughResources = enoughResources && position.isValid();
 
             if (!position.isValid()) {
-                BigDecimal quantityInWarehouse = getQuantityOfProductFromMultimap(quantitiesForWarehouse, product);
+                BigDecimal quantityInWarehouse = quantitiesForWarehouse.getOrDefault(product.getId(), BigDecimal.ZERO);
 
                 BigDecimal quantity = position.getDecimalField(QUANTITY);
 
@@ -581,6 +537,8 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             }
         }
 
+        flushWarehouseResources(warehouseResources);
+
         if (!enoughResources) {
             NotEnoughResourcesErrorMessageCopyToEntityHelper.addError(document, warehouseFrom, errorMessageHolder);
         }
@@ -592,13 +550,15 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         }
     }
 
-    private List<Entity> moveResources(final Entity warehouseFrom, final Entity warehouseTo, final Entity position,
+    private List<Entity> moveResources(final WarehouseResources warehouseResources, final Entity warehouseFrom,
+            final Entity warehouseTo, final Map<Long, Optional<Entity>> storageLocations, final Entity position,
             final Object date, final WarehouseAlgorithm warehouseAlgorithm) {
         List<Entity> newPositions = Lists.newArrayList();
 
         Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-        List<Entity> resources = getResourcesForWarehouseProductAndAlgorithm(warehouseFrom, product, position, warehouseAlgorithm);
+        List<Entity> resources = getResourcesForWarehouseProductAndAlgorithm(warehouseResources, product, position,
+                warehouseAlgorithm);
 
         reservationsService.deleteReservationFromDocumentPosition(position);
 
@@ -631,11 +591,7 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 quantity = quantity.subtract(resourceAvailableQuantity, numberService.getMathContext());
 
                 if (resourceQuantity.compareTo(resourceAvailableQuantity) <= 0) {
-                    Entity palletNumberToDispose = resource.getBelongsToField(ResourceFields.PALLET_NUMBER);
-
-                    resource.getDataDefinition().delete(resource.getId());
-
-                    palletNumberDisposalService.tryToDispose(palletNumberToDispose);
+                    warehouseResources.markAsRemoved(resource);
                 } else {
                     BigDecimal newResourceQuantity = resourceQuantity.subtract(resourceAvailableQuantity);
 
@@ -646,14 +602,11 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                     resource.setField(ResourceFields.QUANTITY, newResourceQuantity);
                     resource.setField(ResourceFields.QUANTITY_IN_ADDITIONAL_UNIT, quantityInAdditionalUnit);
 
-                    Entity savedResource = resource.getDataDefinition().save(resource);
-
-                    if (!savedResource.isValid()) {
-                        throw new InvalidResourceException(savedResource);
-                    }
+                    warehouseResources.markAsChanged(resource);
                 }
 
-                Entity newResource = createResource(position, warehouseTo, resource, resourceAvailableQuantity, date);
+                Entity newResource = createResource(position, warehouseTo, storageLocations, resource, resourceAvailableQuantity,
+                        date);
 
                 newPosition.setField(PositionFields.QUANTITY, numberService.setScaleWithDefaultMathContext(resourceAvailableQuantity));
 
@@ -681,13 +634,9 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 resource.setField(ResourceFields.QUANTITY, numberService.setScaleWithDefaultMathContext(resourceQuantity));
                 resource.setField(ResourceFields.AVAILABLE_QUANTITY, resourceAvailableQuantity);
 
-                Entity savedResource = resource.getDataDefinition().save(resource);
-
-                if (!savedResource.isValid()) {
-                    throw new InvalidResourceException(savedResource);
-                }
+                warehouseResources.markAsChanged(resource);
 
-                Entity newResource = createResource(position, warehouseTo, resource, quantity, date);
+                Entity newResource = createResource(position, warehouseTo, storageLocations, resource, quantity, date);
 
                 newPosition.setField(PositionFields.QUANTITY, numberService.setScaleWithDefaultMathContext(quantity));
 
@@ -717,16 +666,15 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         }
     }
 
-    private List<Entity> getResourcesForWarehouseProductAndAlgorithm(final Entity warehouse, final Entity product,
-            final Entity position, final WarehouseAlgorithm warehouseAlgorithm) {
+    private List<Entity> getResourcesForWarehouseProductAndAlgorithm(final WarehouseResources warehouseResources,
+            final Entity product, final Entity position, final WarehouseAlgorithm warehouseAlgorithm) {
         List<Entity> resources = Lists.newArrayList();
 
         Entity resource = position.getBelongsToField(PositionFields.RESOURCE);
         Entity additionalCode = position.getBelongsToField(PositionFields.ADDITIONAL_CODE);
 
         if (resource != null && resource.getId() != null) {
-            resource = dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
-                    MaterialFlowResourcesConstants.MODEL_RESOURCE).get(resource.getId());
+            resource = warehouseResources.getResource(resource.getId());
         }
 
         if (resource != null) {
@@ -740,115 +688,22 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
             }
 
             resources.add(resource);
-        } else if (WarehouseAlgorithm.FIFO.equals(warehouseAlgorithm)) {
-            resources = getResourcesForLocationAndProductFIFO(warehouse, product, additionalCode, position);
-        } else if (WarehouseAlgorithm.LIFO.equals(warehouseAlgorithm)) {
-            resources = getResourcesForLocationAndProductLIFO(warehouse, product, additionalCode, position);
-        } else if (WarehouseAlgorithm.FEFO.equals(warehouseAlgorithm)) {
-            resources = getResourcesForLocationAndProductFEFO(warehouse, product, additionalCode, position);
-        } else if (WarehouseAlgorithm.LEFO.equals(warehouseAlgorithm)) {
-            resources = getResourcesForLocationAndProductLEFO(warehouse, product, additionalCode, position);
-        }
-
-        return resources;
-    }
-
-    private List<Entity> getResourcesForLocationCommonCodeConversion(final Entity warehouse, final Entity product,
-            final Entity additionalCode, final Entity position, boolean resourceIrrespectiveOfConversion,
-            SearchOrder... searchOrders) {
-        class SearchCriteriaHelper {
-
-            private List<Entity> getAll() {
-                return getAllThatSatisfies(null);
-            }
-
-            private List<Entity> getAllThatSatisfies(SearchCriterion searchCriterion) {
-                SearchCriteriaBuilder scb = getSearchCriteriaForResourceForProductAndWarehouse(product, warehouse);
-
-                if (resourceIrrespectiveOfConversion) {
-                    if (StringUtils.isNotEmpty(product.getStringField(ProductFields.ADDITIONAL_UNIT))) {
-                        scb.add(SearchRestrictions.ne(PositionFields.CONVERSION,
-                                position.getDecimalField(PositionFields.CONVERSION)));
-                    } else {
-                        scb.add(SearchRestrictions.ne(ResourceFields.CONVERSION, BigDecimal.ONE));
-                    }
-                } else {
-                    if (StringUtils.isNotEmpty(product.getStringField(ProductFields.ADDITIONAL_UNIT))) {
-                        scb.add(SearchRestrictions.eq(PositionFields.CONVERSION,
-                                position.getDecimalField(PositionFields.CONVERSION)));
-                    } else {
-                        scb.add(SearchRestrictions.eq(ResourceFields.CONVERSION, BigDecimal.ONE));
-                    }
-                }
-
-                Optional.ofNullable(searchCriterion).ifPresent(scb::add);
-
-                for (SearchOrder searchOrder : searchOrders) {
-                    scb.addOrder(searchOrder);
-                }
+        } else {
+            BigDecimal conversion;
 
-                return scb.list().getEntities();
+            if (StringUtils.isNotEmpty(product.getStringField(ProductFields.ADDITIONAL_UNIT))) {
+                conversion = position.getDecimalField(PositionFields.CONVERSION);
+            } else {
+                conversion = BigDecimal.ONE;
             }
-        }
-
-        List<Entity> resources = Lists.newArrayList();
-
-        if (additionalCode != null) {
-            resources = new SearchCriteriaHelper().getAllThatSatisfies(SearchRestrictions.belongsTo(
-                    ResourceFields.ADDITIONAL_CODE, additionalCode));
-
-            resources.addAll(new SearchCriteriaHelper().getAllThatSatisfies(SearchRestrictions.or(
-                    SearchRestrictions.isNull(ResourceFields.ADDITIONAL_CODE),
-                    SearchRestrictions.ne("additionalCode.id", additionalCode.getId()))));
-        }
 
-        if (resources.isEmpty()) {
-            resources = new SearchCriteriaHelper().getAll();
+            resources = warehouseResources.getResources(product.getId(),
+                    Objects.isNull(additionalCode) ? null : additionalCode.getId(), conversion, warehouseAlgorithm);
         }
 
         return resources;
     }
 
-    private List<Entity> getResourcesForLocationCommonCode(final Entity warehouse, final Entity product,
-            final Entity additionalCode, final Entity position, SearchOrder... searchOrders) {
-        List<Entity> resources = getResourcesForLocationCommonCodeConversion(warehouse, product, additionalCode, position, false,
-                searchOrders);
-        Entity documentPositionParameters = parameterService.getParameter().getBelongsToField(
-                ParameterFieldsMFR.DOCUMENT_POSITION_PARAMETERS);
-
-        boolean fillResourceIrrespectiveOfConversion = documentPositionParameters
-                .getBooleanField("fillResourceIrrespectiveOfConversion");
-        if (fillResourceIrrespectiveOfConversion) {
-            resources.addAll(getResourcesForLocationCommonCodeConversion(warehouse, product, additionalCode, position, true,
-                    searchOrders));
-        }
-        return resources;
-    }
-
-    private List<Entity> getResourcesForLocationAndProductFIFO(final Entity warehouse, final Entity product,
-            final Entity additionalCode, final Entity position) {
-        return getResourcesForLocationCommonCode(warehouse, product, additionalCode, position,
-                SearchOrders.asc(ResourceFields.TIME));
-    }
-
-    private List<Entity> getResourcesForLocationAndProductLIFO(final Entity warehouse, final Entity product,
-            final Entity additionalCode, final Entity position) {
-        return getResourcesForLocationCommonCode(warehouse, product, additionalCode, position,
-                SearchOrders.desc(ResourceFields.TIME));
-    }
-
-    private List<Entity> getResourcesForLocationAndProductFEFO(final Entity warehouse, final Entity product,
-            final Entity additionalCode, final Entity position) {
-        return getResourcesForLocationCommonCode(warehouse, product, additionalCode, position,
-                SearchOrders.asc(ResourceFields.EXPIRATION_DATE), SearchOrders.asc(ResourceFields.AVAILABLE_QUANTITY));
-    }
-
-    private List<Entity> getResourcesForLocationAndProductLEFO(final Entity warehouse, final Entity product,
-            final Entity additionalCode, final Entity position) {
-        return getResourcesForLocationCommonCode(warehouse, product, additionalCode, position,
-                SearchOrders.desc(ResourceFields.EXPIRATION_DATE), SearchOrders.asc(ResourceFields.AVAILABLE_QUANTITY));
-    }
-
     @Transactional(isolation = Isolation.REPEATABLE_READ)
     public void fillResourcesInDocument(final ViewDefinitionState view, final Entity document) throws LockAcquisitionException {
         logger.info("FILL RESOURCES STARTED IN DOCUMENT: id = " + document.getId() + " number = "
@@ -863,9 +718,14 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 .getStringField(LocationFieldsMFR.ALGORITHM));
         boolean valid = true;
 
+        WarehouseResources warehouseResources = createWarehouseResources(warehouse, positions);
+
+        boolean reservationsEnabled = reservationsService.reservationsEnabledForDocumentPositions(document);
+
         for (Entity position : positions) {
             if (position.getBelongsToField(PositionFields.RESOURCE) == null) {
-                List<Entity> newPositions = matchResourcesToPosition(position, warehouse, warehouseAlgorithm);
+                List<Entity> newPositions = matchResourcesToPosition(warehouseResources, position, warehouseAlgorithm,
+                        reservationsEnabled);
                 if (!newPositions.isEmpty()) {
                     logger.info("GENERATED POSITIONS IN DOCUMENT: id = " + document.getId() + ", FOR POSITION: id = "
                             + position.getId() + ", size = " + newPositions.size());
@@ -907,8 +767,8 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         }
     }
 
-    private List<Entity> matchResourcesToPosition(final Entity position, final Entity warehouse,
-            final WarehouseAlgorithm warehouseAlgorithm) {
+    private List<Entity> matchResourcesToPosition(final WarehouseResources warehouseResources, final Entity position,
+            final WarehouseAlgorithm warehouseAlgorithm, final boolean reservationsEnabled) {
         DataDefinition positionDD = dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
                 MaterialFlowResourcesConstants.MODEL_POSITION);
 
@@ -916,7 +776,8 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
 
         Entity product = position.getBelongsToField(PositionFields.PRODUCT);
 
-        List<Entity> resources = getResourcesForWarehouseProductAndAlgorithm(warehouse, product, position, warehouseAlgorithm);
+        List<Entity> resources = getResourcesForWarehouseProductAndAlgorithm(warehouseResources, product, position,
+                warehouseAlgorithm);
         BigDecimal quantity = position.getDecimalField(PositionFields.QUANTITY);
         BigDecimal conversion = position.getDecimalField(PositionFields.CONVERSION);
         String givenUnit = position.getStringField(PositionFields.GIVEN_UNIT);
@@ -942,9 +803,11 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
                 quantity = quantity.subtract(resourceAvailableQuantity, numberService.getMathContext());
 
                 setPositionQuantityAndGivenQuantity(resourceAvailableQuantity, newPosition);
+                reserve(warehouseResources, resource, newPosition, reservationsEnabled);
                 newPositions.add(newPosition);
             } else {
                 setPositionQuantityAndGivenQuantity(quantity, newPosition);
+                reserve(warehouseResources, resource, newPosition, reservationsEnabled);
                 newPositions.add(newPosition);
 
                 return newPositions;
@@ -954,6 +817,13 @@ public class ResourceManagementServiceImpl implements ResourceManagementService
         return newPositions;
     }
 
+    private void reserve(final WarehouseResources warehouseResources, final Entity resource, final Entity newPosition,
+            final boolean reservationsEnabled) {
+        if (reservationsEnabled) {
+            warehouseResources.reserve(resource, newPosition.getDecimalField(PositionFields.QUANTITY));
+        }
+    }
+
     private Entity createNewPosition(Entity position, Entity product, Entity resource) {
         Entity newPosition = position.getDataDefinition().create();
 
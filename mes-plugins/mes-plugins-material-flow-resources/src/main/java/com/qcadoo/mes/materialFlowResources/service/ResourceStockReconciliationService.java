@@ -0,0 +1,78 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.tenant.api.MultiTenantCallback;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Resource stock is maintained by database triggers on resources and reservations. This job compares it with quantities
+ * recomputed from scratch and fixes rows which drifted, e.g. after bulk operations run with triggers disabled. Storage location
+ * pallet occupancy, maintained the same way, is reconciled together with it.
+ */
+@Service
+public class ResourceStockReconciliationService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResourceStockReconciliationService.class);
+
+    @Autowired
+    private ResourceStockService resourceStockService;
+
+    @Autowired
+    private StorageLocationPalletsService storageLocationPalletsService;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    public void reconcileResourceStocksTrigger() {
+        multiTenantService.doInMultiTenantContext(new MultiTenantCallback() {
+
+            @Override
+            public void invoke() {
+                reconcileResourceStocks();
+            }
+
+        });
+    }
+
+    public void reconcileResourceStocks() {
+        int reconciled = resourceStockService.reconcileResourceStocks();
+
+        if (reconciled > 0) {
+            LOG.warn("Reconciled " + reconciled + " resource stock rows");
+        }
+
+        int reconciledPallets = storageLocationPalletsService.reconcileStorageLocationPallets();
+
+        if (reconciledPallets > 0) {
+            LOG.warn("Reconciled " + reconciledPallets + " storage location pallet rows");
+        }
+    }
+
+}
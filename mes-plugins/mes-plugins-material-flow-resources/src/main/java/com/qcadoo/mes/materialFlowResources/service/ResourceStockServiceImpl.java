@@ -2,53 +2,36 @@ package com.qcadoo.mes.materialFlowResources.service;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.qcadoo.mes.basic.constants.ProductFields;
 import com.qcadoo.mes.materialFlow.constants.LocationFields;
 import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
-import com.qcadoo.mes.materialFlowResources.constants.MaterialFlowResourcesConstants;
 import com.qcadoo.mes.materialFlowResources.constants.PositionFields;
-import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
-import com.qcadoo.mes.materialFlowResources.constants.ResourceStockFields;
 import com.qcadoo.mes.materialFlowResources.dto.ResourceStockDto;
-import com.qcadoo.model.api.DataDefinition;
-import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 
 @Service
 public class ResourceStockServiceImpl implements ResourceStockService {
 
-    @Autowired
-    private DataDefinitionService dataDefinitionService;
-
     @Autowired
     private NamedParameterJdbcTemplate jdbcTemplate;
 
-    @Override
-    public void createResourceStock(final Entity resource) {
-        Entity product = resource.getBelongsToField(ResourceFields.PRODUCT);
-        Entity location = resource.getBelongsToField(ResourceFields.LOCATION);
-        Optional<ResourceStockDto> maybeStock = getResourceStockForProductAndLocation(product, location);
-        if (!maybeStock.isPresent()) {
-            DataDefinition resourceStockDD = dataDefinitionService.get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER,
-                    MaterialFlowResourcesConstants.MODEL_RESOURCE_STOCK);
-            Entity stock = resourceStockDD.create();
-            stock.setField(ResourceStockFields.LOCATION, location);
-            stock.setField(ResourceStockFields.PRODUCT, product);
-            resourceStockDD.save(stock);
-        }
-    }
+    @Autowired
+    private WarehouseStockService warehouseStockService;
 
     @Override
     public BigDecimal getResourceStockAvailableQuantity(final Entity product, final Entity location) {
@@ -72,14 +55,14 @@ public class ResourceStockServiceImpl implements ResourceStockService {
 
     private Optional<ResourceStockDto> getResourceStockForProductAndLocation(Entity product, Entity location) {
         StringBuilder query = new StringBuilder();
-        query.append("SELECT rs.* ");
-        query.append("FROM materialflowresources_resourcestockdto rs ");
+        query.append("SELECT rs.quantity, rs.availablequantity ");
+        query.append("FROM materialflowresources_resourcestock rs ");
         query.append("WHERE rs.location_id = :locationId AND rs.product_id = :productId ");
         query.append("LIMIT 1");
 
         Map<String, Object> params = Maps.newHashMap();
-        params.put("locationId", location.getId().intValue());
-        params.put("productId", product.getId().intValue());
+        params.put("locationId", location.getId());
+        params.put("productId", product.getId());
         List<ResourceStockDto> resourceStock = jdbcTemplate.query(query.toString(), params,
                 BeanPropertyRowMapper.newInstance(ResourceStockDto.class));
         if (resourceStock.isEmpty()) {
@@ -93,10 +76,14 @@ public class ResourceStockServiceImpl implements ResourceStockService {
     public void checkResourcesStock(Entity document) {
         List<String> invalidProducts = new ArrayList<>();
         List<Entity> mergedPositions = mergePositionsBeforeValidation(document.getHasManyField(DocumentFields.POSITIONS));
+        Set<Long> productIds = mergedPositions.stream()
+                .map(position -> position.getBelongsToField(PositionFields.PRODUCT).getId()).collect(Collectors.toSet());
+        Map<Long, BigDecimal> availableQuantities = warehouseStockService.getResourceStockAvailableQuantities(
+                document.getBelongsToField(DocumentFields.LOCATION_FROM), productIds);
         for (Entity position : mergedPositions) {
-            if ((position.getDecimalField(PositionFields.QUANTITY)
-                    .compareTo(getResourceStockAvailableQuantity(position.getBelongsToField(PositionFields.PRODUCT),
-                            document.getBelongsToField(DocumentFields.LOCATION_FROM))) > 0)) {
+            BigDecimal availableQuantity = availableQuantities.getOrDefault(
+                    position.getBelongsToField(PositionFields.PRODUCT).getId(), BigDecimal.ZERO);
+            if (position.getDecimalField(PositionFields.QUANTITY).compareTo(availableQuantity) > 0) {
                 Entity product = position.getBelongsToField(PositionFields.PRODUCT);
                 invalidProducts.add(product.getStringField(ProductFields.NUMBER));
             }
@@ -107,20 +94,61 @@ public class ResourceStockServiceImpl implements ResourceStockService {
     }
 
     private List<Entity> mergePositionsBeforeValidation(final List<Entity> positions) {
-        List<Entity> mergedPositions = Lists.newArrayList();
+        Map<Long, Entity> mergedPositions = Maps.newLinkedHashMap();
         for (Entity position : positions) {
-            Optional<Entity> mergedPosition = mergedPositions.stream()
-                    .filter(merged -> merged.getBelongsToField(PositionFields.PRODUCT).getId()
-                            .equals(position.getBelongsToField(PositionFields.PRODUCT).getId()))
-                    .findAny();
-            if (mergedPosition.isPresent()) {
-                mergedPosition.get().setField(PositionFields.QUANTITY, mergedPosition.get()
-                        .getDecimalField(PositionFields.QUANTITY).add(position.getDecimalField(PositionFields.QUANTITY)));
+            Long productId = position.getBelongsToField(PositionFields.PRODUCT).getId();
+            Entity mergedPosition = mergedPositions.get(productId);
+            if (mergedPosition != null) {
+                mergedPosition.setField(PositionFields.QUANTITY, mergedPosition.getDecimalField(PositionFields.QUANTITY)
+                        .add(position.getDecimalField(PositionFields.QUANTITY)));
             } else {
-                mergedPositions.add(position.copy());
+                mergedPositions.put(productId, position.copy());
             }
         }
-        return mergedPositions;
+        return Lists.newArrayList(mergedPositions.values());
+    }
+
+    @Override
+    @Transactional
+    public int reconcileResourceStocks() {
+        jdbcTemplate.update("LOCK TABLE materialflowresources_resourcestock IN EXCLUSIVE MODE", Collections.emptyMap());
+
+        StringBuilder expected = new StringBuilder();
+        expected.append("WITH quantities AS (SELECT location_id, product_id, SUM(COALESCE(quantity, 0)) AS quantity, ");
+        expected.append("SUM(COALESCE(quantityinadditionalunit, 0)) AS quantityinadditionalunit, ");
+        expected.append("SUM(COALESCE(quantity * price, 0)) AS totalvalue ");
+        expected.append("FROM materialflowresources_resource GROUP BY location_id, product_id), ");
+        expected.append("reserved_quantities AS (SELECT location_id, product_id, SUM(COALESCE(quantity, 0)) AS quantity ");
+        expected.append("FROM materialflowresources_reservation GROUP BY location_id, product_id), ");
+        expected.append("expected AS (SELECT COALESCE(q.location_id, rq.location_id) AS location_id, ");
+        expected.append("COALESCE(q.product_id, rq.product_id) AS product_id, COALESCE(q.quantity, 0) AS quantity, ");
+        expected.append("COALESCE(q.quantityinadditionalunit, 0) AS quantityinadditionalunit, ");
+        expected.append("COALESCE(rq.quantity, 0) AS reservedquantity, ");
+        expected.append("COALESCE(q.quantity, 0) - COALESCE(rq.quantity, 0) AS availablequantity, ");
+        expected.append("COALESCE(q.totalvalue, 0) AS totalvalue FROM quantities q FULL JOIN reserved_quantities rq ");
+        expected.append("ON rq.location_id = q.location_id AND rq.product_id = q.product_id ");
+        expected.append("WHERE COALESCE(q.location_id, rq.location_id) IS NOT NULL ");
+        expected.append("AND COALESCE(q.product_id, rq.product_id) IS NOT NULL) ");
+
+        String insertMissing = expected + "INSERT INTO materialflowresources_resourcestock (location_id, product_id) "
+                + "SELECT e.location_id, e.product_id FROM expected e WHERE NOT EXISTS (SELECT 1 FROM "
+                + "materialflowresources_resourcestock rs WHERE rs.location_id = e.location_id AND rs.product_id = e.product_id)";
+
+        jdbcTemplate.update(insertMissing, Collections.emptyMap());
+
+        String updateDifferent = expected + "UPDATE materialflowresources_resourcestock rs SET quantity = x.quantity, "
+                + "quantityinadditionalunit = x.quantityinadditionalunit, reservedquantity = x.reservedquantity, "
+                + "availablequantity = x.availablequantity, totalvalue = x.totalvalue "
+                + "FROM (SELECT s.id, COALESCE(e.quantity, 0) AS quantity, "
+                + "COALESCE(e.quantityinadditionalunit, 0) AS quantityinadditionalunit, "
+                + "COALESCE(e.reservedquantity, 0) AS reservedquantity, COALESCE(e.availablequantity, 0) AS availablequantity, "
+                + "COALESCE(e.totalvalue, 0) AS totalvalue FROM materialflowresources_resourcestock s "
+                + "LEFT JOIN expected e ON e.location_id = s.location_id AND e.product_id = s.product_id) x "
+                + "WHERE rs.id = x.id AND (rs.quantity <> x.quantity "
+                + "OR rs.quantityinadditionalunit <> x.quantityinadditionalunit OR rs.reservedquantity <> x.reservedquantity "
+                + "OR rs.availablequantity <> x.availablequantity OR rs.totalvalue <> x.totalvalue)";
+
+        return jdbcTemplate.update(updateDifferent, Collections.emptyMap());
     }
 
     private void addDocumentErrors(Entity document, List<String> invalidProducts) {
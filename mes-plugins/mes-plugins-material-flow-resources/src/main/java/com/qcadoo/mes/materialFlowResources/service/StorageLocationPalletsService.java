@@ -0,0 +1,181 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.service;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+/**
+ * Pallet occupancy of storage locations is maintained by database triggers on resources, delivered products and delivery
+ * states in materialflowresources_storagelocationpallet, one row per storage location and pallet number with the number of
+ * resources and of delivered products of not received deliveries placed there. Capacity checks read this table by its primary
+ * key instead of scanning all resources and delivered products.
+ */
+@Service
+public class StorageLocationPalletsService {
+
+    private static final Long L_NO_ID = -1L;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return number of pallets with resources in the given storage location, not counting the excluded pallet when it's given
+     */
+    public long countResourcePallets(final Long storageLocationId, final Long excludedPalletNumberId) {
+        String query = "SELECT count(*) FROM materialflowresources_storagelocationpallet slp "
+                + "WHERE slp.storagelocation_id = :storageLocationId AND slp.palletnumber_id <> :palletNumberId "
+                + "AND slp.resourcescount > 0";
+
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("storageLocationId", storageLocationId);
+        params.put("palletNumberId", excludedPalletNumberId == null ? L_NO_ID : excludedPalletNumberId);
+
+        return jdbcTemplate.queryForObject(query, params, Long.class);
+    }
+
+    /**
+     * Counts pallets occupying the given storage location with resources or delivered products of not received deliveries,
+     * other than the excluded pallet. The persisted state of the given delivered product is left out, so the delivered product
+     * being edited doesn't occupy the place it is moved from.
+     */
+    public long countOccupyingPallets(final Long storageLocationId, final Long excludedPalletNumberId,
+            final Long deliveredProductId) {
+        String query = "SELECT count(*) FROM materialflowresources_storagelocationpallet slp "
+                + "LEFT JOIN deliveries_deliveredproduct dp ON dp.id = :deliveredProductId "
+                + "AND dp.storagelocation_id = slp.storagelocation_id AND dp.palletnumber_id = slp.palletnumber_id "
+                + "AND EXISTS (SELECT 1 FROM deliveries_delivery d WHERE d.id = dp.delivery_id "
+                + "AND d.state NOT IN ('06received', '04declined')) "
+                + "WHERE slp.storagelocation_id = :storageLocationId AND slp.palletnumber_id <> :palletNumberId "
+                + "AND slp.resourcescount + slp.deliveredproductscount > CASE WHEN dp.id IS NULL THEN 0 ELSE 1 END";
+
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("storageLocationId", storageLocationId);
+        params.put("palletNumberId", excludedPalletNumberId == null ? L_NO_ID : excludedPalletNumberId);
+        params.put("deliveredProductId", deliveredProductId == null ? L_NO_ID : deliveredProductId);
+
+        return jdbcTemplate.queryForObject(query, params, Long.class);
+    }
+
+    /**
+     * Checks capacity for many pallets at once, with one lookup of occupied pallets of all given storage locations by primary
+     * key of materialflowresources_storagelocationpallet. Pallets which already occupy a storage location are counted once.
+     *
+     * @param palletNumberIdsByStorageLocation
+     *            ids of pallet numbers to be placed, by storage location id
+     * @return ids of storage locations which would hold more pallets than their maximum number of pallets
+     */
+    public Set<Long> getStorageLocationsOverCapacity(final Multimap<Long, Long> palletNumberIdsByStorageLocation) {
+        Set<Long> storageLocationIds = Sets.newHashSet();
+
+        if (palletNumberIdsByStorageLocation.isEmpty()) {
+            return storageLocationIds;
+        }
+
+        String query = "SELECT sl.id, sl.maximumnumberofpallets, slp.palletnumber_id "
+                + "FROM materialflowresources_storagelocation sl "
+                + "LEFT JOIN materialflowresources_storagelocationpallet slp ON slp.storagelocation_id = sl.id "
+                + "AND slp.resourcescount + slp.deliveredproductscount > 0 "
+                + "WHERE sl.id IN (:storageLocationIds) AND sl.maximumnumberofpallets IS NOT NULL";
+
+        Map<Long, BigDecimal> maximumNumbersOfPallets = Maps.newHashMap();
+        Multimap<Long, Long> palletNumberIds = HashMultimap.create(palletNumberIdsByStorageLocation);
+
+        jdbcTemplate.query(query, Collections.singletonMap("storageLocationIds", palletNumberIdsByStorageLocation.keySet()),
+                rs -> {
+                    maximumNumbersOfPallets.put(rs.getLong("id"), rs.getBigDecimal("maximumnumberofpallets"));
+
+                    long palletNumberId = rs.getLong("palletnumber_id");
+
+                    if (!rs.wasNull()) {
+                        palletNumberIds.put(rs.getLong("id"), palletNumberId);
+                    }
+                });
+
+        for (Map.Entry<Long, BigDecimal> maximumNumberOfPallets : maximumNumbersOfPallets.entrySet()) {
+            BigDecimal palletsCount = BigDecimal.valueOf(palletNumberIds.get(maximumNumberOfPallets.getKey()).size());
+
+            if (palletsCount.compareTo(maximumNumberOfPallets.getValue()) > 0) {
+                storageLocationIds.add(maximumNumberOfPallets.getKey());
+            }
+        }
+
+        return storageLocationIds;
+    }
+
+    /**
+     * Recomputes pallet occupancy from resources and delivered products and fixes rows which drifted.
+     *
+     * @return number of fixed rows
+     */
+    @Transactional
+    public int reconcileStorageLocationPallets() {
+        jdbcTemplate.update("LOCK TABLE materialflowresources_storagelocationpallet IN EXCLUSIVE MODE", Collections.emptyMap());
+
+        StringBuilder expected = new StringBuilder();
+        expected.append("WITH pallets AS (SELECT storagelocation_id, palletnumber_id, 1 AS resourcescount, ");
+        expected.append("0 AS deliveredproductscount FROM materialflowresources_resource ");
+        expected.append("WHERE storagelocation_id IS NOT NULL AND palletnumber_id IS NOT NULL ");
+        expected.append("UNION ALL SELECT dp.storagelocation_id, dp.palletnumber_id, 0, 1 ");
+        expected.append("FROM deliveries_deliveredproduct dp JOIN deliveries_delivery d ON d.id = dp.delivery_id ");
+        expected.append("WHERE d.state NOT IN ('06received', '04declined') ");
+        expected.append("AND dp.storagelocation_id IS NOT NULL AND dp.palletnumber_id IS NOT NULL), ");
+        expected.append("expected AS (SELECT storagelocation_id, palletnumber_id, SUM(resourcescount) AS resourcescount, ");
+        expected.append("SUM(deliveredproductscount) AS deliveredproductscount FROM pallets ");
+        expected.append("GROUP BY storagelocation_id, palletnumber_id) ");
+
+        String upsertDifferent = expected
+                + "INSERT INTO materialflowresources_storagelocationpallet AS slp "
+                + "(storagelocation_id, palletnumber_id, resourcescount, deliveredproductscount) "
+                + "SELECT e.storagelocation_id, e.palletnumber_id, e.resourcescount, e.deliveredproductscount FROM expected e "
+                + "ON CONFLICT (storagelocation_id, palletnumber_id) DO UPDATE "
+                + "SET resourcescount = EXCLUDED.resourcescount, deliveredproductscount = EXCLUDED.deliveredproductscount "
+                + "WHERE slp.resourcescount <> EXCLUDED.resourcescount "
+                + "OR slp.deliveredproductscount <> EXCLUDED.deliveredproductscount";
+
+        int reconciled = jdbcTemplate.update(upsertDifferent, Collections.emptyMap());
+
+        String clearMissing = expected + "UPDATE materialflowresources_storagelocationpallet slp "
+                + "SET resourcescount = 0, deliveredproductscount = 0 "
+                + "WHERE (slp.resourcescount <> 0 OR slp.deliveredproductscount <> 0) AND NOT EXISTS (SELECT 1 FROM expected e "
+                + "WHERE e.storagelocation_id = slp.storagelocation_id AND e.palletnumber_id = slp.palletnumber_id)";
+
+        return reconciled + jdbcTemplate.update(clearMissing, Collections.emptyMap());
+    }
+
+}
@@ -0,0 +1,269 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
+import com.qcadoo.mes.materialFlowResources.constants.WarehouseAlgorithm;
+import com.qcadoo.mes.materialFlowResources.exceptions.InvalidResourceException;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchRestrictions;
+
+/**
+ * Resources of one warehouse used while a whole document is processed.
+ *
+ * Candidates for all products of the document are loaded with a single query and then picked in memory, so consecutive
+ * positions see quantities already taken by previous ones. Changed and emptied resources are written once, in
+ * {@link #flush()}.
+ */
+final class WarehouseResources {
+
+    private final DataDefinition resourceDD;
+
+    private final Long warehouseId;
+
+    private final Map<Long, Entity> resourcesById = Maps.newHashMap();
+
+    private final ListMultimap<Long, Entity> resourcesByProduct = ArrayListMultimap.create();
+
+    private final boolean fillResourceIrrespectiveOfConversion;
+
+    private final Set<Long> changedResourceIds = Sets.newLinkedHashSet();
+
+    private final Set<Long> removedResourceIds = Sets.newLinkedHashSet();
+
+    WarehouseResources(final DataDefinition resourceDD, final Entity warehouse, final Collection<Long> productIds,
+            final boolean fillResourceIrrespectiveOfConversion) {
+        this.resourceDD = resourceDD;
+        this.warehouseId = warehouse.getId();
+        this.fillResourceIrrespectiveOfConversion = fillResourceIrrespectiveOfConversion;
+
+        if (!productIds.isEmpty()) {
+            List<Entity> resources = resourceDD.find().add(SearchRestrictions.belongsTo(ResourceFields.LOCATION, warehouse))
+                    .add(SearchRestrictions.in(ResourceFields.PRODUCT + ".id", Lists.newArrayList(productIds)))
+                    .add(SearchRestrictions.gt(ResourceFields.AVAILABLE_QUANTITY, BigDecimal.ZERO)).list().getEntities();
+
+            resources.forEach(this::register);
+        }
+    }
+
+    /**
+     * Returns resource with given id, sharing the instance with candidates returned by
+     * {@link #getResources(Long, Long, BigDecimal, WarehouseAlgorithm)}. Returns null for removed or missing resources.
+     */
+    Entity getResource(final Long resourceId) {
+        if (removedResourceIds.contains(resourceId)) {
+            return null;
+        }
+
+        Entity resource = resourcesById.get(resourceId);
+
+        if (resource == null) {
+            resource = resourceDD.get(resourceId);
+
+            if (resource != null) {
+                register(resource);
+            }
+        }
+
+        return resource;
+    }
+
+    /**
+     * Returns resources of product with positive available quantity, in the order defined by the warehouse algorithm, the same
+     * way the per-position queries used to: resources with expected conversion go first, followed - when resources are filled
+     * irrespective of conversion - by the remaining ones. Within each of these groups resources with given additional code come
+     * before the others.
+     */
+    List<Entity> getResources(final Long productId, final Long additionalCodeId, final BigDecimal expectedConversion,
+            final WarehouseAlgorithm warehouseAlgorithm) {
+        List<Entity> resources = resourcesByProduct.get(productId).stream()
+                .filter(resource -> !removedResourceIds.contains(resource.getId()))
+                .filter(resource -> BigDecimal.ZERO.compareTo(resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY)) < 0)
+                .sorted(comparatorFor(warehouseAlgorithm)).collect(Collectors.toList());
+
+        List<Entity> withExpectedConversion = Lists.newArrayList();
+        List<Entity> withOtherConversion = Lists.newArrayList();
+
+        for (Entity resource : resources) {
+            if (hasConversion(resource, expectedConversion)) {
+                withExpectedConversion.add(resource);
+            } else if (fillResourceIrrespectiveOfConversion) {
+                withOtherConversion.add(resource);
+            }
+        }
+
+        List<Entity> result = additionalCodeFirst(withExpectedConversion, additionalCodeId);
+
+        result.addAll(additionalCodeFirst(withOtherConversion, additionalCodeId));
+
+        return result;
+    }
+
+    /**
+     * Reflects reservation made for a position saved during filling resources, without changing the resource itself.
+     */
+    void reserve(final Entity resource, final BigDecimal quantity) {
+        BigDecimal availableQuantity = resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY);
+
+        resource.setField(ResourceFields.AVAILABLE_QUANTITY, availableQuantity.subtract(quantity));
+    }
+
+    void markAsChanged(final Entity resource) {
+        changedResourceIds.add(resource.getId());
+    }
+
+    void markAsRemoved(final Entity resource) {
+        removedResourceIds.add(resource.getId());
+        changedResourceIds.remove(resource.getId());
+    }
+
+    /**
+     * Saves changed resources and deletes removed ones. Returns pallet numbers of deleted resources, so that they can be
+     * disposed.
+     *
+     * @throws InvalidResourceException
+     *             if any of changed resources doesn't pass validation
+     */
+    List<Entity> flush() {
+        for (Long resourceId : changedResourceIds) {
+            Entity savedResource = resourceDD.save(resourcesById.get(resourceId));
+
+            if (!savedResource.isValid()) {
+                throw new InvalidResourceException(savedResource);
+            }
+        }
+
+        Map<Long, Entity> palletNumbers = Maps.newLinkedHashMap();
+
+        for (Long resourceId : removedResourceIds) {
+            Entity palletNumber = resourcesById.get(resourceId).getBelongsToField(ResourceFields.PALLET_NUMBER);
+
+            if (palletNumber != null) {
+                palletNumbers.putIfAbsent(palletNumber.getId(), palletNumber);
+            }
+        }
+
+        if (!removedResourceIds.isEmpty()) {
+            resourceDD.delete(removedResourceIds.toArray(new Long[removedResourceIds.size()]));
+        }
+
+        changedResourceIds.clear();
+        removedResourceIds.forEach(resourcesById::remove);
+        removedResourceIds.clear();
+
+        return Lists.newArrayList(palletNumbers.values());
+    }
+
+    private void register(final Entity resource) {
+        resourcesById.put(resource.getId(), resource);
+
+        if (warehouseId.equals(getId(resource.getBelongsToField(ResourceFields.LOCATION)))) {
+            resourcesByProduct.put(getId(resource.getBelongsToField(ResourceFields.PRODUCT)), resource);
+        }
+    }
+
+    private static List<Entity> additionalCodeFirst(final List<Entity> resources, final Long additionalCodeId) {
+        if (additionalCodeId == null) {
+            return resources;
+        }
+
+        List<Entity> result = Lists.newArrayList();
+        List<Entity> others = Lists.newArrayList();
+
+        for (Entity resource : resources) {
+            if (additionalCodeId.equals(getId(resource.getBelongsToField(ResourceFields.ADDITIONAL_CODE)))) {
+                result.add(resource);
+            } else {
+                others.add(resource);
+            }
+        }
+
+        result.addAll(others);
+
+        return result;
+    }
+
+    private static boolean hasConversion(final Entity resource, final BigDecimal expectedConversion) {
+        BigDecimal conversion = resource.getDecimalField(ResourceFields.CONVERSION);
+
+        if (conversion == null || expectedConversion == null) {
+            return Objects.equals(conversion, expectedConversion);
+        }
+
+        return conversion.compareTo(expectedConversion) == 0;
+    }
+
+    private static Long getId(final Entity entity) {
+        if (entity == null) {
+            return null;
+        }
+
+        return entity.getId();
+    }
+
+    private static Comparator<Entity> comparatorFor(final WarehouseAlgorithm warehouseAlgorithm) {
+        Comparator<Entity> comparator;
+
+        if (WarehouseAlgorithm.LIFO.equals(warehouseAlgorithm)) {
+            comparator = dateComparator(ResourceFields.TIME, false);
+        } else if (WarehouseAlgorithm.FEFO.equals(warehouseAlgorithm)) {
+            comparator = dateComparator(ResourceFields.EXPIRATION_DATE, true).thenComparing(availableQuantityComparator());
+        } else if (WarehouseAlgorithm.LEFO.equals(warehouseAlgorithm)) {
+            comparator = dateComparator(ResourceFields.EXPIRATION_DATE, false).thenComparing(availableQuantityComparator());
+        } else {
+            comparator = dateComparator(ResourceFields.TIME, true);
+        }
+
+        return comparator.thenComparing(Entity::getId);
+    }
+
+    // same null handling as PostgreSQL ORDER BY: nulls are largest, so last when ascending and first when descending
+    private static Comparator<Entity> dateComparator(final String fieldName, final boolean ascending) {
+        Comparator<Date> dates = Comparator.nullsLast(Comparator.<Date> naturalOrder());
+
+        return Comparator.comparing(resource -> resource.getDateField(fieldName), ascending ? dates : dates.reversed());
+    }
+
+    private static Comparator<Entity> availableQuantityComparator() {
+        return Comparator.comparing(resource -> resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY),
+                Comparator.nullsLast(Comparator.<BigDecimal> naturalOrder()));
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.service;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.materialFlowResources.dto.WarehouseStockSnapshot;
+import com.qcadoo.model.api.Entity;
+
+@Service
+public class WarehouseStockService {
+
+    private static final String L_LOCATION_ID = "locationId";
+
+    private static final String L_PRODUCT_IDS = "productIds";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Returns available quantities of given products in warehouse, read with a single aggregating query.
+     */
+    public WarehouseStockSnapshot getStockSnapshot(final Entity warehouse, final Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return WarehouseStockSnapshot.empty();
+        }
+
+        String query = "SELECT resource.product_id, resource.conversion, resource.additionalcode_id, "
+                + "SUM(resource.availablequantity) AS availablequantity FROM materialflowresources_resource resource "
+                + "WHERE resource.location_id = :locationId AND resource.product_id IN (:productIds) "
+                + "AND resource.availablequantity > 0 "
+                + "GROUP BY resource.product_id, resource.conversion, resource.additionalcode_id";
+
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put(L_LOCATION_ID, warehouse.getId());
+        params.put(L_PRODUCT_IDS, Lists.newArrayList(productIds));
+
+        WarehouseStockSnapshot.Builder builder = WarehouseStockSnapshot.builder();
+
+        jdbcTemplate.query(query, params, rs -> {
+            Long additionalCodeId = rs.getLong("additionalcode_id");
+
+            if (rs.wasNull()) {
+                additionalCodeId = null;
+            }
+
+            builder.add(rs.getLong("product_id"), rs.getBigDecimal("conversion"), additionalCodeId,
+                    rs.getBigDecimal("availablequantity"));
+        });
+
+        return builder.build();
+    }
+
+    /**
+     * Returns available quantities of given products in warehouse in terms of resource stock, that is quantities of resources
+     * decreased by reservations, read from maintained resource stock. Products without stock are left out.
+     */
+    public Map<Long, BigDecimal> getResourceStockAvailableQuantities(final Entity warehouse, final Collection<Long> productIds) {
+        Map<Long, BigDecimal> availableQuantities = Maps.newHashMap();
+
+        if (productIds.isEmpty()) {
+            return availableQuantities;
+        }
+
+        String query = "SELECT resourcestock.product_id, resourcestock.availablequantity "
+                + "FROM materialflowresources_resourcestock resourcestock "
+                + "WHERE resourcestock.location_id = :locationId AND resourcestock.product_id IN (:productIds)";
+
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put(L_LOCATION_ID, warehouse.getId());
+        params.put(L_PRODUCT_IDS, Lists.newArrayList(productIds));
+
+        jdbcTemplate.query(query, params, rs -> {
+            availableQuantities.put(rs.getLong("product_id"), rs.getBigDecimal("availablequantity"));
+        });
+
+        return availableQuantities;
+    }
+
+}
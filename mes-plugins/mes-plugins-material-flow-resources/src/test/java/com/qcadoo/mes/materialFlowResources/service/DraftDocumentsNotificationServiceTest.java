@@ -7,6 +7,7 @@ import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import org.junit.Before;
@@ -20,6 +21,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.security.api.SecurityService;
+import com.qcadoo.tenant.api.MultiTenantService;
 
 @RunWith(MockitoJUnitRunner.class)
 @PrepareForTest(SearchRestrictions.class)
@@ -35,10 +37,14 @@ public class DraftDocumentsNotificationServiceTest {
     @Mock
     private SecurityService securityService;
 
+    @Mock
+    private MultiTenantService multiTenantService;
+
     @Before
     public void init() {
         MockitoAnnotations.initMocks(this);
-        draftDocumentsNotificationService = new DraftDocumentsNotificationService(securityService, dataDefinitionService);
+        draftDocumentsNotificationService = new DraftDocumentsNotificationService(securityService, dataDefinitionService,
+                multiTenantService);
     }
 
     @Test
@@ -106,4 +112,45 @@ public class DraftDocumentsNotificationServiceTest {
         assertTrue(result);
     }
 
+    @Test
+    public void shouldCountDraftDocumentsOnceUntilInvalidated() {
+        // given
+        DraftDocumentsNotificationService spy = spy(draftDocumentsNotificationService);
+        given(securityService.getCurrentUserId()).willReturn(CURRENT_USER_ID);
+        given(securityService.hasCurrentUserRole(ROLE_DOCUMENTS_NOTIFICATION)).willReturn(Boolean.TRUE);
+        doReturn(1).when(spy).countDraftDocumentsForUser(CURRENT_USER_ID);
+
+        // when
+        spy.shouldNotifyCurrentUser();
+        spy.shouldNotifyCurrentUser();
+        spy.invalidate(CURRENT_USER_ID);
+        boolean result = spy.shouldNotifyCurrentUser();
+
+        // then
+        verify(spy, times(2)).countDraftDocumentsForUser(CURRENT_USER_ID);
+        assertTrue(result);
+    }
+
+    @Test
+    public void shouldCountDraftDocumentsPerTenant() {
+        // given
+        DraftDocumentsNotificationService spy = spy(draftDocumentsNotificationService);
+        given(securityService.getCurrentUserId()).willReturn(CURRENT_USER_ID);
+        given(securityService.hasCurrentUserRole(ROLE_DOCUMENTS_NOTIFICATION)).willReturn(Boolean.TRUE);
+        doReturn(1).when(spy).countDraftDocumentsForUser(CURRENT_USER_ID);
+
+        // when
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        spy.shouldNotifyCurrentUser();
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+        spy.shouldNotifyCurrentUser();
+        spy.invalidateAll();
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        boolean result = spy.shouldNotifyCurrentUser();
+
+        // then
+        verify(spy, times(2)).countDraftDocumentsForUser(CURRENT_USER_ID);
+        assertTrue(result);
+    }
+
 }
@@ -0,0 +1,207 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.materialFlowResources.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+public class StorageLocationPalletsServiceTest {
+
+    private static final Long L_STORAGE_LOCATION_ID = 11L;
+
+    private static final Long L_PALLET_NUMBER_ID = 12L;
+
+    private static final Long L_DELIVERED_PRODUCT_ID = 13L;
+
+    private StorageLocationPalletsService storageLocationPalletsService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        storageLocationPalletsService = new StorageLocationPalletsService();
+
+        ReflectionTestUtils.setField(storageLocationPalletsService, "jdbcTemplate", jdbcTemplate);
+
+        given(jdbcTemplate.queryForObject(contains("materialflowresources_storagelocationpallet"), anyMap(), eq(Long.class)))
+                .willReturn(3L);
+    }
+
+    @Test
+    public final void shouldCountResourcePalletsOfAllPalletsWhenNoneIsExcluded() {
+        // when
+        long palletsCount = storageLocationPalletsService.countResourcePallets(L_STORAGE_LOCATION_ID, null);
+
+        // then
+        assertEquals(3L, palletsCount);
+
+        Map<String, Object> params = captureParams();
+
+        assertEquals(L_STORAGE_LOCATION_ID, params.get("storageLocationId"));
+        assertEquals(-1L, params.get("palletNumberId"));
+    }
+
+    @Test
+    public final void shouldLeaveOutPersistedStateOfEditedDeliveredProduct() {
+        // when
+        long palletsCount = storageLocationPalletsService.countOccupyingPallets(L_STORAGE_LOCATION_ID, L_PALLET_NUMBER_ID,
+                L_DELIVERED_PRODUCT_ID);
+
+        // then
+        assertEquals(3L, palletsCount);
+
+        Map<String, Object> params = captureParams();
+
+        assertEquals(L_STORAGE_LOCATION_ID, params.get("storageLocationId"));
+        assertEquals(L_PALLET_NUMBER_ID, params.get("palletNumberId"));
+        assertEquals(L_DELIVERED_PRODUCT_ID, params.get("deliveredProductId"));
+    }
+
+    @Test
+    public final void shouldCountOccupyingPalletsOfNewDeliveredProduct() {
+        // when
+        storageLocationPalletsService.countOccupyingPallets(L_STORAGE_LOCATION_ID, L_PALLET_NUMBER_ID, null);
+
+        // then
+        assertEquals(-1L, captureParams().get("deliveredProductId"));
+    }
+
+    @Test
+    public final void shouldLockOccupancyBeforeReconcilingAndReturnFixedRows() {
+        // given
+        given(jdbcTemplate.update(contains("ON CONFLICT"), anyMap())).willReturn(2);
+        given(jdbcTemplate.update(contains("SET resourcescount = 0"), anyMap())).willReturn(1);
+
+        // when
+        int reconciled = storageLocationPalletsService.reconcileStorageLocationPallets();
+
+        // then
+        assertEquals(3, reconciled);
+
+        InOrder inOrder = inOrder(jdbcTemplate);
+
+        inOrder.verify(jdbcTemplate).update(contains("LOCK TABLE materialflowresources_storagelocationpallet"), anyMap());
+        inOrder.verify(jdbcTemplate).update(contains("ON CONFLICT"), anyMap());
+        inOrder.verify(jdbcTemplate).update(contains("SET resourcescount = 0"), anyMap());
+    }
+
+    @Test
+    public final void shouldFindStorageLocationsOverCapacityWithOneLookup() throws Exception {
+        // given
+        Long fullStorageLocationId = 21L;
+        Long freeStorageLocationId = 22L;
+
+        Multimap<Long, Long> palletNumberIdsByStorageLocation = HashMultimap.create();
+
+        palletNumberIdsByStorageLocation.put(fullStorageLocationId, 31L);
+        palletNumberIdsByStorageLocation.put(freeStorageLocationId, 32L);
+
+        // full storage location holds one other pallet, free one holds the same pallet which is to be placed
+        mockOccupiedPallets(new Object[] { fullStorageLocationId, BigDecimal.ONE, 33L },
+                new Object[] { freeStorageLocationId, BigDecimal.ONE, 32L });
+
+        // when
+        Set<Long> storageLocationIds = storageLocationPalletsService
+                .getStorageLocationsOverCapacity(palletNumberIdsByStorageLocation);
+
+        // then
+        assertEquals(Sets.newHashSet(fullStorageLocationId), storageLocationIds);
+        verify(jdbcTemplate).query(contains("materialflowresources_storagelocationpallet"),
+                eq(Collections.singletonMap("storageLocationIds", palletNumberIdsByStorageLocation.keySet())),
+                any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public final void shouldNotQueryCapacityWithoutPallets() {
+        // when
+        Set<Long> storageLocationIds = storageLocationPalletsService.getStorageLocationsOverCapacity(HashMultimap.create());
+
+        // then
+        assertTrue(storageLocationIds.isEmpty());
+        verifyZeroInteractions(jdbcTemplate);
+    }
+
+    private void mockOccupiedPallets(final Object[]... rows) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler rowCallbackHandler = (RowCallbackHandler) invocation.getArguments()[2];
+
+            for (Object[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+
+                given(rs.getLong("id")).willReturn((Long) row[0]);
+                given(rs.getBigDecimal("maximumnumberofpallets")).willReturn((BigDecimal) row[1]);
+                given(rs.getLong("palletnumber_id")).willReturn((Long) row[2]);
+
+                rowCallbackHandler.processRow(rs);
+            }
+
+            return null;
+        }).when(jdbcTemplate).query(contains("materialflowresources_storagelocationpallet"), anyMap(),
+                any(RowCallbackHandler.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> captureParams() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        verify(jdbcTemplate).queryForObject(contains("materialflowresources_storagelocationpallet"), paramsCaptor.capture(),
+                eq(Long.class));
+
+        return paramsCaptor.getValue();
+    }
+
+}
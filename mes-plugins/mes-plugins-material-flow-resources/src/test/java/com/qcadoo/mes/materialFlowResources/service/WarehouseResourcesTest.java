@@ -0,0 +1,203 @@
+package com.qcadoo.mes.materialFlowResources.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.materialFlowResources.constants.ResourceFields;
+import com.qcadoo.mes.materialFlowResources.constants.WarehouseAlgorithm;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
+
+public class WarehouseResourcesTest {
+
+    private static final Long L_WAREHOUSE_ID = 1L;
+
+    private static final Long L_PRODUCT_ID = 2L;
+
+    private static final Long L_ADDITIONAL_CODE_ID = 3L;
+
+    @Mock
+    private DataDefinition resourceDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Mock
+    private Entity warehouse, product, additionalCode;
+
+    private List<Entity> resources;
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        given(warehouse.getId()).willReturn(L_WAREHOUSE_ID);
+        given(warehouse.getDataDefinition()).willReturn(mock(DataDefinition.class));
+        given(product.getId()).willReturn(L_PRODUCT_ID);
+        given(additionalCode.getId()).willReturn(L_ADDITIONAL_CODE_ID);
+
+        resources = Lists.newArrayList();
+
+        given(resourceDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.add(any(SearchCriterion.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+        given(searchResult.getEntities()).willReturn(resources);
+    }
+
+    @Test
+    public void shouldOrderResourcesByTimeAndPutAdditionalCodeFirst() {
+        // given
+        Entity oldest = mockResource(10L, "10", "1", date(1), null);
+        Entity newest = mockResource(11L, "10", "1", date(3), null);
+        Entity withAdditionalCode = mockResource(12L, "10", "1", date(2), null);
+
+        given(withAdditionalCode.getBelongsToField(ResourceFields.ADDITIONAL_CODE)).willReturn(additionalCode);
+
+        WarehouseResources warehouseResources = createWarehouseResources(false);
+
+        // when
+        List<Entity> fifo = warehouseResources.getResources(L_PRODUCT_ID, null, BigDecimal.ONE, WarehouseAlgorithm.FIFO);
+        List<Entity> lifo = warehouseResources.getResources(L_PRODUCT_ID, null, BigDecimal.ONE, WarehouseAlgorithm.LIFO);
+        List<Entity> withCode = warehouseResources.getResources(L_PRODUCT_ID, L_ADDITIONAL_CODE_ID, BigDecimal.ONE,
+                WarehouseAlgorithm.FIFO);
+
+        // then
+        assertEquals(Lists.newArrayList(oldest, withAdditionalCode, newest), fifo);
+        assertEquals(Lists.newArrayList(newest, withAdditionalCode, oldest), lifo);
+        assertEquals(Lists.newArrayList(withAdditionalCode, oldest, newest), withCode);
+    }
+
+    @Test
+    public void shouldOrderResourcesByExpirationDateAndAvailableQuantity() {
+        // given
+        Entity withoutExpirationDate = mockResource(10L, "10", "1", date(1), null);
+        Entity bigger = mockResource(11L, "10", "1", date(1), date(5));
+        Entity smaller = mockResource(12L, "5", "1", date(1), date(5));
+        Entity expiringFirst = mockResource(13L, "10", "1", date(1), date(4));
+
+        WarehouseResources warehouseResources = createWarehouseResources(false);
+
+        // when
+        List<Entity> fefo = warehouseResources.getResources(L_PRODUCT_ID, null, BigDecimal.ONE, WarehouseAlgorithm.FEFO);
+        List<Entity> lefo = warehouseResources.getResources(L_PRODUCT_ID, null, BigDecimal.ONE, WarehouseAlgorithm.LEFO);
+
+        // then
+        assertEquals(Lists.newArrayList(expiringFirst, smaller, bigger, withoutExpirationDate), fefo);
+        assertEquals(Lists.newArrayList(withoutExpirationDate, smaller, bigger, expiringFirst), lefo);
+    }
+
+    @Test
+    public void shouldSkipOtherConversionsUnlessFilledIrrespectiveOfConversion() {
+        // given
+        Entity otherConversion = mockResource(10L, "10", "2", date(1), null);
+        Entity expectedConversion = mockResource(11L, "10", "1.000", date(2), null);
+
+        // when
+        List<Entity> strict = createWarehouseResources(false).getResources(L_PRODUCT_ID, null, BigDecimal.ONE,
+                WarehouseAlgorithm.FIFO);
+        List<Entity> irrespective = createWarehouseResources(true).getResources(L_PRODUCT_ID, null, BigDecimal.ONE,
+                WarehouseAlgorithm.FIFO);
+
+        // then
+        assertEquals(Lists.newArrayList(expectedConversion), strict);
+        assertEquals(Lists.newArrayList(expectedConversion, otherConversion), irrespective);
+    }
+
+    @Test
+    public void shouldSkipTakenAndRemovedResources() {
+        // given
+        Entity taken = mockResource(10L, "0", "1", date(1), null);
+        Entity removed = mockResource(11L, "10", "1", date(2), null);
+        Entity available = mockResource(12L, "10", "1", date(3), null);
+
+        WarehouseResources warehouseResources = createWarehouseResources(false);
+
+        // when
+        warehouseResources.markAsRemoved(removed);
+
+        List<Entity> result = warehouseResources.getResources(L_PRODUCT_ID, null, BigDecimal.ONE, WarehouseAlgorithm.FIFO);
+
+        // then
+        assertEquals(Lists.newArrayList(available), result);
+        assertNull(warehouseResources.getResource(removed.getId()));
+        assertEquals(taken, warehouseResources.getResource(taken.getId()));
+    }
+
+    @Test
+    public void shouldSaveChangedAndDeleteRemovedResourcesOnFlush() {
+        // given
+        Entity changed = mockResource(10L, "10", "1", date(1), null);
+        Entity removed = mockResource(11L, "10", "1", date(2), null);
+        Entity palletNumber = mock(Entity.class);
+
+        given(palletNumber.getId()).willReturn(100L);
+        given(removed.getBelongsToField(ResourceFields.PALLET_NUMBER)).willReturn(palletNumber);
+        given(changed.isValid()).willReturn(true);
+        given(resourceDD.save(changed)).willReturn(changed);
+
+        WarehouseResources warehouseResources = createWarehouseResources(false);
+
+        warehouseResources.markAsChanged(changed);
+        warehouseResources.markAsChanged(removed);
+        warehouseResources.markAsRemoved(removed);
+
+        // when
+        List<Entity> palletNumbers = warehouseResources.flush();
+
+        // then
+        verify(resourceDD).save(changed);
+        verify(resourceDD, never()).save(removed);
+        verify(resourceDD).delete(11L);
+        assertEquals(Lists.newArrayList(palletNumber), palletNumbers);
+        assertTrue(warehouseResources.flush().isEmpty());
+    }
+
+    private WarehouseResources createWarehouseResources(final boolean fillResourceIrrespectiveOfConversion) {
+        return new WarehouseResources(resourceDD, warehouse, Sets.newHashSet(L_PRODUCT_ID), fillResourceIrrespectiveOfConversion);
+    }
+
+    private Entity mockResource(final Long id, final String availableQuantity, final String conversion, final Date time,
+            final Date expirationDate) {
+        Entity resource = mock(Entity.class);
+
+        given(resource.getId()).willReturn(id);
+        given(resource.getBelongsToField(ResourceFields.LOCATION)).willReturn(warehouse);
+        given(resource.getBelongsToField(ResourceFields.PRODUCT)).willReturn(product);
+        given(resource.getDecimalField(ResourceFields.AVAILABLE_QUANTITY)).willReturn(new BigDecimal(availableQuantity));
+        given(resource.getDecimalField(ResourceFields.CONVERSION)).willReturn(new BigDecimal(conversion));
+        given(resource.getDateField(ResourceFields.TIME)).willReturn(time);
+        given(resource.getDateField(ResourceFields.EXPIRATION_DATE)).willReturn(expirationDate);
+
+        resources.add(resource);
+
+        return resource;
+    }
+
+    private Date date(final int day) {
+        return new Date(day * 86400000L);
+    }
+
+}
@@ -47,16 +47,15 @@ import com.qcadoo.mes.operationTimeCalculations.dto.OperationTimesContainer;
 import com.qcadoo.mes.technologies.ProductQuantitiesService;
 import com.qcadoo.mes.technologies.ProductionLinesService;
 import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
-import com.qcadoo.mes.technologies.constants.TechnologyFields;
-import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
 import com.qcadoo.mes.technologies.dto.ProductQuantitiesHolder;
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
+import com.qcadoo.mes.technologies.tree.TechnologyStructureService;
 import com.qcadoo.model.api.BigDecimalUtils;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.EntityTree;
 import com.qcadoo.model.api.EntityTreeNode;
-import com.qcadoo.model.api.IntegerUtils;
 import com.qcadoo.model.api.NumberService;
 
 @Service
@@ -132,6 +131,9 @@ public class OperationsCostCalculationServiceImpl implements OperationsCostCalcu
     @Autowired
     private ParameterService parameterService;
 
+    @Autowired
+    private TechnologyStructureService technologyStructureService;
+
     @Override
     public void calculateOperationsCost(final Entity costCalculationOrProductionBalance, boolean hourlyCostFromOperation) {
         checkArgument(costCalculationOrProductionBalance != null, "entity is null");
@@ -374,27 +376,24 @@ public class OperationsCostCalculationServiceImpl implements OperationsCostCalcu
     }
 
     private Map<Long, Integer> getWorkstationsFromTechnology(final Entity technology, final Entity productionLine) {
-        Map<Long, Integer> workstations = Maps.newHashMap();
+        TechnologyStructure technologyStructure = technologyStructureService.getTechnologyStructure(technology);
         if (parameterService.getParameter().getBooleanField("workstationsQuantityFromProductionLine")) {
-            for (Entity operComp : technology.getHasManyField(TechnologyFields.OPERATION_COMPONENTS)) {
-                workstations.put(operComp.getId(), productionLinesService.getWorkstationTypesCount(operComp, productionLine));
-            }
-        } else {
-            for (Entity operComp : technology.getHasManyField(TechnologyFields.OPERATION_COMPONENTS)) {
-                workstations.put(operComp.getId(), IntegerUtils.convertNullToZero(operComp
-                        .getIntegerField(TechnologyOperationComponentFields.QUANTITY_OF_WORKSTATIONS)));
-            }
+            return productionLinesService.getWorkstationTypesCounts(technologyStructure, productionLine);
         }
-        return workstations;
+        return getQuantitiesOfWorkstations(technologyStructure);
     }
 
     private Map<Long, Integer> getWorkstationsFromOrder(final Entity order) {
+        return getQuantitiesOfWorkstations(technologyStructureService.getTechnologyStructure(order
+                .getBelongsToField(L_TECHNOLOGY)));
+    }
+
+    private Map<Long, Integer> getQuantitiesOfWorkstations(final TechnologyStructure technologyStructure) {
         Map<Long, Integer> workstations = Maps.newHashMap();
 
-        for (Entity technologyOperationComponent : order.getBelongsToField(L_TECHNOLOGY).getHasManyField(
-                TechnologyFields.OPERATION_COMPONENTS)) {
-            workstations.put(technologyOperationComponent.getId(), IntegerUtils.convertNullToZero(technologyOperationComponent
-                    .getIntegerField(TechnologyOperationComponentFields.QUANTITY_OF_WORKSTATIONS)));
+        for (int operation = 0; operation < technologyStructure.getOperationsCount(); operation++) {
+            workstations.put(technologyStructure.getOperationId(operation),
+                    technologyStructure.getQuantityOfWorkstations(operation));
         }
 
         return workstations;
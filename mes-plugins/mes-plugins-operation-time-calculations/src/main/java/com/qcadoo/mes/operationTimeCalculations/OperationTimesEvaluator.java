@@ -0,0 +1,177 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.operationTimeCalculations;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
+import com.qcadoo.model.api.BigDecimalUtils;
+
+/**
+ * Evaluates times of all operations of technology structure in long arithmetic.
+ * 
+ * Cycles and work times are longs scaled by {@link #SCALE}, i.e. with 5 decimal places like quantities and utilizations are
+ * stored, norms and durations are whole seconds. Arrays are indexed by operation index of the structure, so evaluation of large
+ * technologies doesn't create BigDecimal or boxed values per operation. Runs which can't be scaled without rounding, like ones
+ * divided by quantity of output product, are evaluated in BigDecimal with given math context, the same way as single operation
+ * is, so results don't differ from the BigDecimal evaluation. Overflow throws ArithmeticException, callers are expected to fall
+ * back to BigDecimal evaluation then.
+ */
+public final class OperationTimesEvaluator {
+
+    public static final int SCALE_DIGITS = 5;
+
+    public static final long SCALE = 100000L;
+
+    private OperationTimesEvaluator() {
+    }
+
+    public static long toScaled(final BigDecimal value) {
+        if (value == null) {
+            return 0L;
+        }
+
+        return value.movePointRight(SCALE_DIGITS).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    private static boolean isScalable(final BigDecimal value) {
+        return (value.scale() <= SCALE_DIGITS) || (value.stripTrailingZeros().scale() <= SCALE_DIGITS);
+    }
+
+    private static BigDecimal getRuns(final TechnologyStructure technologyStructure, final Map<Long, BigDecimal> operationRuns,
+            final int operation) {
+        return BigDecimalUtils.convertNullToZero(operationRuns.get(technologyStructure.getOperationId(operation)));
+    }
+
+    /**
+     * Evaluates durations of operations in seconds, the same way as
+     * {@link OrderRealizationTimeService#evaluateOperationDurationOutOfCycles} does for single operation. Operations missing in
+     * given runs have zero cycles.
+     */
+    public static long[] evaluateDurations(final TechnologyStructure technologyStructure, final Map<Long, BigDecimal> operationRuns,
+            final int[] workstations, final boolean maxForWorkstation, final boolean includeTpz,
+            final boolean includeAdditionalTime, final MathContext mathContext) {
+        long[] durations = new long[technologyStructure.getOperationsCount()];
+
+        for (int operation = 0; operation < durations.length; operation++) {
+            BigDecimal runs = getRuns(technologyStructure, operationRuns, operation);
+            long workstationsCount = workstations[operation];
+            long tj = technologyStructure.getTj(operation);
+            boolean tjDivisible = technologyStructure.isTjDivisible(operation);
+            long scaledCycles = isScalable(runs) ? toScaled(runs) : -1L;
+            long duration;
+
+            if (scaledCycles < 0L || (maxForWorkstation && tjDivisible && ((scaledCycles % workstationsCount) != 0L))) {
+                duration = evaluateDuration(runs, workstationsCount, tj, tjDivisible, maxForWorkstation, mathContext);
+            } else if (!maxForWorkstation) {
+                duration = Math.multiplyExact(scaledCycles, tj) / SCALE;
+            } else if (tjDivisible) {
+                duration = Math.multiplyExact(scaledCycles / workstationsCount, tj) / SCALE;
+            } else {
+                long scaledWorkstations = Math.multiplyExact(workstationsCount, SCALE);
+
+                duration = Math.multiplyExact((scaledCycles + scaledWorkstations - 1) / scaledWorkstations, tj);
+            }
+
+            if (includeTpz) {
+                duration = Math.addExact(duration,
+                        getTimeForWorkstations(technologyStructure.getTpz(operation), workstationsCount, maxForWorkstation));
+            }
+
+            if (includeAdditionalTime) {
+                duration = Math.addExact(duration, getTimeForWorkstations(technologyStructure.getTimeNextOperation(operation),
+                        workstationsCount, maxForWorkstation));
+            }
+
+            durations[operation] = duration;
+        }
+
+        return durations;
+    }
+
+    private static long evaluateDuration(final BigDecimal runs, final long workstationsCount, final long tj,
+            final boolean tjDivisible, final boolean maxForWorkstation, final MathContext mathContext) {
+        BigDecimal cycles = runs;
+
+        if (maxForWorkstation) {
+            cycles = runs.divide(BigDecimal.valueOf(workstationsCount), mathContext);
+
+            if (!tjDivisible) {
+                cycles = cycles.setScale(0, RoundingMode.CEILING);
+            }
+        }
+
+        return cycles.multiply(BigDecimal.valueOf(tj), mathContext).longValue();
+    }
+
+    private static long getTimeForWorkstations(final long time, final long workstationsCount, final boolean maxForWorkstation) {
+        return maxForWorkstation ? time : Math.multiplyExact(time, workstationsCount);
+    }
+
+    /**
+     * Evaluates scaled work times of operations, the same way as
+     * {@link OperationWorkTimeService#estimateAbstractOperationWorkTime} does for single operation.
+     */
+    public static long[] evaluateScaledWorkTimes(final TechnologyStructure technologyStructure,
+            final Map<Long, BigDecimal> operationRuns, final boolean includeTpz, final boolean includeAdditionalTime,
+            final MathContext mathContext) {
+        long[] workTimes = new long[technologyStructure.getOperationsCount()];
+
+        for (int operation = 0; operation < workTimes.length; operation++) {
+            BigDecimal runs = getRuns(technologyStructure, operationRuns, operation);
+            long tj = technologyStructure.getTj(operation);
+            long workTime;
+
+            if (isScalable(runs)) {
+                workTime = Math.multiplyExact(toScaled(runs), tj);
+            } else {
+                workTime = toScaled(runs.multiply(BigDecimal.valueOf(tj), mathContext));
+            }
+
+            if (includeTpz) {
+                workTime = Math.addExact(workTime, Math.multiplyExact((long) technologyStructure.getTpz(operation), SCALE));
+            }
+
+            if (includeAdditionalTime) {
+                workTime = Math.addExact(workTime,
+                        Math.multiplyExact((long) technologyStructure.getTimeNextOperation(operation), SCALE));
+            }
+
+            workTimes[operation] = workTime;
+        }
+
+        return workTimes;
+    }
+
+    /**
+     * Returns whole seconds of given scaled work time multiplied by given utilization.
+     */
+    public static long utilize(final long scaledWorkTime, final BigDecimal utilization) {
+        return Math.multiplyExact(scaledWorkTime, toScaled(utilization)) / (SCALE * SCALE);
+    }
+
+}
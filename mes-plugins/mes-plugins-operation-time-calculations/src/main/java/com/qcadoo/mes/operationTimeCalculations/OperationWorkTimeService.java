@@ -23,10 +23,12 @@
  */
 package com.qcadoo.mes.operationTimeCalculations;
 
+import com.qcadoo.mes.operationTimeCalculations.dto.OperationEffectiveDates;
 import com.qcadoo.mes.operationTimeCalculations.dto.OperationTimesContainer;
 import com.qcadoo.model.api.Entity;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -66,6 +68,15 @@ public interface OperationWorkTimeService {
 
     Entity createOrGetOperCompTimeCalculation(Entity order, Entity technologyOperationComponent);
 
+    /**
+     * Reads effective dates of all operations of given orders in one query, without creating missing time calculations.
+     *
+     * @param orderIds
+     *            ids of orders
+     * @return effective dates by technology operation component id, grouped by order id
+     */
+    Map<Long, Map<Long, OperationEffectiveDates>> getOperationsEffectiveDates(final Collection<Long> orderIds);
+
     OperationWorkTime estimateTotalWorkTime(final List<Entity> operationComponents, final Map<Long, BigDecimal> operationRuns,
             final boolean includeTpz, final boolean includeAdditionalTime, final Entity productionLine, final boolean saved);
 
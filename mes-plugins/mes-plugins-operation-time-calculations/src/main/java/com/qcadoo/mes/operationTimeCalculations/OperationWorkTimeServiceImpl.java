@@ -23,12 +23,16 @@
  */
 package com.qcadoo.mes.operationTimeCalculations;
 
+import com.google.common.collect.Maps;
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.operationTimeCalculations.dto.OperationEffectiveDates;
 import com.qcadoo.mes.operationTimeCalculations.dto.OperationTimesContainer;
 import com.qcadoo.mes.technologies.ProductionLinesService;
 import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
 import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
+import com.qcadoo.mes.technologies.tree.TechnologyStructureService;
 import com.qcadoo.mes.timeNormsForOperations.constants.OperCompTimeCalculationsFields;
 import com.qcadoo.mes.timeNormsForOperations.constants.TimeNormsConstants;
 import com.qcadoo.model.api.BigDecimalUtils;
@@ -37,10 +41,13 @@ import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,19 +72,29 @@ public class OperationWorkTimeServiceImpl implements OperationWorkTimeService {
     @Autowired
     private ParameterService parameterService;
 
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TechnologyStructureService technologyStructureService;
+
     @Override
     public BigDecimal estimateAbstractOperationWorkTime(final Entity operationComponent, final BigDecimal neededNumberOfCycles,
             final boolean includeTpz, final boolean includeAdditionalTime, final Integer workstations) {
+        return estimateAbstractOperationWorkTime(getValueOfIntFiled(operationComponent, "tj"),
+                getValueOfIntFiled(operationComponent, "tpz"), getValueOfIntFiled(operationComponent, "timeNextOperation"),
+                neededNumberOfCycles, includeTpz, includeAdditionalTime);
+    }
+
+    private BigDecimal estimateAbstractOperationWorkTime(final int tj, final int tpz, final int additionalTime,
+            final BigDecimal neededNumberOfCycles, final boolean includeTpz, final boolean includeAdditionalTime) {
         MathContext mc = numberService.getMathContext();
-        BigDecimal tj = BigDecimal.valueOf(getValueOfIntFiled(operationComponent, "tj"));
-        BigDecimal abstractOperationWorkTime = tj.multiply(neededNumberOfCycles, mc);
+        BigDecimal abstractOperationWorkTime = BigDecimal.valueOf(tj).multiply(neededNumberOfCycles, mc);
         if (includeTpz) {
-            BigDecimal tpz = new BigDecimal(getValueOfIntFiled(operationComponent, "tpz"));
-            abstractOperationWorkTime = abstractOperationWorkTime.add(tpz, mc);
+            abstractOperationWorkTime = abstractOperationWorkTime.add(BigDecimal.valueOf(tpz), mc);
         }
         if (includeAdditionalTime) {
-            BigDecimal additionalTime = new BigDecimal(getValueOfIntFiled(operationComponent, "timeNextOperation"));
-            abstractOperationWorkTime = abstractOperationWorkTime.add(additionalTime, mc);
+            abstractOperationWorkTime = abstractOperationWorkTime.add(BigDecimal.valueOf(additionalTime), mc);
         }
         return numberService.setScaleWithDefaultMathContext(abstractOperationWorkTime);
     }
@@ -122,7 +139,6 @@ public class OperationWorkTimeServiceImpl implements OperationWorkTimeService {
     private OperationWorkTime estimateOperationWorkTime(final Entity order, final Entity operationComponent,
             final BigDecimal neededNumberOfCycles, final boolean includeTpz, final boolean includeAdditionalTime,
             final Integer workstations, final boolean saved) {
-        MathContext mc = numberService.getMathContext();
         BigDecimal laborUtilization = BigDecimalUtils.convertNullToZero(getValueOfDecimalFiled(operationComponent,
                 "laborUtilization"));
         BigDecimal machineUtilization = BigDecimalUtils.convertNullToZero(getValueOfDecimalFiled(operationComponent,
@@ -131,21 +147,27 @@ public class OperationWorkTimeServiceImpl implements OperationWorkTimeService {
         BigDecimal abstractOperationWorkTime = estimateAbstractOperationWorkTime(operationComponent, neededNumberOfCycles,
                 includeTpz, includeAdditionalTime, workstations);
 
-        Integer laborWorkTime = abstractOperationWorkTime.multiply(laborUtilization, mc).intValue();
-        Integer machineWorkTime = abstractOperationWorkTime.multiply(machineUtilization, mc).intValue();
-        Integer duration = abstractOperationWorkTime.intValue();
-        OperationWorkTime operationWorkTime = new OperationWorkTime();
-        operationWorkTime.setDuration(duration);
-        operationWorkTime.setLaborWorkTime(laborWorkTime);
-        operationWorkTime.setMachineWorkTime(machineWorkTime);
+        OperationWorkTime operationWorkTime = createOperationWorkTime(abstractOperationWorkTime, laborUtilization,
+                machineUtilization);
 
         if (saved) {
-            savedWorkTime(order, operationComponent, machineWorkTime, laborWorkTime, duration);
+            savedWorkTime(order, operationComponent, operationWorkTime.getMachineWorkTime(),
+                    operationWorkTime.getLaborWorkTime(), operationWorkTime.getDuration());
         }
         return operationWorkTime;
 
     }
 
+    private OperationWorkTime createOperationWorkTime(final BigDecimal abstractOperationWorkTime,
+            final BigDecimal laborUtilization, final BigDecimal machineUtilization) {
+        MathContext mc = numberService.getMathContext();
+        OperationWorkTime operationWorkTime = new OperationWorkTime();
+        operationWorkTime.setDuration(abstractOperationWorkTime.intValue());
+        operationWorkTime.setLaborWorkTime(abstractOperationWorkTime.multiply(laborUtilization, mc).intValue());
+        operationWorkTime.setMachineWorkTime(abstractOperationWorkTime.multiply(machineUtilization, mc).intValue());
+        return operationWorkTime;
+    }
+
     @Override
     public Map<Entity, OperationWorkTime> estimateOperationsWorkTime(final List<Entity> operationComponents,
             final Map<Entity, BigDecimal> operationRuns, final boolean includeTpz, final boolean includeAdditionalTime,
@@ -296,6 +318,30 @@ public class OperationWorkTimeServiceImpl implements OperationWorkTimeService {
         }
     }
 
+    @Override
+    public Map<Long, Map<Long, OperationEffectiveDates>> getOperationsEffectiveDates(final Collection<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        String query = "SELECT otc.order_id, octc.technologyoperationcomponent_id, octc.effectivedatefrom, octc.effectivedateto "
+                + "FROM productionscheduling_opercomptimecalculation octc "
+                + "JOIN productionscheduling_ordertimecalculation otc ON otc.id = octc.ordertimecalculation_id "
+                + "WHERE otc.order_id IN (:orderIds) AND octc.technologyoperationcomponent_id IS NOT NULL";
+
+        Map<Long, Map<Long, OperationEffectiveDates>> effectiveDates = Maps.newHashMap();
+
+        jdbcTemplate.query(query, Collections.singletonMap("orderIds", orderIds), rs -> {
+            Long technologyOperationComponentId = rs.getLong("technologyoperationcomponent_id");
+
+            effectiveDates.computeIfAbsent(rs.getLong("order_id"), orderId -> Maps.newHashMap()).put(
+                    technologyOperationComponentId, new OperationEffectiveDates(technologyOperationComponentId,
+                            rs.getTimestamp("effectivedatefrom"), rs.getTimestamp("effectivedateto")));
+        });
+
+        return effectiveDates;
+    }
+
     @Override
     public OperationWorkTime estimateTotalWorkTime(final List<Entity> operationComponents,
             final Map<Long, BigDecimal> operationRuns, final boolean includeTpz, final boolean includeAdditionalTime,
@@ -319,9 +365,90 @@ public class OperationWorkTimeServiceImpl implements OperationWorkTimeService {
     public OperationWorkTime estimateTotalWorkTimeForTechnology(final Entity technology,
             final Map<Long, BigDecimal> operationRuns, final boolean includeTpz, final boolean includeAdditionalTime,
             final Entity productionLine, final boolean saved) {
-        List<Entity> operationComponents = technology.getHasManyField(TechnologyFields.OPERATION_COMPONENTS);
-        Map<Long, Integer> workstations = getWorkstationsMapFromTechnology(technology, productionLine);
-        return estimateTotalWorkTime(operationComponents, operationRuns, includeTpz, includeAdditionalTime, workstations, saved);
+        if (technology.getId() == null) {
+            List<Entity> operationComponents = technology.getHasManyField(TechnologyFields.OPERATION_COMPONENTS);
+            Map<Long, Integer> workstations = getWorkstationsMapFromTechnology(technology, productionLine);
+            return estimateTotalWorkTime(operationComponents, operationRuns, includeTpz, includeAdditionalTime, workstations,
+                    saved);
+        }
+
+        TechnologyStructure technologyStructure = technologyStructureService.getTechnologyStructure(technology);
+        Map<Long, Entity> operationComponents = Maps.newHashMap();
+
+        if (saved) {
+            for (Entity operationComponent : technology.getHasManyField(TechnologyFields.OPERATION_COMPONENTS)) {
+                operationComponents.put(operationComponent.getId(), operationComponent);
+            }
+        }
+
+        int operationsCount = technologyStructure.getOperationsCount();
+        long[] durations = new long[operationsCount];
+        long[] laborWorkTimes = new long[operationsCount];
+        long[] machineWorkTimes = new long[operationsCount];
+
+        try {
+            evaluateWorkTimes(technologyStructure, operationRuns, includeTpz, includeAdditionalTime, durations, laborWorkTimes,
+                    machineWorkTimes);
+        } catch (ArithmeticException e) {
+            estimateWorkTimes(technologyStructure, operationRuns, includeTpz, includeAdditionalTime, durations, laborWorkTimes,
+                    machineWorkTimes);
+        }
+
+        long totalLaborWorkTime = 0L;
+        long totalMachineWorkTime = 0L;
+        long duration = 0L;
+
+        for (int operation = 0; operation < operationsCount; operation++) {
+            if (saved) {
+                savedWorkTime(null, operationComponents.get(technologyStructure.getOperationId(operation)),
+                        Math.toIntExact(machineWorkTimes[operation]), Math.toIntExact(laborWorkTimes[operation]),
+                        Math.toIntExact(durations[operation]));
+            }
+
+            totalLaborWorkTime += laborWorkTimes[operation];
+            totalMachineWorkTime += machineWorkTimes[operation];
+            duration += durations[operation];
+        }
+
+        OperationWorkTime totalWorkTime = new OperationWorkTime();
+
+        totalWorkTime.setLaborWorkTime(Math.toIntExact(totalLaborWorkTime));
+        totalWorkTime.setMachineWorkTime(Math.toIntExact(totalMachineWorkTime));
+        totalWorkTime.setDuration(Math.toIntExact(duration));
+
+        return totalWorkTime;
+    }
+
+    private void evaluateWorkTimes(final TechnologyStructure technologyStructure, final Map<Long, BigDecimal> operationRuns,
+            final boolean includeTpz, final boolean includeAdditionalTime, final long[] durations, final long[] laborWorkTimes,
+            final long[] machineWorkTimes) {
+        long[] scaledWorkTimes = OperationTimesEvaluator.evaluateScaledWorkTimes(technologyStructure, operationRuns, includeTpz,
+                includeAdditionalTime, numberService.getMathContext());
+
+        for (int operation = 0; operation < scaledWorkTimes.length; operation++) {
+            durations[operation] = scaledWorkTimes[operation] / OperationTimesEvaluator.SCALE;
+            laborWorkTimes[operation] = OperationTimesEvaluator.utilize(scaledWorkTimes[operation],
+                    technologyStructure.getLaborUtilization(operation));
+            machineWorkTimes[operation] = OperationTimesEvaluator.utilize(scaledWorkTimes[operation],
+                    technologyStructure.getMachineUtilization(operation));
+        }
+    }
+
+    private void estimateWorkTimes(final TechnologyStructure technologyStructure, final Map<Long, BigDecimal> operationRuns,
+            final boolean includeTpz, final boolean includeAdditionalTime, final long[] durations, final long[] laborWorkTimes,
+            final long[] machineWorkTimes) {
+        for (int operation = 0; operation < durations.length; operation++) {
+            BigDecimal abstractOperationWorkTime = estimateAbstractOperationWorkTime(technologyStructure.getTj(operation),
+                    technologyStructure.getTpz(operation), technologyStructure.getTimeNextOperation(operation),
+                    BigDecimalUtils.convertNullToZero(operationRuns.get(technologyStructure.getOperationId(operation))),
+                    includeTpz, includeAdditionalTime);
+            OperationWorkTime operationWorkTime = createOperationWorkTime(abstractOperationWorkTime,
+                    technologyStructure.getLaborUtilization(operation), technologyStructure.getMachineUtilization(operation));
+
+            durations[operation] = operationWorkTime.getDuration();
+            laborWorkTimes[operation] = operationWorkTime.getLaborWorkTime();
+            machineWorkTimes[operation] = operationWorkTime.getMachineWorkTime();
+        }
     }
 
     private Map<Long, Integer> getWorkstationsMapsForOperationsComponent(final List<Entity> operationsComponents,
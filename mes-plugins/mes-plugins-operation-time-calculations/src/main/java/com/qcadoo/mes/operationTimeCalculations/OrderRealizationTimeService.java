@@ -23,6 +23,7 @@
  */
 package com.qcadoo.mes.operationTimeCalculations;
 
+import com.qcadoo.mes.operationTimeCalculations.dto.OperationDurations;
 import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.EntityTreeNode;
@@ -142,5 +143,26 @@ public interface OrderRealizationTimeService {
             final BigDecimal plannedQuantity, final boolean includeTpz, final boolean includeAdditionalTime,
             final Entity productionLine);
 
+    /**
+     * 
+     * @param technology
+     *            A saved technology for which we want to estimate operation times.
+     * @param plannedQuantity
+     *            How many products we want this technology to produce
+     * @param includeTpz
+     *            Flag indicating if we want to include Tpz
+     * @param includeAdditionalTime
+     *            Flag indicating if we want to include Additional Time
+     * @param productionLine
+     *            production line for technology. It's needed to retrieve workstations info.
+     * @param maxForWorkstation
+     *            Flag indicating if we want max time consumptions for workstation
+     * @return Operation time consumptions in seconds by technology operation component id, evaluated in long arithmetic for
+     *         all operations at once
+     */
+    OperationDurations estimateOperationDurations(final Entity technology, final BigDecimal plannedQuantity,
+            final boolean includeTpz, final boolean includeAdditionalTime, final Entity productionLine,
+            final boolean maxForWorkstation);
+
     Object setDateToField(final Date date);
 }
@@ -46,12 +46,15 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.qcadoo.localization.api.utils.DateUtils;
 import com.qcadoo.mes.basic.ParameterService;
+import com.qcadoo.mes.operationTimeCalculations.dto.OperationDurations;
 import com.qcadoo.mes.technologies.ProductQuantitiesService;
 import com.qcadoo.mes.technologies.ProductionLinesService;
 import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
 import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
 import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
+import com.qcadoo.mes.technologies.tree.TechnologyStructureService;
 import com.qcadoo.mes.timeNormsForOperations.constants.OperCompTimeCalculationsFields;
 import com.qcadoo.model.api.BigDecimalUtils;
 import com.qcadoo.model.api.Entity;
@@ -78,6 +81,9 @@ public class OrderRealizationTimeServiceImpl implements OrderRealizationTimeServ
     @Autowired
     private OperationWorkTimeService operationWorkTimeService;
 
+    @Autowired
+    private TechnologyStructureService technologyStructureService;
+
     @Override
     public Object setDateToField(final Date date) {
         return new SimpleDateFormat(DateUtils.L_DATE_TIME_FORMAT, Locale.getDefault()).format(date);
@@ -154,14 +160,86 @@ public class OrderRealizationTimeServiceImpl implements OrderRealizationTimeServ
         productQuantitiesService
                 .getProductComponentQuantities(technology, plannedQuantity, operationRunsFromProductionQuantities);
 
+        OperationDurations durations = estimateOperationDurations(technology, operationRunsFromProductionQuantities,
+                includeTpz, includeAdditionalTime, productionLine, maxForWorkstation);
+
         for (Entity operationComponent : operationComponents) {
-            evaluateTimes(operationDurations, operationComponent, includeTpz,
-                    includeAdditionalTime, operationRunsFromProductionQuantities, productionLine, maxForWorkstation);
+            Long operationComponentId = operationComponent.getId();
+
+            if (durations.contains(operationComponentId)
+                    && operationRunsFromProductionQuantities.containsKey(operationComponentId)) {
+                operationDurations.put(operationComponent, Math.toIntExact(durations.get(operationComponentId)));
+            } else {
+                evaluateTimes(operationDurations, operationComponent, includeTpz, includeAdditionalTime,
+                        operationRunsFromProductionQuantities, productionLine, maxForWorkstation);
+            }
         }
 
         return operationDurations;
     }
 
+    @Override
+    public OperationDurations estimateOperationDurations(final Entity technology, final BigDecimal plannedQuantity,
+            final boolean includeTpz, final boolean includeAdditionalTime, final Entity productionLine,
+            final boolean maxForWorkstation) {
+        Map<Long, BigDecimal> operationRunsFromProductionQuantities = Maps.newHashMap();
+
+        productQuantitiesService
+                .getProductComponentQuantities(technology, plannedQuantity, operationRunsFromProductionQuantities);
+
+        return estimateOperationDurations(technology, operationRunsFromProductionQuantities, includeTpz, includeAdditionalTime,
+                productionLine, maxForWorkstation);
+    }
+
+    private OperationDurations estimateOperationDurations(final Entity technology, final Map<Long, BigDecimal> operationRuns,
+            final boolean includeTpz, final boolean includeAdditionalTime, final Entity productionLine,
+            final boolean maxForWorkstation) {
+        TechnologyStructure technologyStructure = technologyStructureService.getTechnologyStructure(technology);
+        Map<Long, Integer> workstationsCounts = getWorkstationsCounts(technology, technologyStructure, productionLine);
+        int[] workstations = new int[technologyStructure.getOperationsCount()];
+
+        for (int operation = 0; operation < workstations.length; operation++) {
+            workstations[operation] = getIntegerValue(workstationsCounts.get(technologyStructure.getOperationId(operation)));
+        }
+
+        long[] durations;
+
+        try {
+            durations = OperationTimesEvaluator.evaluateDurations(technologyStructure, operationRuns, workstations,
+                    maxForWorkstation, includeTpz, includeAdditionalTime, numberService.getMathContext());
+        } catch (ArithmeticException e) {
+            durations = new long[workstations.length];
+
+            for (int operation = 0; operation < workstations.length; operation++) {
+                durations[operation] = evaluateOperationDuration(
+                        BigDecimalUtils.convertNullToZero(operationRuns.get(technologyStructure.getOperationId(operation))),
+                        technologyStructure.isTjDivisible(operation), workstations[operation],
+                        technologyStructure.getTj(operation), technologyStructure.getTpz(operation),
+                        technologyStructure.getTimeNextOperation(operation), maxForWorkstation, includeTpz,
+                        includeAdditionalTime);
+            }
+        }
+
+        return new OperationDurations(technologyStructure, durations);
+    }
+
+    private Map<Long, Integer> getWorkstationsCounts(final Entity technology, final TechnologyStructure technologyStructure,
+            final Entity productionLine) {
+        if (StringUtils.isEmpty(technology.getStringField(TechnologyFields.TECHNOLOGY_TYPE))
+                && parameterService.getParameter().getBooleanField("workstationsQuantityFromProductionLine")) {
+            return productionLinesService.getWorkstationTypesCounts(technologyStructure, productionLine);
+        }
+
+        Map<Long, Integer> workstations = Maps.newHashMap();
+
+        for (int operation = 0; operation < technologyStructure.getOperationsCount(); operation++) {
+            workstations.put(technologyStructure.getOperationId(operation),
+                    technologyStructure.getQuantityOfWorkstations(operation));
+        }
+
+        return workstations;
+    }
+
     private void evaluateTimes(final Map<Entity, Integer> operationDurations,
             final Entity operationComponent, final boolean includeTpz, final boolean includeAdditionalTime,
             final Map<Long, BigDecimal> operationRuns, final Entity productionLine, final boolean maxForWorkstation) {
@@ -305,6 +383,16 @@ public class OrderRealizationTimeServiceImpl implements OrderRealizationTimeServ
         boolean isTjDivisable = operationComponent.getBooleanField("isTjDivisible");
 
         Integer workstationsCount = retrieveWorkstationTypesCount(operationComponent, productionLine);
+
+        return evaluateOperationDuration(cycles, isTjDivisable, workstationsCount,
+                getIntegerValue(operationComponent.getField("tj")), getIntegerValue(operationComponent.getField("tpz")),
+                getIntegerValue(operationComponent.getField("timeNextOperation")), maxForWorkstation, includeTpz,
+                includeAdditionalTime);
+    }
+
+    private int evaluateOperationDuration(final BigDecimal cycles, final boolean isTjDivisable, final Integer workstationsCount,
+            final int tj, final int tpz, final int additionalTime, final boolean maxForWorkstation, final boolean includeTpz,
+            final boolean includeAdditionalTime) {
         BigDecimal cyclesPerOperation = cycles;
 
         if (maxForWorkstation) {
@@ -315,16 +403,13 @@ public class OrderRealizationTimeServiceImpl implements OrderRealizationTimeServ
             }
         }
 
-        int tj = getIntegerValue(operationComponent.getField("tj"));
         int operationTime = cyclesPerOperation.multiply(BigDecimal.valueOf(tj), numberService.getMathContext()).intValue();
 
         if (includeTpz) {
-            int tpz = getIntegerValue(operationComponent.getField("tpz"));
             operationTime += (maxForWorkstation ? tpz : (tpz * workstationsCount));
         }
 
         if (includeAdditionalTime) {
-            int additionalTime = getIntegerValue(operationComponent.getField("timeNextOperation"));
             operationTime += (maxForWorkstation ? additionalTime : (additionalTime * workstationsCount));
         }
 
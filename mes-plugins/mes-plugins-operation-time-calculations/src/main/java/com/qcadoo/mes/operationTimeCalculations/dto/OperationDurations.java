@@ -0,0 +1,77 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.operationTimeCalculations.dto;
+
+import com.google.common.base.Preconditions;
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
+
+/**
+ * Durations of technology operations in seconds, indexed like operations of technology structure and looked up by technology
+ * operation component id without boxing.
+ */
+public class OperationDurations {
+
+    private final TechnologyStructure technologyStructure;
+
+    private final long[] durations;
+
+    public OperationDurations(final TechnologyStructure technologyStructure, final long[] durations) {
+        Preconditions.checkArgument(technologyStructure.getOperationsCount() == durations.length,
+                "Durations have to be given for all operations!");
+
+        this.technologyStructure = technologyStructure;
+        this.durations = durations;
+    }
+
+    public int size() {
+        return durations.length;
+    }
+
+    public long getTechnologyOperationComponentId(final int operation) {
+        return technologyStructure.getOperationId(operation);
+    }
+
+    public long getDuration(final int operation) {
+        return durations[operation];
+    }
+
+    public boolean contains(final Long technologyOperationComponentId) {
+        return technologyStructure.getOperationIndex(technologyOperationComponentId) >= 0;
+    }
+
+    public long get(final Long technologyOperationComponentId) {
+        int operation = technologyStructure.getOperationIndex(technologyOperationComponentId);
+
+        Preconditions.checkArgument(operation >= 0, "Missing operation " + technologyOperationComponentId);
+
+        return durations[operation];
+    }
+
+    public long getOrDefault(final Long technologyOperationComponentId, final long defaultDuration) {
+        int operation = technologyStructure.getOperationIndex(technologyOperationComponentId);
+
+        return (operation < 0) ? defaultDuration : durations[operation];
+    }
+
+}
@@ -0,0 +1,77 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.operationTimeCalculations.dto;
+
+import java.util.Date;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+public class OperationEffectiveDates {
+
+    private final Long technologyOperationComponentId;
+
+    private final Date effectiveDateFrom;
+
+    private final Date effectiveDateTo;
+
+    public OperationEffectiveDates(final Long technologyOperationComponentId, final Date effectiveDateFrom,
+            final Date effectiveDateTo) {
+        this.technologyOperationComponentId = technologyOperationComponentId;
+        this.effectiveDateFrom = effectiveDateFrom;
+        this.effectiveDateTo = effectiveDateTo;
+    }
+
+    public Long getTechnologyOperationComponentId() {
+        return technologyOperationComponentId;
+    }
+
+    public Date getEffectiveDateFrom() {
+        return effectiveDateFrom;
+    }
+
+    public Date getEffectiveDateTo() {
+        return effectiveDateTo;
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder().append(technologyOperationComponentId).append(effectiveDateFrom).append(effectiveDateTo)
+                .toHashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || !(obj instanceof OperationEffectiveDates)) {
+            return false;
+        }
+        OperationEffectiveDates other = (OperationEffectiveDates) obj;
+        return new EqualsBuilder().append(technologyOperationComponentId, other.technologyOperationComponentId)
+                .append(effectiveDateFrom, other.effectiveDateFrom).append(effectiveDateTo, other.effectiveDateTo).isEquals();
+    }
+
+}
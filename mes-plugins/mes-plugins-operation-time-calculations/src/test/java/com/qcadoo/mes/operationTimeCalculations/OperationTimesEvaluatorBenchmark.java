@@ -0,0 +1,261 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.operationTimeCalculations;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
+
+/**
+ * Compares times of {@link OperationTimesEvaluator} with BigDecimal evaluation of the same technologies, done the same way as
+ * {@link OrderRealizationTimeServiceImpl} and {@link OperationWorkTimeServiceImpl} do it for single operation. It isn't run by
+ * unit tests, start it from IDE or with exec:java on test classpath, optionally with operations counts as arguments.
+ *
+ * Every 10th operation has runs with repeating decimals, so fallback of the evaluator to BigDecimal is measured too. Results of
+ * both evaluations are compared before timing.
+ */
+public final class OperationTimesEvaluatorBenchmark {
+
+    private static final int[] L_DEFAULT_OPERATIONS_COUNTS = { 500, 1000, 2000 };
+
+    private static final int L_WARM_UP_ITERATIONS = 10000;
+
+    private static final int L_MEASURED_ITERATIONS = 5000;
+
+    private static final MathContext L_MATH_CONTEXT = MathContext.DECIMAL64;
+
+    private static final BigDecimal L_LABOR_UTILIZATION = new BigDecimal("0.75");
+
+    private static final BigDecimal L_MACHINE_UTILIZATION = new BigDecimal("1.25");
+
+    private static long blackHole;
+
+    private OperationTimesEvaluatorBenchmark() {
+    }
+
+    public static void main(final String[] args) {
+        int[] operationsCounts = (args.length == 0) ? L_DEFAULT_OPERATIONS_COUNTS
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+
+        System.out.println(String.format("%-12s %-12s %16s %16s %8s", "operations", "evaluation", "long [us]", "BigDecimal [us]",
+                "speedup"));
+
+        for (int operationsCount : operationsCounts) {
+            TechnologyStructure technologyStructure = createTechnologyStructure(operationsCount);
+            Map<Long, BigDecimal> operationRuns = createOperationRuns(operationsCount);
+            int[] workstations = createWorkstations(operationsCount);
+
+            checkResults(technologyStructure, operationRuns, workstations);
+
+            Runnable durationsInLongs = () -> blackHole += sum(OperationTimesEvaluator.evaluateDurations(technologyStructure,
+                    operationRuns, workstations, true, true, true, L_MATH_CONTEXT));
+            Runnable durationsInBigDecimals = () -> blackHole += sum(evaluateDurationsInBigDecimals(technologyStructure,
+                    operationRuns, workstations, true, true, true));
+            Runnable workTimesInLongs = () -> blackHole += sum(evaluateWorkTimesInLongs(technologyStructure, operationRuns));
+            Runnable workTimesInBigDecimals = () -> blackHole += sum(evaluateWorkTimesInBigDecimals(technologyStructure,
+                    operationRuns));
+
+            print(operationsCount, "durations", measure(durationsInLongs), measure(durationsInBigDecimals));
+            print(operationsCount, "work times", measure(workTimesInLongs), measure(workTimesInBigDecimals));
+        }
+
+        System.out.println("(" + blackHole + ")");
+    }
+
+    private static TechnologyStructure createTechnologyStructure(final int operationsCount) {
+        TechnologyStructure.Builder builder = TechnologyStructure.builder();
+
+        for (int operation = 0; operation < operationsCount; operation++) {
+            Long operationId = Long.valueOf(operation + 1);
+            Long parentId = (operation == 0) ? null : Long.valueOf((operation - 1) / 3 + 1);
+
+            builder.addOperation(operationId, parentId, false, (operation % 2) == 0);
+            builder.setNorms(operationId,
+                    new TechnologyStructure.Norms().setTj(1 + (operation * 7) % 120).setTpz((operation * 13) % 600)
+                            .setTimeNextOperation(operation % 30).setLaborUtilization(L_LABOR_UTILIZATION)
+                            .setMachineUtilization(L_MACHINE_UTILIZATION));
+        }
+
+        return builder.build();
+    }
+
+    private static Map<Long, BigDecimal> createOperationRuns(final int operationsCount) {
+        Map<Long, BigDecimal> operationRuns = Maps.newHashMap();
+
+        for (int operation = 0; operation < operationsCount; operation++) {
+            BigDecimal runs;
+
+            if ((operation % 10) == 0) {
+                runs = BigDecimal.valueOf(1 + operation % 97).divide(BigDecimal.valueOf(3), L_MATH_CONTEXT);
+            } else {
+                runs = new BigDecimal(operation * 31 % 997).add(new BigDecimal("0.12345"));
+            }
+
+            operationRuns.put(Long.valueOf(operation + 1), runs);
+        }
+
+        return operationRuns;
+    }
+
+    private static int[] createWorkstations(final int operationsCount) {
+        int[] workstations = new int[operationsCount];
+
+        for (int operation = 0; operation < operationsCount; operation++) {
+            workstations[operation] = 1 + operation % 4;
+        }
+
+        return workstations;
+    }
+
+    private static void checkResults(final TechnologyStructure technologyStructure, final Map<Long, BigDecimal> operationRuns,
+            final int[] workstations) {
+        for (boolean maxForWorkstation : new boolean[] { false, true }) {
+            long[] durationsInLongs = OperationTimesEvaluator.evaluateDurations(technologyStructure, operationRuns, workstations,
+                    maxForWorkstation, true, true, L_MATH_CONTEXT);
+            long[] durationsInBigDecimals = evaluateDurationsInBigDecimals(technologyStructure, operationRuns, workstations,
+                    maxForWorkstation, true, true);
+
+            if (!Arrays.equals(durationsInLongs, durationsInBigDecimals)) {
+                throw new IllegalStateException("Durations differ for maxForWorkstation = " + maxForWorkstation);
+            }
+        }
+
+        if (!Arrays.equals(evaluateWorkTimesInLongs(technologyStructure, operationRuns),
+                evaluateWorkTimesInBigDecimals(technologyStructure, operationRuns))) {
+            throw new IllegalStateException("Work times differ");
+        }
+    }
+
+    private static long[] evaluateDurationsInBigDecimals(final TechnologyStructure technologyStructure,
+            final Map<Long, BigDecimal> operationRuns, final int[] workstations, final boolean maxForWorkstation,
+            final boolean includeTpz, final boolean includeAdditionalTime) {
+        long[] durations = new long[technologyStructure.getOperationsCount()];
+
+        for (int operation = 0; operation < durations.length; operation++) {
+            BigDecimal cycles = operationRuns.get(technologyStructure.getOperationId(operation));
+            Integer workstationsCount = workstations[operation];
+
+            if (maxForWorkstation) {
+                cycles = cycles.divide(BigDecimal.valueOf(workstationsCount), L_MATH_CONTEXT);
+
+                if (!technologyStructure.isTjDivisible(operation)) {
+                    cycles = cycles.setScale(0, RoundingMode.CEILING);
+                }
+            }
+
+            int operationTime = cycles.multiply(BigDecimal.valueOf(technologyStructure.getTj(operation)), L_MATH_CONTEXT)
+                    .intValue();
+
+            if (includeTpz) {
+                int tpz = technologyStructure.getTpz(operation);
+
+                operationTime += (maxForWorkstation ? tpz : (tpz * workstationsCount));
+            }
+
+            if (includeAdditionalTime) {
+                int additionalTime = technologyStructure.getTimeNextOperation(operation);
+
+                operationTime += (maxForWorkstation ? additionalTime : (additionalTime * workstationsCount));
+            }
+
+            durations[operation] = operationTime;
+        }
+
+        return durations;
+    }
+
+    private static long[] evaluateWorkTimesInLongs(final TechnologyStructure technologyStructure,
+            final Map<Long, BigDecimal> operationRuns) {
+        long[] scaledWorkTimes = OperationTimesEvaluator.evaluateScaledWorkTimes(technologyStructure, operationRuns, true, true,
+                L_MATH_CONTEXT);
+        long[] workTimes = new long[scaledWorkTimes.length * 3];
+
+        for (int operation = 0; operation < scaledWorkTimes.length; operation++) {
+            workTimes[operation * 3] = scaledWorkTimes[operation] / OperationTimesEvaluator.SCALE;
+            workTimes[operation * 3 + 1] = OperationTimesEvaluator.utilize(scaledWorkTimes[operation],
+                    technologyStructure.getLaborUtilization(operation));
+            workTimes[operation * 3 + 2] = OperationTimesEvaluator.utilize(scaledWorkTimes[operation],
+                    technologyStructure.getMachineUtilization(operation));
+        }
+
+        return workTimes;
+    }
+
+    private static long[] evaluateWorkTimesInBigDecimals(final TechnologyStructure technologyStructure,
+            final Map<Long, BigDecimal> operationRuns) {
+        long[] workTimes = new long[technologyStructure.getOperationsCount() * 3];
+
+        for (int operation = 0; operation < technologyStructure.getOperationsCount(); operation++) {
+            BigDecimal workTime = BigDecimal.valueOf(technologyStructure.getTj(operation))
+                    .multiply(operationRuns.get(technologyStructure.getOperationId(operation)), L_MATH_CONTEXT)
+                    .add(BigDecimal.valueOf(technologyStructure.getTpz(operation)), L_MATH_CONTEXT)
+                    .add(BigDecimal.valueOf(technologyStructure.getTimeNextOperation(operation)), L_MATH_CONTEXT)
+                    .setScale(OperationTimesEvaluator.SCALE_DIGITS, RoundingMode.HALF_EVEN);
+
+            workTimes[operation * 3] = workTime.intValue();
+            workTimes[operation * 3 + 1] = workTime.multiply(technologyStructure.getLaborUtilization(operation), L_MATH_CONTEXT)
+                    .intValue();
+            workTimes[operation * 3 + 2] = workTime.multiply(technologyStructure.getMachineUtilization(operation), L_MATH_CONTEXT)
+                    .intValue();
+        }
+
+        return workTimes;
+    }
+
+    private static double measure(final Runnable evaluation) {
+        for (int iteration = 0; iteration < L_WARM_UP_ITERATIONS; iteration++) {
+            evaluation.run();
+        }
+
+        long start = System.nanoTime();
+
+        for (int iteration = 0; iteration < L_MEASURED_ITERATIONS; iteration++) {
+            evaluation.run();
+        }
+
+        return (System.nanoTime() - start) / (L_MEASURED_ITERATIONS * 1000.0);
+    }
+
+    private static long sum(final long[] values) {
+        long sum = 0L;
+
+        for (long value : values) {
+            sum += value;
+        }
+
+        return sum;
+    }
+
+    private static void print(final int operationsCount, final String evaluation, final double timeInLongs,
+            final double timeInBigDecimals) {
+        System.out.println(String.format("%-12d %-12s %16.1f %16.1f %7.1fx", operationsCount, evaluation, timeInLongs,
+                timeInBigDecimals, timeInBigDecimals / timeInLongs));
+    }
+
+}
@@ -0,0 +1,180 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.operationTimeCalculations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
+
+public class OperationTimesEvaluatorTest {
+
+    private static final int L_OPERATIONS_COUNT = 600;
+
+    @Test
+    public void shouldEvaluateDurationsForWorkstations() {
+        // given
+        TechnologyStructure technologyStructure = TechnologyStructure.builder().addOperation(1L, null, false, true)
+                .addOperation(2L, 1L, false, false)
+                .setNorms(1L, new TechnologyStructure.Norms().setTj(10).setTpz(100).setTimeNextOperation(5))
+                .setNorms(2L, new TechnologyStructure.Norms().setTj(10).setTpz(100).setTimeNextOperation(5)).build();
+
+        Map<Long, BigDecimal> operationRuns = ImmutableMap.of(1L, new BigDecimal("7.5"), 2L, new BigDecimal("7.5"));
+        int[] workstations = { 2, 2 };
+
+        // when
+        long[] durations = OperationTimesEvaluator.evaluateDurations(technologyStructure, operationRuns, workstations, false,
+                true, true, MathContext.DECIMAL64);
+        long[] maxDurations = OperationTimesEvaluator.evaluateDurations(technologyStructure, operationRuns, workstations, true,
+                true, true, MathContext.DECIMAL64);
+
+        // then
+        assertArrayEquals(new long[] { 75 + 200 + 10, 75 + 200 + 10 }, durations);
+        assertArrayEquals(new long[] { 37 + 100 + 5, 40 + 100 + 5 }, maxDurations);
+    }
+
+    @Test
+    public void shouldEvaluateWorkTimesWithUtilization() {
+        // given
+        TechnologyStructure technologyStructure = TechnologyStructure.builder().addOperation(1L, null, false, false)
+                .setNorms(1L, new TechnologyStructure.Norms().setTj(3).setTpz(60).setLaborUtilization(new BigDecimal("0.5")))
+                .build();
+
+        // when
+        long[] scaledWorkTimes = OperationTimesEvaluator.evaluateScaledWorkTimes(technologyStructure,
+                ImmutableMap.of(1L, new BigDecimal("1.5")), true, false, MathContext.DECIMAL64);
+
+        // then
+        assertEquals(6450000L, scaledWorkTimes[0]);
+        assertEquals(32L, OperationTimesEvaluator.utilize(scaledWorkTimes[0], new BigDecimal("0.5")));
+        assertEquals(0L, OperationTimesEvaluator.utilize(scaledWorkTimes[0], null));
+    }
+
+    @Test
+    public void shouldEvaluateDurationsOfRunsWithRepeatingDecimalsLikeBigDecimalEvaluation() {
+        // given
+        TechnologyStructure technologyStructure = TechnologyStructure.builder().addOperation(1L, null, false, true)
+                .addOperation(2L, 1L, false, false).addOperation(3L, 1L, false, true)
+                .setNorms(1L, new TechnologyStructure.Norms().setTj(100000))
+                .setNorms(2L, new TechnologyStructure.Norms().setTj(100000))
+                .setNorms(3L, new TechnologyStructure.Norms().setTj(3)).build();
+
+        Map<Long, BigDecimal> operationRuns = ImmutableMap.of(1L, divide(10, 3), 2L, divide(2, 3), 3L, BigDecimal.ONE);
+        int[] workstations = { 2, 1, 3 };
+
+        // when
+        long[] durations = OperationTimesEvaluator.evaluateDurations(technologyStructure, operationRuns, workstations, false,
+                false, false, MathContext.DECIMAL64);
+        long[] maxDurations = OperationTimesEvaluator.evaluateDurations(technologyStructure, operationRuns, workstations, true,
+                false, false, MathContext.DECIMAL64);
+
+        // then
+        assertArrayEquals(new long[] { 333333, 66666, 3 }, durations);
+        assertArrayEquals(new long[] { 166666, 100000, 0 }, maxDurations);
+    }
+
+    @Test
+    public void shouldEvaluateWorkTimesOfRunsWithRepeatingDecimalsLikeBigDecimalEvaluation() {
+        // given
+        TechnologyStructure technologyStructure = TechnologyStructure.builder().addOperation(1L, null, false, false)
+                .addOperation(2L, 1L, false, false)
+                .setNorms(1L, new TechnologyStructure.Norms().setTj(100000).setTpz(60))
+                .setNorms(2L, new TechnologyStructure.Norms().setTj(7).setTpz(60)).build();
+
+        Map<Long, BigDecimal> operationRuns = ImmutableMap.of(1L, divide(2, 3), 2L, divide(10, 3));
+
+        // when
+        long[] scaledWorkTimes = OperationTimesEvaluator.evaluateScaledWorkTimes(technologyStructure, operationRuns, true,
+                false, MathContext.DECIMAL64);
+
+        // then
+        for (int operation = 0; operation < scaledWorkTimes.length; operation++) {
+            BigDecimal expected = operationRuns.get(technologyStructure.getOperationId(operation))
+                    .multiply(BigDecimal.valueOf(technologyStructure.getTj(operation)), MathContext.DECIMAL64)
+                    .add(BigDecimal.valueOf(technologyStructure.getTpz(operation)), MathContext.DECIMAL64)
+                    .setScale(OperationTimesEvaluator.SCALE_DIGITS, RoundingMode.HALF_EVEN);
+
+            assertEquals(expected.intValue(), scaledWorkTimes[operation] / OperationTimesEvaluator.SCALE);
+            assertEquals(expected.multiply(new BigDecimal("0.7"), MathContext.DECIMAL64).intValue(),
+                    OperationTimesEvaluator.utilize(scaledWorkTimes[operation], new BigDecimal("0.7")));
+        }
+
+        assertEquals(6672666667L, scaledWorkTimes[0]);
+        assertEquals(66726L, scaledWorkTimes[0] / OperationTimesEvaluator.SCALE);
+    }
+
+    @Test
+    public void shouldEvaluateDeepTechnologyLikeBigDecimalEvaluation() {
+        // given
+        TechnologyStructure.Builder builder = TechnologyStructure.builder();
+        Map<Long, BigDecimal> operationRuns = Maps.newHashMap();
+        int[] workstations = new int[L_OPERATIONS_COUNT];
+
+        for (int operation = 0; operation < L_OPERATIONS_COUNT; operation++) {
+            Long operationId = Long.valueOf(operation + 1);
+
+            builder.addOperation(operationId, (operation == 0) ? null : operationId - 1, false, (operation % 2) == 0);
+            builder.setNorms(operationId, new TechnologyStructure.Norms().setTj(1 + (operation * 7) % 120)
+                    .setTpz((operation * 13) % 600).setTimeNextOperation(operation % 30));
+
+            operationRuns.put(operationId, new BigDecimal(operation * 31 % 997).add(new BigDecimal("0.12345")));
+            workstations[operation] = 1 + operation % 4;
+        }
+
+        TechnologyStructure technologyStructure = builder.build();
+
+        // when
+        long[] durations = OperationTimesEvaluator.evaluateDurations(technologyStructure, operationRuns, workstations, true,
+                true, true, MathContext.DECIMAL64);
+
+        // then
+        for (int operation = 0; operation < L_OPERATIONS_COUNT; operation++) {
+            BigDecimal cycles = operationRuns.get(technologyStructure.getOperationId(operation)).divide(
+                    BigDecimal.valueOf(workstations[operation]), MathContext.DECIMAL64);
+
+            if (!technologyStructure.isTjDivisible(operation)) {
+                cycles = cycles.setScale(0, RoundingMode.CEILING);
+            }
+
+            long expected = cycles.multiply(BigDecimal.valueOf(technologyStructure.getTj(operation))).longValue()
+                    + technologyStructure.getTpz(operation) + technologyStructure.getTimeNextOperation(operation);
+
+            assertEquals(expected, durations[operation]);
+        }
+    }
+
+    private BigDecimal divide(final int dividend, final int divisor) {
+        return BigDecimal.valueOf(dividend).divide(BigDecimal.valueOf(divisor), MathContext.DECIMAL64);
+    }
+
+}
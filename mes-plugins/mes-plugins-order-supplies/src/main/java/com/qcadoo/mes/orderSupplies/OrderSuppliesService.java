@@ -23,6 +23,7 @@
  */
 package com.qcadoo.mes.orderSupplies;
 
+import java.util.Collection;
 import java.util.List;
 
 import com.qcadoo.model.api.DataDefinition;
@@ -159,4 +160,15 @@ public interface OrderSuppliesService {
 
     void clearMaterialRequirementCoverage(final Long id);
 
+    /**
+     * Deletes coverage products of given products, with their loggings, from material requirement coverage
+     *
+     * @param id
+     *            material requirement coverage id
+     *
+     * @param productIds
+     *            product ids
+     */
+    void clearMaterialRequirementCoverage(final Long id, final Collection<Long> productIds);
+
 }
@@ -46,11 +46,12 @@ import com.qcadoo.view.api.components.FormComponent;
 import com.qcadoo.view.api.components.LookupComponent;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -61,9 +62,12 @@ import java.util.stream.Collectors;
 @RunIfEnabled(OrderSuppliesConstants.PLUGIN_IDENTIFIER)
 public class OrderSuppliesServiceImpl implements OrderSuppliesService {
 
-    public static final String L_COVERAGEPRODUCTSELECTED_COVERAGEPRODUCT_FKEY = "coverageproductselected_coverageproduct_fkey";
+    private static final String L_DELETE_COVERAGE_PRODUCTS = getDeleteCoverageProductsQuery(
+            "coverageProduct.materialrequirementcoverage_id = ANY(CAST(:ids AS bigint[]))");
 
-    public static final String L_COVERAGEPRODUCTLOGGING_COVERAGEPRODUCT_FKEY = "coverageproductlogging_coverageproduct_fkey";
+    private static final String L_DELETE_COVERAGE_PRODUCTS_FOR_PRODUCTS = getDeleteCoverageProductsQuery(
+            "coverageProduct.materialrequirementcoverage_id = ANY(CAST(:ids AS bigint[])) "
+                    + "AND coverageProduct.product_id = ANY(CAST(:productIds AS bigint[]))");
 
     @Autowired
     private DataDefinitionService dataDefinitionService;
@@ -217,152 +221,46 @@ public class OrderSuppliesServiceImpl implements OrderSuppliesService {
     @Override
     @Transactional
     public void deleteMaterialRequirementCoverageAndReferences(final List<Long> idsList) {
-        Map<String, Object> coverageProductConstraintNames = getCoverageProductConstraintNames();
-
-        dropCoverageProductConstraints(coverageProductConstraintNames);
-
-        String query = "BEGIN;\n"
-
-                + "SET CONSTRAINTS ALL DEFERRED;\n"
-
-                + "DELETE FROM jointable_materialrequirementcoverage_order WHERE materialrequirementcoverage_id = :id;\n"
-                + "DELETE FROM orderSupplies_coverageLocation WHERE materialrequirementcoverage_id = :id;\n"
-                + "DELETE FROM orderSupplies_coverageOrderState WHERE materialrequirementcoverage_id = :id;\n"
-                + "DELETE FROM orderSupplies_coverageProductLogging logging USING orderSupplies_coverageProduct coverageProduct"
-                + " WHERE logging.coverageproduct_id = coverageProduct.id AND coverageProduct.materialrequirementcoverage_id = :id;\n"
-                + "DELETE FROM orderSupplies_coverageProduct WHERE materialrequirementcoverage_id = :id;\n"
-                + "DELETE FROM orderSupplies_materialRequirementCoverage WHERE id = :id;\n"
-
-                + "SET CONSTRAINTS ALL IMMEDIATE;\n"
-
-                + "END;";
-
-        for (int i = 0; i < idsList.size(); i++) {
-            Map<String, Object> params = Maps.newHashMap();
-
-            params.put("id", idsList.get(i));
-
-            jdbcTemplate.update(query, params);
+        if (idsList.isEmpty()) {
+            return;
         }
 
-        addCoverageProductConstraints(coverageProductConstraintNames);
+        String query = "DELETE FROM jointable_materialrequirementcoverage_order "
+                + "WHERE materialrequirementcoverage_id = ANY(CAST(:ids AS bigint[]));\n"
+                + "DELETE FROM orderSupplies_coverageLocation WHERE materialrequirementcoverage_id = ANY(CAST(:ids AS bigint[]));\n"
+                + "DELETE FROM orderSupplies_coverageOrderState WHERE materialrequirementcoverage_id = ANY(CAST(:ids AS bigint[]));\n"
+                + L_DELETE_COVERAGE_PRODUCTS
+                + "DELETE FROM orderSupplies_materialRequirementCoverage WHERE id = ANY(CAST(:ids AS bigint[]));";
+
+        jdbcTemplate.update(query, Collections.singletonMap("ids", toArrayLiteral(idsList)));
     }
 
     @Override
     public void clearMaterialRequirementCoverage(final Long id) {
-        Map<String, Object> coverageProductConstraintNames = getCoverageProductConstraintNames();
-
-        dropCoverageProductConstraints(coverageProductConstraintNames);
-
-        String query = "BEGIN;\n"
-
-                + "SET CONSTRAINTS ALL DEFERRED;\n"
-
-                + "DELETE FROM orderSupplies_coverageProductLogging logging USING orderSupplies_coverageProduct coverageProduct"
-                + " WHERE logging.coverageproduct_id = coverageProduct.id AND coverageProduct.materialrequirementcoverage_id = :id;\n"
-                + "DELETE FROM orderSupplies_coverageProduct WHERE materialrequirementcoverage_id = :id;\n"
-
-                + "SET CONSTRAINTS ALL IMMEDIATE;\n"
-
-                + "END;";
-
-        Map<String, Object> params = Maps.newHashMap();
-
-        params.put("id", id);
-
-        jdbcTemplate.update(query, params);
-
-        addCoverageProductConstraints(coverageProductConstraintNames);
-    }
-
-    private Map<String, Object> getCoverageProductConstraintNames() {
-        Map<String, Object> coverageProductConstraintNames = Maps.newHashMap();
-
-        String coverageProductSelectedCoverageProuductFkey = getConstraintName("ordersupplies_coverageproductselected",
-                "ordersupplies_coverageproduct");
-        String coverageProductLoggingCoverageProductFkey = getConstraintName("ordersupplies_coverageproductlogging",
-                "ordersupplies_coverageproduct");
-
-        if (coverageProductSelectedCoverageProuductFkey != null) {
-            coverageProductConstraintNames.put(L_COVERAGEPRODUCTSELECTED_COVERAGEPRODUCT_FKEY,
-                    coverageProductSelectedCoverageProuductFkey);
-        }
-        if (coverageProductLoggingCoverageProductFkey != null) {
-            coverageProductConstraintNames.put(L_COVERAGEPRODUCTLOGGING_COVERAGEPRODUCT_FKEY,
-                    coverageProductLoggingCoverageProductFkey);
-        }
-
-        return coverageProductConstraintNames;
+        jdbcTemplate.update(L_DELETE_COVERAGE_PRODUCTS,
+                Collections.singletonMap("ids", toArrayLiteral(Collections.singletonList(id))));
     }
 
-    private String getConstraintName(final String tableName, final String foreignTableName) {
-        String query = "SELECT tc.constraint_name FROM information_schema.table_constraints AS tc"
-                + " JOIN information_schema.constraint_column_usage AS ccu ON ccu.constraint_name = tc.constraint_name "
-                + " WHERE tc.constraint_schema = 'public' AND tc.constraint_type = 'FOREIGN KEY' "
-                + " AND tc.table_name = :table_name AND ccu.table_name = :foreign_table_name;";
-
-        Map<String, Object> tableNames = Maps.newHashMap();
+    @Override
+    public void clearMaterialRequirementCoverage(final Long id, final Collection<Long> productIds) {
+        Map<String, Object> params = Maps.newHashMap();
 
-        tableNames.put("table_name", tableName);
-        tableNames.put("foreign_table_name", foreignTableName);
+        params.put("ids", toArrayLiteral(Collections.singletonList(id)));
+        params.put("productIds", toArrayLiteral(productIds));
 
-        try {
-            return jdbcTemplate.queryForObject(query, tableNames, String.class);
-        } catch (EmptyResultDataAccessException e) {
-            return null;
-        }
+        jdbcTemplate.update(L_DELETE_COVERAGE_PRODUCTS_FOR_PRODUCTS, params);
     }
 
-    private void addCoverageProductConstraints(final Map<String, Object> coverageProductConstraintNames) {
-        if (!coverageProductConstraintNames.isEmpty()) {
-            StringBuilder queryBuilder = new StringBuilder();
-
-            String coverageProductSelectedCoverageProuductFkey = (String) coverageProductConstraintNames
-                    .get(L_COVERAGEPRODUCTSELECTED_COVERAGEPRODUCT_FKEY);
-            String coverageProductLoggingCoverageProductFkey = (String) coverageProductConstraintNames
-                    .get(L_COVERAGEPRODUCTLOGGING_COVERAGEPRODUCT_FKEY);
-
-            if (coverageProductSelectedCoverageProuductFkey != null) {
-                queryBuilder.append(String.format(
-                        "ALTER TABLE ordersupplies_coverageproductselected ADD CONSTRAINT %s FOREIGN KEY (coverageproduct_id)"
-                                + " REFERENCES ordersupplies_coverageproduct (id) DEFERRABLE;\n",
-                        coverageProductSelectedCoverageProuductFkey));
-            }
-            if (coverageProductLoggingCoverageProductFkey != null) {
-                queryBuilder.append(String.format(
-                        "ALTER TABLE ordersupplies_coverageproductlogging ADD CONSTRAINT %s FOREIGN KEY (coverageproduct_id)"
-                                + " REFERENCES ordersupplies_coverageproduct (id) DEFERRABLE\n",
-                        coverageProductLoggingCoverageProductFkey));
-            }
-
-            String query = queryBuilder.toString();
-
-            jdbcTemplate.update(query, Maps.newHashMap());
-        }
+    private static String getDeleteCoverageProductsQuery(final String coverageProductsCondition) {
+        return "DELETE FROM orderSupplies_coverageProductSelected selected USING orderSupplies_coverageProduct coverageProduct "
+                + "WHERE selected.coverageproduct_id = coverageProduct.id AND " + coverageProductsCondition + ";\n"
+                + "DELETE FROM orderSupplies_coverageProductLogging logging USING orderSupplies_coverageProduct coverageProduct "
+                + "WHERE logging.coverageproduct_id = coverageProduct.id AND " + coverageProductsCondition + ";\n"
+                + "DELETE FROM orderSupplies_coverageProduct coverageProduct WHERE " + coverageProductsCondition + ";\n";
     }
 
-    private void dropCoverageProductConstraints(final Map<String, Object> coverageProductConstraintNames) {
-        if (!coverageProductConstraintNames.isEmpty()) {
-            StringBuilder queryBuilder = new StringBuilder();
-
-            String coverageProductSelectedCoverageProuductFkey = (String) coverageProductConstraintNames
-                    .get(L_COVERAGEPRODUCTSELECTED_COVERAGEPRODUCT_FKEY);
-            String coverageProductLoggingCoverageProductFkey = (String) coverageProductConstraintNames
-                    .get(L_COVERAGEPRODUCTLOGGING_COVERAGEPRODUCT_FKEY);
-
-            if (coverageProductSelectedCoverageProuductFkey != null) {
-                queryBuilder.append(String.format("ALTER TABLE ordersupplies_coverageproductselected DROP CONSTRAINT %s;\n",
-                        coverageProductSelectedCoverageProuductFkey));
-            }
-            if (coverageProductLoggingCoverageProductFkey != null) {
-                queryBuilder.append(String.format("ALTER TABLE ordersupplies_coverageproductlogging DROP CONSTRAINT %s;\n",
-                        coverageProductLoggingCoverageProductFkey));
-            }
-
-            String query = queryBuilder.toString();
-
-            jdbcTemplate.update(query, Maps.newHashMap());
-        }
+    private String toArrayLiteral(final Collection<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
     }
 
 }
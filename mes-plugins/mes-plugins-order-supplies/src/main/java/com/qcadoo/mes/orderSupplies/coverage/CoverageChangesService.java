@@ -0,0 +1,87 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orderSupplies.coverage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Collects products whose coverage may have changed - because of register entries, deliveries or warehouse documents - so
+ * generated coverages can be updated for these products only.
+ */
+@Service
+public class CoverageChangesService {
+
+    private static final String L_INSERT_PRODUCTS = "INSERT INTO ordersupplies_coveragechangedproduct (product_id) ";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void markProductsChanged(final Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+
+        String productIdsArray = productIds.stream().distinct().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+
+        jdbcTemplate.update(L_INSERT_PRODUCTS + "SELECT unnest(CAST(:productIds AS bigint[]))",
+                Collections.singletonMap("productIds", productIdsArray));
+    }
+
+    public void markOrderProductsChanged(final Long orderId) {
+        jdbcTemplate.update(L_INSERT_PRODUCTS
+                + "SELECT DISTINCT product_id FROM ordersupplies_coverageregister WHERE order_id = :id AND product_id IS NOT NULL",
+                Collections.singletonMap("id", orderId));
+    }
+
+    public void markDeliveryProductsChanged(final Long deliveryId) {
+        jdbcTemplate.update(L_INSERT_PRODUCTS + "SELECT product_id FROM deliveries_orderedproduct "
+                + "WHERE delivery_id = :id AND product_id IS NOT NULL UNION SELECT product_id FROM deliveries_deliveredproduct "
+                + "WHERE delivery_id = :id AND product_id IS NOT NULL", Collections.singletonMap("id", deliveryId));
+    }
+
+    public void markDocumentProductsChanged(final Long documentId) {
+        jdbcTemplate.update(L_INSERT_PRODUCTS + "SELECT DISTINCT product_id FROM materialflowresources_position "
+                + "WHERE document_id = :id AND product_id IS NOT NULL", Collections.singletonMap("id", documentId));
+    }
+
+    /**
+     * Removes all marks, so it should be called in the transaction which updates coverages for the returned products.
+     *
+     * @return ids of products marked as changed
+     */
+    public Set<Long> takeChangedProductIds() {
+        return Sets.newHashSet(jdbcTemplate.queryForList("DELETE FROM ordersupplies_coveragechangedproduct RETURNING product_id",
+                Collections.emptyMap(), Long.class));
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orderSupplies.coverage;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.PageSize;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJob;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobContext;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobService;
+import com.qcadoo.mes.orderSupplies.OrderSuppliesService;
+import com.qcadoo.mes.orderSupplies.constants.MaterialRequirementCoverageFields;
+import com.qcadoo.mes.orderSupplies.constants.OrderSuppliesConstants;
+import com.qcadoo.mes.orderSupplies.print.MaterialRequirementCoverageReportPdfService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.file.FileService;
+
+@Service
+public class MaterialRequirementCoverageGenerationService {
+
+    private static final String L_JOB_TYPE = "materialRequirementCoverage";
+
+    private static final String L_FILE_NAME = "orderSupplies.materialRequirementCoverage.report.fileName";
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private OrderSuppliesService orderSuppliesService;
+
+    @Autowired
+    private MaterialRequirementCoverageService materialRequirementCoverageService;
+
+    @Autowired
+    private MaterialRequirementCoverageReportPdfService materialRequirementCoverageReportPdfService;
+
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    /**
+     * Generates material requirement coverage in background and, when automatic save is set, saves it together with its
+     * report. The coverage is marked as generated, with date and author, only when its generation has succeeded.
+     *
+     * @return id of the background job or empty if the coverage is already being generated
+     */
+    public Optional<Long> submitGeneration(final Long materialRequirementCoverageId, final String generatedBy,
+            final Locale locale) {
+        return backgroundJobService.submit(L_JOB_TYPE, String.valueOf(materialRequirementCoverageId), new BackgroundJob() {
+
+            @Override
+            public void run(final BackgroundJobContext context) throws Exception {
+                materialRequirementCoverageService.generateMaterialRequirementCoverage(materialRequirementCoverageId);
+
+                context.setProgress(80);
+
+                if (context.isCancelled()) {
+                    return;
+                }
+
+                Entity materialRequirementCoverage = orderSuppliesService
+                        .getMaterialRequirementCoverage(materialRequirementCoverageId);
+
+                materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED, true);
+                materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED_DATE, new Date());
+                materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED_BY, generatedBy);
+
+                materialRequirementCoverage = materialRequirementCoverage.getDataDefinition().save(materialRequirementCoverage);
+
+                if (materialRequirementCoverage.getBooleanField(MaterialRequirementCoverageFields.AUTOMATIC_SAVE_COVERAGE)) {
+                    saveMaterialRequirementCoverage(materialRequirementCoverage, locale);
+
+                    context.setResultUrl("/generateSavedReport/" + OrderSuppliesConstants.PLUGIN_IDENTIFIER + "/"
+                            + OrderSuppliesConstants.MODEL_MATERIAL_REQUIREMENT_COVERAGE + ".pdf?id="
+                            + materialRequirementCoverageId);
+                } else {
+                    context.setResultUrl("/orderSupplies/materialRequirementCoverageReport.pdf?id="
+                            + materialRequirementCoverageId);
+                }
+            }
+
+            @Override
+            public void onFailure() {
+                Entity materialRequirementCoverage = orderSuppliesService
+                        .getMaterialRequirementCoverage(materialRequirementCoverageId);
+
+                if (materialRequirementCoverage != null) {
+                    materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED, false);
+                    materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED_DATE, null);
+                    materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED_BY, null);
+                    materialRequirementCoverage.setField(MaterialRequirementCoverageFields.SAVED, false);
+                    materialRequirementCoverage.setField(MaterialRequirementCoverageFields.FILE_NAME, null);
+
+                    materialRequirementCoverage.getDataDefinition().save(materialRequirementCoverage);
+                }
+            }
+
+        });
+    }
+
+    public boolean isGenerationInProgress(final Long materialRequirementCoverageId) {
+        return backgroundJobService.isActive(L_JOB_TYPE, String.valueOf(materialRequirementCoverageId));
+    }
+
+    public boolean isAnyGenerationInProgress() {
+        return backgroundJobService.isActive(L_JOB_TYPE);
+    }
+
+    public Entity saveMaterialRequirementCoverage(final Entity materialRequirementCoverage, final Locale locale)
+            throws IOException, DocumentException {
+        materialRequirementCoverage.setField(MaterialRequirementCoverageFields.SAVED, true);
+
+        Entity savedMaterialRequirementCoverage = materialRequirementCoverage.getDataDefinition().save(
+                materialRequirementCoverage);
+
+        generateMaterialRequirementCoverageReport(savedMaterialRequirementCoverage, locale);
+
+        return savedMaterialRequirementCoverage;
+    }
+
+    private void generateMaterialRequirementCoverageReport(final Entity materialRequirementCoverage, final Locale locale)
+            throws IOException, DocumentException {
+        Entity materialRequirementCoverageWithFileName = fileService.updateReportFileName(materialRequirementCoverage,
+                MaterialRequirementCoverageFields.GENERATED_DATE, L_FILE_NAME);
+
+        materialRequirementCoverageReportPdfService.generateDocument(materialRequirementCoverageWithFileName, locale,
+                PageSize.A4.rotate());
+    }
+
+}
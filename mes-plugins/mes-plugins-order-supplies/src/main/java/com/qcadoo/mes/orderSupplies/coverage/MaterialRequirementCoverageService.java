@@ -35,4 +35,19 @@ public interface MaterialRequirementCoverageService {
      */
     void estimateProductCoverageInTime(final Entity materialRequirementCoverage);
 
+    /**
+     * Clears previously generated products of material requirement coverage and estimates them again
+     * 
+     * @param materialRequirementCoverageId
+     *            materialRequirementCoverageId
+     */
+    void generateMaterialRequirementCoverage(final Long materialRequirementCoverageId);
+
+    /**
+     * Updates generated, not saved coverages for products changed since the last update
+     * 
+     * @return number of updated coverages
+     */
+    int updateChangedProductsCoverage();
+
 }
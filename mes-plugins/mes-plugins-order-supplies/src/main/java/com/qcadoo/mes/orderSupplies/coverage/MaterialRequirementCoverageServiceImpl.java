@@ -70,6 +70,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
@@ -79,6 +80,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -109,14 +111,87 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
     @Autowired
     private DeliveriesService deliveriesService;
 
+    @Autowired
+    private CoverageChangesService coverageChangesService;
+
     private static final String L_PRODUCT_TYPE = "productType";
 
     private static final String L_PLANNED_QUANTITY = "planedQuantity";
 
+    private static final int L_BATCH_SIZE = 1000;
+
+    private static final String L_INSERT_COVERAGE_PRODUCT = "INSERT INTO ordersupplies_coverageproduct "
+            + "(id, materialrequirementcoverage_id, product_id, lackfromdate, demandquantity, coveredquantity, "
+            + "reservemissingquantity, deliveredquantity, locationsquantity, state, productnumber, productname, "
+            + "productunit, produceQuantity, fromSelectedOrder, allProductsType, company_id) "
+            + "VALUES (:id, :materialrequirementcoverage_id, :product_id, :lackfromdate, :demandquantity, :coveredquantity, "
+            + ":reservemissingquantity, :deliveredquantity, :locationsquantity, :state, :productnumber, :productname, "
+            + ":productunit, :produceQuantity, :fromSelectedOrder, :allProductsType, :company_id)";
+
+    private static final String L_INSERT_COVERAGE_PRODUCT_LOGGING = "INSERT INTO ordersupplies_coverageproductlogging "
+            + "(coverageproduct_id, date, order_id, delivery_id, operation_id, reservemissingquantity, changes, eventtype, "
+            + "state, warehouseNumber, deliveryNumberExternal) VALUES (:coverageproduct_id, :date, :order_id, :delivery_id, "
+            + ":operation_id, :reservemissingquantity, :changes, :eventtype, :state, :warehouseNumber, :deliveryNumberExternal)";
+
     @Transactional
     @Override
     public void estimateProductCoverageInTime(final Entity materialRequirementCoverage) {
         LOG.info("Start generation material requirement - id : " + materialRequirementCoverage.getId());
+
+        List<Entity> coverageProducts = estimateCoverageProducts(materialRequirementCoverage, null);
+
+        materialRequirementCoverage.getDataDefinition().save(materialRequirementCoverage);
+
+        saveCoverage(materialRequirementCoverage, coverageProducts);
+        LOG.info("Finish generation material requirement - id : " + materialRequirementCoverage.getId());
+    }
+
+    @Transactional
+    @Override
+    public void generateMaterialRequirementCoverage(final Long materialRequirementCoverageId) {
+        lockMaterialRequirementCoverage(materialRequirementCoverageId);
+
+        orderSuppliesService.clearMaterialRequirementCoverage(materialRequirementCoverageId);
+
+        estimateProductCoverageInTime(orderSuppliesService.getMaterialRequirementCoverage(materialRequirementCoverageId));
+    }
+
+    @Transactional
+    @Override
+    public int updateChangedProductsCoverage() {
+        Set<Long> productIds = coverageChangesService.takeChangedProductIds();
+
+        if (productIds.isEmpty()) {
+            return 0;
+        }
+
+        List<Entity> materialRequirementCoverages = orderSuppliesService.getMaterialRequirementCoverageDD().find()
+                .add(SearchRestrictions.eq(MaterialRequirementCoverageFields.GENERATED, true))
+                .add(SearchRestrictions.eq(MaterialRequirementCoverageFields.SAVED, false)).list().getEntities();
+
+        for (Entity materialRequirementCoverage : materialRequirementCoverages) {
+            lockMaterialRequirementCoverage(materialRequirementCoverage.getId());
+
+            orderSuppliesService.clearMaterialRequirementCoverage(materialRequirementCoverage.getId(), productIds);
+
+            saveCoverage(materialRequirementCoverage, estimateCoverageProducts(materialRequirementCoverage, productIds));
+        }
+
+        return materialRequirementCoverages.size();
+    }
+
+    /**
+     * Full generation and incremental update of the same coverage rewrite its products, so they wait for each other
+     */
+    private void lockMaterialRequirementCoverage(final Long materialRequirementCoverageId) {
+        jdbcTemplate.queryForList("SELECT id FROM ordersupplies_materialrequirementcoverage WHERE id = :id FOR UPDATE",
+                Collections.singletonMap("id", materialRequirementCoverageId), Long.class);
+    }
+
+    /**
+     * Estimates coverage of all products or, when product ids are given, only of these products
+     */
+    private List<Entity> estimateCoverageProducts(final Entity materialRequirementCoverage, final Collection<Long> productIds) {
         Date coverageToDate = materialRequirementCoverage.getDateField(MaterialRequirementCoverageFields.COVERAGE_TO_DATE);
         Date actualDate = materialRequirementCoverage.getDateField(MaterialRequirementCoverageFields.ACTUAL_DATE);
 
@@ -143,25 +218,27 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
             orderStates = Collections.emptyList();
         }
 
-        fillFromRegistry(productAndCoverageProducts, coverageToDate, actualDate, orderStates);
+        fillFromRegistry(productAndCoverageProducts, coverageToDate, actualDate, orderStates, productIds);
 
         Entity assignedOrder = materialRequirementCoverage.getBelongsToField(L_ORDER);
         if (!orderStates.isEmpty() && Objects.nonNull(assignedOrder)) {
             Optional<Entity> maybeState = orderStates.stream()
                     .filter(state -> state.equals(assignedOrder.getStringField(OrderFields.STATE))).findAny();
             if (!maybeState.isPresent()) {
-                fillFromRegistryAssignedOrder(productAndCoverageProducts, assignedOrder, coverageToDate, actualDate);
+                fillFromRegistryAssignedOrder(productAndCoverageProducts, assignedOrder, coverageToDate, actualDate,
+                        productIds);
 
             }
 
         }
 
-        estimateProductLocationsInTime(materialRequirementCoverage, productAndCoverageProducts, coverageLocations, actualDate);
+        estimateProductLocationsInTime(materialRequirementCoverage, productAndCoverageProducts, coverageLocations, actualDate,
+                productIds);
 
         estimateProductDeliveriesInTime(materialRequirementCoverage, productAndCoverageProducts, includedDeliveries, actualDate,
                 coverageToDate, belongsToFamily, includeDraftDeliveries);
 
-        estimateProductProducedInTime(productAndCoverageProducts, coverageToDate, actualDate, orderStates);
+        estimateProductProducedInTime(productAndCoverageProducts, coverageToDate, actualDate, orderStates, productIds);
 
         additionalProcessProductCoverage(materialRequirementCoverage, productAndCoverageProducts);
 
@@ -169,15 +246,11 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
 
         fillCoverageProductSupplier(productAndCoverageProducts);
 
-        materialRequirementCoverage.getDataDefinition().save(materialRequirementCoverage);
-
-        saveCoverage(materialRequirementCoverage,
-                filterCoverageProducts(productAndCoverageProducts, productExtracted, coverageType));
-        LOG.info("Finish generation material requirement - id : " + materialRequirementCoverage.getId());
+        return filterCoverageProducts(productAndCoverageProducts, productExtracted, coverageType);
     }
 
     private void estimateProductProducedInTime(final Map<Long, Entity> productAndCoverageProducts, final Date coverageToDate,
-            final Date actualDate, final List<Entity> orderStates) {
+            final Date actualDate, final List<Entity> orderStates, final Collection<Long> productIds) {
 
         List<String> states = Lists.newArrayList();
         if (orderStates != null && !orderStates.isEmpty()) {
@@ -190,7 +263,10 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
         }
         query.append("where registry.date <= :dateTo and eventType in ('05orderOutput') ");
         if (!states.isEmpty()) {
-            query.append("and ord.state in (:states)");
+            query.append("and ord.state in (:states) ");
+        }
+        if (productIds != null) {
+            query.append("and registry.product.id in (:productIds)");
         }
 
         SearchQueryBuilder queryBuilder = dataDefinitionService.get(OrderSuppliesConstants.PLUGIN_IDENTIFIER, "coverageRegister")
@@ -198,6 +274,9 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
         if (!states.isEmpty()) {
             queryBuilder.setParameterList("states", states);
         }
+        if (productIds != null) {
+            queryBuilder.setParameterList("productIds", productIds);
+        }
         List<Entity> regs = queryBuilder.list().getEntities();
 
         for (Entity reg : regs) {
@@ -268,32 +347,43 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
     }
 
     private void saveCoverage(final Entity materialRequirementCoverage, final List<Entity> entities) {
+        List<Entity> coverageProducts = entities;
         List<Entity> selectedOrders = materialRequirementCoverage.getHasManyField("coverageOrders");
         if (!selectedOrders.isEmpty()) {
-            List<Entity> filtredEntities = entities.stream()
-                    .filter(e -> e.getBooleanField(CoverageProductFields.FROM_SELECTED_ORDER)).collect(Collectors.toList());
-            for (Entity covProduct : filtredEntities) {
-                saveCoverageProduct(materialRequirementCoverage, covProduct);
+            coverageProducts = entities.stream().filter(e -> e.getBooleanField(CoverageProductFields.FROM_SELECTED_ORDER))
+                    .collect(Collectors.toList());
+        }
+        for (List<Entity> batch : Lists.partition(coverageProducts, L_BATCH_SIZE)) {
+            List<Long> ids = getNextCoverageProductIds(batch.size());
+            List<SqlParameterSource> coverageProductsParameters = Lists.newArrayList();
+            List<SqlParameterSource> coverageProductLoggingsParameters = Lists.newArrayList();
+            for (int i = 0; i < batch.size(); i++) {
+                Entity covProduct = batch.get(i);
+                Long coverageProductId = ids.get(i);
+                coverageProductsParameters.add(getCoverageProductParameters(materialRequirementCoverage, covProduct,
+                        coverageProductId));
                 for (Entity log : covProduct.getHasManyField(CoverageProductFields.COVERAGE_PRODUCT_LOGGINGS)) {
-                    saveCoverageProductLogging(log);
+                    coverageProductLoggingsParameters.add(getCoverageProductLoggingParameters(log, coverageProductId));
                 }
             }
-        } else {
-            for (Entity covProduct : entities) {
-                saveCoverageProduct(materialRequirementCoverage, covProduct);
-                for (Entity log : covProduct.getHasManyField(CoverageProductFields.COVERAGE_PRODUCT_LOGGINGS)) {
-                    saveCoverageProductLogging(log);
-                }
+            jdbcTemplate.batchUpdate(L_INSERT_COVERAGE_PRODUCT,
+                    coverageProductsParameters.toArray(new SqlParameterSource[coverageProductsParameters.size()]));
+            for (List<SqlParameterSource> loggingsBatch : Lists.partition(coverageProductLoggingsParameters, L_BATCH_SIZE)) {
+                jdbcTemplate.batchUpdate(L_INSERT_COVERAGE_PRODUCT_LOGGING,
+                        loggingsBatch.toArray(new SqlParameterSource[loggingsBatch.size()]));
             }
         }
     }
 
-    private void saveCoverageProductLogging(Entity log) {
-        String sqlLog = "INSERT INTO ordersupplies_coverageproductlogging(coverageproduct_id, date, "
-                + "order_id, delivery_id, operation_id, reservemissingquantity, changes, eventtype, state, warehouseNumber, deliveryNumberExternal) "
-                + "VALUES (currval('ordersupplies_coverageproduct_id_seq'), :date, :order_id, :delivery_id, :operation_id, "
-                + ":reservemissingquantity, :changes, :eventtype, :state, :warehouseNumber, :deliveryNumberExternal);";
+    private List<Long> getNextCoverageProductIds(final int count) {
+        return jdbcTemplate.queryForList(
+                "SELECT nextval('ordersupplies_coverageproduct_id_seq') FROM generate_series(1, :count)",
+                Collections.singletonMap("count", count), Long.class);
+    }
+
+    private SqlParameterSource getCoverageProductLoggingParameters(final Entity log, final Long coverageProductId) {
         Map<String, Object> parametersLogg = new HashMap<String, Object>();
+        parametersLogg.put("coverageproduct_id", coverageProductId);
         parametersLogg.put("date", log.getDateField(CoverageProductLoggingFields.DATE));
 
         if (log.getBelongsToField(CoverageProductLoggingFields.DELIVERY) != null) {
@@ -321,20 +411,13 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
         parametersLogg.put("state", log.getStringField(CoverageProductLoggingFields.STATE));
         parametersLogg.put("warehouseNumber", log.getStringField(CoverageProductLoggingFields.WAREHOUSE_NUMBER));
         parametersLogg.put("deliveryNumberExternal", log.getStringField("deliveryNumberExternal"));
-        SqlParameterSource nParameters = new MapSqlParameterSource(parametersLogg);
-        jdbcTemplate.update(sqlLog, nParameters);
+        return new MapSqlParameterSource(parametersLogg);
     }
 
-    private void saveCoverageProduct(Entity materialRequirementCoverage, Entity covProduct) {
-        String sql = "INSERT INTO ordersupplies_coverageproduct "
-                + "(materialrequirementcoverage_id, product_id, lackfromdate, demandquantity, coveredquantity, "
-                + "reservemissingquantity, deliveredquantity, locationsquantity, state, productnumber, productname, "
-                + "productunit, produceQuantity, fromSelectedOrder, allProductsType, company_id) "
-                + "VALUES (:materialrequirementcoverage_id, :product_id, :lackfromdate, :demandquantity, :coveredquantity, "
-                + ":reservemissingquantity, :deliveredquantity, :locationsquantity, :state, :productnumber, :productname, "
-                + ":productunit, :produceQuantity, :fromSelectedOrder, :allProductsType, :company_id)";
-
+    private SqlParameterSource getCoverageProductParameters(final Entity materialRequirementCoverage, final Entity covProduct,
+            final Long coverageProductId) {
         Map<String, Object> parameters = new HashMap<String, Object>();
+        parameters.put("id", coverageProductId);
         parameters.put("materialrequirementcoverage_id", materialRequirementCoverage.getId());
         parameters.put("product_id", covProduct.getBelongsToField(CoverageProductFields.PRODUCT).getId());
         Entity company = covProduct.getBelongsToField(CoverageProductFields.COMPANY);
@@ -359,8 +442,7 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
                 covProduct.getBelongsToField(CoverageProductFields.PRODUCT).getStringField(ProductFields.UNIT));
         parameters.put("fromSelectedOrder", covProduct.getBooleanField(CoverageProductFields.FROM_SELECTED_ORDER));
         parameters.put("allProductsType", covProduct.getStringField("allProductsType"));
-        SqlParameterSource namedParameters = new MapSqlParameterSource(parameters);
-        jdbcTemplate.update(sql, namedParameters);
+        return new MapSqlParameterSource(parameters);
     }
 
     // Do not remove, around by aspect
@@ -430,7 +512,7 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
     }
 
     private void fillFromRegistry(Map<Long, Entity> productAndCoverageProducts, Date coverageToDate, Date actualDate,
-            List<Entity> orderStates) {
+            List<Entity> orderStates, Collection<Long> productIds) {
 
         List<String> states = Lists.newArrayList();
         if (!orderStates.isEmpty()) {
@@ -443,13 +525,19 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
         }
         query.append("where registry.date <= :dateTo and eventType in ('04orderInput','03operationInput') ");
         if (!states.isEmpty()) {
-            query.append("and ord.state in (:states)");
+            query.append("and ord.state in (:states) ");
+        }
+        if (productIds != null) {
+            query.append("and registry.product.id in (:productIds)");
         }
         SearchQueryBuilder queryBuilder = dataDefinitionService.get(OrderSuppliesConstants.PLUGIN_IDENTIFIER, "coverageRegister")
                 .find(query.toString()).setParameter("dateTo", coverageToDate);
         if (!states.isEmpty()) {
             queryBuilder.setParameterList("states", states);
         }
+        if (productIds != null) {
+            queryBuilder.setParameterList("productIds", productIds);
+        }
         List<Entity> regs = queryBuilder.list().getEntities();
 
         for (Entity reg : regs) {
@@ -464,17 +552,23 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
     }
 
     private void fillFromRegistryAssignedOrder(Map<Long, Entity> productAndCoverageProducts, Entity assignedOrder,
-            Date coverageToDate, Date actualDate) {
+            Date coverageToDate, Date actualDate, Collection<Long> productIds) {
         StringBuilder query = new StringBuilder();
         query.append("select registry from #orderSupplies_coverageRegister as registry ");
 
         query.append("where registry.date <= :dateTo and eventType in ('04orderInput','03operationInput') ");
         query.append("and order_id = :orderId ");
+        if (productIds != null) {
+            query.append("and registry.product.id in (:productIds)");
+        }
 
         SearchQueryBuilder queryBuilder = dataDefinitionService.get(OrderSuppliesConstants.PLUGIN_IDENTIFIER, "coverageRegister")
                 .find(query.toString()).setParameter("dateTo", coverageToDate);
 
         queryBuilder.setParameter("orderId", assignedOrder.getId());
+        if (productIds != null) {
+            queryBuilder.setParameterList("productIds", productIds);
+        }
 
         List<Entity> regs = queryBuilder.list().getEntities();
 
@@ -680,18 +774,23 @@ public class MaterialRequirementCoverageServiceImpl implements MaterialRequireme
     }
 
     private void estimateProductLocationsInTime(final Entity materialRequirementCoverage,
-            final Map<Long, Entity> productAndCoverageProducts, final List<Entity> coverageLocations, final Date actualDate) {
+            final Map<Long, Entity> productAndCoverageProducts, final List<Entity> coverageLocations, final Date actualDate,
+            final Collection<Long> productIds) {
 
         for (Entity location : coverageLocations) {
 
             Entity warehouse = location.getBelongsToField(CoverageLocationFields.LOCATION);
             String sql = "select  resource.product.id as product, sum(resource.quantity) as quantity "
-                    + "from #materialFlowResources_resource as resource "
-                    + "where resource.location.id=:locationId group by resource.product.id";
+                    + "from #materialFlowResources_resource as resource where resource.location.id=:locationId "
+                    + (productIds == null ? "" : "and resource.product.id in (:productIds) ") + "group by resource.product.id";
 
-            List<Entity> resources = dataDefinitionService
+            SearchQueryBuilder queryBuilder = dataDefinitionService
                     .get(MaterialFlowResourcesConstants.PLUGIN_IDENTIFIER, MaterialFlowResourcesConstants.MODEL_RESOURCE)
-                    .find(sql).setParameter("locationId", warehouse.getId()).list().getEntities();
+                    .find(sql).setParameter("locationId", warehouse.getId());
+            if (productIds != null) {
+                queryBuilder.setParameterList("productIds", productIds);
+            }
+            List<Entity> resources = queryBuilder.list().getEntities();
 
             Map<Long, BigDecimal> map = resources.stream().collect(
                     Collectors.toMap(res -> (Long) res.getField("product"), (res) -> res.getDecimalField("quantity")));
@@ -0,0 +1,79 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orderSupplies.coverage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.tenant.api.MultiTenantCallback;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+/**
+ * Keeps generated coverages up to date. Register entries, deliveries and accepted documents mark their products as changed and
+ * this job recomputes coverage of the marked products only, instead of generating whole coverages again. While any coverage is
+ * being generated the marks are left for the next run, so changes made during generation aren't taken by coverage which isn't
+ * generated yet.
+ */
+@Service
+public class MaterialRequirementCoverageUpdateService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MaterialRequirementCoverageUpdateService.class);
+
+    @Autowired
+    private MaterialRequirementCoverageService materialRequirementCoverageService;
+
+    @Autowired
+    private MaterialRequirementCoverageGenerationService materialRequirementCoverageGenerationService;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    public void updateChangedProductsCoverageTrigger() {
+        multiTenantService.doInMultiTenantContext(new MultiTenantCallback() {
+
+            @Override
+            public void invoke() {
+                updateChangedProductsCoverage();
+            }
+
+        });
+    }
+
+    public void updateChangedProductsCoverage() {
+        if (materialRequirementCoverageGenerationService.isAnyGenerationInProgress()) {
+            LOG.debug("Material requirement coverage is being generated, changed products are left for the next run");
+
+            return;
+        }
+
+        int updated = materialRequirementCoverageService.updateChangedProductsCoverage();
+
+        if (updated > 0) {
+            LOG.info("Updated " + updated + " material requirement coverages");
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orderSupplies.hooks;
+
+import java.util.Collections;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.deliveries.constants.OrderedProductFields;
+import com.qcadoo.mes.materialFlowResources.constants.DocumentFields;
+import com.qcadoo.mes.materialFlowResources.constants.DocumentState;
+import com.qcadoo.mes.orderSupplies.constants.CoverageRegisterFields;
+import com.qcadoo.mes.orderSupplies.coverage.CoverageChangesService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+@Service
+public class CoverageChangesHooks {
+
+    @Autowired
+    private CoverageChangesService coverageChangesService;
+
+    public void onSaveCoverageRegister(final DataDefinition coverageRegisterDD, final Entity coverageRegister) {
+        markProductChanged(coverageRegister.getBelongsToField(CoverageRegisterFields.PRODUCT));
+    }
+
+    public boolean onDeleteCoverageRegister(final DataDefinition coverageRegisterDD, final Entity coverageRegister) {
+        markProductChanged(coverageRegister.getBelongsToField(CoverageRegisterFields.PRODUCT));
+
+        return true;
+    }
+
+    public void onSaveDelivery(final DataDefinition deliveryDD, final Entity delivery) {
+        if (delivery.getId() != null) {
+            coverageChangesService.markDeliveryProductsChanged(delivery.getId());
+        }
+    }
+
+    public void onSaveDeliveryProduct(final DataDefinition deliveryProductDD, final Entity deliveryProduct) {
+        markProductChanged(deliveryProduct.getBelongsToField(OrderedProductFields.PRODUCT));
+    }
+
+    public boolean onDeleteDeliveryProduct(final DataDefinition deliveryProductDD, final Entity deliveryProduct) {
+        markProductChanged(deliveryProduct.getBelongsToField(OrderedProductFields.PRODUCT));
+
+        return true;
+    }
+
+    public void onSaveDocument(final DataDefinition documentDD, final Entity document) {
+        if ((document.getId() != null)
+                && DocumentState.ACCEPTED.getStringValue().equals(document.getStringField(DocumentFields.STATE))) {
+            coverageChangesService.markDocumentProductsChanged(document.getId());
+        }
+    }
+
+    private void markProductChanged(final Entity product) {
+        if (product != null) {
+            coverageChangesService.markProductsChanged(Collections.singletonList(product.getId()));
+        }
+    }
+
+}
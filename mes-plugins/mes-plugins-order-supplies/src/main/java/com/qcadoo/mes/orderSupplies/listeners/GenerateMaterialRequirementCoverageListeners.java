@@ -30,22 +30,16 @@ import static com.qcadoo.mes.deliveries.constants.DeliveryFields.SUPPLIER;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.lowagie.text.DocumentException;
-import com.lowagie.text.PageSize;
-import com.qcadoo.localization.api.utils.DateUtils;
 import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.basic.constants.ParameterFields;
 import com.qcadoo.mes.basic.constants.ProductFields;
@@ -59,14 +53,12 @@ import com.qcadoo.mes.orderSupplies.constants.CoverageProductGeneratedFields;
 import com.qcadoo.mes.orderSupplies.constants.CoverageProductSelectedFields;
 import com.qcadoo.mes.orderSupplies.constants.MaterialRequirementCoverageFields;
 import com.qcadoo.mes.orderSupplies.constants.OrderSuppliesConstants;
-import com.qcadoo.mes.orderSupplies.coverage.MaterialRequirementCoverageService;
-import com.qcadoo.mes.orderSupplies.print.MaterialRequirementCoverageReportPdfService;
+import com.qcadoo.mes.orderSupplies.coverage.MaterialRequirementCoverageGenerationService;
 import com.qcadoo.mes.productCatalogNumbers.ProductCatalogNumbersService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
-import com.qcadoo.model.api.file.FileService;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.api.units.PossibleUnitConversions;
 import com.qcadoo.model.api.units.UnitConversionService;
@@ -75,6 +67,7 @@ import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.view.api.ComponentState;
 import com.qcadoo.view.api.ComponentState.MessageType;
 import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.FieldComponent;
 import com.qcadoo.view.api.components.FormComponent;
 import com.qcadoo.view.api.components.GridComponent;
 import com.qcadoo.view.api.utils.NumberGeneratorService;
@@ -86,21 +79,17 @@ public class GenerateMaterialRequirementCoverageListeners {
 
     private static final String L_GRID = "coverageProducts";
 
-    @Autowired
-    private OrderSuppliesService orderSuppliesService;
+    private static final String L_BACKGROUND_JOB_ID = "backgroundJobId";
 
     @Autowired
-    private MaterialRequirementCoverageService materialRequirementCoverageService;
+    private OrderSuppliesService orderSuppliesService;
 
     @Autowired
-    private MaterialRequirementCoverageReportPdfService materialRequirementCoverageReportPdfService;
+    private MaterialRequirementCoverageGenerationService materialRequirementCoverageGenerationService;
 
     @Autowired
     private SecurityService securityService;
 
-    @Autowired
-    private FileService fileService;
-
     @Autowired
     private ReportService reportService;
 
@@ -156,30 +145,24 @@ public class GenerateMaterialRequirementCoverageListeners {
         Long materialRequirementCoverageId = materialRequirementCoverageForm.getEntityId();
 
         if (materialRequirementCoverageId != null) {
+            Optional<Long> jobId = materialRequirementCoverageGenerationService.submitGeneration(materialRequirementCoverageId,
+                    securityService.getCurrentUserName(), state.getLocale());
 
-            orderSuppliesService.clearMaterialRequirementCoverage(materialRequirementCoverageId);
-            Entity materialRequirementCoverage = orderSuppliesService
-                    .getMaterialRequirementCoverage(materialRequirementCoverageId);
+            if (!jobId.isPresent()) {
+                state.addMessage("orderSupplies.materialRequirementCoverage.report.generationInProgress", MessageType.FAILURE);
 
-            materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED, true);
-            materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED_DATE, new SimpleDateFormat(
-                    DateUtils.L_DATE_TIME_FORMAT, LocaleContextHolder.getLocale()).format(new Date()));
-            materialRequirementCoverage.setField(MaterialRequirementCoverageFields.GENERATED_BY,
-                    securityService.getCurrentUserName());
-
-            materialRequirementCoverageService.estimateProductCoverageInTime(materialRequirementCoverage);
+                return;
+            }
 
             state.performEvent(view, "reset", new String[0]);
 
-            if (materialRequirementCoverage.getGlobalMessages().isEmpty()) {
-                state.addMessage("orderSupplies.materialRequirementCoverage.report.generatedMessage", MessageType.SUCCESS);
-            } else {
-                materialRequirementCoverage.getGlobalMessages().forEach(
-                        message -> view.addMessage(message.getMessage(), MessageType.INFO, false));
-            }
-            if (materialRequirementCoverage.getBooleanField(MaterialRequirementCoverageFields.AUTOMATIC_SAVE_COVERAGE)) {
-                saveMaterialRequirementCoverage(view, state, args);
-            }
+            FieldComponent backgroundJobIdField = (FieldComponent) view.getComponentByReference(L_BACKGROUND_JOB_ID);
+
+            backgroundJobIdField.setFieldValue(jobId.get());
+            backgroundJobIdField.requestComponentUpdateState();
+
+            state.addMessage("orderSupplies.materialRequirementCoverage.report.generationStarted", MessageType.INFO, false,
+                    String.valueOf(jobId.get()));
         }
         state.performEvent(view, "refresh", new String[0]);
     }
@@ -223,12 +206,9 @@ public class GenerateMaterialRequirementCoverageListeners {
                 Entity materialRequirementCoverage = orderSuppliesService
                         .getMaterialRequirementCoverage(materialRequirementCoverageId);
 
-                materialRequirementCoverage.setField(MaterialRequirementCoverageFields.SAVED, true);
-
-                materialRequirementCoverage = materialRequirementCoverage.getDataDefinition().save(materialRequirementCoverage);
-
                 try {
-                    generateMaterialRequirementCoverageReport(materialRequirementCoverage, state.getLocale());
+                    materialRequirementCoverage = materialRequirementCoverageGenerationService.saveMaterialRequirementCoverage(
+                            materialRequirementCoverage, state.getLocale());
 
                     state.performEvent(view, "clear", new String[0]);
 
@@ -243,23 +223,6 @@ public class GenerateMaterialRequirementCoverageListeners {
         }
     }
 
-    private void generateMaterialRequirementCoverageReport(final Entity materialRequirementCoverage, final Locale locale)
-            throws IOException, DocumentException {
-        String localePrefix = "orderSupplies.materialRequirementCoverage.report.fileName";
-
-        Entity materialRequirementCoverageWithFileName = fileService.updateReportFileName(materialRequirementCoverage,
-                MaterialRequirementCoverageFields.GENERATED_DATE, localePrefix);
-
-        try {
-            materialRequirementCoverageReportPdfService.generateDocument(materialRequirementCoverageWithFileName, locale,
-                    PageSize.A4.rotate());
-        } catch (IOException e) {
-            throw new IllegalStateException("Problem with saving materialRequirementCoverage report");
-        } catch (DocumentException e) {
-            throw new IllegalStateException("Problem with generating materialRequirementCoverage report");
-        }
-    }
-
     public final void showMaterialRequirementCoverages(final ViewDefinitionState view, final ComponentState state,
             final String[] args) {
         String url = "../page/orderSupplies/materialRequirementCoveragesList.html";
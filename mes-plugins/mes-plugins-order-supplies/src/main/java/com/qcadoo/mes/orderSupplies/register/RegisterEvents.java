@@ -30,6 +30,7 @@ import com.qcadoo.mes.basicProductionCounting.constants.BasicProductionCountingF
 import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityFields;
 import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityRole;
 import com.qcadoo.mes.materialFlowResources.MaterialFlowResourcesService;
+import com.qcadoo.mes.orderSupplies.coverage.CoverageChangesService;
 import com.qcadoo.mes.orderSupplies.constants.CoverageProductLoggingEventType;
 import com.qcadoo.mes.orderSupplies.constants.CoverageRegisterFields;
 import com.qcadoo.mes.orderSupplies.constants.OrderFieldsOS;
@@ -60,6 +61,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -89,11 +91,16 @@ public class RegisterEvents {
     @Autowired
     private OrderHooks orderHooks;
 
-    public void onSaveOrder(final DataDefinition orderDD, final Entity order) {
+    @Autowired
+    private CoverageChangesService coverageChangesService;
 
+    public void onSaveOrder(final DataDefinition orderDD, final Entity order) {
         Entity orderDB = null;
         if (OrderState.of(order) == OrderState.ABANDONED || OrderState.of(order) == OrderState.COMPLETED
                 || OrderState.of(order) == OrderState.DECLINED) {
+            if (order.getId() != null) {
+                coverageChangesService.markOrderProductsChanged(order.getId());
+            }
             registerService.removeEntriesForOrder(order, true);
             return;
         }
@@ -102,11 +109,15 @@ public class RegisterEvents {
 
         if (order.getId() != null) {
             StringBuilder query = new StringBuilder();
-            query.append("SELECT ord.id as id, technology.id as technology, ord.number as number, ord.startDate as startDate, ");
-            query.append("ord.finishDate as finishDate, ord.plannedQuantity as plannedQuantity, ");
+            query.append("SELECT ord.id as id, technology.id as technology, product.id as product, ord.number as number, ");
+            query.append("ord.startDate as startDate, ord.finishDate as finishDate, ord.plannedQuantity as plannedQuantity, ");
             query.append("ord.typeOfProductionRecording as typeOfProductionRecording ");
             query.append("FROM #orders_order ord WHERE id = :id");
             orderDB = orderDD.find(query.toString()).setLong("id", order.getId()).setMaxResults(1).uniqueResult();
+
+            if (checkIfCoverageOfOrderChange(order, orderDB)) {
+                coverageChangesService.markOrderProductsChanged(order.getId());
+            }
         }
 
         if (OrderState.of(order) == OrderState.IN_PROGRESS && checkIfOrderChange(order, orderDB)) {
@@ -153,6 +164,7 @@ public class RegisterEvents {
     }
 
     public void onDeleteOrder(final DataDefinition orderDD, final Entity order) {
+        coverageChangesService.markOrderProductsChanged(order.getId());
         registerService.removeEntriesForOrder(order, true);
     }
 
@@ -477,6 +489,48 @@ public class RegisterEvents {
         return order.getDecimalField(OrderFields.PLANNED_QUANTITY).compareTo(orderDB.getDecimalField(OrderFields.PLANNED_QUANTITY)) != 0;
     }
 
+    private boolean checkIfCoverageOfOrderChange(final Entity order, final Entity orderDB) {
+        if (checkIfDateChange(order.getDateField(OrderFields.START_DATE), orderDB.getDateField(OrderFields.START_DATE))) {
+            return true;
+        }
+        if (checkIfDateChange(order.getDateField(OrderFields.FINISH_DATE), orderDB.getDateField(OrderFields.FINISH_DATE))) {
+            return true;
+        }
+        if (!Objects.equals(getBelongsToFieldId(order, OrderFields.PRODUCT), orderDB.getLongField(OrderFields.PRODUCT))) {
+            return true;
+        }
+        if (!Objects.equals(getBelongsToFieldId(order, OrderFields.TECHNOLOGY), orderDB.getLongField(OrderFields.TECHNOLOGY))) {
+            return true;
+        }
+
+        BigDecimal plannedQuantity = order.getDecimalField(OrderFields.PLANNED_QUANTITY);
+        BigDecimal plannedQuantityDB = orderDB.getDecimalField(OrderFields.PLANNED_QUANTITY);
+
+        if (plannedQuantity == null || plannedQuantityDB == null) {
+            return plannedQuantity != plannedQuantityDB;
+        }
+
+        return plannedQuantity.compareTo(plannedQuantityDB) != 0;
+    }
+
+    private boolean checkIfDateChange(final Date date, final Date dateDB) {
+        if (date == null || dateDB == null) {
+            return date != dateDB;
+        }
+
+        return date.getTime() != dateDB.getTime();
+    }
+
+    private Long getBelongsToFieldId(final Entity entity, final String fieldName) {
+        Entity belongsToEntity = entity.getBelongsToField(fieldName);
+
+        if (belongsToEntity == null) {
+            return null;
+        }
+
+        return belongsToEntity.getId();
+    }
+
     private boolean checkIfOrderChange(final Entity order, final Entity orderDB) {
         if (!order.getStringField(OrderFields.NUMBER).equals(orderDB.getStringField(OrderFields.NUMBER))) {
             return true;
@@ -0,0 +1,82 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.orderSupplies.coverage;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class MaterialRequirementCoverageUpdateServiceTest {
+
+    private MaterialRequirementCoverageUpdateService materialRequirementCoverageUpdateService;
+
+    @Mock
+    private MaterialRequirementCoverageService materialRequirementCoverageService;
+
+    @Mock
+    private MaterialRequirementCoverageGenerationService materialRequirementCoverageGenerationService;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        materialRequirementCoverageUpdateService = new MaterialRequirementCoverageUpdateService();
+
+        ReflectionTestUtils.setField(materialRequirementCoverageUpdateService, "materialRequirementCoverageService",
+                materialRequirementCoverageService);
+        ReflectionTestUtils.setField(materialRequirementCoverageUpdateService, "materialRequirementCoverageGenerationService",
+                materialRequirementCoverageGenerationService);
+    }
+
+    @Test
+    public final void shouldUpdateChangedProductsCoverageWhenNoCoverageIsBeingGenerated() {
+        // given
+        given(materialRequirementCoverageGenerationService.isAnyGenerationInProgress()).willReturn(false);
+
+        // when
+        materialRequirementCoverageUpdateService.updateChangedProductsCoverage();
+
+        // then
+        verify(materialRequirementCoverageService).updateChangedProductsCoverage();
+    }
+
+    @Test
+    public final void shouldLeaveChangedProductsForNextRunWhileCoverageIsBeingGenerated() {
+        // given
+        given(materialRequirementCoverageGenerationService.isAnyGenerationInProgress()).willReturn(true);
+
+        // when
+        materialRequirementCoverageUpdateService.updateChangedProductsCoverage();
+
+        // then
+        verifyZeroInteractions(materialRequirementCoverageService);
+    }
+
+}
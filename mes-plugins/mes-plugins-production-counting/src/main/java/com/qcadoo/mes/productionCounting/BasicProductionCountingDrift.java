@@ -0,0 +1,87 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionCounting;
+
+import java.math.BigDecimal;
+
+/**
+ * Basic production counting whose used or produced quantity differs from the sum of accepted production trackings of its order.
+ */
+public class BasicProductionCountingDrift {
+
+    private final Long basicProductionCountingId;
+
+    private final Long orderId;
+
+    private final Long productId;
+
+    private final BigDecimal usedQuantity;
+
+    private final BigDecimal producedQuantity;
+
+    private final BigDecimal trackedUsedQuantity;
+
+    private final BigDecimal trackedProducedQuantity;
+
+    public BasicProductionCountingDrift(final Long basicProductionCountingId, final Long orderId, final Long productId,
+            final BigDecimal usedQuantity, final BigDecimal producedQuantity, final BigDecimal trackedUsedQuantity,
+            final BigDecimal trackedProducedQuantity) {
+        this.basicProductionCountingId = basicProductionCountingId;
+        this.orderId = orderId;
+        this.productId = productId;
+        this.usedQuantity = usedQuantity;
+        this.producedQuantity = producedQuantity;
+        this.trackedUsedQuantity = trackedUsedQuantity;
+        this.trackedProducedQuantity = trackedProducedQuantity;
+    }
+
+    public Long getBasicProductionCountingId() {
+        return basicProductionCountingId;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public BigDecimal getUsedQuantity() {
+        return usedQuantity;
+    }
+
+    public BigDecimal getProducedQuantity() {
+        return producedQuantity;
+    }
+
+    public BigDecimal getTrackedUsedQuantity() {
+        return trackedUsedQuantity;
+    }
+
+    public BigDecimal getTrackedProducedQuantity() {
+        return trackedProducedQuantity;
+    }
+
+}
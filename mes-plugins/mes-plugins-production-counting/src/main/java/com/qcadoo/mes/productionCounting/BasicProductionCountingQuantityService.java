@@ -0,0 +1,194 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionCounting;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.productionCounting.constants.ProductionTrackingFields;
+import com.qcadoo.mes.productionCounting.states.constants.ProductionTrackingStateStringValues;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Applies quantities of production trackings to basic production countings of their orders. Quantities of all in and out
+ * components of a tracking are summed up per product and added to the counters in a single update, so concurrent acceptance
+ * of trackings of the same order doesn't lose increments. Wastes quantity of the order is incremented the same way.
+ * 
+ * Counters which drifted from the sum of accepted trackings, e.g. because quantities were entered manually, are only reported
+ * by {@link #findDriftedBasicProductionCountings(Long)} and rebuilt by {@link #rebuildBasicProductionCountings(Collection)}, both
+ * run from ribbon of the production progress list of the order.
+ */
+@Service
+public class BasicProductionCountingQuantityService {
+
+    private static final String L_UPDATE = "UPDATE basicproductioncounting_basicproductioncounting bpc "
+            + "SET usedquantity = COALESCE(bpc.usedquantity, 0) + :sign * d.usedquantity, "
+            + "producedquantity = COALESCE(bpc.producedquantity, 0) + :sign * d.producedquantity "
+            + "FROM (SELECT (SELECT MIN(b.id) FROM basicproductioncounting_basicproductioncounting b "
+            + "WHERE b.order_id = :orderId AND b.product_id = c.product_id) AS id, "
+            + "SUM(c.usedquantity) AS usedquantity, SUM(c.producedquantity) AS producedquantity "
+            + "FROM (SELECT product_id, COALESCE(usedquantity, 0) AS usedquantity, 0 AS producedquantity "
+            + "FROM productioncounting_trackingoperationproductincomponent WHERE productiontracking_id = :productionTrackingId "
+            + "UNION ALL SELECT product_id, 0 AS usedquantity, COALESCE(usedquantity, 0) AS producedquantity "
+            + "FROM productioncounting_trackingoperationproductoutcomponent WHERE productiontracking_id = :productionTrackingId) c "
+            + "GROUP BY c.product_id) d WHERE bpc.id = d.id";
+
+    private static final String L_UPDATE_ORDER_WASTES = "UPDATE orders_order o "
+            + "SET wastesquantity = COALESCE(o.wastesquantity, 0) + :sign * COALESCE(c.wastesquantity, 0) "
+            + "FROM (SELECT toc.wastesquantity FROM productioncounting_trackingoperationproductoutcomponent toc "
+            + "JOIN orders_order oo ON oo.product_id = toc.product_id WHERE oo.id = :orderId "
+            + "AND toc.productiontracking_id = :productionTrackingId ORDER BY toc.id LIMIT 1) c "
+            + "WHERE o.id = :orderId RETURNING o.wastesquantity";
+
+    private static final String L_EXPECTED_QUANTITIES = "WITH tracked AS (SELECT pt.order_id, c.product_id, "
+            + "COALESCE(c.usedquantity, 0) AS usedquantity, 0 AS producedquantity "
+            + "FROM productioncounting_trackingoperationproductincomponent c "
+            + "JOIN productioncounting_productiontracking pt ON pt.id = c.productiontracking_id "
+            + "WHERE pt.state = :state AND pt.%1$s "
+            + "UNION ALL SELECT pt.order_id, c.product_id, 0 AS usedquantity, COALESCE(c.usedquantity, 0) AS producedquantity "
+            + "FROM productioncounting_trackingoperationproductoutcomponent c "
+            + "JOIN productioncounting_productiontracking pt ON pt.id = c.productiontracking_id "
+            + "WHERE pt.state = :state AND pt.%1$s), "
+            + "quantities AS (SELECT order_id, product_id, SUM(usedquantity) AS usedquantity, "
+            + "SUM(producedquantity) AS producedquantity FROM tracked GROUP BY order_id, product_id), "
+            + "counted AS (SELECT MIN(b.id) AS id, b.order_id, b.product_id "
+            + "FROM basicproductioncounting_basicproductioncounting b WHERE b.%1$s GROUP BY b.order_id, b.product_id), "
+            + "expected AS (SELECT c.id, c.order_id, c.product_id, COALESCE(q.usedquantity, 0) AS trackedusedquantity, "
+            + "COALESCE(q.producedquantity, 0) AS trackedproducedquantity FROM counted c "
+            + "LEFT JOIN quantities q ON q.order_id = c.order_id AND q.product_id = c.product_id) ";
+
+    private static final String L_DRIFTED = "(COALESCE(bpc.usedquantity, 0) <> e.trackedusedquantity "
+            + "OR COALESCE(bpc.producedquantity, 0) <> e.trackedproducedquantity)";
+
+    private static final String L_FIND_DRIFTED = "SELECT e.id, e.order_id, e.product_id, bpc.usedquantity, bpc.producedquantity, "
+            + "e.trackedusedquantity, e.trackedproducedquantity FROM expected e "
+            + "JOIN basicproductioncounting_basicproductioncounting bpc ON bpc.id = e.id WHERE " + L_DRIFTED
+            + " ORDER BY e.order_id, e.id";
+
+    private static final String L_REBUILD = "UPDATE basicproductioncounting_basicproductioncounting bpc "
+            + "SET usedquantity = e.trackedusedquantity, producedquantity = e.trackedproducedquantity FROM expected e "
+            + "WHERE bpc.id = e.id AND bpc.id IN (:basicProductionCountingIds) AND " + L_DRIFTED;
+
+    private static final String L_ORDER = "order_id = :orderId";
+
+    private static final String L_ORDERS_OF_COUNTINGS = "order_id IN (SELECT order_id "
+            + "FROM basicproductioncounting_basicproductioncounting WHERE id IN (:basicProductionCountingIds))";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void addProductionTracking(final Entity productionTracking) {
+        update(productionTracking, 1);
+    }
+
+    public void subtractProductionTracking(final Entity productionTracking) {
+        update(productionTracking, -1);
+    }
+
+    private void update(final Entity productionTracking, final int sign) {
+        jdbcTemplate.update(L_UPDATE, getParameters(productionTracking, sign));
+    }
+
+    /**
+     * Adds wastes of the order product reported by the tracking to wastes quantity of the order. The order row stays locked until
+     * the end of the transaction, so the returned value can be saved with the order entity without losing concurrent updates.
+     *
+     * @return updated wastes quantity of the order or empty when the tracking doesn't report the order product
+     */
+    public Optional<BigDecimal> addOrderWastesQuantity(final Entity productionTracking) {
+        return updateOrderWastesQuantity(productionTracking, 1);
+    }
+
+    public Optional<BigDecimal> subtractOrderWastesQuantity(final Entity productionTracking) {
+        return updateOrderWastesQuantity(productionTracking, -1);
+    }
+
+    private Optional<BigDecimal> updateOrderWastesQuantity(final Entity productionTracking, final int sign) {
+        List<BigDecimal> wastesQuantities = jdbcTemplate.query(L_UPDATE_ORDER_WASTES, getParameters(productionTracking, sign),
+                (rs, rowNum) -> rs.getBigDecimal("wastesquantity"));
+
+        return wastesQuantities.stream().findFirst();
+    }
+
+    /**
+     * Compares used and produced quantities of basic production countings of the given order with quantities of its accepted
+     * production trackings. Nothing is changed.
+     *
+     * @return basic production countings which differ from accepted trackings
+     */
+    public List<BasicProductionCountingDrift> findDriftedBasicProductionCountings(final Long orderId) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("state", ProductionTrackingStateStringValues.ACCEPTED);
+        params.put("orderId", orderId);
+
+        return jdbcTemplate.query(String.format(L_EXPECTED_QUANTITIES, L_ORDER) + L_FIND_DRIFTED, params,
+                (rs, rowNum) -> new BasicProductionCountingDrift(rs.getLong("id"), rs.getLong("order_id"),
+                        rs.getLong("product_id"), rs.getBigDecimal("usedquantity"), rs.getBigDecimal("producedquantity"),
+                        rs.getBigDecimal("trackedusedquantity"), rs.getBigDecimal("trackedproducedquantity")));
+    }
+
+    /**
+     * Sets used and produced quantities of the given basic production countings to the sums of accepted production trackings of
+     * their orders. Quantities entered manually on these countings are overwritten, so it should be called only for countings
+     * reported by {@link #findDriftedBasicProductionCountings(Long)}.
+     *
+     * @return number of basic production countings which were rebuilt
+     */
+    @Transactional
+    public int rebuildBasicProductionCountings(final Collection<Long> basicProductionCountingIds) {
+        if (basicProductionCountingIds.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("state", ProductionTrackingStateStringValues.ACCEPTED);
+        params.put("basicProductionCountingIds", basicProductionCountingIds);
+
+        return jdbcTemplate.update(String.format(L_EXPECTED_QUANTITIES, L_ORDERS_OF_COUNTINGS) + L_REBUILD, params);
+    }
+
+    private Map<String, Object> getParameters(final Entity productionTracking, final int sign) {
+        Entity order = productionTracking.getBelongsToField(ProductionTrackingFields.ORDER);
+
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("orderId", order.getId());
+        params.put("productionTrackingId", productionTracking.getId());
+        params.put("sign", sign);
+
+        return params;
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionCounting;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityRole;
+import com.qcadoo.mes.productionCounting.constants.ProductionTrackingFields;
+import com.qcadoo.mes.productionCounting.constants.TrackingOperationProductInComponentFields;
+import com.qcadoo.mes.productionCounting.constants.TrackingOperationProductOutComponentFields;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Keeps quantities of accepted production trackings summed up per order, operation, product and role, so production
+ * balance does not have to aggregate tracking components again for every report.
+ */
+@Service
+public class ProductionBalanceQuantityService {
+
+    private static final String L_UPSERT = "INSERT INTO productioncounting_productionbalancequantity AS q "
+            + "(order_id, technologyoperationcomponent_id, product_id, role, wasteunit, usedquantity, wastesquantity, "
+            + "wasteusedquantity) VALUES (:orderId, :technologyOperationComponentId, :productId, :role, :wasteUnit, "
+            + ":usedQuantity, :wastesQuantity, :wasteUsedQuantity) "
+            + "ON CONFLICT (order_id, COALESCE(technologyoperationcomponent_id, 0), product_id, role, COALESCE(wasteunit, '')) "
+            + "DO UPDATE SET usedquantity = q.usedquantity + EXCLUDED.usedquantity, "
+            + "wastesquantity = q.wastesquantity + EXCLUDED.wastesquantity, "
+            + "wasteusedquantity = q.wasteusedquantity + EXCLUDED.wasteusedquantity";
+
+    private static final String L_DELETE_EMPTY = "DELETE FROM productioncounting_productionbalancequantity "
+            + "WHERE order_id = :orderId AND usedquantity = 0 AND wastesquantity = 0 AND wasteusedquantity = 0";
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void addProductionTracking(final Entity productionTracking) {
+        update(productionTracking, BigDecimal.ONE);
+    }
+
+    public void subtractProductionTracking(final Entity productionTracking) {
+        update(productionTracking, BigDecimal.ONE.negate());
+    }
+
+    private void update(final Entity productionTracking, final BigDecimal sign) {
+        Entity order = productionTracking.getBelongsToField(ProductionTrackingFields.ORDER);
+        Entity technologyOperationComponent = productionTracking
+                .getBelongsToField(ProductionTrackingFields.TECHNOLOGY_OPERATION_COMPONENT);
+        Long technologyOperationComponentId = technologyOperationComponent == null ? null : technologyOperationComponent.getId();
+
+        Map<String, MapSqlParameterSource> quantities = Maps.newLinkedHashMap();
+
+        for (Entity inComponent : productionTracking
+                .getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_IN_COMPONENTS)) {
+            MapSqlParameterSource params = getParams(quantities, order.getId(), technologyOperationComponentId,
+                    inComponent.getBelongsToField(TrackingOperationProductInComponentFields.PRODUCT).getId(),
+                    ProductionCountingQuantityRole.USED.getStringValue(),
+                    inComponent.getStringField(TrackingOperationProductInComponentFields.WASTE_UNIT));
+
+            add(params, "usedQuantity", inComponent.getDecimalField(TrackingOperationProductInComponentFields.USED_QUANTITY), sign);
+            add(params, "wasteUsedQuantity",
+                    inComponent.getDecimalField(TrackingOperationProductInComponentFields.WASTE_USED_QUANTITY), sign);
+        }
+        for (Entity outComponent : productionTracking
+                .getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_OUT_COMPONENTS)) {
+            MapSqlParameterSource params = getParams(quantities, order.getId(), technologyOperationComponentId,
+                    outComponent.getBelongsToField(TrackingOperationProductOutComponentFields.PRODUCT).getId(),
+                    ProductionCountingQuantityRole.PRODUCED.getStringValue(), null);
+
+            add(params, "usedQuantity", outComponent.getDecimalField(TrackingOperationProductOutComponentFields.USED_QUANTITY),
+                    sign);
+            add(params, "wastesQuantity",
+                    outComponent.getDecimalField(TrackingOperationProductOutComponentFields.WASTES_QUANTITY), sign);
+        }
+
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(L_UPSERT, quantities.values().toArray(new SqlParameterSource[quantities.size()]));
+        jdbcTemplate.update(L_DELETE_EMPTY, new MapSqlParameterSource("orderId", order.getId()));
+    }
+
+    private MapSqlParameterSource getParams(final Map<String, MapSqlParameterSource> quantities, final Long orderId,
+            final Long technologyOperationComponentId, final Long productId, final String role, final String wasteUnit) {
+        String key = productId + "_" + role + "_" + wasteUnit;
+        MapSqlParameterSource params = quantities.get(key);
+
+        if (params == null) {
+            params = new MapSqlParameterSource();
+            params.addValue("orderId", orderId);
+            params.addValue("technologyOperationComponentId", technologyOperationComponentId);
+            params.addValue("productId", productId);
+            params.addValue("role", role);
+            params.addValue("wasteUnit", wasteUnit);
+            params.addValue("usedQuantity", BigDecimal.ZERO);
+            params.addValue("wastesQuantity", BigDecimal.ZERO);
+            params.addValue("wasteUsedQuantity", BigDecimal.ZERO);
+
+            quantities.put(key, params);
+        }
+
+        return params;
+    }
+
+    private void add(final MapSqlParameterSource params, final String paramName, final BigDecimal quantity,
+            final BigDecimal sign) {
+        if (quantity != null) {
+            params.addValue(paramName, ((BigDecimal) params.getValue(paramName)).add(quantity.multiply(sign)));
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionCounting.listeners;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.basic.constants.BasicConstants;
+import com.qcadoo.mes.basic.constants.ProductFields;
+import com.qcadoo.mes.productionCounting.BasicProductionCountingDrift;
+import com.qcadoo.mes.productionCounting.BasicProductionCountingQuantityService;
+import com.qcadoo.model.api.BigDecimalUtils;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.NumberService;
+import com.qcadoo.view.api.ComponentState;
+import com.qcadoo.view.api.ViewDefinitionState;
+
+@Service
+public class BasicProductionCountingListListenersPC {
+
+    private static final String L_MESSAGES_PREFIX = "basicProductionCounting.basicProductionCountingList.";
+
+    @Autowired
+    private BasicProductionCountingQuantityService basicProductionCountingQuantityService;
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private NumberService numberService;
+
+    public void checkBasicProductionCountings(final ViewDefinitionState view, final ComponentState state, final String[] args) {
+        Long orderId = (Long) state.getFieldValue();
+
+        if (orderId == null) {
+            return;
+        }
+
+        List<BasicProductionCountingDrift> drifts = basicProductionCountingQuantityService
+                .findDriftedBasicProductionCountings(orderId);
+
+        if (drifts.isEmpty()) {
+            view.addMessage(L_MESSAGES_PREFIX + "info.noDriftedBasicProductionCountings", ComponentState.MessageType.SUCCESS);
+
+            return;
+        }
+
+        for (BasicProductionCountingDrift drift : drifts) {
+            Entity product = dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT)
+                    .get(drift.getProductId());
+
+            view.addMessage(L_MESSAGES_PREFIX + "info.driftedBasicProductionCounting", ComponentState.MessageType.INFO, false,
+                    product.getStringField(ProductFields.NUMBER),
+                    numberService.format(BigDecimalUtils.convertNullToZero(drift.getUsedQuantity())),
+                    numberService.format(drift.getTrackedUsedQuantity()),
+                    numberService.format(BigDecimalUtils.convertNullToZero(drift.getProducedQuantity())),
+                    numberService.format(drift.getTrackedProducedQuantity()));
+        }
+    }
+
+    public void rebuildBasicProductionCountings(final ViewDefinitionState view, final ComponentState state, final String[] args) {
+        Long orderId = (Long) state.getFieldValue();
+
+        if (orderId == null) {
+            return;
+        }
+
+        List<Long> basicProductionCountingIds = basicProductionCountingQuantityService
+                .findDriftedBasicProductionCountings(orderId).stream()
+                .map(BasicProductionCountingDrift::getBasicProductionCountingId).collect(Collectors.toList());
+
+        int rebuilt = basicProductionCountingQuantityService.rebuildBasicProductionCountings(basicProductionCountingIds);
+
+        view.addMessage(L_MESSAGES_PREFIX + "info.basicProductionCountingsRebuilt", ComponentState.MessageType.SUCCESS, false,
+                String.valueOf(rebuilt));
+    }
+
+}
@@ -23,10 +23,8 @@
  */
 package com.qcadoo.mes.productionCounting.listeners;
 
-import java.io.IOException;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
+import java.util.Optional;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,39 +32,35 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.reports.xls.XlsxDocumentService;
 import com.qcadoo.mes.orders.constants.OrdersConstants;
 import com.qcadoo.mes.productionCounting.ProductionCountingService;
 import com.qcadoo.mes.productionCounting.constants.ProductionBalanceFields;
 import com.qcadoo.mes.productionCounting.constants.ProductionCountingConstants;
-import com.qcadoo.mes.productionCounting.xls.ProductionBalanceXlsService;
+import com.qcadoo.mes.productionCounting.xls.ProductionBalanceDocumentService;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.file.FileService;
 import com.qcadoo.model.api.search.SearchRestrictions;
-import com.qcadoo.report.api.ReportService;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.view.api.ComponentState;
 import com.qcadoo.view.api.ComponentState.MessageType;
 import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.FieldComponent;
 import com.qcadoo.view.api.components.FormComponent;
 import com.qcadoo.view.api.components.GridComponent;
 
 @Service
 public class ProductionBalanceDetailsListeners {
 
-    @Autowired
-    private SecurityService securityService;
+    private static final String L_BACKGROUND_JOB_ID = "backgroundJobId";
 
     @Autowired
-    private FileService fileService;
-
-    @Autowired
-    private ReportService reportService;
+    private SecurityService securityService;
 
     @Autowired
     private ProductionCountingService productionCountingService;
 
     @Autowired
-    private ProductionBalanceXlsService productionBalanceXlsService;
+    private ProductionBalanceDocumentService productionBalanceDocumentService;
 
     @Transactional
     public void generateProductionBalance(final ViewDefinitionState view, final ComponentState state, final String[] args) {
@@ -81,54 +75,46 @@ public class ProductionBalanceDetailsListeners {
                 state.addMessage("qcadooView.message.entityNotFound", MessageType.FAILURE);
 
                 return;
-            } else if (StringUtils.isNotEmpty(productionBalance.getStringField(ProductionBalanceFields.FILE_NAME))) {
+            } else if (productionBalance.getBooleanField(ProductionBalanceFields.GENERATED)
+                    && StringUtils.isNotEmpty(productionBalance.getStringField(ProductionBalanceFields.FILE_NAME))) {
                 state.addMessage("productionCounting.productionBalance.report.error.documentsWasGenerated", MessageType.FAILURE);
 
                 return;
             }
 
-            if (!productionBalance.getBooleanField(ProductionBalanceFields.GENERATED)) {
-                fillReportValues(productionBalance);
-            }
-
-            if (!productionBalance.getHasManyField(ProductionBalanceFields.ORDERS).isEmpty()) {
-                generateProductionBalanceDocumentXls(productionBalance, state.getLocale());
-            } else {
+            if (productionBalance.getHasManyField(ProductionBalanceFields.ORDERS).isEmpty()) {
                 state.addMessage("productionCounting.productionBalance.report.error.noOrders", MessageType.FAILURE);
 
                 return;
             }
-            state.performEvent(view, "reset");
 
-            state.addMessage(
-                    "productionCounting.productionBalanceDetails.window.mainTab.productionBalanceDetails.generatedMessage",
-                    MessageType.SUCCESS);
-        }
-    }
+            Optional<Long> jobId = productionBalanceDocumentService.submitProductionBalanceDocument(productionBalanceId,
+                    securityService.getCurrentUserName(), state.getLocale());
 
-    private void fillReportValues(final Entity productionBalance) {
-        productionBalance.setField(ProductionBalanceFields.GENERATED, true);
-        productionBalance.setField(ProductionBalanceFields.DATE, new Date());
-        productionBalance.setField(ProductionBalanceFields.WORKER, securityService.getCurrentUserName());
-    }
+            if (!jobId.isPresent()) {
+                state.addMessage(
+                        "productionCounting.productionBalanceDetails.window.mainTab.productionBalanceDetails.generationInProgress",
+                        MessageType.FAILURE);
+
+                return;
+            }
 
-    private void generateProductionBalanceDocumentXls(final Entity productionBalance, final Locale locale) {
-        String localePrefix = "productionCounting.productionBalance.report.fileName";
+            state.performEvent(view, "reset");
 
-        Entity productionBalanceWithFileName = fileService.updateReportFileName(productionBalance, ProductionBalanceFields.DATE,
-                localePrefix);
+            FieldComponent backgroundJobIdField = (FieldComponent) view.getComponentByReference(L_BACKGROUND_JOB_ID);
 
-        try {
-            productionBalanceXlsService.generateDocument(productionBalanceWithFileName, locale);
+            backgroundJobIdField.setFieldValue(jobId.get());
+            backgroundJobIdField.requestComponentUpdateState();
 
-        } catch (IOException e) {
-            throw new IllegalStateException("Problem with saving productionBalance report", e);
+            state.addMessage(
+                    "productionCounting.productionBalanceDetails.window.mainTab.productionBalanceDetails.generationStarted",
+                    MessageType.INFO, false, String.valueOf(jobId.get()));
         }
     }
 
     public void printProductionBalance(final ViewDefinitionState view, final ComponentState state, final String[] args) {
-        reportService.printGeneratedReport(view, state, new String[] { args[0], ProductionCountingConstants.PLUGIN_IDENTIFIER,
-                ProductionCountingConstants.MODEL_PRODUCTION_BALANCE });
+        view.redirectTo(XlsxDocumentService.getSavedReportUrl(ProductionCountingConstants.PLUGIN_IDENTIFIER,
+                ProductionCountingConstants.MODEL_PRODUCTION_BALANCE, (Long) state.getFieldValue()), true, false);
     }
 
     public final void addAllRelatedOrders(final ViewDefinitionState view, final ComponentState state, final String[] args) {
@@ -32,6 +32,7 @@ import static com.qcadoo.model.api.search.SearchOrders.asc;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.i18n.LocaleContextHolder;
@@ -41,11 +42,11 @@ import com.google.common.collect.Lists;
 import com.qcadoo.localization.api.TranslationService;
 import com.qcadoo.mes.basic.ParameterService;
 import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
-import com.qcadoo.mes.basicProductionCounting.constants.BasicProductionCountingFields;
-import com.qcadoo.mes.basicProductionCounting.constants.OrderFieldsBPC;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.orders.states.aop.OrderStateChangeAspect;
 import com.qcadoo.mes.orders.states.constants.OrderState;
+import com.qcadoo.mes.productionCounting.BasicProductionCountingQuantityService;
+import com.qcadoo.mes.productionCounting.ProductionBalanceQuantityService;
 import com.qcadoo.mes.productionCounting.ProductionCountingService;
 import com.qcadoo.mes.productionCounting.constants.OrderFieldsPC;
 import com.qcadoo.mes.productionCounting.constants.ParameterFieldsPC;
@@ -58,7 +59,6 @@ import com.qcadoo.mes.states.StateChangeContext;
 import com.qcadoo.mes.states.constants.StateChangeStatus;
 import com.qcadoo.mes.states.service.StateChangeContextBuilder;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.NumberService;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
 import com.qcadoo.model.api.search.SearchProjections;
 import com.qcadoo.model.api.search.SearchRestrictions;
@@ -67,13 +67,8 @@ import com.qcadoo.model.api.validators.ErrorMessage;
 @Service
 public final class ProductionTrackingListenerService {
 
-    private static final String L_PRODUCT = "product";
-
     private static final String L_COUNT = "count";
 
-    @Autowired
-    private NumberService numberService;
-
     @Autowired
     private TranslationService translationService;
 
@@ -95,6 +90,12 @@ public final class ProductionTrackingListenerService {
     @Autowired
     private ParameterService parameterService;
 
+    @Autowired
+    private ProductionBalanceQuantityService productionBalanceQuantityService;
+
+    @Autowired
+    private BasicProductionCountingQuantityService basicProductionCountingQuantityService;
+
     public void onChangeFromDraftToAny(final Entity productionTracking) {
         productionTracking.setField(ProductionTrackingFields.LAST_STATE_CHANGE_FAILS, false);
         productionTracking.setField(ProductionTrackingFields.LAST_STATE_CHANGE_FAIL_CAUSE, null);
@@ -112,14 +113,18 @@ public final class ProductionTrackingListenerService {
     }
 
     public void onAccept(final Entity productionTracking) {
-        updateBasicProductionCounting(productionTracking, new Addition());
-        setOrderDoneAndWastesQuantity(productionTracking, new Addition());
+        basicProductionCountingQuantityService.addProductionTracking(productionTracking);
+        setOrderDoneAndWastesQuantity(productionTracking,
+                basicProductionCountingQuantityService.addOrderWastesQuantity(productionTracking));
+        productionBalanceQuantityService.addProductionTracking(productionTracking);
         closeOrder(productionTracking);
     }
 
     public void onChangeFromAcceptedToDeclined(final Entity productionTracking) {
-        updateBasicProductionCounting(productionTracking, new Substraction());
-        setOrderDoneAndWastesQuantity(productionTracking, new Substraction());
+        basicProductionCountingQuantityService.subtractProductionTracking(productionTracking);
+        setOrderDoneAndWastesQuantity(productionTracking,
+                basicProductionCountingQuantityService.subtractOrderWastesQuantity(productionTracking));
+        productionBalanceQuantityService.subtractProductionTracking(productionTracking);
     }
 
     private void checkIfRecordOperationProductComponentsWereFilled(final Entity productionTracking) {
@@ -240,83 +245,19 @@ public final class ProductionTrackingListenerService {
         }
     }
 
-    private void setOrderDoneAndWastesQuantity(final Entity productionTracking, final Operation operation) {
-        Entity order = productionTracking.getBelongsToField(ProductionTrackingFields.ORDER);
-        order = order.getDataDefinition().get(order.getId());
-        Entity mainProduct = order.getBelongsToField(OrderFields.PRODUCT);
-        Entity mainTrackingOperationProductOutComponent = productionTracking
-                .getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_OUT_COMPONENTS).find()
-                .add(SearchRestrictions.belongsTo(TrackingOperationProductOutComponentFields.PRODUCT, mainProduct))
-                .setMaxResults(1).uniqueResult();
-
-        if (mainTrackingOperationProductOutComponent != null) {
-            order.setField(OrderFields.DONE_QUANTITY,
-                    basicProductionCountingService.getProducedQuantityFromBasicProductionCountings(order));
-
-            order.setField(OrderFields.WASTES_QUANTITY,
-                    getWastesQuantity(mainTrackingOperationProductOutComponent, order, operation));
-            order.setField("finalProductionTracking", productionTracking.getBooleanField(ProductionTrackingFields.LAST_TRACKING));
-            order.getDataDefinition().save(order);
-        }
-    }
-
-    private BigDecimal getWastesQuantity(final Entity mainTrackingOperationProductOutComponent, final Entity order,
-            final Operation operation) {
-        BigDecimal mainWastesQuantity = mainTrackingOperationProductOutComponent
-                .getDecimalField(TrackingOperationProductOutComponentFields.WASTES_QUANTITY);
-        BigDecimal orderWastesQuantity = order.getDecimalField(OrderFields.WASTES_QUANTITY);
-
-        if (orderWastesQuantity == null) {
-            orderWastesQuantity = BigDecimal.ZERO;
-        }
-        if (mainWastesQuantity != null) {
-
-            return operation.perform(orderWastesQuantity, mainWastesQuantity);
+    private void setOrderDoneAndWastesQuantity(final Entity productionTracking, final Optional<BigDecimal> wastesQuantity) {
+        if (!wastesQuantity.isPresent()) {
+            return;
         }
 
-        return orderWastesQuantity;
-    }
-
-    private void updateBasicProductionCounting(final Entity productionTracking, final Operation operation) {
-        final Entity order = productionTracking.getBelongsToField(ProductionTrackingFields.ORDER);
-
-        final List<Entity> trackingOperationProductInComponents = productionTracking
-                .getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_IN_COMPONENTS);
-        final List<Entity> trackingOperationProductOutComponents = productionTracking
-                .getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_OUT_COMPONENTS);
-
-        trackingOperationProductInComponents.forEach(trackingOperationProductInComponent -> {
-            Entity basicProductionCounting = getBasicProductionCounting(trackingOperationProductInComponent, order);
-
-            if (basicProductionCounting == null) {
-                return;
-            }
-
-            final BigDecimal usedQuantity = basicProductionCounting.getDecimalField(BasicProductionCountingFields.USED_QUANTITY);
-            final BigDecimal productQuantity = trackingOperationProductInComponent
-                    .getDecimalField(TrackingOperationProductInComponentFields.USED_QUANTITY);
-            final BigDecimal result = operation.perform(usedQuantity, productQuantity);
-
-            basicProductionCounting.setField(BasicProductionCountingFields.USED_QUANTITY, result);
-            basicProductionCounting.getDataDefinition().save(basicProductionCounting);
-        });
-
-        trackingOperationProductOutComponents.forEach(trackingOperationProductOutComponent -> {
-            Entity basicProductionCounting = getBasicProductionCounting(trackingOperationProductOutComponent, order);
-
-            if (basicProductionCounting == null) {
-                return;
-            }
-
-            final BigDecimal usedQuantity = basicProductionCounting
-                    .getDecimalField(BasicProductionCountingFields.PRODUCED_QUANTITY);
-            final BigDecimal productQuantity = trackingOperationProductOutComponent
-                    .getDecimalField(TrackingOperationProductOutComponentFields.USED_QUANTITY);
-            final BigDecimal result = operation.perform(usedQuantity, productQuantity);
+        Entity order = productionTracking.getBelongsToField(ProductionTrackingFields.ORDER);
+        order = order.getDataDefinition().get(order.getId());
 
-            basicProductionCounting.setField(BasicProductionCountingFields.PRODUCED_QUANTITY, result);
-            basicProductionCounting.getDataDefinition().save(basicProductionCounting);
-        });
+        order.setField(OrderFields.DONE_QUANTITY,
+                basicProductionCountingService.getProducedQuantityFromBasicProductionCountings(order));
+        order.setField(OrderFields.WASTES_QUANTITY, wastesQuantity.get());
+        order.setField("finalProductionTracking", productionTracking.getBooleanField(ProductionTrackingFields.LAST_TRACKING));
+        order.getDataDefinition().save(order);
     }
 
     private void checkIfTimesIsSet(final Entity productionTracking) {
@@ -342,69 +283,11 @@ public final class ProductionTrackingListenerService {
         }
     }
 
-    private Entity getBasicProductionCounting(final Entity trackingOperationProductComponent, final Entity order) {
-        Entity product = trackingOperationProductComponent.getBelongsToField(L_PRODUCT);
-
-        return order.getHasManyField(OrderFieldsBPC.BASIC_PRODUCTION_COUNTINGS).find()
-                .add(SearchRestrictions.belongsTo(BasicProductionCountingFields.PRODUCT, product)).setMaxResults(1)
-                .uniqueResult();
-    }
-
     public void onCorrected(final Entity productionTracking) {
-        updateBasicProductionCounting(productionTracking, new Substraction());
-        setOrderDoneAndWastesQuantity(productionTracking, new Substraction());
-    }
-
-    private interface Operation {
-
-        BigDecimal perform(BigDecimal argument1, BigDecimal argument2);
-    }
-
-    private class Addition implements Operation {
-
-        @Override
-        public BigDecimal perform(final BigDecimal orginalValue, final BigDecimal addition) {
-            BigDecimal value;
-            BigDecimal add;
-
-            if (orginalValue == null) {
-                value = BigDecimal.ZERO;
-            } else {
-                value = orginalValue;
-            }
-            if (addition == null) {
-                add = BigDecimal.ZERO;
-            } else {
-                add = addition;
-            }
-
-            return value.add(add, numberService.getMathContext());
-        }
-
-    }
-
-    private class Substraction implements Operation {
-
-        @Override
-        public BigDecimal perform(final BigDecimal orginalValue, final BigDecimal substrahend) {
-            BigDecimal value;
-            BigDecimal sub;
-
-            if (orginalValue == null) {
-                value = BigDecimal.ZERO;
-            } else {
-                value = orginalValue;
-            }
-
-            if (substrahend == null) {
-                sub = BigDecimal.ZERO;
-            } else {
-                sub = substrahend;
-            }
-
-            return value.subtract(sub, numberService.getMathContext());
-        }
-
+        basicProductionCountingQuantityService.subtractProductionTracking(productionTracking);
+        setOrderDoneAndWastesQuantity(productionTracking,
+                basicProductionCountingQuantityService.subtractOrderWastesQuantity(productionTracking));
+        productionBalanceQuantityService.subtractProductionTracking(productionTracking);
     }
 
 }
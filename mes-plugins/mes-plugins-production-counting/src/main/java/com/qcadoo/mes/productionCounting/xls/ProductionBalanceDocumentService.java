@@ -0,0 +1,89 @@
+package com.qcadoo.mes.productionCounting.xls;
+
+import java.util.Date;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJob;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobContext;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobService;
+import com.qcadoo.mes.basic.reports.xls.XlsxDocumentService;
+import com.qcadoo.mes.productionCounting.ProductionCountingService;
+import com.qcadoo.mes.productionCounting.constants.ProductionBalanceFields;
+import com.qcadoo.mes.productionCounting.constants.ProductionCountingConstants;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.file.FileService;
+
+@Service
+public class ProductionBalanceDocumentService {
+
+    private static final String L_JOB_TYPE = "productionBalanceDocument";
+
+    private static final String L_FILE_NAME = "productionCounting.productionBalance.report.fileName";
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private ProductionCountingService productionCountingService;
+
+    @Autowired
+    private ProductionBalanceXlsService productionBalanceXlsService;
+
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    /**
+     * Generates production balance xls document in background. The balance is marked as generated, with date and worker, only
+     * when its document has been generated.
+     *
+     * @return id of the background job or empty if the document of the balance is already being generated
+     */
+    public Optional<Long> submitProductionBalanceDocument(final Long productionBalanceId, final String worker,
+            final Locale locale) {
+        return backgroundJobService.submit(L_JOB_TYPE, String.valueOf(productionBalanceId), new BackgroundJob() {
+
+            @Override
+            public void run(final BackgroundJobContext context) throws Exception {
+                Entity productionBalance = productionCountingService.getProductionBalance(productionBalanceId);
+
+                productionBalance.setField(ProductionBalanceFields.DATE, new Date());
+                productionBalance.setField(ProductionBalanceFields.WORKER, worker);
+
+                Entity productionBalanceWithFileName = fileService.updateReportFileName(productionBalance,
+                        ProductionBalanceFields.DATE, L_FILE_NAME);
+
+                productionBalanceXlsService.generateDocument(productionBalanceWithFileName, locale);
+
+                if (context.isCancelled()) {
+                    return;
+                }
+
+                productionBalanceWithFileName.setField(ProductionBalanceFields.GENERATED, true);
+                productionBalanceWithFileName.getDataDefinition().save(productionBalanceWithFileName);
+
+                context.setResultUrl(XlsxDocumentService.getSavedReportUrl(ProductionCountingConstants.PLUGIN_IDENTIFIER,
+                        ProductionCountingConstants.MODEL_PRODUCTION_BALANCE, productionBalanceId));
+            }
+
+            @Override
+            public void onFailure() {
+                Entity productionBalance = productionCountingService.getProductionBalance(productionBalanceId);
+
+                if (productionBalance != null) {
+                    productionBalance.setField(ProductionBalanceFields.GENERATED, false);
+                    productionBalance.setField(ProductionBalanceFields.DATE, null);
+                    productionBalance.setField(ProductionBalanceFields.WORKER, null);
+                    productionBalance.setField(ProductionBalanceFields.FILE_NAME, null);
+
+                    productionBalance.getDataDefinition().save(productionBalance);
+                }
+            }
+
+        });
+    }
+
+}
@@ -4,22 +4,24 @@ import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
 
-import org.apache.poi.hssf.usermodel.HSSFCell;
-import org.apache.poi.hssf.usermodel.HSSFCellStyle;
-import org.apache.poi.hssf.usermodel.HSSFRow;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.IndexedColors;
-import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.qcadoo.localization.api.TranslationService;
+import com.qcadoo.mes.basic.reports.xls.StreamingXlsxWriter;
+import com.qcadoo.mes.basic.reports.xls.XlsxDocumentService;
 import com.qcadoo.mes.productionCounting.constants.ProductionBalanceFields;
 import com.qcadoo.mes.productionCounting.xls.dto.LaborTime;
 import com.qcadoo.mes.productionCounting.xls.dto.LaborTimeDetails;
@@ -30,10 +32,9 @@ import com.qcadoo.mes.productionCounting.xls.dto.ProducedQuantity;
 import com.qcadoo.mes.productionCounting.xls.dto.ProductionCost;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.NumberService;
-import com.qcadoo.report.api.xls.XlsDocumentService;
 
 @Service
-public class ProductionBalanceXlsService extends XlsDocumentService {
+public class ProductionBalanceXlsService extends XlsxDocumentService {
 
     @Autowired
     private TranslationService translationService;
@@ -44,31 +45,34 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
     @Autowired
     private ProductionBalanceRepository productionBalanceRepository;
 
+    private static final String TIME_FORMAT = "[HH]:MM:SS";
+
+    private static final String NUMBER_FORMAT = "0.00###";
+
     private static final List<String> PRODUCTION_QUANTITIES_HEADERS = Lists.newArrayList("orderNumber", "productNumber",
             "productName", "plannedQuantity", "producedQuantity", "wastesQuantity", "producedWastes", "deviation", "productUnit");
 
     @Override
-    protected void addHeader(HSSFSheet sheet, Locale locale, Entity entity) {
+    protected void addHeader(final StreamingXlsxWriter writer, Sheet sheet, Locale locale, Entity entity) {
 
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        HSSFRow headerRow = sheet.createRow(0);
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        Row headerRow = writer.nextRow();
         int columnIndex = 0;
         for (String key : PRODUCTION_QUANTITIES_HEADERS) {
             createHeaderCell(stylesContainer, headerRow,
                     translationService.translate("productionCounting.productionBalance.report.xls.header." + key, locale),
-                    columnIndex, HSSFCellStyle.ALIGN_LEFT);
+                    columnIndex);
             columnIndex++;
         }
+        writer.fitColumnWidths(headerRow);
     }
 
     @Override
-    protected void addSeries(HSSFSheet sheet, Entity entity) {
+    protected void addSeries(final StreamingXlsxWriter writer, Sheet sheet, Entity entity) {
         List<Long> ordersIds = getOrdersIds(entity);
 
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        createProducedQuantitiesSheet(sheet, ordersIds, stylesContainer);
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        createProducedQuantitiesSheet(writer, ordersIds, stylesContainer);
     }
 
     @Override
@@ -77,37 +81,34 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
     }
 
     @Override
-    protected void addExtraSheets(final HSSFWorkbook workbook, Entity entity, Locale locale) {
+    protected void addExtraSheets(final StreamingXlsxWriter writer, Entity entity, Locale locale) {
         List<Long> ordersIds = getOrdersIds(entity);
-        List<MaterialCost> materialCosts = productionBalanceRepository.getMaterialCosts(entity, ordersIds);
-        createMaterialCostsSheet(materialCosts, createSheet(workbook,
-                translationService.translate("productionCounting.productionBalance.report.xls.sheet.materialCosts", locale)),
-                locale);
-        createLaborTimeSheet(createSheet(workbook, translationService.translate(LaborTimeSheetConstants.SHEET_TITLE, locale)),
-                ordersIds, locale);
-        List<LaborTimeDetails> laborTimeDetailsList = productionBalanceRepository.getLaborTimeDetails(entity, ordersIds);
-        createLaborTimeDetailsSheet(laborTimeDetailsList, createSheet(workbook,
-                translationService.translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails", locale)),
-                locale);
-        createPieceworkSheet(createSheet(workbook, translationService.translate(PieceworkSheetConstants.SHEET_TITLE, locale)),
-                ordersIds, locale);
-        List<ProductionCost> productionCosts = productionBalanceRepository.getProductionCosts(entity, ordersIds);
-        createProductionCostsSheet(productionCosts, createSheet(workbook,
-                translationService.translate("productionCounting.productionBalance.report.xls.sheet.productionCosts", locale)),
-                locale);
+        createSheet(writer, translationService.translate("productionCounting.productionBalance.report.xls.sheet.materialCosts",
+                locale));
+        Map<Long, BigDecimal> materialCosts = createMaterialCostsSheet(writer, entity, ordersIds, locale);
+        createSheet(writer, translationService.translate(LaborTimeSheetConstants.SHEET_TITLE, locale));
+        createLaborTimeSheet(writer, ordersIds, locale);
+        createSheet(writer, translationService.translate(
+                "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails", locale));
+        createLaborTimeDetailsSheet(writer, entity, ordersIds, locale);
+        createSheet(writer, translationService.translate(PieceworkSheetConstants.SHEET_TITLE, locale));
+        createPieceworkSheet(writer, ordersIds, locale);
+        createSheet(writer, translationService.translate("productionCounting.productionBalance.report.xls.sheet.productionCosts",
+                locale));
+        Map<Long, BigDecimal> productionCosts = createProductionCostsSheet(writer, entity, ordersIds, locale);
         List<OrderBalance> ordersBalance = productionBalanceRepository.getOrdersBalance(entity, ordersIds, materialCosts,
                 productionCosts);
-        createOrdersBalanceSheet(ordersBalance, createSheet(workbook,
-                translationService.translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance", locale)),
-                locale);
+        createSheet(writer, translationService.translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance",
+                locale));
+        createOrdersBalanceSheet(ordersBalance, writer, locale);
         List<OrderBalance> componentsBalance = productionBalanceRepository.getComponentsBalance(entity, ordersIds, ordersBalance);
-        createOrdersBalanceSheet(componentsBalance, createSheet(workbook,
-                translationService.translate("productionCounting.productionBalance.report.xls.sheet.componentsBalance", locale)),
-                locale);
+        createSheet(writer, translationService.translate(
+                "productionCounting.productionBalance.report.xls.sheet.componentsBalance", locale));
+        createOrdersBalanceSheet(componentsBalance, writer, locale);
         List<OrderBalance> productsBalance = productionBalanceRepository.getProductsBalance(entity, ordersIds, componentsBalance);
-        createProductsBalanceSheet(productsBalance, createSheet(workbook,
-                translationService.translate("productionCounting.productionBalance.report.xls.sheet.productsBalance", locale)),
-                locale);
+        createSheet(writer, translationService.translate("productionCounting.productionBalance.report.xls.sheet.productsBalance",
+                locale));
+        createProductsBalanceSheet(productsBalance, writer, locale);
     }
 
     private List<Long> getOrdersIds(final Entity productionBalance) {
@@ -116,11 +117,10 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
         return orders.stream().map(Entity::getId).collect(Collectors.toList());
     }
 
-    private void createProducedQuantitiesSheet(HSSFSheet sheet, List<Long> ordersIds, StylesContainer stylesContainer) {
-        List<ProducedQuantity> producedQuantities = productionBalanceRepository.getProducedQuantities(ordersIds);
-        int rowIndex = 1;
-        for (ProducedQuantity producedQuantity : producedQuantities) {
-            HSSFRow row = sheet.createRow(rowIndex);
+    private void createProducedQuantitiesSheet(StreamingXlsxWriter writer, List<Long> ordersIds,
+            StylesContainer stylesContainer) {
+        productionBalanceRepository.getProducedQuantities(ordersIds, writer.rowHandler(
+                BeanPropertyRowMapper.newInstance(ProducedQuantity.class), (row, producedQuantity) -> {
             createRegularCell(stylesContainer, row, 0, producedQuantity.getOrderNumber());
             createRegularCell(stylesContainer, row, 1, producedQuantity.getProductNumber());
             createRegularCell(stylesContainer, row, 2, producedQuantity.getProductName());
@@ -130,73 +130,69 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
             createNumericCell(stylesContainer, row, 6, producedQuantity.getProducedWastes(), false);
             createNumericCell(stylesContainer, row, 7, producedQuantity.getDeviation(), false);
             createRegularCell(stylesContainer, row, 8, producedQuantity.getProductUnit());
-            rowIndex++;
-        }
-
-        for (int i = 0; i < PRODUCTION_QUANTITIES_HEADERS.size(); i++) {
-            sheet.autoSizeColumn(i, false);
-        }
+            writer.fitColumnWidths(row);
+        }));
     }
 
-    private void createMaterialCostsSheet(List<MaterialCost> materialCosts, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+    private Map<Long, BigDecimal> createMaterialCostsSheet(StreamingXlsxWriter writer, Entity entity, List<Long> ordersIds,
+            Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        Row headerRow = writer.nextRow();
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.orderNumber", locale),
-                0, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                0);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.operationNumber", locale),
-                1, CellStyle.ALIGN_LEFT);
+                1);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.productNumber", locale),
-                2, CellStyle.ALIGN_LEFT);
+                2);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.productName", locale),
-                3, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                3);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.plannedQuantity", locale),
-                4, CellStyle.ALIGN_LEFT);
+                4);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.usedQuantity", locale),
-                5, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                5);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.materialCosts.quantitativeDeviation", locale),
-                6, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                6);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.unit", locale),
-                7, CellStyle.ALIGN_LEFT);
+                7);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.plannedCost", locale),
-                8, CellStyle.ALIGN_LEFT);
+                8);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.realCost", locale),
-                9, CellStyle.ALIGN_LEFT);
+                9);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.valueDeviation", locale),
-                10, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                10);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.materialCosts.usedWasteQuantity", locale),
-                11, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                11);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate("productionCounting.productionBalance.report.xls.sheet.materialCosts.unit", locale),
-                12, CellStyle.ALIGN_LEFT);
+                12);
+        writer.fitColumnWidths(headerRow);
 
-        int rowCounter = 0;
-        for (MaterialCost materialCost : materialCosts) {
-            row = sheet.createRow(rowOffset + rowCounter);
+        Map<Long, BigDecimal> materialCosts = Maps.newHashMap();
+        productionBalanceRepository.getMaterialCosts(entity, ordersIds, writer.rowHandler(
+                BeanPropertyRowMapper.newInstance(MaterialCost.class), (row, materialCost) -> {
             createRegularCell(stylesContainer, row, 0, materialCost.getOrderNumber());
             createRegularCell(stylesContainer, row, 1, materialCost.getOperationNumber());
             createRegularCell(stylesContainer, row, 2, materialCost.getProductNumber());
@@ -210,66 +206,54 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
             createNumericCell(stylesContainer, row, 10, materialCost.getValueDeviation(), false);
             createNumericCell(stylesContainer, row, 11, materialCost.getUsedWasteQuantity(), false);
             createRegularCell(stylesContainer, row, 12, materialCost.getUsedWasteUnit());
-            rowCounter++;
-        }
-        for (int i = 0; i <= 12; i++) {
-            sheet.autoSizeColumn(i, false);
-        }
+            writer.fitColumnWidths(row);
+            addOrderCost(materialCosts, materialCost.getOrderId(), materialCost.getRealCost());
+        }));
+
+        return materialCosts;
     }
 
-    private void createPieceworkSheet(HSSFSheet sheet, List<Long> ordersIds, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
-        createHeaderCell(stylesContainer, row, translationService.translate(PieceworkSheetConstants.ORDER_NUMBER, locale), 0,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row, translationService.translate(PieceworkSheetConstants.OPERATION_NUMBER, locale), 1,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
-                translationService.translate(PieceworkSheetConstants.TOTAL_EXECUTED_OPERATION_CYCLES, locale), 2,
-                CellStyle.ALIGN_LEFT);
-
-        List<PieceworkDetails> pieceworkDetailsList = productionBalanceRepository.getPieceworkDetails(ordersIds);
-        int rowCounter = 0;
-        for (PieceworkDetails pieceworkDetails : pieceworkDetailsList) {
-            row = sheet.createRow(rowOffset + rowCounter);
+    private void createPieceworkSheet(StreamingXlsxWriter writer, List<Long> ordersIds, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        Row headerRow = writer.nextRow();
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(PieceworkSheetConstants.ORDER_NUMBER, locale), 0);
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(PieceworkSheetConstants.OPERATION_NUMBER, locale), 1);
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(PieceworkSheetConstants.TOTAL_EXECUTED_OPERATION_CYCLES, locale), 2);
+        writer.fitColumnWidths(headerRow);
+
+        productionBalanceRepository.getPieceworkDetails(ordersIds, writer.rowHandler(
+                BeanPropertyRowMapper.newInstance(PieceworkDetails.class), (row, pieceworkDetails) -> {
             createRegularCell(stylesContainer, row, 0, pieceworkDetails.getOrderNumber());
             createRegularCell(stylesContainer, row, 1, pieceworkDetails.getOperationNumber());
             createNumericCell(stylesContainer, row, 2, pieceworkDetails.getTotalExecutedOperationCycles(), false);
-            rowCounter++;
-        }
-        for (int i = 0; i <= 2; i++) {
-            sheet.autoSizeColumn(i, false);
-        }
+            writer.fitColumnWidths(row);
+        }));
     }
 
-    private void createLaborTimeSheet(HSSFSheet sheet, List<Long> ordersIds, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
-        createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.ORDER_NUMBER, locale), 0,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.OPERATION_NUMBER, locale), 1,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.STAFF_NUMBER, locale), 2,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.STAFF_NAME, locale), 3,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.STAFF_SURNAME, locale), 4,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.WAGE_GROUP_NAME, locale), 5,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.STAFF_LABOR_HOURLY_COST, locale), 6,
-                CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row, translationService.translate(LaborTimeSheetConstants.LABOR_TIME, locale), 7,
-                CellStyle.ALIGN_LEFT);
-
-        List<LaborTime> laborTimeList = productionBalanceRepository.getLaborTime(ordersIds);
-        int rowCounter = 0;
-        for (LaborTime laborTime : laborTimeList) {
-            row = sheet.createRow(rowOffset + rowCounter);
+    private void createLaborTimeSheet(StreamingXlsxWriter writer, List<Long> ordersIds, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        Row headerRow = writer.nextRow();
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(LaborTimeSheetConstants.ORDER_NUMBER, locale), 0);
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(LaborTimeSheetConstants.OPERATION_NUMBER, locale), 1);
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(LaborTimeSheetConstants.STAFF_NUMBER, locale), 2);
+        createHeaderCell(stylesContainer, headerRow, translationService.translate(LaborTimeSheetConstants.STAFF_NAME, locale), 3);
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(LaborTimeSheetConstants.STAFF_SURNAME, locale), 4);
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(LaborTimeSheetConstants.WAGE_GROUP_NAME, locale), 5);
+        createHeaderCell(stylesContainer, headerRow,
+                translationService.translate(LaborTimeSheetConstants.STAFF_LABOR_HOURLY_COST, locale), 6);
+        createHeaderCell(stylesContainer, headerRow, translationService.translate(LaborTimeSheetConstants.LABOR_TIME, locale), 7);
+        writer.fitColumnWidths(headerRow);
+
+        productionBalanceRepository.getLaborTime(ordersIds, writer.rowHandler(BeanPropertyRowMapper.newInstance(LaborTime.class),
+                (row, laborTime) -> {
             createRegularCell(stylesContainer, row, 0, laborTime.getOrderNumber());
             createRegularCell(stylesContainer, row, 1, laborTime.getOperationNumber());
             createRegularCell(stylesContainer, row, 2, laborTime.getStaffNumber());
@@ -278,126 +262,121 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
             createRegularCell(stylesContainer, row, 5, laborTime.getWageGroupName());
             createNumericCell(stylesContainer, row, 6, laborTime.getStaffLaborHourlyCost(), false);
             createTimeCell(stylesContainer, row, 7, laborTime.getLaborTime(), false);
-            rowCounter++;
-        }
-        for (int i = 0; i <= 7; i++) {
-            sheet.autoSizeColumn(i, false);
-        }
+            writer.fitColumnWidths(row);
+        }));
     }
 
-    private void createLaborTimeDetailsSheet(List<LaborTimeDetails> laborTimeDetailsList, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
-        createHeaderCell(stylesContainer, row,
+    private void createLaborTimeDetailsSheet(StreamingXlsxWriter writer, Entity entity, List<Long> ordersIds, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        Row headerRow = writer.nextRow();
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.divisionNumber", locale),
-                0, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                0);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.productionLineNumber", locale),
-                1, CellStyle.ALIGN_LEFT);
+                1);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.orderNumber", locale),
-                2, CellStyle.ALIGN_LEFT);
+                2);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.orderState", locale),
-                3, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                3);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.plannedDateFrom", locale),
-                4, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                4);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.effectiveDateFrom", locale),
-                5, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                5);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.plannedDateTo", locale),
-                6, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                6);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.effectiveDateTo", locale),
-                7, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                7);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.productNumber", locale),
-                8, CellStyle.ALIGN_LEFT);
+                8);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.orderName", locale),
-                9, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                9);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.plannedQuantity", locale),
-                10, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                10);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.amountOfProductProduced", locale),
-                11, CellStyle.ALIGN_LEFT);
+                11);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.staffNumber", locale),
-                12, CellStyle.ALIGN_LEFT);
+                12);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.staffName", locale),
-                13, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                13);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.staffSurname", locale),
-                14, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                14);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.operationNumber", locale),
-                15, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                15);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.timeRangeFrom", locale),
-                16, CellStyle.ALIGN_LEFT);
+                16);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.timeRangeTo", locale),
-                17, CellStyle.ALIGN_LEFT);
+                17);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.shiftName", locale),
-                18, CellStyle.ALIGN_LEFT);
+                18);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.createDate", locale),
-                19, CellStyle.ALIGN_LEFT);
+                19);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.laborTime", locale),
-                20, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                20);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.plannedLaborTime", locale),
-                21, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                21);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.laborTimeDeviation", locale),
-                22, CellStyle.ALIGN_LEFT);
+                22);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.machineTime", locale),
-                23, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                23);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.plannedMachineTime", locale),
-                24, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                24);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.laborTimeDetails.machineTimeDeviation", locale),
-                25, CellStyle.ALIGN_LEFT);
+                25);
+        writer.fitColumnWidths(headerRow);
 
-        int rowCounter = 0;
-        for (LaborTimeDetails laborTimeDetails : laborTimeDetailsList) {
-            row = sheet.createRow(rowOffset + rowCounter);
+        productionBalanceRepository.getLaborTimeDetails(entity, ordersIds, writer.rowHandler(
+                BeanPropertyRowMapper.newInstance(LaborTimeDetails.class), (row, laborTimeDetails) -> {
             createRegularCell(stylesContainer, row, 0, laborTimeDetails.getDivisionNumber());
             createRegularCell(stylesContainer, row, 1, laborTimeDetails.getProductionLineNumber());
             createRegularCell(stylesContainer, row, 2, laborTimeDetails.getOrderNumber());
@@ -425,90 +404,87 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
             createTimeCell(stylesContainer, row, 23, laborTimeDetails.getMachineTime(), false);
             createTimeCell(stylesContainer, row, 24, laborTimeDetails.getPlannedMachineTime(), false);
             createTimeCell(stylesContainer, row, 25, laborTimeDetails.getMachineTimeDeviation(), false);
-            rowCounter++;
-        }
-        for (int i = 0; i <= 25; i++) {
-            sheet.autoSizeColumn(i, false);
-        }
+            writer.fitColumnWidths(row);
+        }));
     }
 
-    private void createProductionCostsSheet(List<ProductionCost> productionCosts, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+    private Map<Long, BigDecimal> createProductionCostsSheet(StreamingXlsxWriter writer, Entity entity, List<Long> ordersIds,
+            Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        Row headerRow = writer.nextRow();
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.productionCosts.orderNumber", locale),
-                0, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                0);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.operationNumber", locale),
-                1, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                1);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.plannedCostsSum", locale),
-                2, CellStyle.ALIGN_LEFT);
+                2);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.productionCosts.realCostsSum", locale),
-                3, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                3);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.sumCostsDeviation", locale),
-                4, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                4);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.plannedStaffTime", locale),
-                5, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                5);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.productionCosts.realStaffTime", locale),
-                6, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                6);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.plannedMachineTime", locale),
-                7, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                7);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.realMachineTime", locale),
-                8, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                8);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.plannedStaffCosts", locale),
-                9, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                9);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.realStaffCosts", locale),
-                10, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                10);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.staffCostsDeviation", locale),
-                11, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                11);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.plannedMachineCosts", locale),
-                12, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                12);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.realMachineCosts", locale),
-                13, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                13);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.machineCostsDeviation", locale),
-                14, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                14);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.plannedPieceworkCosts", locale),
-                15, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                15);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.productionCosts.realPieceworkCosts", locale),
-                16, CellStyle.ALIGN_LEFT);
+                16);
+        writer.fitColumnWidths(headerRow);
 
-        int rowCounter = 0;
-        for (ProductionCost productionCost : productionCosts) {
-            row = sheet.createRow(rowOffset + rowCounter);
+        Map<Long, BigDecimal> productionCosts = Maps.newHashMap();
+        productionBalanceRepository.getProductionCosts(entity, ordersIds, writer.rowHandler(
+                BeanPropertyRowMapper.newInstance(ProductionCost.class), (row, productionCost) -> {
             createRegularCell(stylesContainer, row, 0, productionCost.getOrderNumber());
             createRegularCell(stylesContainer, row, 1, productionCost.getOperationNumber());
             createNumericCell(stylesContainer, row, 2, productionCost.getPlannedCostsSum(), false);
@@ -526,109 +502,117 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
             createNumericCell(stylesContainer, row, 14, productionCost.getMachineCostsDeviation(), false);
             createNumericCell(stylesContainer, row, 15, productionCost.getPlannedPieceworkCosts(), false);
             createNumericCell(stylesContainer, row, 16, productionCost.getRealPieceworkCosts(), false);
-            rowCounter++;
-        }
-        for (int i = 0; i <= 16; i++) {
-            sheet.autoSizeColumn(i, false);
+            writer.fitColumnWidths(row);
+            addOrderCost(productionCosts, productionCost.getOrderId(), productionCost.getRealCostsSum());
+        }));
+
+        return productionCosts;
+    }
+
+    private void addOrderCost(Map<Long, BigDecimal> ordersCosts, Long orderId, BigDecimal cost) {
+        BigDecimal orderCost = ordersCosts.get(orderId);
+
+        if (orderCost == null) {
+            ordersCosts.put(orderId, cost);
+        } else if (cost != null) {
+            ordersCosts.put(orderId, orderCost.add(cost, numberService.getMathContext()));
         }
     }
 
-    private void createOrdersBalanceSheet(List<OrderBalance> ordersBalance, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+    private void createOrdersBalanceSheet(List<OrderBalance> ordersBalance, StreamingXlsxWriter writer, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        Row headerRow = writer.nextRow();
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.orderNumber", locale),
-                0, CellStyle.ALIGN_LEFT);
+                0);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.productNumber", locale),
-                1, CellStyle.ALIGN_LEFT);
+                1);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.productName", locale),
-                2, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                2);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.producedQuantity", locale),
-                3, CellStyle.ALIGN_LEFT);
+                3);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.materialCosts", locale),
-                4, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                4);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.productionCosts", locale),
-                5, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                5);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.technicalProductionCosts", locale),
-                6, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                6);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.materialCostMargin", locale),
-                7, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                7);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.materialCostMarginValue", locale),
-                8, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                8);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.productionCostMargin", locale),
-                9, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                9);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.productionCostMarginValue", locale),
-                10, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                10);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.additionalOverhead", locale),
-                11, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                11);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.directAdditionalCost", locale),
-                12, CellStyle.ALIGN_LEFT);
+                12);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.totalCosts", locale),
-                13, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                13);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.registrationPrice", locale),
-                14, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                14);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.registrationPriceOverhead", locale),
-                15, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                15);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.registrationPriceOverheadValue",
                         locale),
-                16, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                16);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.realProductionCosts", locale),
-                17, CellStyle.ALIGN_LEFT);
+                17);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.profit", locale),
-                18, CellStyle.ALIGN_LEFT);
+                18);
 
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.profitValue", locale),
-                19, CellStyle.ALIGN_LEFT);
+                19);
 
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.sellPrice", locale),
-                20, CellStyle.ALIGN_LEFT);
+                20);
+        writer.fitColumnWidths(headerRow);
 
-        int rowCounter = 0;
         for (OrderBalance orderBalance : ordersBalance) {
-            row = sheet.createRow(rowOffset + rowCounter);
+            Row row = writer.nextRow();
             createRegularCell(stylesContainer, row, 0, orderBalance.getOrderNumber());
             createRegularCell(stylesContainer, row, 1, orderBalance.getProductNumber());
             createRegularCell(stylesContainer, row, 2, orderBalance.getProductName());
@@ -650,105 +634,100 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
             createNumericCell(stylesContainer, row, 18, orderBalance.getProfit(), false);
             createNumericCell(stylesContainer, row, 19, orderBalance.getProfitValue(), false);
             createNumericCell(stylesContainer, row, 20, orderBalance.getSellPrice(), false);
-            rowCounter++;
-        }
-        for (int i = 0; i <= 20; i++) {
-            sheet.autoSizeColumn(i, false);
+            writer.fitColumnWidths(row);
         }
     }
 
-    private void createProductsBalanceSheet(List<OrderBalance> productsBalance, HSSFSheet sheet, Locale locale) {
-        final FontsContainer fontsContainer = new FontsContainer(sheet.getWorkbook());
-        final StylesContainer stylesContainer = new StylesContainer(sheet.getWorkbook(), fontsContainer);
-        final int rowOffset = 1;
-        HSSFRow row = sheet.createRow(0);
+    private void createProductsBalanceSheet(List<OrderBalance> productsBalance, StreamingXlsxWriter writer, Locale locale) {
+        final StylesContainer stylesContainer = new StylesContainer(writer);
+        Row headerRow = writer.nextRow();
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.productNumber", locale),
-                0, CellStyle.ALIGN_LEFT);
+                0);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.productName", locale),
-                1, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                1);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.producedQuantity", locale),
-                2, CellStyle.ALIGN_LEFT);
+                2);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.materialCosts", locale),
-                3, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                3);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.productionCosts", locale),
-                4, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                4);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.technicalProductionCosts", locale),
-                5, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                5);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.materialCostMargin", locale),
-                6, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                6);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.materialCostMarginValue", locale),
-                7, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                7);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.productionCostMargin", locale),
-                8, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                8);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.productionCostMarginValue", locale),
-                9, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                9);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.additionalOverhead", locale),
-                10, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                10);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.directAdditionalCost", locale),
-                11, CellStyle.ALIGN_LEFT);
+                11);
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.totalCosts", locale),
-                12, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                12);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.registrationPrice", locale),
-                13, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                13);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.registrationPriceOverhead", locale),
-                14, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                14);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.registrationPriceOverheadValue",
                         locale),
-                15, CellStyle.ALIGN_LEFT);
-        createHeaderCell(stylesContainer, row,
+                15);
+        createHeaderCell(stylesContainer, headerRow,
                 translationService.translate(
                         "productionCounting.productionBalance.report.xls.sheet.ordersBalance.realProductionCosts", locale),
-                16, CellStyle.ALIGN_LEFT);
+                16);
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.profit", locale),
-                17, CellStyle.ALIGN_LEFT);
+                17);
 
         createHeaderCell(stylesContainer,
-                row, translationService
+                headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.profitValue", locale),
-                18, CellStyle.ALIGN_LEFT);
+                18);
 
         createHeaderCell(
-                stylesContainer, row, translationService
+                stylesContainer, headerRow, translationService
                         .translate("productionCounting.productionBalance.report.xls.sheet.ordersBalance.sellPrice", locale),
-                19, CellStyle.ALIGN_LEFT);
+                19);
+        writer.fitColumnWidths(headerRow);
 
-        int rowCounter = 0;
         for (OrderBalance orderBalance : productsBalance) {
-            row = sheet.createRow(rowOffset + rowCounter);
+            Row row = writer.nextRow();
             createRegularCell(stylesContainer, row, 0, orderBalance.getProductNumber());
             createRegularCell(stylesContainer, row, 1, orderBalance.getProductName());
             createNumericCell(stylesContainer, row, 2, orderBalance.getProducedQuantity(), true);
@@ -769,129 +748,126 @@ public class ProductionBalanceXlsService extends XlsDocumentService {
             createNumericCell(stylesContainer, row, 17, orderBalance.getProfit(), false);
             createNumericCell(stylesContainer, row, 18, orderBalance.getProfitValue(), false);
             createNumericCell(stylesContainer, row, 19, orderBalance.getSellPrice(), false);
-            rowCounter++;
-        }
-        for (int i = 0; i <= 19; i++) {
-            sheet.autoSizeColumn(i, false);
+            writer.fitColumnWidths(row);
         }
     }
 
-    private HSSFCell createRegularCell(StylesContainer stylesContainer, HSSFRow row, int column, String content) {
-        HSSFCell cell = row.createCell(column);
+    private Cell createRegularCell(StylesContainer stylesContainer, Row row, int column, String content) {
+        Cell cell = row.createCell(column);
         cell.setCellValue(content);
-        cell.setCellStyle(StylesContainer.aligned(stylesContainer.regularStyle, HSSFCellStyle.ALIGN_LEFT));
+        cell.setCellStyle(stylesContainer.regularStyle);
         return cell;
     }
 
-    private HSSFCell createNumericCell(StylesContainer stylesContainer, HSSFRow row, int column, BigDecimal value, boolean bold) {
-        HSSFCell cell = row.createCell(column, HSSFCell.CELL_TYPE_NUMERIC);
+    private Cell createNumericCell(StylesContainer stylesContainer, Row row, int column, BigDecimal value, boolean bold) {
+        Cell cell = row.createCell(column, Cell.CELL_TYPE_NUMERIC);
         cell.setCellValue(numberService.setScaleWithDefaultMathContext(value, 2).doubleValue());
         if (bold) {
-            cell.setCellStyle(StylesContainer.aligned(stylesContainer.numberBoldStyle, HSSFCellStyle.ALIGN_RIGHT));
+            cell.setCellStyle(stylesContainer.numberBoldStyle);
         } else {
-            cell.setCellStyle(StylesContainer.aligned(stylesContainer.numberStyle, HSSFCellStyle.ALIGN_RIGHT));
+            cell.setCellStyle(stylesContainer.numberStyle);
         }
         return cell;
     }
 
-    private HSSFCell createTimeCell(StylesContainer stylesContainer, HSSFRow row, int column, Integer value, boolean bold) {
-        HSSFCell cell = row.createCell(column, HSSFCell.CELL_TYPE_NUMERIC);
+    private Cell createTimeCell(StylesContainer stylesContainer, Row row, int column, Integer value, boolean bold) {
+        Cell cell = row.createCell(column, Cell.CELL_TYPE_NUMERIC);
         if (value == null) {
             value = 0;
         }
         cell.setCellValue(Math.abs(value) / 86400d);
         if (value >= 0) {
             if (bold) {
-                cell.setCellStyle(StylesContainer.aligned(stylesContainer.timeBoldStyle, HSSFCellStyle.ALIGN_RIGHT));
+                cell.setCellStyle(stylesContainer.timeBoldStyle);
             } else {
-                cell.setCellStyle(StylesContainer.aligned(stylesContainer.timeStyle, HSSFCellStyle.ALIGN_RIGHT));
+                cell.setCellStyle(stylesContainer.timeStyle);
             }
         } else {
-            cell.setCellStyle(StylesContainer.aligned(stylesContainer.negativeTimeStyle, HSSFCellStyle.ALIGN_RIGHT));
+            cell.setCellStyle(stylesContainer.negativeTimeStyle);
         }
         return cell;
     }
 
-    private HSSFCell createDateTimeCell(StylesContainer stylesContainer, HSSFRow row, int column, Date value) {
-        HSSFCell cell = row.createCell(column);
+    private Cell createDateTimeCell(StylesContainer stylesContainer, Row row, int column, Date value) {
+        Cell cell = row.createCell(column);
         if (value != null) {
             cell.setCellValue(value);
-            cell.setCellStyle(StylesContainer.aligned(stylesContainer.dateTimeStyle, HSSFCellStyle.ALIGN_RIGHT));
+            cell.setCellStyle(stylesContainer.dateTimeStyle);
         }
         return cell;
     }
 
-    private HSSFCell createHeaderCell(StylesContainer stylesContainer, HSSFRow row, String content, int column, short align) {
-        HSSFCell cell = row.createCell(column);
+    private Cell createHeaderCell(StylesContainer stylesContainer, Row row, String content, int column) {
+        Cell cell = row.createCell(column);
         cell.setCellValue(content);
-        cell.setCellStyle(StylesContainer.aligned(stylesContainer.headerStyle, align));
+        cell.setCellStyle(stylesContainer.headerStyle);
         return cell;
     }
 
+    /**
+     * Looks up styles of the report in the writer, so each of them is created once per workbook and shared by all sheets.
+     */
     private static class StylesContainer {
 
-        private final HSSFCellStyle regularStyle;
+        private final CellStyle regularStyle;
 
-        private final HSSFCellStyle headerStyle;
+        private final CellStyle headerStyle;
 
-        private final HSSFCellStyle timeStyle;
+        private final CellStyle timeStyle;
 
-        private final HSSFCellStyle timeBoldStyle;
+        private final CellStyle timeBoldStyle;
 
-        private final HSSFCellStyle negativeTimeStyle;
+        private final CellStyle negativeTimeStyle;
 
-        private final HSSFCellStyle numberStyle;
+        private final CellStyle numberStyle;
 
-        private final HSSFCellStyle numberBoldStyle;
+        private final CellStyle numberBoldStyle;
 
-        private final HSSFCellStyle dateTimeStyle;
+        private final CellStyle dateTimeStyle;
 
-        StylesContainer(HSSFWorkbook workbook, FontsContainer fontsContainer) {
-            regularStyle = workbook.createCellStyle();
-            regularStyle.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
+        StylesContainer(StreamingXlsxWriter writer) {
+            Font boldFont = writer.getFont("productionBalance.bold", font -> font.setBoldweight(Font.BOLDWEIGHT_BOLD));
 
-            headerStyle = workbook.createCellStyle();
-            headerStyle.setFont(fontsContainer.boldFont);
-            headerStyle.setFillPattern(XSSFCellStyle.SOLID_FOREGROUND);
-            headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-            headerStyle.setBorderBottom(XSSFCellStyle.BORDER_MEDIUM);
-            headerStyle.setWrapText(true);
+            regularStyle = writer.getStyle("productionBalance.regular", style -> {
+                style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+                style.setAlignment(CellStyle.ALIGN_LEFT);
+            });
 
-            timeStyle = workbook.createCellStyle();
-            timeStyle.setDataFormat(workbook.createDataFormat().getFormat("[HH]:MM:SS"));
+            headerStyle = writer.getStyle("productionBalance.header", style -> {
+                style.setFont(boldFont);
+                style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+                style.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+                style.setBorderBottom(CellStyle.BORDER_MEDIUM);
+                style.setWrapText(true);
+                style.setAlignment(CellStyle.ALIGN_LEFT);
+            });
 
-            timeBoldStyle = workbook.createCellStyle();
-            timeBoldStyle.setDataFormat(workbook.createDataFormat().getFormat("[HH]:MM:SS"));
-            timeBoldStyle.setFont(fontsContainer.boldFont);
+            timeStyle = writer.getStyle("productionBalance.time",
+                    style -> alignRight(style, writer.getDataFormat(TIME_FORMAT), null));
 
-            negativeTimeStyle = workbook.createCellStyle();
-            negativeTimeStyle.setDataFormat(workbook.createDataFormat().getFormat("-[HH]:MM:SS"));
+            timeBoldStyle = writer.getStyle("productionBalance.timeBold",
+                    style -> alignRight(style, writer.getDataFormat(TIME_FORMAT), boldFont));
 
-            numberStyle = workbook.createCellStyle();
-            numberStyle.setDataFormat(workbook.createDataFormat().getFormat("0.00###"));
+            negativeTimeStyle = writer.getStyle("productionBalance.negativeTime",
+                    style -> alignRight(style, writer.getDataFormat("-" + TIME_FORMAT), null));
 
-            numberBoldStyle = workbook.createCellStyle();
-            numberBoldStyle.setDataFormat(workbook.createDataFormat().getFormat("0.00###"));
-            numberBoldStyle.setFont(fontsContainer.boldFont);
+            numberStyle = writer.getStyle("productionBalance.number",
+                    style -> alignRight(style, writer.getDataFormat(NUMBER_FORMAT), null));
 
-            dateTimeStyle = workbook.createCellStyle();
-            dateTimeStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
-        }
+            numberBoldStyle = writer.getStyle("productionBalance.numberBold",
+                    style -> alignRight(style, writer.getDataFormat(NUMBER_FORMAT), boldFont));
 
-        private static HSSFCellStyle aligned(HSSFCellStyle style, short align) {
-            style.setAlignment(align);
-            return style;
+            dateTimeStyle = writer.getStyle("productionBalance.dateTime",
+                    style -> alignRight(style, writer.getDataFormat("yyyy-mm-dd hh:mm"), null));
         }
 
-    }
-
-    private static class FontsContainer {
-
-        private final Font boldFont;
-
-        FontsContainer(HSSFWorkbook workbook) {
-            boldFont = workbook.createFont();
-            boldFont.setBoldweight(Font.BOLDWEIGHT_BOLD);
+        private static void alignRight(CellStyle style, short dataFormat, Font font) {
+            style.setDataFormat(dataFormat);
+            style.setAlignment(CellStyle.ALIGN_RIGHT);
+            if (font != null) {
+                style.setFont(font);
+            }
         }
+
     }
 }
@@ -0,0 +1,210 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionCounting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.productionCounting.constants.ProductionTrackingFields;
+import com.qcadoo.mes.productionCounting.states.constants.ProductionTrackingStateStringValues;
+import com.qcadoo.model.api.Entity;
+
+public class BasicProductionCountingQuantityServiceTest {
+
+    private static final Long L_ORDER_ID = 11L;
+
+    private static final Long L_PRODUCTION_TRACKING_ID = 21L;
+
+    private BasicProductionCountingQuantityService basicProductionCountingQuantityService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private Entity productionTracking, order;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        basicProductionCountingQuantityService = new BasicProductionCountingQuantityService();
+
+        ReflectionTestUtils.setField(basicProductionCountingQuantityService, "jdbcTemplate", jdbcTemplate);
+
+        given(productionTracking.getId()).willReturn(L_PRODUCTION_TRACKING_ID);
+        given(productionTracking.getBelongsToField(ProductionTrackingFields.ORDER)).willReturn(order);
+        given(order.getId()).willReturn(L_ORDER_ID);
+    }
+
+    @Test
+    public final void shouldIncrementCountersOfOrderWithTrackingQuantities() {
+        // when
+        basicProductionCountingQuantityService.addProductionTracking(productionTracking);
+
+        // then
+        Map<String, Object> params = captureUpdateParameters();
+
+        assertEquals(L_ORDER_ID, params.get("orderId"));
+        assertEquals(L_PRODUCTION_TRACKING_ID, params.get("productionTrackingId"));
+        assertEquals(1, params.get("sign"));
+    }
+
+    @Test
+    public final void shouldDecrementCountersOfOrderWithTrackingQuantities() {
+        // when
+        basicProductionCountingQuantityService.subtractProductionTracking(productionTracking);
+
+        // then
+        assertEquals(-1, captureUpdateParameters().get("sign"));
+    }
+
+    @Test
+    public final void shouldReturnOrderWastesQuantityAfterIncrement() {
+        // given
+        given(jdbcTemplate.query(contains("RETURNING o.wastesquantity"), anyMapOf(String.class, Object.class),
+                any(RowMapper.class))).willReturn(Lists.newArrayList(new BigDecimal("3.5")));
+
+        // when
+        Optional<BigDecimal> wastesQuantity = basicProductionCountingQuantityService.addOrderWastesQuantity(productionTracking);
+
+        // then
+        assertEquals(new BigDecimal("3.5"), wastesQuantity.get());
+        assertEquals(1, captureQueryParameters().get("sign"));
+    }
+
+    @Test
+    public final void shouldReturnNothingWhenTrackingDoesNotReportOrderProduct() {
+        // given
+        given(jdbcTemplate.query(anyString(), anyMapOf(String.class, Object.class), any(RowMapper.class)))
+                .willReturn(Collections.emptyList());
+
+        // when
+        Optional<BigDecimal> wastesQuantity = basicProductionCountingQuantityService
+                .subtractOrderWastesQuantity(productionTracking);
+
+        // then
+        assertFalse(wastesQuantity.isPresent());
+        assertEquals(-1, captureQueryParameters().get("sign"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public final void shouldFindDriftedCountingsOfOrderFromAcceptedTrackings() {
+        // given
+        List<BasicProductionCountingDrift> drifts = Lists.newArrayList(new BasicProductionCountingDrift(31L, L_ORDER_ID, 41L,
+                BigDecimal.TEN, BigDecimal.ZERO, BigDecimal.ONE, BigDecimal.ZERO));
+
+        given(jdbcTemplate.query(contains("pt.order_id = :orderId"), anyMapOf(String.class, Object.class),
+                any(RowMapper.class))).willReturn(drifts);
+
+        // when
+        List<BasicProductionCountingDrift> result = basicProductionCountingQuantityService
+                .findDriftedBasicProductionCountings(L_ORDER_ID);
+
+        // then
+        assertSame(drifts, result);
+
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        verify(jdbcTemplate).query(contains("SELECT e.id"), paramsCaptor.capture(), any(RowMapper.class));
+        verify(jdbcTemplate, never()).update(anyString(), anyMapOf(String.class, Object.class));
+
+        assertEquals(L_ORDER_ID, paramsCaptor.getValue().get("orderId"));
+        assertEquals(ProductionTrackingStateStringValues.ACCEPTED, paramsCaptor.getValue().get("state"));
+    }
+
+    @Test
+    public final void shouldRebuildOnlyGivenCountings() {
+        // given
+        List<Long> basicProductionCountingIds = Lists.newArrayList(31L, 32L);
+
+        given(jdbcTemplate.update(contains("bpc.id IN (:basicProductionCountingIds)"), anyMapOf(String.class, Object.class)))
+                .willReturn(2);
+
+        // when
+        int rebuilt = basicProductionCountingQuantityService.rebuildBasicProductionCountings(basicProductionCountingIds);
+
+        // then
+        assertEquals(2, rebuilt);
+
+        Map<String, Object> params = captureUpdateParameters();
+
+        assertEquals(basicProductionCountingIds, params.get("basicProductionCountingIds"));
+        assertEquals(ProductionTrackingStateStringValues.ACCEPTED, params.get("state"));
+    }
+
+    @Test
+    public final void shouldNotRebuildWithoutCountings() {
+        // when
+        int rebuilt = basicProductionCountingQuantityService.rebuildBasicProductionCountings(Collections.emptyList());
+
+        // then
+        assertEquals(0, rebuilt);
+        verifyZeroInteractions(jdbcTemplate);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> captureUpdateParameters() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        verify(jdbcTemplate).update(contains("basicproductioncounting_basicproductioncounting"), paramsCaptor.capture());
+
+        return paramsCaptor.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> captureQueryParameters() {
+        ArgumentCaptor<Map> paramsCaptor = ArgumentCaptor.forClass(Map.class);
+
+        verify(jdbcTemplate).query(contains("UPDATE orders_order"), paramsCaptor.capture(), any(RowMapper.class));
+
+        return paramsCaptor.getValue();
+    }
+
+}
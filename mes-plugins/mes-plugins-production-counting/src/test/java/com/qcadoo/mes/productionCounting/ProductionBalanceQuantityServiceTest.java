@@ -0,0 +1,217 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionCounting;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityRole;
+import com.qcadoo.mes.productionCounting.constants.ProductionTrackingFields;
+import com.qcadoo.mes.productionCounting.constants.TrackingOperationProductInComponentFields;
+import com.qcadoo.mes.productionCounting.constants.TrackingOperationProductOutComponentFields;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.EntityList;
+
+public class ProductionBalanceQuantityServiceTest {
+
+    private static final Long L_ORDER_ID = 11L;
+
+    private static final Long L_TOC_ID = 12L;
+
+    private static final Long L_USED_PRODUCT_ID = 13L;
+
+    private static final Long L_PRODUCED_PRODUCT_ID = 14L;
+
+    private ProductionBalanceQuantityService productionBalanceQuantityService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private Entity productionTracking, order, technologyOperationComponent, usedProduct, producedProduct;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        productionBalanceQuantityService = new ProductionBalanceQuantityService();
+
+        ReflectionTestUtils.setField(productionBalanceQuantityService, "jdbcTemplate", jdbcTemplate);
+
+        given(productionTracking.getBelongsToField(ProductionTrackingFields.ORDER)).willReturn(order);
+        given(productionTracking.getBelongsToField(ProductionTrackingFields.TECHNOLOGY_OPERATION_COMPONENT)).willReturn(
+                technologyOperationComponent);
+        given(order.getId()).willReturn(L_ORDER_ID);
+        given(technologyOperationComponent.getId()).willReturn(L_TOC_ID);
+        given(usedProduct.getId()).willReturn(L_USED_PRODUCT_ID);
+        given(producedProduct.getId()).willReturn(L_PRODUCED_PRODUCT_ID);
+
+        EntityList inComponents = mockEntityList(Lists.newArrayList(mockInComponent("2", "1"), mockInComponent("3", null)));
+        EntityList outComponents = mockEntityList(Lists.newArrayList(mockOutComponent("10", "1.5")));
+
+        given(productionTracking.getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_IN_COMPONENTS)).willReturn(
+                inComponents);
+        given(productionTracking.getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_OUT_COMPONENTS))
+                .willReturn(outComponents);
+    }
+
+    @Test
+    public final void shouldIncrementQuantitiesSummedPerProductOnAccept() {
+        // when
+        productionBalanceQuantityService.addProductionTracking(productionTracking);
+
+        // then
+        SqlParameterSource[] quantities = captureQuantities();
+
+        assertEquals(2, quantities.length);
+
+        assertKey(quantities[0], L_USED_PRODUCT_ID, ProductionCountingQuantityRole.USED.getStringValue());
+        assertBigDecimalEquals(new BigDecimal("5"), quantities[0].getValue("usedQuantity"));
+        assertBigDecimalEquals(BigDecimal.ZERO, quantities[0].getValue("wastesQuantity"));
+        assertBigDecimalEquals(BigDecimal.ONE, quantities[0].getValue("wasteUsedQuantity"));
+
+        assertKey(quantities[1], L_PRODUCED_PRODUCT_ID, ProductionCountingQuantityRole.PRODUCED.getStringValue());
+        assertBigDecimalEquals(BigDecimal.TEN, quantities[1].getValue("usedQuantity"));
+        assertBigDecimalEquals(new BigDecimal("1.5"), quantities[1].getValue("wastesQuantity"));
+        assertBigDecimalEquals(BigDecimal.ZERO, quantities[1].getValue("wasteUsedQuantity"));
+
+        verify(jdbcTemplate).update(contains("DELETE"), any(SqlParameterSource.class));
+    }
+
+    @Test
+    public final void shouldDecrementQuantitiesOnCorrection() {
+        // when
+        productionBalanceQuantityService.subtractProductionTracking(productionTracking);
+
+        // then
+        SqlParameterSource[] quantities = captureQuantities();
+
+        assertEquals(2, quantities.length);
+
+        assertBigDecimalEquals(new BigDecimal("-5"), quantities[0].getValue("usedQuantity"));
+        assertBigDecimalEquals(BigDecimal.ONE.negate(), quantities[0].getValue("wasteUsedQuantity"));
+        assertBigDecimalEquals(BigDecimal.TEN.negate(), quantities[1].getValue("usedQuantity"));
+        assertBigDecimalEquals(new BigDecimal("-1.5"), quantities[1].getValue("wastesQuantity"));
+
+        verify(jdbcTemplate).update(contains("DELETE"), any(SqlParameterSource.class));
+    }
+
+    @Test
+    public final void shouldNotUpdateWhenTrackingHasNoComponents() {
+        // given
+        EntityList noComponents = mockEntityList(Collections.emptyList());
+
+        given(productionTracking.getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_IN_COMPONENTS)).willReturn(
+                noComponents);
+        given(productionTracking.getHasManyField(ProductionTrackingFields.TRACKING_OPERATION_PRODUCT_OUT_COMPONENTS))
+                .willReturn(noComponents);
+
+        // when
+        productionBalanceQuantityService.addProductionTracking(productionTracking);
+
+        // then
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), any(SqlParameterSource[].class));
+    }
+
+    private SqlParameterSource[] captureQuantities() {
+        ArgumentCaptor<SqlParameterSource[]> quantitiesCaptor = ArgumentCaptor.forClass(SqlParameterSource[].class);
+
+        verify(jdbcTemplate).batchUpdate(contains("INSERT INTO productioncounting_productionbalancequantity"),
+                quantitiesCaptor.capture());
+
+        return quantitiesCaptor.getValue();
+    }
+
+    private void assertKey(final SqlParameterSource quantity, final Long productId, final String role) {
+        assertEquals(L_ORDER_ID, quantity.getValue("orderId"));
+        assertEquals(L_TOC_ID, quantity.getValue("technologyOperationComponentId"));
+        assertEquals(productId, quantity.getValue("productId"));
+        assertEquals(role, quantity.getValue("role"));
+    }
+
+    private Entity mockInComponent(final String usedQuantity, final String wasteUsedQuantity) {
+        Entity inComponent = mock(Entity.class);
+
+        given(inComponent.getBelongsToField(TrackingOperationProductInComponentFields.PRODUCT)).willReturn(usedProduct);
+        given(inComponent.getDecimalField(TrackingOperationProductInComponentFields.USED_QUANTITY)).willReturn(
+                new BigDecimal(usedQuantity));
+
+        if (wasteUsedQuantity != null) {
+            given(inComponent.getDecimalField(TrackingOperationProductInComponentFields.WASTE_USED_QUANTITY)).willReturn(
+                    new BigDecimal(wasteUsedQuantity));
+        }
+
+        return inComponent;
+    }
+
+    private Entity mockOutComponent(final String usedQuantity, final String wastesQuantity) {
+        Entity outComponent = mock(Entity.class);
+
+        given(outComponent.getBelongsToField(TrackingOperationProductOutComponentFields.PRODUCT)).willReturn(producedProduct);
+        given(outComponent.getDecimalField(TrackingOperationProductOutComponentFields.USED_QUANTITY)).willReturn(
+                new BigDecimal(usedQuantity));
+        given(outComponent.getDecimalField(TrackingOperationProductOutComponentFields.WASTES_QUANTITY)).willReturn(
+                new BigDecimal(wastesQuantity));
+
+        return outComponent;
+    }
+
+    private static EntityList mockEntityList(final List<Entity> entities) {
+        EntityList entityList = mock(EntityList.class);
+
+        given(entityList.iterator()).willAnswer(invocation -> ImmutableList.copyOf(entities).iterator());
+        given(entityList.isEmpty()).willReturn(entities.isEmpty());
+
+        return entityList;
+    }
+
+    private static void assertBigDecimalEquals(final BigDecimal expected, final Object actual) {
+        if (expected.compareTo((BigDecimal) actual) != 0) {
+            Assert.fail("expected " + expected + " but actual value is " + actual);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionCounting.states.listener;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.productionCounting.BasicProductionCountingQuantityService;
+import com.qcadoo.mes.productionCounting.ProductionBalanceQuantityService;
+import com.qcadoo.mes.productionCounting.constants.ProductionTrackingFields;
+import com.qcadoo.mes.productionCounting.utils.OrderClosingHelper;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+public class ProductionTrackingListenerServiceTest {
+
+    private static final Long L_ORDER_ID = 11L;
+
+    private ProductionTrackingListenerService productionTrackingListenerService;
+
+    @Mock
+    private BasicProductionCountingService basicProductionCountingService;
+
+    @Mock
+    private BasicProductionCountingQuantityService basicProductionCountingQuantityService;
+
+    @Mock
+    private ProductionBalanceQuantityService productionBalanceQuantityService;
+
+    @Mock
+    private OrderClosingHelper orderClosingHelper;
+
+    @Mock
+    private DataDefinition orderDD;
+
+    @Mock
+    private Entity productionTracking, order, orderFromDB;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        productionTrackingListenerService = new ProductionTrackingListenerService();
+
+        ReflectionTestUtils.setField(productionTrackingListenerService, "basicProductionCountingService",
+                basicProductionCountingService);
+        ReflectionTestUtils.setField(productionTrackingListenerService, "basicProductionCountingQuantityService",
+                basicProductionCountingQuantityService);
+        ReflectionTestUtils.setField(productionTrackingListenerService, "productionBalanceQuantityService",
+                productionBalanceQuantityService);
+        ReflectionTestUtils.setField(productionTrackingListenerService, "orderClosingHelper", orderClosingHelper);
+
+        given(productionTracking.getBelongsToField(ProductionTrackingFields.ORDER)).willReturn(order);
+        given(productionTracking.getBooleanField(ProductionTrackingFields.LAST_TRACKING)).willReturn(true);
+        given(order.getId()).willReturn(L_ORDER_ID);
+        given(order.getDataDefinition()).willReturn(orderDD);
+        given(orderDD.get(L_ORDER_ID)).willReturn(orderFromDB);
+        given(orderFromDB.getDataDefinition()).willReturn(orderDD);
+    }
+
+    @Test
+    public final void shouldSaveOrderWithIncrementedWastesAndDoneQuantityOnAccept() {
+        // given
+        given(basicProductionCountingQuantityService.addOrderWastesQuantity(productionTracking)).willReturn(
+                Optional.of(new BigDecimal("4")));
+        given(basicProductionCountingService.getProducedQuantityFromBasicProductionCountings(orderFromDB)).willReturn(
+                new BigDecimal("20"));
+
+        // when
+        productionTrackingListenerService.onAccept(productionTracking);
+
+        // then
+        verify(basicProductionCountingQuantityService).addProductionTracking(productionTracking);
+        verify(orderFromDB).setField(OrderFields.WASTES_QUANTITY, new BigDecimal("4"));
+        verify(orderFromDB).setField(OrderFields.DONE_QUANTITY, new BigDecimal("20"));
+        verify(orderFromDB).setField("finalProductionTracking", true);
+        verify(orderDD).save(orderFromDB);
+        verify(productionBalanceQuantityService).addProductionTracking(productionTracking);
+    }
+
+    @Test
+    public final void shouldNotSaveOrderWhenTrackingDoesNotReportOrderProduct() {
+        // given
+        given(basicProductionCountingQuantityService.addOrderWastesQuantity(productionTracking)).willReturn(Optional.empty());
+
+        // when
+        productionTrackingListenerService.onAccept(productionTracking);
+
+        // then
+        verify(basicProductionCountingQuantityService).addProductionTracking(productionTracking);
+        verify(orderDD, never()).save(any(Entity.class));
+    }
+
+    @Test
+    public final void shouldSaveOrderWithDecrementedWastesQuantityOnCorrection() {
+        // given
+        given(basicProductionCountingQuantityService.subtractOrderWastesQuantity(productionTracking)).willReturn(
+                Optional.of(BigDecimal.ONE));
+        given(basicProductionCountingService.getProducedQuantityFromBasicProductionCountings(orderFromDB)).willReturn(
+                BigDecimal.TEN);
+
+        // when
+        productionTrackingListenerService.onCorrected(productionTracking);
+
+        // then
+        verify(basicProductionCountingQuantityService).subtractProductionTracking(productionTracking);
+        verify(orderFromDB).setField(OrderFields.WASTES_QUANTITY, BigDecimal.ONE);
+        verify(orderFromDB).setField(OrderFields.DONE_QUANTITY, BigDecimal.TEN);
+        verify(orderDD).save(orderFromDB);
+        verify(productionBalanceQuantityService).subtractProductionTracking(productionTracking);
+    }
+
+}
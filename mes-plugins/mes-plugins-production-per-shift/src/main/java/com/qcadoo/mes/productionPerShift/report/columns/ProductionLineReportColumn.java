@@ -1,7 +1,6 @@
 package com.qcadoo.mes.productionPerShift.report.columns;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
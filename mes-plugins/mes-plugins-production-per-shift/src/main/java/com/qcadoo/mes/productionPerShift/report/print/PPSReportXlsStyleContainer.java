@@ -2,16 +2,16 @@ package com.qcadoo.mes.productionPerShift.report.print;
 
 import java.util.Map;
 
-import org.apache.poi.hssf.usermodel.HSSFCellStyle;
 import org.apache.poi.hssf.usermodel.HSSFFont;
-import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.util.HSSFColor;
+import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.Font;
 
 import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.reports.xls.StreamingXlsxWriter;
 
 /**
- * Styles and style identifiers
+ * Styles and style identifiers. Fonts and styles are looked up in the writer, so they are created once per workbook.
  */
 public class PPSReportXlsStyleContainer {
 
@@ -39,7 +39,11 @@ public class PPSReportXlsStyleContainer {
 
     public static final String I_HeaderStyle2Red = "headerStyle2Red";
 
-    private Map<String, HSSFCellStyle> styles = Maps.newHashMap();
+    private static final String L_STYLE_PREFIX = "ppsReport.";
+
+    private final StreamingXlsxWriter writer;
+
+    private Map<String, CellStyle> styles = Maps.newHashMap();
 
     private Font fontNormal;
 
@@ -49,249 +53,244 @@ public class PPSReportXlsStyleContainer {
 
     private Font fontSmallRed;
 
-    public PPSReportXlsStyleContainer(HSSFSheet sheet) {
-        initStyle(sheet);
+    public PPSReportXlsStyleContainer(final StreamingXlsxWriter writer) {
+        this.writer = writer;
+        initStyle();
     }
 
-    private void initStyle(final HSSFSheet sheet) {
-        this.fontNormal = sheet.getWorkbook().createFont();
-        fontNormal.setFontName(HSSFFont.FONT_ARIAL);
-        fontNormal.setBoldweight(Font.BOLDWEIGHT_BOLD);
-        fontNormal.setFontHeightInPoints((short) 9);
-        fontNormal.setColor(HSSFFont.COLOR_NORMAL);
-
-        this.fontRed = sheet.getWorkbook().createFont();
-        fontRed.setFontName(HSSFFont.FONT_ARIAL);
-        fontRed.setBoldweight(Font.BOLDWEIGHT_BOLD);
-        fontRed.setFontHeightInPoints((short) 9);
-        fontRed.setColor(HSSFFont.COLOR_NORMAL);
-        fontRed.setColor(HSSFFont.COLOR_RED);
-
-        this.fontSmall = sheet.getWorkbook().createFont();
-        fontSmall.setFontName(HSSFFont.FONT_ARIAL);
-        fontSmall.setBoldweight(Font.BOLDWEIGHT_BOLD);
-        fontSmall.setFontHeightInPoints((short) 7);
-        fontSmall.setColor(HSSFFont.COLOR_NORMAL);
-
-        this.fontSmallRed = sheet.getWorkbook().createFont();
-        fontSmallRed.setFontName(HSSFFont.FONT_ARIAL);
-        fontSmallRed.setBoldweight(Font.BOLDWEIGHT_BOLD);
-        fontSmallRed.setFontHeightInPoints((short) 7);
-        fontSmallRed.setColor(HSSFFont.COLOR_NORMAL);
-        fontSmallRed.setColor(HSSFFont.COLOR_RED);
-
-        initWhiteDataStyleSmall(sheet);
-        greyDataStyleSmall(sheet);
-        whiteDataStyleEnd(sheet);
-        greyDataStyleEnd(sheet);
-        whiteDataStyle(sheet);
-        greyDataStyle(sheet);
-        changeoverDataStyle(sheet);
-        whiteDataStyleRed(sheet);
-        greyDataStyleRed(sheet);
-        headerStyle1(sheet);
-        headerStyle2(sheet);
-        headerStyle2Red(sheet);
+    private void initStyle() {
+        this.fontNormal = writer.getFont(L_STYLE_PREFIX + "fontNormal", font -> {
+            font.setFontName(HSSFFont.FONT_ARIAL);
+            font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            font.setFontHeightInPoints((short) 9);
+            font.setColor(HSSFFont.COLOR_NORMAL);
+        });
+
+        this.fontRed = writer.getFont(L_STYLE_PREFIX + "fontRed", font -> {
+            font.setFontName(HSSFFont.FONT_ARIAL);
+            font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            font.setFontHeightInPoints((short) 9);
+            font.setColor(HSSFFont.COLOR_NORMAL);
+            font.setColor(HSSFFont.COLOR_RED);
+        });
+
+        this.fontSmall = writer.getFont(L_STYLE_PREFIX + "fontSmall", font -> {
+            font.setFontName(HSSFFont.FONT_ARIAL);
+            font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            font.setFontHeightInPoints((short) 7);
+            font.setColor(HSSFFont.COLOR_NORMAL);
+        });
+
+        this.fontSmallRed = writer.getFont(L_STYLE_PREFIX + "fontSmallRed", font -> {
+            font.setFontName(HSSFFont.FONT_ARIAL);
+            font.setBoldweight(Font.BOLDWEIGHT_BOLD);
+            font.setFontHeightInPoints((short) 7);
+            font.setColor(HSSFFont.COLOR_NORMAL);
+            font.setColor(HSSFFont.COLOR_RED);
+        });
+
+        initWhiteDataStyleSmall();
+        greyDataStyleSmall();
+        whiteDataStyleEnd();
+        greyDataStyleEnd();
+        whiteDataStyle();
+        greyDataStyle();
+        changeoverDataStyle();
+        whiteDataStyleRed();
+        greyDataStyleRed();
+        headerStyle1();
+        headerStyle2();
+        headerStyle2Red();
     }
 
-    private void headerStyle2Red(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-        style.setBorderTop(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderLeft(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderRight(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderBottom(HSSFCellStyle.BORDER_MEDIUM);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFont(fontSmallRed);
-        styles.put(I_HeaderStyle2Red, style);
-
+    private void headerStyle2Red() {
+        styles.put(I_HeaderStyle2Red, writer.getStyle(L_STYLE_PREFIX + I_HeaderStyle2Red, style -> {
+            style.setBorderTop(CellStyle.BORDER_MEDIUM);
+            style.setBorderLeft(CellStyle.BORDER_MEDIUM);
+            style.setBorderRight(CellStyle.BORDER_MEDIUM);
+            style.setBorderBottom(CellStyle.BORDER_MEDIUM);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFont(fontSmallRed);
+        }));
     }
 
-    private void headerStyle2(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-        style.setBorderTop(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderLeft(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderRight(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderBottom(HSSFCellStyle.BORDER_MEDIUM);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFont(fontSmall);
-        styles.put(I_HeaderStyle2, style);
+    private void headerStyle2() {
+        styles.put(I_HeaderStyle2, writer.getStyle(L_STYLE_PREFIX + I_HeaderStyle2, style -> {
+            style.setBorderTop(CellStyle.BORDER_MEDIUM);
+            style.setBorderLeft(CellStyle.BORDER_MEDIUM);
+            style.setBorderRight(CellStyle.BORDER_MEDIUM);
+            style.setBorderBottom(CellStyle.BORDER_MEDIUM);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFont(fontSmall);
+        }));
     }
 
-    private void headerStyle1(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-        style.setBorderTop(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderLeft(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderRight(HSSFCellStyle.BORDER_MEDIUM);
-        style.setBorderBottom(HSSFCellStyle.BORDER_MEDIUM);
-        style.setFillForegroundColor(HSSFColor.GREY_50_PERCENT.index);
-        style.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-        style.setAlignment(HSSFCellStyle.ALIGN_LEFT);
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFont(fontNormal);
-        styles.put(I_HeaderStyle1, style);
+    private void headerStyle1() {
+        styles.put(I_HeaderStyle1, writer.getStyle(L_STYLE_PREFIX + I_HeaderStyle1, style -> {
+            style.setBorderTop(CellStyle.BORDER_MEDIUM);
+            style.setBorderLeft(CellStyle.BORDER_MEDIUM);
+            style.setBorderRight(CellStyle.BORDER_MEDIUM);
+            style.setBorderBottom(CellStyle.BORDER_MEDIUM);
+            style.setFillForegroundColor(HSSFColor.GREY_50_PERCENT.index);
+            style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+            style.setAlignment(CellStyle.ALIGN_LEFT);
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFont(fontNormal);
+        }));
     }
 
-    private void greyDataStyleRed(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-        style.setFillForegroundColor(HSSFColor.GREY_25_PERCENT.index);
-        style.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFont(fontRed);
-        styles.put(I_GreyDataStyleRed, style);
+    private void greyDataStyleRed() {
+        styles.put(I_GreyDataStyleRed, writer.getStyle(L_STYLE_PREFIX + I_GreyDataStyleRed, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
+            style.setFillForegroundColor(HSSFColor.GREY_25_PERCENT.index);
+            style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFont(fontRed);
+        }));
     }
 
-    private void whiteDataStyleRed(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFont(fontRed);
-        styles.put(I_WhiteDataStyleRed, style);
+    private void whiteDataStyleRed() {
+        styles.put(I_WhiteDataStyleRed, writer.getStyle(L_STYLE_PREFIX + I_WhiteDataStyleRed, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFont(fontRed);
+        }));
     }
 
-    private void changeoverDataStyle(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-
-
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-
+    private void changeoverDataStyle() {
+        styles.put(I_ChangeoverDataStyle, writer.getStyle(L_STYLE_PREFIX + I_ChangeoverDataStyle, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
 
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
 
-        style.setFont(fontNormal);
+            style.setFont(fontNormal);
 
-        style.setFillForegroundColor(HSSFColor.PALE_BLUE.index);
-        style.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-        styles.put(I_ChangeoverDataStyle, style);
+            style.setFillForegroundColor(HSSFColor.PALE_BLUE.index);
+            style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+        }));
     }
 
-    private void whiteDataStyle(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFont(fontNormal);
-        styles.put(I_WhiteDataStyle, style);
+    private void whiteDataStyle() {
+        styles.put(I_WhiteDataStyle, writer.getStyle(L_STYLE_PREFIX + I_WhiteDataStyle, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFont(fontNormal);
+        }));
     }
 
-    private void greyDataStyle(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFillForegroundColor(HSSFColor.GREY_25_PERCENT.index);
-        style.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-        style.setFont(fontNormal);
-        styles.put(I_GreyDataStyle, style);
+    private void greyDataStyle() {
+        styles.put(I_GreyDataStyle, writer.getStyle(L_STYLE_PREFIX + I_GreyDataStyle, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFillForegroundColor(HSSFColor.GREY_25_PERCENT.index);
+            style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+            style.setFont(fontNormal);
+        }));
     }
 
-    private void greyDataStyleEnd(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFillForegroundColor(HSSFColor.GREY_25_PERCENT.index);
-        style.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-        style.setBorderRight(HSSFCellStyle.BORDER_MEDIUM);
-        style.setFont(fontNormal);
-        styles.put(I_GreyDataStyleEnd, style);
+    private void greyDataStyleEnd() {
+        styles.put(I_GreyDataStyleEnd, writer.getStyle(L_STYLE_PREFIX + I_GreyDataStyleEnd, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFillForegroundColor(HSSFColor.GREY_25_PERCENT.index);
+            style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+            style.setBorderRight(CellStyle.BORDER_MEDIUM);
+            style.setFont(fontNormal);
+        }));
     }
 
-    private void whiteDataStyleEnd(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFont(fontNormal);
-        style.setBorderRight(HSSFCellStyle.BORDER_MEDIUM);
-
-        styles.put(I_WhiteDataStyleEnd, style);
+    private void whiteDataStyleEnd() {
+        styles.put(I_WhiteDataStyleEnd, writer.getStyle(L_STYLE_PREFIX + I_WhiteDataStyleEnd, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFont(fontNormal);
+            style.setBorderRight(CellStyle.BORDER_MEDIUM);
+        }));
     }
 
-    private void greyDataStyleSmall(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFillForegroundColor(HSSFColor.GREY_25_PERCENT.index);
-        style.setFillPattern(HSSFCellStyle.SOLID_FOREGROUND);
-        style.setFont(fontSmall);
-        styles.put(I_GreyDataStyleSmall, style);
+    private void greyDataStyleSmall() {
+        styles.put(I_GreyDataStyleSmall, writer.getStyle(L_STYLE_PREFIX + I_GreyDataStyleSmall, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFillForegroundColor(HSSFColor.GREY_25_PERCENT.index);
+            style.setFillPattern(CellStyle.SOLID_FOREGROUND);
+            style.setFont(fontSmall);
+        }));
     }
 
-    private void initWhiteDataStyleSmall(HSSFSheet sheet) {
-        HSSFCellStyle style = sheet.getWorkbook().createCellStyle();
-
-        style.setBorderTop(HSSFCellStyle.BORDER_THIN);
-        style.setBorderLeft(HSSFCellStyle.BORDER_THIN);
-        style.setBorderRight(HSSFCellStyle.BORDER_THIN);
-        style.setBorderBottom(HSSFCellStyle.BORDER_THIN);
-
-        style.setAlignment(HSSFCellStyle.ALIGN_CENTER);
-        style.setVerticalAlignment(HSSFCellStyle.VERTICAL_CENTER);
-        style.setWrapText(true);
-        style.setFont(fontSmall);
-        styles.put(I_WhiteDataStyleSmall, style);
+    private void initWhiteDataStyleSmall() {
+        styles.put(I_WhiteDataStyleSmall, writer.getStyle(L_STYLE_PREFIX + I_WhiteDataStyleSmall, style -> {
+            style.setBorderTop(CellStyle.BORDER_THIN);
+            style.setBorderLeft(CellStyle.BORDER_THIN);
+            style.setBorderRight(CellStyle.BORDER_THIN);
+            style.setBorderBottom(CellStyle.BORDER_THIN);
+
+            style.setAlignment(CellStyle.ALIGN_CENTER);
+            style.setVerticalAlignment(CellStyle.VERTICAL_CENTER);
+            style.setWrapText(true);
+            style.setFont(fontSmall);
+        }));
     }
 
-    public Map<String, HSSFCellStyle> getStyles() {
+    public Map<String, CellStyle> getStyles() {
         return styles;
     }
 
-    public void setStyles(Map<String, HSSFCellStyle> styles) {
+    public void setStyles(Map<String, CellStyle> styles) {
         this.styles = styles;
     }
 }
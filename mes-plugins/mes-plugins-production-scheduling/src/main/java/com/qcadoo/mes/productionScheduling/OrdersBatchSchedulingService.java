@@ -0,0 +1,225 @@
+package com.qcadoo.mes.productionScheduling;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.joda.time.DateTime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basic.ShiftExceptionService;
+import com.qcadoo.mes.basic.shift.Shift;
+import com.qcadoo.mes.basic.shift.ShiftsDataProvider;
+import com.qcadoo.mes.basic.util.DateTimeRange;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.states.constants.OrderStateStringValues;
+import com.qcadoo.mes.productionScheduling.constants.OrderFieldsPS;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Schedules many orders in one pass. Shifts, timetable exceptions of the whole scheduling horizon and time occupied by orders
+ * outside of the batch are loaded once per production line, then orders are placed one after another on capacity timelines of
+ * their lines, so an order never overlaps with orders placed before it.
+ */
+@Service
+public class OrdersBatchSchedulingService {
+
+    private static final int MAX_LOOPS = 1000;
+
+    private static final int MILLS = 1000;
+
+    private static final int CALENDAR_CHUNK_DAYS = 31;
+
+    private static final List<String> OCCUPYING_STATES = Lists.newArrayList(OrderStateStringValues.ACCEPTED,
+            OrderStateStringValues.IN_PROGRESS, OrderStateStringValues.INTERRUPTED);
+
+    @Autowired
+    private ShiftsDataProvider shiftsDataProvider;
+
+    @Autowired
+    private ShiftExceptionService shiftExceptionService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Orders are placed in the given sequence, each one as early as possible but not before its start date. Orders without start
+     * date or with start date in the past are placed from now on.
+     * Orders without production line or realization time, and orders which don't fit in the calendar, are left out.
+     *
+     * @return planned date ranges by order id
+     */
+    public Map<Long, DateTimeRange> scheduleOrders(final List<Entity> orders) {
+        Map<Long, DateTimeRange> schedule = Maps.newLinkedHashMap();
+
+        List<Entity> ordersToSchedule = orders.stream().filter(this::canBeScheduled).collect(Collectors.toList());
+
+        if (ordersToSchedule.isEmpty()) {
+            return schedule;
+        }
+
+        long now = System.currentTimeMillis();
+        long horizonStart = new DateTime(ordersToSchedule.stream().mapToLong(order -> getEarliestStart(order, now)).min()
+                .getAsLong()).minusDays(1).withTimeAtStartOfDay().getMillis();
+
+        List<Shift> shifts = shiftsDataProvider.findAll();
+        Map<Long, List<long[]>> occupancy = getOccupancy(ordersToSchedule, horizonStart);
+        Map<Long, ProductionLineCapacity> capacities = Maps.newHashMap();
+        Map<Long, Map<Long, List<Entity>>> exceptions = Maps.newHashMap();
+
+        for (Entity order : ordersToSchedule) {
+            Entity productionLine = order.getBelongsToField(OrderFields.PRODUCTION_LINE);
+
+            ProductionLineCapacity capacity = capacities.computeIfAbsent(productionLine.getId(),
+                    productionLineId -> createCapacity(horizonStart, occupancy.get(productionLineId)));
+
+            long earliestStart = getEarliestStart(order, now);
+            long duration = (long) order.getIntegerField(OrderFieldsPS.REALIZATION_TIME) * MILLS;
+            long[] placement = capacity.place(earliestStart, duration);
+
+            Map<Long, List<Entity>> exceptionsByShift = exceptions.computeIfAbsent(productionLine.getId(),
+                    productionLineId -> getExceptions(productionLine, shifts, horizonStart));
+
+            while ((placement == null) && extendCalendar(capacity, shifts, exceptionsByShift, horizonStart)) {
+                placement = capacity.place(earliestStart, duration);
+            }
+
+            if (placement != null) {
+                capacity.occupy(placement[0], placement[1]);
+
+                schedule.put(order.getId(), new DateTimeRange(new DateTime(placement[0]), new DateTime(placement[1])));
+            }
+        }
+
+        return schedule;
+    }
+
+    /**
+     * Schedules orders and saves planned dates as their start and finish dates, which order hooks map to planned or corrected
+     * dates depending on order state.
+     *
+     * @return orders which were scheduled and saved successfully
+     */
+    @Transactional
+    public List<Entity> rescheduleOrders(final List<Entity> orders) {
+        Map<Long, DateTimeRange> schedule = scheduleOrders(orders);
+
+        List<Entity> savedOrders = Lists.newArrayList();
+
+        for (Entity order : orders) {
+            DateTimeRange range = schedule.get(order.getId());
+
+            if (range != null) {
+                order.setField(OrderFields.START_DATE, range.getFrom().toDate());
+                order.setField(OrderFields.FINISH_DATE, range.getTo().toDate());
+
+                Entity savedOrder = order.getDataDefinition().save(order);
+
+                if (savedOrder.isValid()) {
+                    savedOrders.add(savedOrder);
+                }
+            }
+        }
+
+        return savedOrders;
+    }
+
+    private boolean canBeScheduled(final Entity order) {
+        return Objects.nonNull(order.getId()) && Objects.nonNull(order.getBelongsToField(OrderFields.PRODUCTION_LINE))
+                && Objects.nonNull(order.getIntegerField(OrderFieldsPS.REALIZATION_TIME));
+    }
+
+    private long getEarliestStart(final Entity order, final long now) {
+        Date startDate = order.getDateField(OrderFields.START_DATE);
+
+        if (startDate == null) {
+            return now;
+        }
+
+        return Math.max(startDate.getTime(), now);
+    }
+
+    private ProductionLineCapacity createCapacity(final long horizonStart, final List<long[]> occupiedRanges) {
+        ProductionLineCapacity capacity = new ProductionLineCapacity(horizonStart);
+
+        if (occupiedRanges != null) {
+            for (long[] occupiedRange : occupiedRanges) {
+                capacity.occupy(occupiedRange[0], occupiedRange[1]);
+            }
+        }
+
+        return capacity;
+    }
+
+    private Map<Long, List<Entity>> getExceptions(final Entity productionLine, final List<Shift> shifts, final long horizonStart) {
+        Date fromDate = new Date(horizonStart);
+        Date toDate = getHorizonEnd(horizonStart).toDate();
+
+        return shifts.stream().collect(Collectors.toMap(shift -> shift.getEntity().getId(),
+                shift -> shiftExceptionService.findExceptions(productionLine, shift, fromDate, toDate)));
+    }
+
+    private DateTime getHorizonEnd(final long horizonStart) {
+        return new DateTime(horizonStart).plusDays(MAX_LOOPS);
+    }
+
+    private boolean extendCalendar(final ProductionLineCapacity capacity, final List<Shift> shifts,
+            final Map<Long, List<Entity>> exceptionsByShift, final long horizonStart) {
+        DateTime dateOfDay = new DateTime(capacity.getCalendarEnd());
+
+        if (!dateOfDay.isBefore(getHorizonEnd(horizonStart))) {
+            return false;
+        }
+
+        for (int day = 0; day < CALENDAR_CHUNK_DAYS; day++) {
+            for (Shift shift : shifts) {
+                for (DateTimeRange range : shiftExceptionService.getShiftWorkDateTimes(shift, dateOfDay,
+                        exceptionsByShift.get(shift.getEntity().getId()))) {
+                    capacity.addWorkingTime(range.getFrom().getMillis(), range.getTo().getMillis());
+                }
+            }
+
+            dateOfDay = dateOfDay.plusDays(1);
+        }
+
+        capacity.setCalendarEnd(dateOfDay.getMillis());
+
+        return true;
+    }
+
+    private Map<Long, List<long[]>> getOccupancy(final Collection<Entity> orders, final long horizonStart) {
+        Set<Long> orderIds = orders.stream().map(Entity::getId).collect(Collectors.toSet());
+        Set<Long> productionLineIds = orders.stream().map(order -> order.getBelongsToField(OrderFields.PRODUCTION_LINE).getId())
+                .collect(Collectors.toSet());
+
+        String query = "SELECT o.productionline_id, o.startdate, o.finishdate FROM orders_order o "
+                + "WHERE o.productionline_id IN (:productionLineIds) AND o.id NOT IN (:orderIds) AND o.state IN (:states) "
+                + "AND o.startdate IS NOT NULL AND o.finishdate > :horizonStart";
+
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("productionLineIds", productionLineIds);
+        params.put("orderIds", orderIds);
+        params.put("states", OCCUPYING_STATES);
+        params.put("horizonStart", new Date(horizonStart));
+
+        Map<Long, List<long[]>> occupancy = Maps.newHashMap();
+
+        jdbcTemplate.query(query, params, rs -> {
+            occupancy.computeIfAbsent(rs.getLong("productionline_id"), productionLineId -> Lists.newArrayList())
+                    .add(new long[] { rs.getTimestamp("startdate").getTime(), rs.getTimestamp("finishdate").getTime() });
+        });
+
+        return occupancy;
+    }
+
+}
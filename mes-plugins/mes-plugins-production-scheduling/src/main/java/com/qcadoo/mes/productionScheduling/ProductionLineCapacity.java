@@ -0,0 +1,168 @@
+package com.qcadoo.mes.productionScheduling;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Capacity timeline of a single production line. Working time of the line calendar and time already occupied by orders are
+ * kept as two maps of disjoint intervals (start millis -> end millis), so placing an order only walks the free intervals which
+ * follow its earliest start.
+ */
+public class ProductionLineCapacity {
+
+    private final TreeMap<Long, Long> freeIntervals = new TreeMap<>();
+
+    private final TreeMap<Long, Long> busyIntervals = new TreeMap<>();
+
+    private long calendarEnd;
+
+    public ProductionLineCapacity(final long calendarStart) {
+        this.calendarEnd = calendarStart;
+    }
+
+    public long getCalendarEnd() {
+        return calendarEnd;
+    }
+
+    public void setCalendarEnd(final long calendarEnd) {
+        this.calendarEnd = calendarEnd;
+    }
+
+    public void addWorkingTime(final long from, final long to) {
+        if (from >= to) {
+            return;
+        }
+
+        long start = from;
+
+        Map.Entry<Long, Long> busy = busyIntervals.floorEntry(start);
+
+        if ((busy != null) && (busy.getValue() > start)) {
+            start = busy.getValue();
+        }
+
+        for (Map.Entry<Long, Long> next : busyIntervals.subMap(start, true, to, false).entrySet()) {
+            addFreeInterval(start, next.getKey());
+
+            start = next.getValue();
+        }
+
+        addFreeInterval(start, to);
+    }
+
+    public void occupy(final long from, final long to) {
+        if (from >= to) {
+            return;
+        }
+
+        addInterval(busyIntervals, from, to);
+        removeFreeInterval(from, to);
+    }
+
+    /**
+     * Finds the first span starting at or after the given moment which contains the given amount of working time and is not
+     * interrupted by time occupied by other orders. Non working time of the calendar may fall inside the span.
+     *
+     * @return start and end millis of the span or null when the calendar ends before the span could be completed
+     */
+    public long[] place(final long earliestStart, final long duration) {
+        Long firstKey = freeIntervals.floorKey(earliestStart);
+
+        if (firstKey == null) {
+            firstKey = earliestStart;
+        }
+
+        long start = -1L;
+        long previousEnd = -1L;
+        long left = duration;
+
+        for (Map.Entry<Long, Long> interval : freeIntervals.tailMap(firstKey, true).entrySet()) {
+            long from = Math.max(interval.getKey(), earliestStart);
+            long to = interval.getValue();
+
+            if (from >= to) {
+                continue;
+            }
+
+            if ((start < 0L) || isBusyBetween(previousEnd, from)) {
+                start = from;
+                left = duration;
+            }
+
+            if ((to - from) >= left) {
+                return new long[] { start, from + left };
+            }
+
+            left -= to - from;
+            previousEnd = to;
+        }
+
+        return null;
+    }
+
+    private boolean isBusyBetween(final long from, final long to) {
+        Map.Entry<Long, Long> busy = busyIntervals.lowerEntry(to);
+
+        return (busy != null) && (busy.getValue() > from);
+    }
+
+    private void addFreeInterval(final long from, final long to) {
+        if (from < to) {
+            addInterval(freeIntervals, from, to);
+        }
+    }
+
+    private void removeFreeInterval(final long from, final long to) {
+        Map.Entry<Long, Long> first = freeIntervals.lowerEntry(from);
+
+        if ((first != null) && (first.getValue() > from)) {
+            freeIntervals.put(first.getKey(), from);
+
+            if (first.getValue() > to) {
+                freeIntervals.put(to, first.getValue());
+            }
+        }
+
+        Iterator<Map.Entry<Long, Long>> iterator = freeIntervals.subMap(from, true, to, false).entrySet().iterator();
+
+        Long rest = null;
+
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Long> interval = iterator.next();
+
+            if (interval.getValue() > to) {
+                rest = interval.getValue();
+            }
+
+            iterator.remove();
+        }
+
+        if (rest != null) {
+            freeIntervals.put(to, rest);
+        }
+    }
+
+    private void addInterval(final TreeMap<Long, Long> intervals, final long from, final long to) {
+        long start = from;
+        long end = to;
+
+        Map.Entry<Long, Long> previous = intervals.floorEntry(start);
+
+        if ((previous != null) && (previous.getValue() >= start)) {
+            start = previous.getKey();
+            end = Math.max(end, previous.getValue());
+        }
+
+        Iterator<Map.Entry<Long, Long>> iterator = intervals.subMap(start, true, end, true).entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            end = Math.max(end, iterator.next().getValue());
+
+            iterator.remove();
+        }
+
+        intervals.put(start, end);
+    }
+
+}
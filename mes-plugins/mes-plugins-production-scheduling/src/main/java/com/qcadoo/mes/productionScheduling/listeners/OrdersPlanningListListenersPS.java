@@ -0,0 +1,87 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionScheduling.listeners;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.constants.OrdersConstants;
+import com.qcadoo.mes.orders.states.constants.OrderStateStringValues;
+import com.qcadoo.mes.productionScheduling.OrdersBatchSchedulingService;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchRestrictions;
+import com.qcadoo.view.api.ComponentState;
+import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.GridComponent;
+
+@Service
+public class OrdersPlanningListListenersPS {
+
+    private static final List<String> SCHEDULABLE_STATES = Lists.newArrayList(OrderStateStringValues.PENDING,
+            OrderStateStringValues.ACCEPTED);
+
+    @Autowired
+    private OrdersBatchSchedulingService ordersBatchSchedulingService;
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    public void scheduleSelectedOrders(final ViewDefinitionState view, final ComponentState state, final String[] args) {
+        GridComponent ordersGrid = (GridComponent) state;
+
+        List<Entity> orders = getOrders(ordersGrid.getSelectedEntitiesIds()).stream()
+                .filter(order -> SCHEDULABLE_STATES.contains(order.getStringField(OrderFields.STATE)))
+                .sorted(Comparator.comparing(order -> order.getDateField(OrderFields.START_DATE),
+                        Comparator.nullsLast(Comparator.<Date> naturalOrder())))
+                .collect(Collectors.toList());
+
+        List<Entity> scheduledOrders = ordersBatchSchedulingService.rescheduleOrders(orders);
+
+        view.addMessage("productionScheduling.ordersPlanningList.scheduleOrders.info", ComponentState.MessageType.INFO, false,
+                String.valueOf(scheduledOrders.size()), String.valueOf(ordersGrid.getSelectedEntitiesIds().size()));
+    }
+
+    /**
+     * Grid rows are read-only planning list DTOs without production line and realization time, so orders are loaded from the
+     * order model.
+     */
+    private List<Entity> getOrders(final Set<Long> ordersIds) {
+        if (ordersIds.isEmpty()) {
+            return Lists.newArrayList();
+        }
+
+        return dataDefinitionService.get(OrdersConstants.PLUGIN_IDENTIFIER, OrdersConstants.MODEL_ORDER).find()
+                .add(SearchRestrictions.in("id", ordersIds)).list().getEntities();
+    }
+
+}
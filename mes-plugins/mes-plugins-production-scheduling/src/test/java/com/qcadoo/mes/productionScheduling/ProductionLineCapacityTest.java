@@ -0,0 +1,159 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionScheduling;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProductionLineCapacityTest {
+
+    private static final long HOUR = 3600L * 1000L;
+
+    private ProductionLineCapacity capacity;
+
+    @Before
+    public final void init() {
+        // work 8-16 and 32-40
+        capacity = new ProductionLineCapacity(0L);
+
+        capacity.addWorkingTime(8 * HOUR, 16 * HOUR);
+        capacity.addWorkingTime(32 * HOUR, 40 * HOUR);
+        capacity.setCalendarEnd(48 * HOUR);
+    }
+
+    @Test
+    public final void shouldPlaceInFirstWorkingTimeAfterEarliestStart() {
+        // when
+        long[] placement = capacity.place(10 * HOUR, 4 * HOUR);
+
+        // then
+        assertArrayEquals(new long[] { 10 * HOUR, 14 * HOUR }, placement);
+    }
+
+    @Test
+    public final void shouldMoveStartToBeginningOfWorkingTime() {
+        // when
+        long[] placement = capacity.place(0L, 2 * HOUR);
+
+        // then
+        assertArrayEquals(new long[] { 8 * HOUR, 10 * HOUR }, placement);
+    }
+
+    @Test
+    public final void shouldSpanGapOfNonWorkingTime() {
+        // when
+        long[] placement = capacity.place(12 * HOUR, 6 * HOUR);
+
+        // then
+        assertArrayEquals(new long[] { 12 * HOUR, 34 * HOUR }, placement);
+    }
+
+    @Test
+    public final void shouldReturnNullWhenCalendarIsTooShort() {
+        // when
+        long[] placement = capacity.place(12 * HOUR, 13 * HOUR);
+
+        // then
+        assertNull(placement);
+    }
+
+    @Test
+    public final void shouldRestartAfterOccupiedTimeSplittingWorkingTime() {
+        // given
+        capacity.occupy(11 * HOUR, 13 * HOUR);
+
+        // when
+        long[] placement = capacity.place(8 * HOUR, 4 * HOUR);
+
+        // then
+        assertArrayEquals(new long[] { 13 * HOUR, 33 * HOUR }, placement);
+    }
+
+    @Test
+    public final void shouldUseTimeBeforeOccupiedTimeWhenItIsEnough() {
+        // given
+        capacity.occupy(11 * HOUR, 13 * HOUR);
+
+        // when
+        long[] placement = capacity.place(8 * HOUR, 3 * HOUR);
+
+        // then
+        assertArrayEquals(new long[] { 8 * HOUR, 11 * HOUR }, placement);
+    }
+
+    @Test
+    public final void shouldMergeOverlappingOccupiedTime() {
+        // given
+        capacity.occupy(9 * HOUR, 12 * HOUR);
+        capacity.occupy(11 * HOUR, 14 * HOUR);
+
+        // when
+        long[] placement = capacity.place(8 * HOUR, 2 * HOUR);
+
+        // then
+        assertArrayEquals(new long[] { 14 * HOUR, 16 * HOUR }, placement);
+    }
+
+    @Test
+    public final void shouldNotPlaceOverOccupiedTimeInNonWorkingGap() {
+        // given
+        capacity.occupy(20 * HOUR, 22 * HOUR);
+
+        // when
+        long[] placement = capacity.place(14 * HOUR, 3 * HOUR);
+
+        // then
+        assertArrayEquals(new long[] { 32 * HOUR, 35 * HOUR }, placement);
+    }
+
+    @Test
+    public final void shouldNotAddWorkingTimeOverOccupiedTime() {
+        // given
+        capacity.occupy(34 * HOUR, 36 * HOUR);
+        capacity.addWorkingTime(40 * HOUR, 44 * HOUR);
+
+        // when
+        long[] placement = capacity.place(32 * HOUR, 3 * HOUR);
+
+        // then
+        assertArrayEquals(new long[] { 36 * HOUR, 39 * HOUR }, placement);
+    }
+
+    @Test
+    public final void shouldNotAddWorkingTimeOccupiedBeforeCalendarWasExtended() {
+        // given
+        capacity.occupy(44 * HOUR, 46 * HOUR);
+        capacity.addWorkingTime(42 * HOUR, 48 * HOUR);
+
+        // when
+        long[] placement = capacity.place(42 * HOUR, 3 * HOUR);
+
+        // then
+        assertNull(placement);
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.productionScheduling.listeners;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.constants.OrdersConstants;
+import com.qcadoo.mes.orders.states.constants.OrderStateStringValues;
+import com.qcadoo.mes.productionScheduling.OrdersBatchSchedulingService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchCriterion;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.view.api.ComponentState;
+import com.qcadoo.view.api.ViewDefinitionState;
+import com.qcadoo.view.api.components.GridComponent;
+
+public class OrdersPlanningListListenersPSTest {
+
+    private static final String L_MESSAGE = "productionScheduling.ordersPlanningList.scheduleOrders.info";
+
+    private OrdersPlanningListListenersPS ordersPlanningListListenersPS;
+
+    @Mock
+    private OrdersBatchSchedulingService ordersBatchSchedulingService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private DataDefinition orderDD;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Mock
+    private ViewDefinitionState view;
+
+    @Mock
+    private GridComponent ordersGrid;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        ordersPlanningListListenersPS = new OrdersPlanningListListenersPS();
+
+        ReflectionTestUtils.setField(ordersPlanningListListenersPS, "ordersBatchSchedulingService", ordersBatchSchedulingService);
+        ReflectionTestUtils.setField(ordersPlanningListListenersPS, "dataDefinitionService", dataDefinitionService);
+
+        given(dataDefinitionService.get(OrdersConstants.PLUGIN_IDENTIFIER, OrdersConstants.MODEL_ORDER)).willReturn(orderDD);
+        given(orderDD.find()).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.add(any(SearchCriterion.class))).willReturn(searchCriteriaBuilder);
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+    }
+
+    @Test
+    public final void shouldScheduleOrdersLoadedFromOrderModelInsteadOfPlanningListDtos() {
+        // given
+        Entity laterOrder = mockOrder(1L, OrderStateStringValues.PENDING, new Date(2000L));
+        Entity earlierOrder = mockOrder(2L, OrderStateStringValues.ACCEPTED, new Date(1000L));
+        Entity orderInProgress = mockOrder(3L, OrderStateStringValues.IN_PROGRESS, new Date(500L));
+
+        List<Entity> orderDtos = Lists.newArrayList(mock(Entity.class), mock(Entity.class), mock(Entity.class));
+
+        given(ordersGrid.getSelectedEntities()).willReturn(orderDtos);
+        given(ordersGrid.getSelectedEntitiesIds()).willReturn(Sets.newHashSet(1L, 2L, 3L));
+        given(searchResult.getEntities()).willReturn(Lists.newArrayList(laterOrder, earlierOrder, orderInProgress));
+        given(ordersBatchSchedulingService.rescheduleOrders(anyListOf(Entity.class)))
+                .willReturn(Lists.newArrayList(earlierOrder, laterOrder));
+
+        // when
+        ordersPlanningListListenersPS.scheduleSelectedOrders(view, ordersGrid, new String[] {});
+
+        // then
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ArgumentCaptor<List<Entity>> ordersCaptor = ArgumentCaptor.forClass((Class) List.class);
+
+        verify(ordersBatchSchedulingService).rescheduleOrders(ordersCaptor.capture());
+
+        assertEquals(Lists.newArrayList(earlierOrder, laterOrder), ordersCaptor.getValue());
+
+        for (Entity orderDto : orderDtos) {
+            verifyZeroInteractions(orderDto);
+        }
+
+        verify(view).addMessage(L_MESSAGE, ComponentState.MessageType.INFO, false, "2", "3");
+    }
+
+    @Test
+    public final void shouldNotLoadOrdersWithoutSelection() {
+        // given
+        given(ordersGrid.getSelectedEntitiesIds()).willReturn(Sets.<Long> newHashSet());
+        given(ordersBatchSchedulingService.rescheduleOrders(anyListOf(Entity.class))).willReturn(Lists.<Entity> newArrayList());
+
+        // when
+        ordersPlanningListListenersPS.scheduleSelectedOrders(view, ordersGrid, new String[] {});
+
+        // then
+        verifyZeroInteractions(dataDefinitionService);
+        verify(ordersBatchSchedulingService).rescheduleOrders(Lists.<Entity> newArrayList());
+        verify(view).addMessage(L_MESSAGE, ComponentState.MessageType.INFO, false, "0", "0");
+    }
+
+    private Entity mockOrder(final Long id, final String state, final Date startDate) {
+        Entity order = mock(Entity.class);
+
+        given(order.getId()).willReturn(id);
+        given(order.getStringField(OrderFields.STATE)).willReturn(state);
+        given(order.getDateField(OrderFields.START_DATE)).willReturn(startDate);
+
+        return order;
+    }
+
+}
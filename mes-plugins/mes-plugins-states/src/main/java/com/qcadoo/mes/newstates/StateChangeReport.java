@@ -0,0 +1,69 @@
+package com.qcadoo.mes.newstates;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.validators.ErrorMessage;
+
+public class StateChangeReport {
+
+    private final List<StateChangeResult> results = Lists.newArrayList();
+
+    void addResult(final Entity entity, final boolean successful, final List<ErrorMessage> errors) {
+        results.add(new StateChangeResult(entity.getId(), successful, errors));
+    }
+
+    void addResults(final List<StateChangeResult> batchResults) {
+        results.addAll(batchResults);
+    }
+
+    public List<StateChangeResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public List<Long> getSuccessfulIds() {
+        return results.stream().filter(StateChangeResult::isSuccessful).map(StateChangeResult::getEntityId)
+                .collect(Collectors.toList());
+    }
+
+    public List<Long> getFailedIds() {
+        return results.stream().filter(result -> !result.isSuccessful()).map(StateChangeResult::getEntityId)
+                .collect(Collectors.toList());
+    }
+
+    public boolean isSuccessful() {
+        return results.stream().allMatch(StateChangeResult::isSuccessful);
+    }
+
+    public static class StateChangeResult {
+
+        private final Long entityId;
+
+        private final boolean successful;
+
+        private final List<ErrorMessage> errors;
+
+        StateChangeResult(final Long entityId, final boolean successful, final List<ErrorMessage> errors) {
+            this.entityId = entityId;
+            this.successful = successful;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        public Long getEntityId() {
+            return entityId;
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+
+        public List<ErrorMessage> getErrors() {
+            return errors;
+        }
+
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.qcadoo.mes.newstates;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Runs a batch of state changes in its own transaction, so changes of already processed batches stay committed.
+ */
+@Service
+public class StateChangeTransactionService {
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void executeInNewTransaction(final Runnable batch) {
+        batch.run();
+    }
+
+}
@@ -3,21 +3,18 @@ package com.qcadoo.mes.newstates;
 import static com.qcadoo.mes.states.constants.StateChangeStatus.IN_PROGRESS;
 import static com.qcadoo.mes.states.constants.StateChangeStatus.PAUSED;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Scope;
 import org.springframework.context.annotation.ScopedProxyMode;
-import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -33,11 +30,10 @@ import com.qcadoo.mes.states.exception.StateTransitionNotAlloweException;
 import com.qcadoo.model.api.Entity;
 import com.qcadoo.model.api.exception.EntityRuntimeException;
 import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchProjections;
 import com.qcadoo.model.api.search.SearchRestrictions;
 import com.qcadoo.model.api.validators.ErrorMessage;
 import com.qcadoo.model.api.validators.GlobalMessage;
-import com.qcadoo.plugin.api.PluginUtils;
-import com.qcadoo.plugin.api.RunIfEnabled;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.view.api.ComponentMessagesHolder;
 import com.qcadoo.view.api.ComponentState;
@@ -53,8 +49,15 @@ public class StateExecutorService {
 
     public static final String USER_CHANGE_STATE = "user";
 
+    private static final int DEFAULT_BATCH_SIZE = 50;
+
+    private static final String L_OWNER_ID = "ownerId";
+
     @Autowired
-    private ApplicationContext applicationContext;
+    private StateServicesRegistry stateServicesRegistry;
+
+    @Autowired
+    private StateChangeTransactionService stateChangeTransactionService;
 
     @Autowired
     private ShiftsService shiftsService;
@@ -73,15 +76,22 @@ public class StateExecutorService {
 
         Optional<GridComponent> maybeGridComponent = view.tryFindComponentByReference("grid");
         if (maybeGridComponent.isPresent()) {
+            List<Entity> entities = Lists.newArrayList();
+
             maybeGridComponent.get().getSelectedEntities().forEach(entity -> {
                 entity = entity.getDataDefinition().getMasterModelEntity(entity.getId());
                 entity.setField(USER_CHANGE_STATE, userId);
 
-                entity = changeState(serviceMarker, entity, userLogin, args[0]);
-
-                copyMessages(entity);
+                entities.add(entity);
             });
 
+            StateChangeReport report = changeState(serviceMarker, entities, userLogin, args[0]);
+
+            if (!report.isSuccessful()) {
+                view.addMessage("states.messages.change.failure.selectedRecords", ComponentState.MessageType.FAILURE, false,
+                        String.valueOf(report.getFailedIds().size()), String.valueOf(entities.size()));
+            }
+
         } else {
             Optional<FormComponent> maybeForm = view.tryFindComponentByReference("form");
             if (maybeForm.isPresent()) {
@@ -99,6 +109,78 @@ public class StateExecutorService {
     public <M extends StateService> Entity changeState(Class<M> serviceMarker, Entity entity, String userLogin, String targetState) {
         List<M> services = lookupChangeStateServices(serviceMarker);
         StateChangeEntityDescriber describer = services.stream().findFirst().get().getChangeEntityDescriber();
+
+        return changeState(services, describer, entity, userLogin, targetState);
+    }
+
+    public <M extends StateService> StateChangeReport changeState(Class<M> serviceMarker, List<Entity> entities,
+            String userLogin, String targetState) {
+        return changeState(serviceMarker, entities, userLogin, targetState, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Changes state of many entities. Listener services are resolved once, transitions and unfinished state changes of all
+     * entities are checked up front, then valid entities are changed in batches, each batch in its own transaction. Results
+     * of a batch are reported only after its transaction has been committed; when a batch fails, all of its entities are
+     * reported as failed and the remaining batches are still processed.
+     */
+    public <M extends StateService> StateChangeReport changeState(Class<M> serviceMarker, List<Entity> entities,
+            String userLogin, String targetState, int batchSize) {
+        StateChangeReport report = new StateChangeReport();
+
+        if (entities.isEmpty()) {
+            return report;
+        }
+
+        List<M> services = lookupChangeStateServices(serviceMarker);
+        StateChangeEntityDescriber describer = services.stream().findFirst().get().getChangeEntityDescriber();
+
+        Set<Long> ownersWithUnfinishedStateChange = findOwnersWithUnfinishedStateChange(describer, entities);
+        List<Entity> entitiesToChange = Lists.newArrayList();
+
+        for (Entity entity : entities) {
+            if (ownersWithUnfinishedStateChange.contains(entity.getId())) {
+                addFailure(report, entity, "states.messages.change.failure.anotherChangeInProgress");
+            } else if (!canChangeState(describer, entity, targetState)) {
+                addFailure(report, entity, "states.messages.change.failure.transitionNotAllowed");
+            } else {
+                entitiesToChange.add(entity);
+            }
+        }
+
+        for (List<Entity> batch : Lists.partition(entitiesToChange, Math.max(batchSize, 1))) {
+            List<StateChangeReport.StateChangeResult> batchResults = Lists.newArrayList();
+
+            try {
+                stateChangeTransactionService.executeInNewTransaction(() -> {
+                    for (Entity entity : batch) {
+                        Entity changedEntity = changeState(services, describer, entity, userLogin, targetState);
+
+                        copyMessages(changedEntity);
+
+                        boolean successful = changedEntity.isValid()
+                                && targetState.equals(changedEntity.getStringField(describer.getOwnerStateFieldName()));
+
+                        batchResults.add(new StateChangeReport.StateChangeResult(changedEntity.getId(), successful,
+                                getErrors(changedEntity)));
+                    }
+                });
+
+                report.addResults(batchResults);
+            } catch (Exception exception) {
+                LOG.warn("Can't perform state change of batch", exception);
+
+                for (Entity entity : batch) {
+                    addFailure(report, entity, "states.messages.change.failure.internalServerError");
+                }
+            }
+        }
+
+        return report;
+    }
+
+    private <M extends StateService> Entity changeState(List<M> services, StateChangeEntityDescriber describer, Entity entity,
+            String userLogin, String targetState) {
         String sourceState = entity.getStringField(describer.getOwnerStateFieldName());
 
         Entity stateChangeEntity = buildStateChangeEntity(describer, entity, userLogin, sourceState, targetState);
@@ -205,6 +287,20 @@ public class StateExecutorService {
         return entity;
     }
 
+    private void addFailure(StateChangeReport report, Entity entity, String failureMessage) {
+        message("states.messages.change.failure", ComponentState.MessageType.FAILURE);
+        message(failureMessage, ComponentState.MessageType.FAILURE);
+
+        report.addResult(entity, false, Lists.newArrayList(new ErrorMessage(failureMessage)));
+    }
+
+    private List<ErrorMessage> getErrors(Entity entity) {
+        List<ErrorMessage> errors = Lists.newArrayList(entity.getGlobalErrors());
+        errors.addAll(entity.getErrors().values());
+
+        return errors;
+    }
+
     private Entity saveStateChangeEntity(final Entity stateChangeEntity, StateChangeStatus stateChangeStatus) {
         stateChangeEntity.setField("status", stateChangeStatus.getStringValue());
 
@@ -283,19 +379,7 @@ public class StateExecutorService {
     }
 
     private <M extends StateService> List<M> lookupChangeStateServices(Class<M> serviceMarker) {
-        Map<String, M> stateServices = applicationContext.getBeansOfType(serviceMarker);
-
-        List<M> services = new ArrayList<>();
-
-        for (M service : stateServices.values()) {
-            if (serviceEnabled(service)) {
-                services.add(service);
-            }
-        }
-
-        AnnotationAwareOrderComparator.sort(services);
-
-        return services;
+        return stateServicesRegistry.getEnabledServices(serviceMarker);
     }
 
     public <M extends StateService> void buildInitial(Class<M> serviceMarker, Entity entity, String initialState) {
@@ -310,20 +394,6 @@ public class StateExecutorService {
 
     }
 
-    private <M extends Object & StateService> boolean serviceEnabled(M service) {
-        RunIfEnabled runIfEnabled = service.getClass().getAnnotation(RunIfEnabled.class);
-        if (runIfEnabled == null) {
-            return true;
-        }
-        for (String pluginIdentifier : runIfEnabled.value()) {
-            if (!PluginUtils.isEnabled(pluginIdentifier)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
     private void copyMessages(Entity entity, Entity mainEntity) {
         if (mainEntity != null && mainEntity.equals(entity) && entity.getGlobalErrors() == mainEntity.getGlobalErrors()) {
             return;
@@ -366,6 +436,23 @@ public class StateExecutorService {
         }
     }
 
+    private Set<Long> findOwnersWithUnfinishedStateChange(final StateChangeEntityDescriber describer, final List<Entity> owners) {
+        final String ownerFieldName = describer.getOwnerFieldName();
+        final String statusFieldName = describer.getStatusFieldName();
+        final Set<String> unfinishedStatuses = Sets.newHashSet(IN_PROGRESS.getStringValue(), PAUSED.getStringValue());
+        final Set<Long> ownerIds = owners.stream().map(Entity::getId).collect(Collectors.toSet());
+
+        final SearchCriteriaBuilder searchCriteria = describer.getDataDefinition().find();
+        searchCriteria.createAlias(ownerFieldName, ownerFieldName);
+        searchCriteria.add(SearchRestrictions.in(ownerFieldName + ".id", ownerIds));
+        searchCriteria.add(SearchRestrictions.in(statusFieldName, unfinishedStatuses));
+        searchCriteria.setProjection(SearchProjections.alias(SearchProjections.distinct(SearchProjections.field(ownerFieldName
+                + ".id")), L_OWNER_ID));
+
+        return searchCriteria.list().getEntities().stream().map(projection -> (Long) projection.getField(L_OWNER_ID))
+                .collect(Collectors.toSet());
+    }
+
     private void checkForUnfinishedStateChange(final StateChangeEntityDescriber describer, final Entity owner) {
         final String ownerFieldName = describer.getOwnerFieldName();
         final String statusFieldName = describer.getStatusFieldName();
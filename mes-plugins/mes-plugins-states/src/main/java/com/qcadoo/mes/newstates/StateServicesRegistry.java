@@ -0,0 +1,65 @@
+package com.qcadoo.mes.newstates;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.plugin.api.PluginUtils;
+import com.qcadoo.plugin.api.RunIfEnabled;
+
+/**
+ * Keeps state services of each marker class, sorted by their order. Beans are looked up once per marker, only enabling of
+ * plugins is checked on every call.
+ */
+@Service
+public class StateServicesRegistry {
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final ConcurrentMap<Class<?>, List<? extends StateService>> servicesByMarker = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <M extends StateService> List<M> getEnabledServices(final Class<M> serviceMarker) {
+        List<M> allServices = (List<M>) servicesByMarker.computeIfAbsent(serviceMarker, this::lookupServices);
+
+        List<M> services = new ArrayList<>(allServices.size());
+
+        for (M service : allServices) {
+            if (serviceEnabled(service)) {
+                services.add(service);
+            }
+        }
+
+        return services;
+    }
+
+    private <M extends StateService> List<M> lookupServices(final Class<M> serviceMarker) {
+        List<M> services = new ArrayList<>(applicationContext.getBeansOfType(serviceMarker).values());
+
+        AnnotationAwareOrderComparator.sort(services);
+
+        return services;
+    }
+
+    private boolean serviceEnabled(final StateService service) {
+        RunIfEnabled runIfEnabled = service.getClass().getAnnotation(RunIfEnabled.class);
+        if (runIfEnabled == null) {
+            return true;
+        }
+        for (String pluginIdentifier : runIfEnabled.value()) {
+            if (!PluginUtils.isEnabled(pluginIdentifier)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
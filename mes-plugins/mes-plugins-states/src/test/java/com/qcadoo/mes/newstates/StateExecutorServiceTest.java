@@ -0,0 +1,209 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.newstates;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basic.ShiftsService;
+import com.qcadoo.mes.states.StateChangeEntityDescriber;
+import com.qcadoo.mes.states.TestState;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.search.SearchCriteriaBuilder;
+import com.qcadoo.model.api.search.SearchResult;
+import com.qcadoo.security.api.SecurityService;
+
+public class StateExecutorServiceTest {
+
+    private static final String L_STATE = "state";
+
+    private static final String L_SOURCE_STATE = "sourceState";
+
+    private static final String L_TARGET_STATE = "targetState";
+
+    private interface TestStateService extends StateService {
+    }
+
+    private StateExecutorService stateExecutorService;
+
+    @Mock
+    private StateServicesRegistry stateServicesRegistry;
+
+    @Mock
+    private StateChangeTransactionService stateChangeTransactionService;
+
+    @Mock
+    private ShiftsService shiftsService;
+
+    @Mock
+    private SecurityService securityService;
+
+    @Mock
+    private TestStateService stateService;
+
+    @Mock
+    private StateChangeEntityDescriber describer;
+
+    @Mock
+    private DataDefinition stateChangeDD, ownerDD;
+
+    @Mock
+    private Entity stateChangeEntity;
+
+    @Mock
+    private SearchCriteriaBuilder searchCriteriaBuilder;
+
+    @Mock
+    private SearchResult searchResult;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        stateExecutorService = new StateExecutorService();
+
+        ReflectionTestUtils.setField(stateExecutorService, "stateServicesRegistry", stateServicesRegistry);
+        ReflectionTestUtils.setField(stateExecutorService, "stateChangeTransactionService", stateChangeTransactionService);
+        ReflectionTestUtils.setField(stateExecutorService, "shiftsService", shiftsService);
+        ReflectionTestUtils.setField(stateExecutorService, "securityService", securityService);
+
+        given(stateServicesRegistry.getEnabledServices(TestStateService.class)).willReturn(Lists.newArrayList(stateService));
+        given(stateService.getChangeEntityDescriber()).willReturn(describer);
+
+        Answer<Entity> returnOwner = invocation -> (Entity) invocation.getArguments()[0];
+
+        given(stateService.onValidate(any(Entity.class), anyString(), anyString(), any(Entity.class), any(
+                StateChangeEntityDescriber.class))).willAnswer(returnOwner);
+        given(stateService.onBeforeSave(any(Entity.class), anyString(), anyString(), any(Entity.class), any(
+                StateChangeEntityDescriber.class))).willAnswer(returnOwner);
+        given(stateService.onAfterSave(any(Entity.class), anyString(), anyString(), any(Entity.class), any(
+                StateChangeEntityDescriber.class))).willAnswer(returnOwner);
+
+        given(describer.getDataDefinition()).willReturn(stateChangeDD);
+        given(describer.getOwnerStateFieldName()).willReturn(L_STATE);
+        given(describer.getSourceStateFieldName()).willReturn(L_SOURCE_STATE);
+        given(describer.getTargetStateFieldName()).willReturn(L_TARGET_STATE);
+        given(describer.getOwnerFieldName()).willReturn("owner");
+        given(describer.getStatusFieldName()).willReturn("status");
+        given(describer.parseStateEnum(anyString())).willAnswer(
+                invocation -> TestState.parseString((String) invocation.getArguments()[0]));
+
+        given(stateChangeDD.create()).willReturn(stateChangeEntity);
+        given(stateChangeDD.save(stateChangeEntity)).willReturn(stateChangeEntity);
+        given(stateChangeDD.find()).willReturn(searchCriteriaBuilder);
+        given(stateChangeEntity.getDataDefinition()).willReturn(stateChangeDD);
+        given(stateChangeEntity.isValid()).willReturn(true);
+        given(stateChangeEntity.getStringField(L_SOURCE_STATE)).willReturn(TestState.DRAFT.getStringValue());
+        given(stateChangeEntity.getStringField(L_TARGET_STATE)).willReturn(TestState.ACCEPTED.getStringValue());
+
+        given(searchCriteriaBuilder.list()).willReturn(searchResult);
+        given(searchResult.getEntities()).willReturn(Collections.emptyList());
+        given(searchResult.getTotalNumberOfEntities()).willReturn(0);
+    }
+
+    @Test
+    public final void shouldReportEntitiesOfFailedBatchAsFailedAndProcessNextBatches() {
+        // given
+        List<Entity> owners = Lists.newArrayList(mockOwner(1L), mockOwner(2L));
+
+        doAnswer(invocation -> {
+            throw new IllegalStateException("batch failed");
+        }).doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+
+            return null;
+        }).when(stateChangeTransactionService).executeInNewTransaction(any(Runnable.class));
+
+        // when
+        StateChangeReport report = stateExecutorService.changeState(TestStateService.class, owners, "user",
+                TestState.ACCEPTED.getStringValue(), 1);
+
+        // then
+        verify(stateChangeTransactionService, times(2)).executeInNewTransaction(any(Runnable.class));
+
+        assertFalse(report.isSuccessful());
+        assertEquals(Lists.newArrayList(1L), report.getFailedIds());
+        assertEquals(Lists.newArrayList(2L), report.getSuccessfulIds());
+    }
+
+    @Test
+    public final void shouldNotReportSuccessOfBatchWhoseTransactionFailedToCommit() {
+        // given
+        List<Entity> owners = Lists.newArrayList(mockOwner(1L), mockOwner(2L));
+
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+
+            throw new IllegalStateException("commit failed");
+        }).when(stateChangeTransactionService).executeInNewTransaction(any(Runnable.class));
+
+        // when
+        StateChangeReport report = stateExecutorService.changeState(TestStateService.class, owners, "user",
+                TestState.ACCEPTED.getStringValue(), 50);
+
+        // then
+        assertEquals(2, report.getResults().size());
+        assertEquals(Lists.newArrayList(1L, 2L), report.getFailedIds());
+        assertEquals(Collections.emptyList(), report.getSuccessfulIds());
+    }
+
+    private Entity mockOwner(final Long id) {
+        Entity owner = mock(Entity.class);
+        Entity savedOwner = mock(Entity.class);
+
+        given(owner.getId()).willReturn(id);
+        given(owner.getDataDefinition()).willReturn(ownerDD);
+        given(owner.getStringField(L_STATE)).willReturn(TestState.DRAFT.getStringValue());
+        given(owner.isValid()).willReturn(true);
+
+        given(savedOwner.getId()).willReturn(id);
+        given(savedOwner.getDataDefinition()).willReturn(ownerDD);
+        given(savedOwner.getStringField(L_STATE)).willReturn(TestState.ACCEPTED.getStringValue());
+        given(savedOwner.isValid()).willReturn(true);
+
+        given(ownerDD.save(owner)).willReturn(savedOwner);
+
+        return owner;
+    }
+
+}
@@ -58,6 +58,13 @@ public interface ProductQuantitiesService {
      */
     OperationProductComponentWithQuantityContainer getProductComponentQuantities(final Entity order);
 
+    /**
+     * @param orders Given list of orders
+     * @return Map with order ids as the keys and product component quantities of each order as the values. Orders with the same
+     * technology and planned quantity are calculated once.
+     */
+    Map<Long, OperationProductComponentWithQuantityContainer> getProductComponentQuantitiesForOrders(final List<Entity> orders);
+
     /**
      * @param orders Given list of orders
      * @return Map of products and their quantities (products that occur in multiple operations or even in multiple orders are
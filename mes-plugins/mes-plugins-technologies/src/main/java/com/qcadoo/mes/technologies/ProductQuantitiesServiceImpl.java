@@ -24,15 +24,26 @@
 package com.qcadoo.mes.technologies;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -44,9 +55,12 @@ import com.qcadoo.mes.technologies.constants.ProductComponentFields;
 import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
 import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentEntityType;
 import com.qcadoo.mes.technologies.dto.OperationProductComponentHolder;
 import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
 import com.qcadoo.mes.technologies.dto.ProductQuantitiesHolder;
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
+import com.qcadoo.mes.technologies.tree.TechnologyStructureService;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -65,12 +79,20 @@ public class ProductQuantitiesServiceImpl implements ProductQuantitiesService {
 
     private static final String L_QUANTITY = "quantity";
 
+    private static final int L_MAX_PRODUCT_QUANTITIES_THREADS = 4;
+
     @Autowired
     private NumberService numberService;
 
     @Autowired
     private DataDefinitionService dataDefinitionService;
 
+    @Autowired
+    private TechnologyStructureService technologyStructureService;
+
+    private final ForkJoinPool productQuantitiesPool = new ForkJoinPool(Math.min(L_MAX_PRODUCT_QUANTITIES_THREADS, Runtime
+            .getRuntime().availableProcessors()));
+
     @Override
     public ProductQuantitiesHolder getProductComponentQuantities(final Entity technology, final BigDecimal givenQuantity) {
         Map<Long, BigDecimal> operationRuns = Maps.newHashMap();
@@ -93,6 +115,15 @@ public class ProductQuantitiesServiceImpl implements ProductQuantitiesService {
         return getProductComponentQuantities(order, false);
     }
 
+    @Override
+    public Map<Long, OperationProductComponentWithQuantityContainer> getProductComponentQuantitiesForOrders(
+            final List<Entity> orders) {
+        Map<Long, BigDecimal> operationRuns = Maps.newHashMap();
+        Set<OperationProductComponentHolder> nonComponents = Sets.newHashSet();
+
+        return getProductComponentWithQuantitiesByOrders(orders, operationRuns, nonComponents);
+    }
+
     private OperationProductComponentWithQuantityContainer getProductComponentQuantities(final Entity order,
             final boolean onTheFly) {
         Map<Long, BigDecimal> operationRuns = Maps.newHashMap();
@@ -196,6 +227,16 @@ public class ProductQuantitiesServiceImpl implements ProductQuantitiesService {
             final Set<OperationProductComponentHolder> nonComponents) {
         OperationProductComponentWithQuantityContainer operationProductComponentWithQuantityContainer = new OperationProductComponentWithQuantityContainer();
 
+        if (technology.getId() != null) {
+            TechnologyStructure technologyStructure = technologyStructureService.getTechnologyStructure(technology);
+
+            calculateProductQuantitiesAndOperationRuns(technologyStructure,
+                    getOperationProductComponentHolders(technologyStructure), givenQuantity,
+                    operationProductComponentWithQuantityContainer, nonComponents, operationRuns);
+
+            return operationProductComponentWithQuantityContainer;
+        }
+
         EntityTree operationComponents = getOperationComponentsFromTechnology(technology);
         Entity root = operationComponents.getRoot();
 
@@ -209,6 +250,104 @@ public class ProductQuantitiesServiceImpl implements ProductQuantitiesService {
         return operationProductComponentWithQuantityContainer;
     }
 
+    private void calculateProductQuantitiesAndOperationRuns(final TechnologyStructure technologyStructure,
+            final OperationProductComponentHolder[] holders, final BigDecimal givenQuantity,
+            final OperationProductComponentWithQuantityContainer operationProductComponentWithQuantityContainer,
+            final Set<OperationProductComponentHolder> nonComponents, final Map<Long, BigDecimal> operationRuns) {
+        BigDecimal[] quantities = technologyStructure.getSlotQuantities();
+        BigDecimal[] runs = new BigDecimal[technologyStructure.getOperationsCount()];
+        boolean[] nonComponentSlots = new boolean[technologyStructure.getSlotsCount()];
+
+        Arrays.fill(runs, BigDecimal.ONE);
+
+        for (int operation : technologyStructure.getTraversalOrder()) {
+            int parent = technologyStructure.getParent(operation);
+
+            if (parent < 0) {
+                int outComponent = technologyStructure.findOutComponent(operation, technologyStructure.getTechnologyProductId());
+
+                if (outComponent >= 0) {
+                    multiplyProductQuantitiesAndAddOperationRuns(technologyStructure, operation, givenQuantity,
+                            quantities[technologyStructure.getSlot(outComponent)], quantities, runs);
+                }
+            } else {
+                for (int inComponent = technologyStructure.getInComponentsFrom(parent); inComponent < technologyStructure
+                        .getInComponentsTo(parent); inComponent++) {
+                    int outComponent = technologyStructure.findOutComponent(operation,
+                            technologyStructure.getProductId(inComponent));
+
+                    if (outComponent >= 0) {
+                        nonComponentSlots[technologyStructure.getSlot(inComponent)] = true;
+
+                        multiplyProductQuantitiesAndAddOperationRuns(technologyStructure, operation,
+                                quantities[technologyStructure.getSlot(inComponent)],
+                                quantities[technologyStructure.getSlot(outComponent)], quantities, runs);
+                    }
+                }
+            }
+        }
+
+        for (int slot = 0; slot < holders.length; slot++) {
+            operationProductComponentWithQuantityContainer.put(holders[slot], quantities[slot]);
+
+            if (nonComponentSlots[slot]) {
+                nonComponents.add(holders[slot]);
+            }
+        }
+
+        for (int operation = 0; operation < runs.length; operation++) {
+            operationRuns.put(technologyStructure.getOperationId(operation), runs[operation]);
+        }
+    }
+
+    private void multiplyProductQuantitiesAndAddOperationRuns(final TechnologyStructure technologyStructure,
+            final int operation, final BigDecimal needed, final BigDecimal actual, final BigDecimal[] quantities,
+            final BigDecimal[] runs) {
+        MathContext mathContext = numberService.getMathContext();
+        BigDecimal multiplier = needed.divide(actual, mathContext);
+
+        if (!technologyStructure.areProductQuantitiesDivisible(operation)) {
+            // It's intentional to round up the operation runs
+            multiplier = multiplier.setScale(0, RoundingMode.CEILING);
+        }
+
+        runs[operation] = multiplier;
+
+        if (!technologyStructure.isTjDivisible(operation)) {
+            runs[operation] = multiplier.setScale(0, RoundingMode.CEILING);
+        }
+
+        for (int component = technologyStructure.getInComponentsFrom(operation); component < technologyStructure
+                .getOutComponentsTo(operation); component++) {
+            int slot = technologyStructure.getSlot(component);
+
+            quantities[slot] = quantities[slot].multiply(multiplier, mathContext).setScale(5, RoundingMode.CEILING);
+        }
+    }
+
+    private OperationProductComponentHolder[] getOperationProductComponentHolders(final TechnologyStructure technologyStructure) {
+        DataDefinition productDD = dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT);
+        DataDefinition technologyOperationComponentDD = dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_TECHNOLOGY_OPERATION_COMPONENT);
+
+        OperationProductComponentHolder[] holders = new OperationProductComponentHolder[technologyStructure.getSlotsCount()];
+
+        for (int slot = 0; slot < holders.length; slot++) {
+            int component = technologyStructure.getSlotComponent(slot);
+            OperationProductComponentEntityType entityType = OperationProductComponentEntityType.OPERATION_PRODUCT_IN_COMPONENT;
+
+            if (technologyStructure.isOutComponent(component)) {
+                entityType = OperationProductComponentEntityType.OPERATION_PRODUCT_OUT_COMPONENT;
+            }
+
+            holders[slot] = new OperationProductComponentHolder(technologyStructure.getProductId(component),
+                    technologyStructure.getOperationId(technologyStructure.getOperation(component)),
+                    technologyStructure.getComponentId(component), productDD, technologyOperationComponentDD, entityType);
+        }
+
+        return holders;
+    }
+
     private EntityTree getOperationComponentsFromTechnology(final Entity technology) {
         return technology.getTreeField(TechnologyFields.OPERATION_COMPONENTS);
     }
@@ -216,7 +355,16 @@ public class ProductQuantitiesServiceImpl implements ProductQuantitiesService {
     private OperationProductComponentWithQuantityContainer getProductComponentWithQuantitiesForOrders(final List<Entity> orders,
             final Map<Long, BigDecimal> operationRuns, final Set<OperationProductComponentHolder> nonComponents,
             final boolean onTheFly) {
+        return groupOperationProductComponentWithQuantities(getProductComponentWithQuantitiesByOrders(orders, operationRuns,
+                nonComponents));
+    }
+
+    private Map<Long, OperationProductComponentWithQuantityContainer> getProductComponentWithQuantitiesByOrders(
+            final List<Entity> orders, final Map<Long, BigDecimal> operationRuns,
+            final Set<OperationProductComponentHolder> nonComponents) {
         Map<Long, OperationProductComponentWithQuantityContainer> productComponentWithQuantitiesForOrders = Maps.newHashMap();
+        Map<Long, TechnologyStructure> technologyStructures = Maps.newHashMap();
+        Set<TechnologyWithQuantity> technologiesWithQuantities = Sets.newLinkedHashSet();
 
         for (Entity order : orders) {
             BigDecimal plannedQuantity = order.getDecimalField(L_PLANNED_QUANTITY);
@@ -227,11 +375,93 @@ public class ProductQuantitiesServiceImpl implements ProductQuantitiesService {
                 throw new IllegalStateException("Order doesn't contain technology.");
             }
 
-            productComponentWithQuantitiesForOrders.put(order.getId(),
-                    getProductComponentWithQuantitiesForTechnology(technology, plannedQuantity, operationRuns, nonComponents));
+            if (technology.getId() != null) {
+                if (!technologyStructures.containsKey(technology.getId())) {
+                    technologyStructures.put(technology.getId(), technologyStructureService.getTechnologyStructure(technology));
+                }
+
+                technologiesWithQuantities.add(new TechnologyWithQuantity(technology.getId(), plannedQuantity));
+            }
+        }
+
+        Map<TechnologyWithQuantity, ProductQuantitiesHolder> productQuantitiesForTechnologies = calculateProductQuantities(
+                technologiesWithQuantities, technologyStructures);
+
+        for (Entity order : orders) {
+            BigDecimal plannedQuantity = order.getDecimalField(L_PLANNED_QUANTITY);
+
+            Entity technology = order.getBelongsToField(L_TECHNOLOGY);
+
+            if (technology.getId() == null) {
+                productComponentWithQuantitiesForOrders.put(order.getId(),
+                        getProductComponentWithQuantitiesForTechnology(technology, plannedQuantity, operationRuns, nonComponents));
+
+                continue;
+            }
+
+            ProductQuantitiesHolder productQuantities = productQuantitiesForTechnologies.get(new TechnologyWithQuantity(
+                    technology.getId(), plannedQuantity));
+            OperationProductComponentWithQuantityContainer productComponentWithQuantities = new OperationProductComponentWithQuantityContainer();
+
+            for (Entry<OperationProductComponentHolder, BigDecimal> productQuantity : productQuantities.getProductQuantities()
+                    .entrySet()) {
+                productComponentWithQuantities.put(productQuantity.getKey(), productQuantity.getValue());
+            }
+
+            productComponentWithQuantitiesForOrders.put(order.getId(), productComponentWithQuantities);
+            operationRuns.putAll(productQuantities.getOperationRuns());
+            nonComponents.addAll(productQuantities.getNonComponents());
+        }
+
+        return productComponentWithQuantitiesForOrders;
+    }
+
+    /**
+     * Explodes each distinct technology and planned quantity once. The calculation works on already loaded technology
+     * structures only, so when there is more than one technology to explode they are calculated in parallel on a bounded pool.
+     */
+    private Map<TechnologyWithQuantity, ProductQuantitiesHolder> calculateProductQuantities(
+            final Set<TechnologyWithQuantity> technologiesWithQuantities, final Map<Long, TechnologyStructure> technologyStructures) {
+        Map<Long, OperationProductComponentHolder[]> holders = Maps.newHashMap();
+
+        for (Entry<Long, TechnologyStructure> technologyStructure : technologyStructures.entrySet()) {
+            holders.put(technologyStructure.getKey(), getOperationProductComponentHolders(technologyStructure.getValue()));
+        }
+
+        Function<TechnologyWithQuantity, ProductQuantitiesHolder> calculate = technologyWithQuantity -> {
+            OperationProductComponentWithQuantityContainer productComponentWithQuantities = new OperationProductComponentWithQuantityContainer();
+            Map<Long, BigDecimal> operationRuns = Maps.newHashMap();
+            Set<OperationProductComponentHolder> nonComponents = Sets.newHashSet();
+
+            calculateProductQuantitiesAndOperationRuns(technologyStructures.get(technologyWithQuantity.technologyId),
+                    holders.get(technologyWithQuantity.technologyId), technologyWithQuantity.quantity,
+                    productComponentWithQuantities, nonComponents, operationRuns);
+
+            return new ProductQuantitiesHolder(productComponentWithQuantities, operationRuns, nonComponents);
+        };
+
+        if (technologiesWithQuantities.size() < 2) {
+            return technologiesWithQuantities.stream().collect(Collectors.toMap(Function.identity(), calculate));
+        }
+
+        try {
+            return productQuantitiesPool.submit(
+                    () -> technologiesWithQuantities.parallelStream().collect(Collectors.toMap(Function.identity(), calculate)))
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+
+            throw new IllegalStateException(e.getCause());
         }
+    }
 
-        return groupOperationProductComponentWithQuantities(productComponentWithQuantitiesForOrders);
+    @PreDestroy
+    public void shutdownProductQuantitiesPool() {
+        productQuantitiesPool.shutdown();
     }
 
     @Override
@@ -601,4 +831,43 @@ public class ProductQuantitiesServiceImpl implements ProductQuantitiesService {
     public Entity getProduct(final Long productId) {
         return dataDefinitionService.get(BasicConstants.PLUGIN_IDENTIFIER, BasicConstants.MODEL_PRODUCT).get(productId);
     }
+
+    private static final class TechnologyWithQuantity {
+
+        private final Long technologyId;
+
+        private final BigDecimal quantity;
+
+        // BigDecimal equals and hashCode depend on scale, so planned quantities 10 and 10.00 are compared without trailing zeros
+        private final BigDecimal normalizedQuantity;
+
+        private TechnologyWithQuantity(final Long technologyId, final BigDecimal quantity) {
+            this.technologyId = technologyId;
+            this.quantity = quantity;
+            this.normalizedQuantity = (quantity == null) ? null : quantity.stripTrailingZeros();
+        }
+
+        @Override
+        public int hashCode() {
+            return new HashCodeBuilder().append(technologyId).append(normalizedQuantity).toHashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof TechnologyWithQuantity)) {
+                return false;
+            }
+
+            TechnologyWithQuantity other = (TechnologyWithQuantity) obj;
+
+            return new EqualsBuilder().append(technologyId, other.technologyId)
+                    .append(normalizedQuantity, other.normalizedQuantity).isEquals();
+        }
+
+    }
+
 }
@@ -23,6 +23,9 @@
  */
 package com.qcadoo.mes.technologies;
 
+import java.util.Map;
+
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
 import com.qcadoo.model.api.Entity;
 
 public interface ProductionLinesService {
@@ -31,4 +34,12 @@ public interface ProductionLinesService {
 
     Integer getWorkstationTypesCount(final Long productionLineId, final String workstationName);
 
+    /**
+     * Returns workstations count of given production line for each operation of given technology structure, reading
+     * workstation types of the line only once.
+     * 
+     * @return workstations count by technology operation component id
+     */
+    Map<Long, Integer> getWorkstationTypesCounts(final TechnologyStructure technologyStructure, final Entity productionLine);
+
 }
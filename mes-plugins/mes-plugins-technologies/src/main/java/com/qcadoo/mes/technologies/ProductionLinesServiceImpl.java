@@ -32,16 +32,19 @@ import static com.qcadoo.model.api.search.SearchRestrictions.eq;
 import static com.qcadoo.model.api.search.SearchRestrictions.idEq;
 
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.Maps;
 import com.qcadoo.mes.basic.constants.WorkstationTypeFields;
 import com.qcadoo.mes.productionLines.constants.ProductionLineFields;
 import com.qcadoo.mes.productionLines.constants.ProductionLinesConstants;
 import com.qcadoo.mes.productionLines.constants.WorkstationTypeComponentFields;
 import com.qcadoo.mes.technologies.constants.OperationFields;
 import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.tree.TechnologyStructure;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -75,6 +78,37 @@ public class ProductionLinesServiceImpl implements ProductionLinesService {
         return productionLine.getIntegerField(ProductionLineFields.QUANTITY_FOR_OTHER_WORKSTATION_TYPES);
     }
 
+    @Override
+    public Map<Long, Integer> getWorkstationTypesCounts(final TechnologyStructure technologyStructure,
+            final Entity productionLine) {
+        Map<Long, Integer> quantitiesByWorkstationType = Maps.newHashMap();
+
+        for (Entity workstationTypeComponent : productionLine.getHasManyField(ProductionLineFields.WORKSTATION_TYPE_COMPONENTS)) {
+            Entity workstationType = workstationTypeComponent.getBelongsToField(OperationFields.WORKSTATION_TYPE);
+
+            quantitiesByWorkstationType.putIfAbsent(workstationType.getId(),
+                    (Integer) workstationTypeComponent.getField(WorkstationTypeComponentFields.QUANTITY));
+        }
+
+        Integer quantityForOtherWorkstationTypes = productionLine
+                .getIntegerField(ProductionLineFields.QUANTITY_FOR_OTHER_WORKSTATION_TYPES);
+
+        Map<Long, Integer> workstations = Maps.newHashMap();
+
+        for (int operation = 0; operation < technologyStructure.getOperationsCount(); operation++) {
+            Long workstationTypeId = technologyStructure.getWorkstationTypeId(operation);
+            Integer quantity = quantityForOtherWorkstationTypes;
+
+            if ((workstationTypeId != null) && quantitiesByWorkstationType.containsKey(workstationTypeId)) {
+                quantity = quantitiesByWorkstationType.get(workstationTypeId);
+            }
+
+            workstations.put(technologyStructure.getOperationId(operation), quantity);
+        }
+
+        return workstations;
+    }
+
     @Override
     public Integer getWorkstationTypesCount(final Long productionLineId, final String workstationTypeNumber) {
         Entity projection = getWorkstationTypesSumProjection(productionLineId, workstationTypeNumber);
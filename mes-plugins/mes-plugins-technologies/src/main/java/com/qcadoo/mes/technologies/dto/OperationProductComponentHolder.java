@@ -102,6 +102,19 @@ public class OperationProductComponentHolder {
         this.operationProductComponentId = null;
     }
 
+    public OperationProductComponentHolder(final Long productId, final Long technologyOperationComponentId,
+            final Long operationProductComponentId, final DataDefinition productDD,
+            final DataDefinition technologyOperationComponentDD, final OperationProductComponentEntityType entityType) {
+        this.productId = productId;
+        this.technologyOperationComponentId = technologyOperationComponentId;
+        this.productDD = productDD;
+        this.technologyOperationComponentDD = technologyOperationComponentDD;
+        this.entityType = entityType;
+        this.productMaterialType = ProductMaterialType.NONE;
+        this.productionCountingQuantityId = null;
+        this.operationProductComponentId = operationProductComponentId;
+    }
+
     public Long getProductId() {
         return productId;
     }
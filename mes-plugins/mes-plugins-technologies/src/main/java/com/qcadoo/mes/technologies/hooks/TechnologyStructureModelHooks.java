@@ -0,0 +1,98 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.hooks;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.tree.TechnologyStructureService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Drops cached technology structures when technology, its operation components or their products change.
+ */
+@Service
+public class TechnologyStructureModelHooks {
+
+    @Autowired
+    private TechnologyStructureService technologyStructureService;
+
+    public void onTechnologySave(final DataDefinition technologyDD, final Entity technology) {
+        technologyStructureService.invalidate(technology.getId());
+    }
+
+    public boolean onTechnologyDelete(final DataDefinition technologyDD, final Entity technology) {
+        technologyStructureService.invalidate(technology.getId());
+
+        return true;
+    }
+
+    public void onOperationComponentSave(final DataDefinition technologyOperationComponentDD,
+            final Entity technologyOperationComponent) {
+        invalidateTechnologyOf(technologyOperationComponent);
+    }
+
+    public boolean onOperationComponentDelete(final DataDefinition technologyOperationComponentDD,
+            final Entity technologyOperationComponent) {
+        invalidateTechnologyOf(technologyOperationComponent);
+
+        return true;
+    }
+
+    public void onOperationProductComponentSave(final DataDefinition operationProductComponentDD,
+            final Entity operationProductComponent) {
+        invalidateTechnologyOf(operationProductComponent
+                .getBelongsToField(OperationProductInComponentFields.OPERATION_COMPONENT));
+    }
+
+    public boolean onOperationProductComponentDelete(final DataDefinition operationProductComponentDD,
+            final Entity operationProductComponent) {
+        invalidateTechnologyOf(operationProductComponent
+                .getBelongsToField(OperationProductInComponentFields.OPERATION_COMPONENT));
+
+        return true;
+    }
+
+    public void onOperationSave(final DataDefinition operationDD, final Entity operation) {
+        if (operation.getId() != null) {
+            technologyStructureService.invalidateAll();
+        }
+    }
+
+    private void invalidateTechnologyOf(final Entity technologyOperationComponent) {
+        if (technologyOperationComponent == null) {
+            return;
+        }
+
+        Entity technology = technologyOperationComponent.getBelongsToField(TechnologyOperationComponentFields.TECHNOLOGY);
+
+        if (technology != null) {
+            technologyStructureService.invalidate(technology.getId());
+        }
+    }
+
+}
@@ -0,0 +1,581 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.tree;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
+
+/**
+ * Immutable, index based snapshot of technology operations with their input and output products, used to compute product
+ * quantities and operation runs without walking the entity tree.
+ * 
+ * Operations and components are addressed by their index. Components of the same operation, type and product share one
+ * quantity slot, the same way they share one key in OperationProductComponentWithQuantityContainer.
+ * 
+ * Time norms and workstations of operations are kept along, so that time and cost calculations don't have to load operation
+ * components one by one.
+ */
+public final class TechnologyStructure {
+
+    private final Long technologyProductId;
+
+    private final long[] operationIds;
+
+    private final int[] parents;
+
+    private final boolean[] areProductQuantitiesDivisible;
+
+    private final boolean[] isTjDivisible;
+
+    private final int[] tj;
+
+    private final int[] tpz;
+
+    private final int[] timeNextOperation;
+
+    private final BigDecimal[] laborUtilization;
+
+    private final BigDecimal[] machineUtilization;
+
+    private final String[] nextOperationAfterProducedType;
+
+    private final BigDecimal[] nextOperationAfterProducedQuantity;
+
+    private final int[] quantityOfWorkstations;
+
+    private final Long[] workstationTypeIds;
+
+    private final Map<Long, Integer> operationIndexes;
+
+    private final int[] traversalOrder;
+
+    private final int[] inComponentsFrom;
+
+    private final int[] outComponentsFrom;
+
+    private final int[] componentsTo;
+
+    private final int[] componentOperations;
+
+    private final long[] componentIds;
+
+    private final long[] productIds;
+
+    private final BigDecimal[] quantities;
+
+    private final int[] slots;
+
+    private final int[] slotComponents;
+
+    private TechnologyStructure(final Builder builder) {
+        int operationsCount = builder.operationIds.size();
+
+        technologyProductId = builder.technologyProductId;
+        operationIds = new long[operationsCount];
+        parents = new int[operationsCount];
+        areProductQuantitiesDivisible = new boolean[operationsCount];
+        isTjDivisible = new boolean[operationsCount];
+        inComponentsFrom = new int[operationsCount];
+        outComponentsFrom = new int[operationsCount];
+        componentsTo = new int[operationsCount];
+        tj = new int[operationsCount];
+        tpz = new int[operationsCount];
+        timeNextOperation = new int[operationsCount];
+        laborUtilization = new BigDecimal[operationsCount];
+        machineUtilization = new BigDecimal[operationsCount];
+        nextOperationAfterProducedType = new String[operationsCount];
+        nextOperationAfterProducedQuantity = new BigDecimal[operationsCount];
+        quantityOfWorkstations = new int[operationsCount];
+        workstationTypeIds = new Long[operationsCount];
+        operationIndexes = Maps.newHashMap();
+
+        for (int operation = 0; operation < operationsCount; operation++) {
+            operationIds[operation] = builder.operationIds.get(operation);
+            operationIndexes.put(operationIds[operation], operation);
+        }
+
+        int componentsCount = builder.inComponents.size() + builder.outComponents.size();
+
+        componentOperations = new int[componentsCount];
+        componentIds = new long[componentsCount];
+        productIds = new long[componentsCount];
+        quantities = new BigDecimal[componentsCount];
+        slots = new int[componentsCount];
+
+        List<Integer> firstComponentsOfSlots = Lists.newArrayList();
+        Map<List<Long>, Integer> slotsByKey = Maps.newHashMap();
+        ListMultimap<Integer, Integer> children = ArrayListMultimap.create();
+        int root = -1;
+        int component = 0;
+
+        for (int operation = 0; operation < operationsCount; operation++) {
+            Long operationId = operationIds[operation];
+            Long parentId = builder.parentIds.get(operation);
+            Integer parent = (parentId == null) ? null : operationIndexes.get(parentId);
+
+            parents[operation] = (parent == null) ? -1 : parent;
+            areProductQuantitiesDivisible[operation] = builder.areProductQuantitiesDivisible.get(operation);
+            isTjDivisible[operation] = builder.isTjDivisible.get(operation);
+
+            Norms norms = builder.norms.get(operationId);
+
+            if (norms == null) {
+                norms = new Norms();
+            }
+
+            tj[operation] = norms.tj;
+            tpz[operation] = norms.tpz;
+            timeNextOperation[operation] = norms.timeNextOperation;
+            laborUtilization[operation] = norms.laborUtilization;
+            machineUtilization[operation] = norms.machineUtilization;
+            nextOperationAfterProducedType[operation] = norms.nextOperationAfterProducedType;
+            nextOperationAfterProducedQuantity[operation] = norms.nextOperationAfterProducedQuantity;
+            quantityOfWorkstations[operation] = norms.quantityOfWorkstations;
+            workstationTypeIds[operation] = norms.workstationTypeId;
+
+            if (parent != null) {
+                children.put(parent, operation);
+            } else if (parentId == null && root < 0) {
+                root = operation;
+            }
+
+            inComponentsFrom[operation] = component;
+
+            for (Component inComponent : builder.inComponents.get(operationId)) {
+                addComponent(component++, operation, inComponent, 0L, slotsByKey, firstComponentsOfSlots);
+            }
+
+            outComponentsFrom[operation] = component;
+
+            for (Component outComponent : builder.outComponents.get(operationId)) {
+                addComponent(component++, operation, outComponent, 1L, slotsByKey, firstComponentsOfSlots);
+            }
+
+            componentsTo[operation] = component;
+        }
+
+        slotComponents = new int[firstComponentsOfSlots.size()];
+
+        for (int slot = 0; slot < slotComponents.length; slot++) {
+            slotComponents[slot] = firstComponentsOfSlots.get(slot);
+        }
+
+        traversalOrder = getTraversalOrder(root, children);
+    }
+
+    private void addComponent(final int component, final int operation, final Component values, final Long type,
+            final Map<List<Long>, Integer> slotsByKey, final List<Integer> firstComponentsOfSlots) {
+        componentOperations[component] = operation;
+        componentIds[component] = values.id;
+        productIds[component] = values.productId;
+        quantities[component] = values.quantity;
+
+        List<Long> key = Arrays.asList(operationIds[operation], type, productIds[component]);
+        Integer slot = slotsByKey.get(key);
+
+        if (slot == null) {
+            slot = firstComponentsOfSlots.size();
+            slotsByKey.put(key, slot);
+            firstComponentsOfSlots.add(component);
+        }
+
+        slots[component] = slot;
+    }
+
+    private int[] getTraversalOrder(final int root, final ListMultimap<Integer, Integer> children) {
+        if (root < 0) {
+            return new int[0];
+        }
+
+        List<Integer> order = Lists.newArrayList();
+        Deque<Integer> operations = Queues.newArrayDeque();
+
+        operations.push(root);
+
+        while (!operations.isEmpty()) {
+            Integer operation = operations.pop();
+
+            order.add(operation);
+
+            for (Integer child : Lists.reverse(children.get(operation))) {
+                operations.push(child);
+            }
+        }
+
+        int[] traversalOrder = new int[order.size()];
+
+        for (int i = 0; i < traversalOrder.length; i++) {
+            traversalOrder[i] = order.get(i);
+        }
+
+        return traversalOrder;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Long getTechnologyProductId() {
+        return technologyProductId;
+    }
+
+    public int getOperationsCount() {
+        return operationIds.length;
+    }
+
+    public long getOperationId(final int operation) {
+        return operationIds[operation];
+    }
+
+    /**
+     * Returns index of operation with given technology operation component id, or -1 if technology doesn't contain it.
+     */
+    public int getOperationIndex(final Long operationId) {
+        Integer operation = operationIndexes.get(operationId);
+
+        return (operation == null) ? -1 : operation;
+    }
+
+    /**
+     * Returns index of parent operation or -1 for root operations.
+     */
+    public int getParent(final int operation) {
+        return parents[operation];
+    }
+
+    public boolean areProductQuantitiesDivisible(final int operation) {
+        return areProductQuantitiesDivisible[operation];
+    }
+
+    public boolean isTjDivisible(final int operation) {
+        return isTjDivisible[operation];
+    }
+
+    public int getTj(final int operation) {
+        return tj[operation];
+    }
+
+    public int getTpz(final int operation) {
+        return tpz[operation];
+    }
+
+    public int getTimeNextOperation(final int operation) {
+        return timeNextOperation[operation];
+    }
+
+    public BigDecimal getLaborUtilization(final int operation) {
+        return laborUtilization[operation];
+    }
+
+    public BigDecimal getMachineUtilization(final int operation) {
+        return machineUtilization[operation];
+    }
+
+    public String getNextOperationAfterProducedType(final int operation) {
+        return nextOperationAfterProducedType[operation];
+    }
+
+    public BigDecimal getNextOperationAfterProducedQuantity(final int operation) {
+        return nextOperationAfterProducedQuantity[operation];
+    }
+
+    public int getQuantityOfWorkstations(final int operation) {
+        return quantityOfWorkstations[operation];
+    }
+
+    /**
+     * Returns id of workstation type assigned to operation of given technology operation component, or null.
+     */
+    public Long getWorkstationTypeId(final int operation) {
+        return workstationTypeIds[operation];
+    }
+
+    /**
+     * Returns indexes of operations reachable from the root, each parent placed before its children.
+     */
+    public int[] getTraversalOrder() {
+        return traversalOrder.clone();
+    }
+
+    public int getInComponentsFrom(final int operation) {
+        return inComponentsFrom[operation];
+    }
+
+    public int getInComponentsTo(final int operation) {
+        return outComponentsFrom[operation];
+    }
+
+    public int getOutComponentsFrom(final int operation) {
+        return outComponentsFrom[operation];
+    }
+
+    public int getOutComponentsTo(final int operation) {
+        return componentsTo[operation];
+    }
+
+    /**
+     * Returns index of the first output component of given operation producing given product, or -1 if there is none.
+     */
+    public int findOutComponent(final int operation, final Long productId) {
+        if (productId == null) {
+            return -1;
+        }
+
+        for (int component = outComponentsFrom[operation]; component < componentsTo[operation]; component++) {
+            if (productIds[component] == productId) {
+                return component;
+            }
+        }
+
+        return -1;
+    }
+
+    public int getComponentsCount() {
+        return componentIds.length;
+    }
+
+    public boolean isOutComponent(final int component) {
+        return component >= outComponentsFrom[componentOperations[component]];
+    }
+
+    public int getOperation(final int component) {
+        return componentOperations[component];
+    }
+
+    public long getComponentId(final int component) {
+        return componentIds[component];
+    }
+
+    public long getProductId(final int component) {
+        return productIds[component];
+    }
+
+    public int getSlot(final int component) {
+        return slots[component];
+    }
+
+    public int getSlotsCount() {
+        return slotComponents.length;
+    }
+
+    /**
+     * Returns index of the first component sharing given slot.
+     */
+    public int getSlotComponent(final int slot) {
+        return slotComponents[slot];
+    }
+
+    /**
+     * Returns initial quantities of slots, later components overriding earlier ones in the same slot.
+     */
+    public BigDecimal[] getSlotQuantities() {
+        BigDecimal[] slotQuantities = new BigDecimal[slotComponents.length];
+
+        for (int component = 0; component < quantities.length; component++) {
+            slotQuantities[slots[component]] = quantities[component];
+        }
+
+        return slotQuantities;
+    }
+
+    public static final class Builder {
+
+        private Long technologyProductId;
+
+        private final Set<Long> addedOperationIds = Sets.newHashSet();
+
+        private final List<Long> operationIds = Lists.newArrayList();
+
+        private final List<Long> parentIds = Lists.newArrayList();
+
+        private final List<Boolean> areProductQuantitiesDivisible = Lists.newArrayList();
+
+        private final List<Boolean> isTjDivisible = Lists.newArrayList();
+
+        private final Map<Long, Norms> norms = Maps.newHashMap();
+
+        private final ListMultimap<Long, Component> inComponents = ArrayListMultimap.create();
+
+        private final ListMultimap<Long, Component> outComponents = ArrayListMultimap.create();
+
+        private Builder() {
+        }
+
+        public Builder setTechnologyProductId(final Long technologyProductId) {
+            this.technologyProductId = technologyProductId;
+
+            return this;
+        }
+
+        public boolean containsOperation(final Long operationId) {
+            return addedOperationIds.contains(operationId);
+        }
+
+        public Builder addOperation(final Long operationId, final Long parentId, final boolean areProductQuantitiesDivisible,
+                final boolean isTjDivisible) {
+            Preconditions.checkArgument(addedOperationIds.add(operationId), "Duplicated operation " + operationId);
+
+            this.operationIds.add(operationId);
+            this.parentIds.add(parentId);
+            this.areProductQuantitiesDivisible.add(areProductQuantitiesDivisible);
+            this.isTjDivisible.add(isTjDivisible);
+
+            return this;
+        }
+
+        public Builder setNorms(final Long operationId, final Norms norms) {
+            this.norms.put(operationId, norms);
+
+            return this;
+        }
+
+        public Builder addInComponent(final Long operationId, final Long componentId, final Long productId,
+                final BigDecimal quantity) {
+            inComponents.put(operationId, new Component(componentId, productId, quantity));
+
+            return this;
+        }
+
+        public Builder addOutComponent(final Long operationId, final Long componentId, final Long productId,
+                final BigDecimal quantity) {
+            outComponents.put(operationId, new Component(componentId, productId, quantity));
+
+            return this;
+        }
+
+        public TechnologyStructure build() {
+            return new TechnologyStructure(this);
+        }
+
+    }
+
+    /**
+     * Time norms and workstations of single operation, zero when not given.
+     */
+    public static final class Norms {
+
+        private int tj;
+
+        private int tpz;
+
+        private int timeNextOperation;
+
+        private BigDecimal laborUtilization = BigDecimal.ZERO;
+
+        private BigDecimal machineUtilization = BigDecimal.ZERO;
+
+        private String nextOperationAfterProducedType;
+
+        private BigDecimal nextOperationAfterProducedQuantity = BigDecimal.ZERO;
+
+        private int quantityOfWorkstations;
+
+        private Long workstationTypeId;
+
+        public Norms setTj(final int tj) {
+            this.tj = tj;
+
+            return this;
+        }
+
+        public Norms setTpz(final int tpz) {
+            this.tpz = tpz;
+
+            return this;
+        }
+
+        public Norms setTimeNextOperation(final int timeNextOperation) {
+            this.timeNextOperation = timeNextOperation;
+
+            return this;
+        }
+
+        public Norms setLaborUtilization(final BigDecimal laborUtilization) {
+            this.laborUtilization = (laborUtilization == null) ? BigDecimal.ZERO : laborUtilization;
+
+            return this;
+        }
+
+        public Norms setMachineUtilization(final BigDecimal machineUtilization) {
+            this.machineUtilization = (machineUtilization == null) ? BigDecimal.ZERO : machineUtilization;
+
+            return this;
+        }
+
+        public Norms setNextOperationAfterProducedType(final String nextOperationAfterProducedType) {
+            this.nextOperationAfterProducedType = nextOperationAfterProducedType;
+
+            return this;
+        }
+
+        public Norms setNextOperationAfterProducedQuantity(final BigDecimal nextOperationAfterProducedQuantity) {
+            this.nextOperationAfterProducedQuantity = (nextOperationAfterProducedQuantity == null) ? BigDecimal.ZERO
+                    : nextOperationAfterProducedQuantity;
+
+            return this;
+        }
+
+        public Norms setQuantityOfWorkstations(final int quantityOfWorkstations) {
+            this.quantityOfWorkstations = quantityOfWorkstations;
+
+            return this;
+        }
+
+        public Norms setWorkstationTypeId(final Long workstationTypeId) {
+            this.workstationTypeId = workstationTypeId;
+
+            return this;
+        }
+
+    }
+
+    private static final class Component {
+
+        private final Long id;
+
+        private final Long productId;
+
+        private final BigDecimal quantity;
+
+        private Component(final Long id, final Long productId, final BigDecimal quantity) {
+            this.id = id;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+
+    }
+
+}
@@ -0,0 +1,223 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.tree;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.states.constants.TechnologyStateStringValues;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+@Service
+public class TechnologyStructureService {
+
+    private static final String L_IN = "in";
+
+    private static final String L_OUT = "out";
+
+    private static final String TECHNOLOGY_STRUCTURE_QUERY = "SELECT toc.id, toc.parent_id, toc.areproductquantitiesdivisible, "
+            + "toc.istjdivisible, toc.tj, toc.tpz, toc.timenextoperation, toc.laborutilization, toc.machineutilization, "
+            + "toc.nextoperationafterproducedtype, toc.nextoperationafterproducedquantity, toc.quantityofworkstations, "
+            + "operation.workstationtype_id, technology.product_id AS technologyproduct_id, component.type, "
+            + "component.id AS component_id, component.product_id, component.quantity "
+            + "FROM technologies_technologyoperationcomponent toc "
+            + "JOIN technologies_technology technology ON technology.id = toc.technology_id "
+            + "LEFT JOIN technologies_operation operation ON operation.id = toc.operation_id "
+            + "LEFT JOIN LATERAL (SELECT '" + L_IN + "' AS type, opic.id, opic.product_id, opic.quantity "
+            + "FROM technologies_operationproductincomponent opic WHERE opic.operationcomponent_id = toc.id "
+            + "UNION ALL SELECT '" + L_OUT + "' AS type, opoc.id, opoc.product_id, opoc.quantity "
+            + "FROM technologies_operationproductoutcomponent opoc WHERE opoc.operationcomponent_id = toc.id) component ON true "
+            + "WHERE toc.technology_id = :technologyId ORDER BY toc.priority, toc.id, component.type, component.id";
+
+    private static final int L_MAXIMUM_SIZE = 500;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MultiTenantService multiTenantService;
+
+    private final ConcurrentMap<Integer, Cache<Long, TechnologyStructure>> technologyStructures = Maps.newConcurrentMap();
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Returns structure of given technology. Structures of accepted and outdated technologies are cached by tenant and
+     * technology id and dropped by model hooks of technology, its operation components, their products and operations, so the
+     * same structure is shared by product quantities, time and cost calculations until the technology is changed. Structures
+     * of other technologies, which are still edited, are loaded on each call.
+     * 
+     * @param technology
+     *            saved technology
+     * @return structure of technology operations with their norms and their input and output products
+     */
+    public TechnologyStructure getTechnologyStructure(final Entity technology) {
+        Long technologyId = technology.getId();
+
+        if (!isStructureFinal(technology)) {
+            return loadTechnologyStructure(technologyId);
+        }
+
+        Cache<Long, TechnologyStructure> tenantTechnologyStructures = getTenantTechnologyStructures();
+        TechnologyStructure technologyStructure = tenantTechnologyStructures.getIfPresent(technologyId);
+
+        if (technologyStructure == null) {
+            long loadedVersion = version.get();
+
+            technologyStructure = loadTechnologyStructure(technologyId);
+
+            if (loadedVersion == version.get()) {
+                tenantTechnologyStructures.put(technologyId, technologyStructure);
+            }
+        }
+
+        return technologyStructure;
+    }
+
+    private boolean isStructureFinal(final Entity technology) {
+        String state = technology.getStringField(TechnologyFields.STATE);
+
+        return TechnologyStateStringValues.ACCEPTED.equals(state) || TechnologyStateStringValues.OUTDATED.equals(state);
+    }
+
+    private Cache<Long, TechnologyStructure> getTenantTechnologyStructures() {
+        return technologyStructures.computeIfAbsent(multiTenantService.getCurrentTenantId(),
+                tenantId -> CacheBuilder.newBuilder().maximumSize(L_MAXIMUM_SIZE).build());
+    }
+
+    /**
+     * Drops cached structure of given technology. When called inside transaction structure is dropped once again after its
+     * completion, so that structure loaded concurrently from not yet committed data won't be used.
+     * 
+     * @param technologyId
+     *            technology id
+     */
+    public void invalidate(final Long technologyId) {
+        if (technologyId == null) {
+            return;
+        }
+
+        Cache<Long, TechnologyStructure> tenantTechnologyStructures = getTenantTechnologyStructures();
+
+        doInvalidate(tenantTechnologyStructures, technologyId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    doInvalidate(tenantTechnologyStructures, technologyId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops all cached structures of current tenant, e.g. after change of operation used in many technologies.
+     */
+    public void invalidateAll() {
+        Cache<Long, TechnologyStructure> tenantTechnologyStructures = getTenantTechnologyStructures();
+
+        doInvalidateAll(tenantTechnologyStructures);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+                @Override
+                public void afterCompletion(final int status) {
+                    doInvalidateAll(tenantTechnologyStructures);
+                }
+            });
+        }
+    }
+
+    private void doInvalidate(final Cache<Long, TechnologyStructure> tenantTechnologyStructures, final Long technologyId) {
+        version.incrementAndGet();
+        tenantTechnologyStructures.invalidate(technologyId);
+    }
+
+    private void doInvalidateAll(final Cache<Long, TechnologyStructure> tenantTechnologyStructures) {
+        version.incrementAndGet();
+        tenantTechnologyStructures.invalidateAll();
+    }
+
+    private TechnologyStructure loadTechnologyStructure(final Long technologyId) {
+        Map<String, Object> params = Maps.newHashMap();
+
+        params.put("technologyId", technologyId);
+
+        TechnologyStructure.Builder builder = TechnologyStructure.builder();
+
+        jdbcTemplate.query(TECHNOLOGY_STRUCTURE_QUERY, params, rs -> {
+            Long operationId = rs.getLong("id");
+
+            if (!builder.containsOperation(operationId)) {
+                builder.setTechnologyProductId(getLong(rs, "technologyproduct_id"));
+                builder.addOperation(operationId, getLong(rs, "parent_id"), rs.getBoolean("areproductquantitiesdivisible"),
+                        rs.getBoolean("istjdivisible"));
+                builder.setNorms(operationId, new TechnologyStructure.Norms().setTj(rs.getInt("tj")).setTpz(rs.getInt("tpz"))
+                        .setTimeNextOperation(rs.getInt("timenextoperation"))
+                        .setLaborUtilization(rs.getBigDecimal("laborutilization"))
+                        .setMachineUtilization(rs.getBigDecimal("machineutilization"))
+                        .setNextOperationAfterProducedType(rs.getString("nextoperationafterproducedtype"))
+                        .setNextOperationAfterProducedQuantity(rs.getBigDecimal("nextoperationafterproducedquantity"))
+                        .setQuantityOfWorkstations(rs.getInt("quantityofworkstations"))
+                        .setWorkstationTypeId(getLong(rs, "workstationtype_id")));
+            }
+
+            String type = rs.getString("type");
+
+            if (L_IN.equals(type)) {
+                builder.addInComponent(operationId, getLong(rs, "component_id"), getLong(rs, "product_id"),
+                        rs.getBigDecimal("quantity"));
+            } else if (L_OUT.equals(type)) {
+                builder.addOutComponent(operationId, getLong(rs, "component_id"), getLong(rs, "product_id"),
+                        rs.getBigDecimal("quantity"));
+            }
+        });
+
+        return builder.build();
+    }
+
+    private Long getLong(final ResultSet rs, final String column) throws SQLException {
+        long value = rs.getLong(column);
+
+        return rs.wasNull() ? null : value;
+    }
+
+}
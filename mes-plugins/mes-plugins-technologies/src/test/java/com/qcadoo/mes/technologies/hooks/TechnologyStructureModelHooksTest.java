@@ -0,0 +1,138 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.hooks;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.tree.TechnologyStructureService;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.Entity;
+
+public class TechnologyStructureModelHooksTest {
+
+    private static final Long L_TECHNOLOGY_ID = 1L;
+
+    private TechnologyStructureModelHooks technologyStructureModelHooks;
+
+    @Mock
+    private TechnologyStructureService technologyStructureService;
+
+    @Mock
+    private DataDefinition dataDefinition;
+
+    @Mock
+    private Entity technology, technologyOperationComponent, operationProductComponent, operation;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        technologyStructureModelHooks = new TechnologyStructureModelHooks();
+
+        ReflectionTestUtils.setField(technologyStructureModelHooks, "technologyStructureService", technologyStructureService);
+
+        given(technology.getId()).willReturn(L_TECHNOLOGY_ID);
+        given(technologyOperationComponent.getBelongsToField(TechnologyOperationComponentFields.TECHNOLOGY)).willReturn(
+                technology);
+        given(operationProductComponent.getBelongsToField(OperationProductInComponentFields.OPERATION_COMPONENT)).willReturn(
+                technologyOperationComponent);
+    }
+
+    @Test
+    public final void shouldInvalidateStructureOnTechnologySaveAndDelete() {
+        // when
+        technologyStructureModelHooks.onTechnologySave(dataDefinition, technology);
+        boolean canDelete = technologyStructureModelHooks.onTechnologyDelete(dataDefinition, technology);
+
+        // then
+        assertTrue(canDelete);
+
+        verify(technologyStructureService, times(2)).invalidate(L_TECHNOLOGY_ID);
+    }
+
+    @Test
+    public final void shouldInvalidateStructureOfTechnologyOfSavedOperationComponent() {
+        // when
+        technologyStructureModelHooks.onOperationComponentSave(dataDefinition, technologyOperationComponent);
+
+        // then
+        verify(technologyStructureService).invalidate(L_TECHNOLOGY_ID);
+    }
+
+    @Test
+    public final void shouldInvalidateStructureOfTechnologyOfDeletedOperationProductComponent() {
+        // when
+        boolean canDelete = technologyStructureModelHooks.onOperationProductComponentDelete(dataDefinition,
+                operationProductComponent);
+
+        // then
+        assertTrue(canDelete);
+
+        verify(technologyStructureService).invalidate(L_TECHNOLOGY_ID);
+    }
+
+    @Test
+    public final void shouldNotInvalidateWhenOperationProductComponentHasNoOperationComponent() {
+        // given
+        given(operationProductComponent.getBelongsToField(OperationProductInComponentFields.OPERATION_COMPONENT)).willReturn(
+                null);
+
+        // when
+        technologyStructureModelHooks.onOperationProductComponentSave(dataDefinition, operationProductComponent);
+
+        // then
+        verifyZeroInteractions(technologyStructureService);
+    }
+
+    @Test
+    public final void shouldInvalidateAllStructuresOnlyWhenExistingOperationIsSaved() {
+        // when
+        technologyStructureModelHooks.onOperationSave(dataDefinition, operation);
+
+        // then
+        verifyZeroInteractions(technologyStructureService);
+
+        // given
+        given(operation.getId()).willReturn(2L);
+
+        // when
+        technologyStructureModelHooks.onOperationSave(dataDefinition, operation);
+
+        // then
+        verify(technologyStructureService).invalidateAll();
+    }
+
+}
@@ -0,0 +1,245 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.stubbing.Answer;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.states.constants.TechnologyStateStringValues;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.tenant.api.MultiTenantService;
+
+public class TechnologyStructureServiceTest {
+
+    private static final Long L_TECHNOLOGY_ID = 1L;
+
+    private static final Long L_TECHNOLOGY_PRODUCT_ID = 100L;
+
+    private static final Long L_COMPONENT_PRODUCT_ID = 101L;
+
+    private TechnologyStructureService technologyStructureService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private MultiTenantService multiTenantService;
+
+    @Mock
+    private Entity technology;
+
+    @Before
+    public final void init() throws SQLException {
+        MockitoAnnotations.initMocks(this);
+
+        technologyStructureService = new TechnologyStructureService();
+
+        ReflectionTestUtils.setField(technologyStructureService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(technologyStructureService, "multiTenantService", multiTenantService);
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(1);
+        given(technology.getId()).willReturn(L_TECHNOLOGY_ID);
+        given(technology.getStringField(TechnologyFields.STATE)).willReturn(TechnologyStateStringValues.ACCEPTED);
+
+        List<ResultSet> rows = Lists.newArrayList(
+                mockRow(operationRow(1L, null, 30, 120, "0.5", 2, 7L).put("type", "in").put("component_id", 10L)
+                        .put("product_id", L_COMPONENT_PRODUCT_ID).put("quantity", new BigDecimal("2")).build()),
+                mockRow(operationRow(1L, null, 30, 120, "0.5", 2, 7L).put("type", "out").put("component_id", 11L)
+                        .put("product_id", L_TECHNOLOGY_PRODUCT_ID).put("quantity", BigDecimal.ONE).build()),
+                mockRow(operationRow(2L, 1L, 15, 0, "1", 1, null).put("type", "out").put("component_id", 12L)
+                        .put("product_id", L_COMPONENT_PRODUCT_ID).put("quantity", new BigDecimal("3")).build()));
+
+        doAnswer(invocation -> {
+            RowCallbackHandler rowCallbackHandler = (RowCallbackHandler) invocation.getArguments()[2];
+
+            for (ResultSet row : rows) {
+                rowCallbackHandler.processRow(row);
+            }
+
+            return null;
+        }).when(jdbcTemplate).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public final void shouldLoadNormsOfOperationsWithTheirProducts() {
+        // when
+        TechnologyStructure technologyStructure = technologyStructureService.getTechnologyStructure(technology);
+
+        // then
+        assertEquals(L_TECHNOLOGY_PRODUCT_ID, technologyStructure.getTechnologyProductId());
+        assertEquals(2, technologyStructure.getOperationsCount());
+
+        int rootOperation = technologyStructure.getOperationIndex(1L);
+        int childOperation = technologyStructure.getOperationIndex(2L);
+
+        assertEquals(-1, technologyStructure.getParent(rootOperation));
+        assertEquals(rootOperation, technologyStructure.getParent(childOperation));
+
+        assertEquals(30, technologyStructure.getTj(rootOperation));
+        assertEquals(120, technologyStructure.getTpz(rootOperation));
+        assertEquals(5, technologyStructure.getTimeNextOperation(rootOperation));
+        assertEquals(new BigDecimal("0.5"), technologyStructure.getLaborUtilization(rootOperation));
+        assertEquals(2, technologyStructure.getQuantityOfWorkstations(rootOperation));
+        assertEquals(Long.valueOf(7L), technologyStructure.getWorkstationTypeId(rootOperation));
+
+        assertEquals(15, technologyStructure.getTj(childOperation));
+        assertEquals(new BigDecimal("1"), technologyStructure.getLaborUtilization(childOperation));
+        assertNull(technologyStructure.getWorkstationTypeId(childOperation));
+
+        assertEquals(3, technologyStructure.getComponentsCount());
+        assertTrue(technologyStructure.findOutComponent(childOperation, L_COMPONENT_PRODUCT_ID) >= 0);
+    }
+
+    @Test
+    public final void shouldShareStructureOfAcceptedTechnologyWithinTenant() {
+        // when
+        TechnologyStructure technologyStructure = technologyStructureService.getTechnologyStructure(technology);
+        TechnologyStructure cachedTechnologyStructure = technologyStructureService.getTechnologyStructure(technology);
+
+        // then
+        assertSame(technologyStructure, cachedTechnologyStructure);
+
+        verify(jdbcTemplate, times(1)).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public final void shouldNotShareStructureBetweenTenants() {
+        // given
+        technologyStructureService.getTechnologyStructure(technology);
+
+        given(multiTenantService.getCurrentTenantId()).willReturn(2);
+
+        // when
+        technologyStructureService.getTechnologyStructure(technology);
+
+        // then
+        verify(jdbcTemplate, times(2)).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public final void shouldLoadStructureOfDraftTechnologyOnEachCall() {
+        // given
+        given(technology.getStringField(TechnologyFields.STATE)).willReturn(TechnologyStateStringValues.DRAFT);
+
+        // when
+        technologyStructureService.getTechnologyStructure(technology);
+        technologyStructureService.getTechnologyStructure(technology);
+
+        // then
+        verify(jdbcTemplate, times(2)).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    public final void shouldLoadStructureAgainAfterInvalidation() {
+        // given
+        technologyStructureService.getTechnologyStructure(technology);
+
+        // when
+        technologyStructureService.invalidate(L_TECHNOLOGY_ID);
+        technologyStructureService.getTechnologyStructure(technology);
+        technologyStructureService.invalidateAll();
+        technologyStructureService.getTechnologyStructure(technology);
+
+        // then
+        verify(jdbcTemplate, times(3)).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    }
+
+    private RowBuilder operationRow(final Long operationId, final Long parentId, final int tj, final int tpz,
+            final String laborUtilization, final int quantityOfWorkstations, final Long workstationTypeId) {
+        return new RowBuilder().put("id", operationId).put("parent_id", parentId).put("areproductquantitiesdivisible", true)
+                .put("istjdivisible", false).put("tj", tj).put("tpz", tpz).put("timenextoperation", 5)
+                .put("laborutilization", new BigDecimal(laborUtilization)).put("machineutilization", BigDecimal.ONE)
+                .put("quantityofworkstations", quantityOfWorkstations).put("workstationtype_id", workstationTypeId)
+                .put("technologyproduct_id", L_TECHNOLOGY_PRODUCT_ID);
+    }
+
+    private ResultSet mockRow(final Map<String, Object> values) throws SQLException {
+        ResultSet row = mock(ResultSet.class);
+        boolean[] wasNull = new boolean[1];
+
+        given(row.getLong(anyString())).willAnswer(getValue(values, wasNull, 0L));
+        given(row.getInt(anyString())).willAnswer(getValue(values, wasNull, 0));
+        given(row.getBoolean(anyString())).willAnswer(getValue(values, wasNull, false));
+        given(row.getBigDecimal(anyString())).willAnswer(getValue(values, wasNull, null));
+        given(row.getString(anyString())).willAnswer(getValue(values, wasNull, null));
+        given(row.wasNull()).willAnswer(invocation -> wasNull[0]);
+
+        return row;
+    }
+
+    private Answer<Object> getValue(final Map<String, Object> values, final boolean[] wasNull, final Object nullValue) {
+        return invocation -> {
+            Object value = values.get(invocation.getArguments()[0]);
+
+            wasNull[0] = (value == null);
+
+            return (value == null) ? nullValue : value;
+        };
+    }
+
+    private static final class RowBuilder {
+
+        private final Map<String, Object> values = Maps.newHashMap();
+
+        private RowBuilder put(final String column, final Object value) {
+            values.put(column, value);
+
+            return this;
+        }
+
+        private Map<String, Object> build() {
+            return values;
+        }
+
+    }
+
+}
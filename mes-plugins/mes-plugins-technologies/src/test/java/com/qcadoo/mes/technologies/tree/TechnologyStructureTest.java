@@ -0,0 +1,147 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.technologies.tree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TechnologyStructureTest {
+
+    private static final Long L_FINAL_PRODUCT = 100L;
+
+    private static final Long L_INTERMEDIATE_PRODUCT = 101L;
+
+    private static final Long L_COMPONENT = 102L;
+
+    private TechnologyStructure technologyStructure;
+
+    @Before
+    public void init() {
+        technologyStructure = TechnologyStructure.builder().setTechnologyProductId(L_FINAL_PRODUCT)
+                .addOperation(3L, 1L, false, false).addOperation(1L, null, true, true).addOperation(2L, 1L, false, true)
+                .addOperation(4L, 2L, false, false)
+                .setNorms(2L, new TechnologyStructure.Norms().setTj(30).setTpz(120).setLaborUtilization(new BigDecimal("0.5"))
+                        .setQuantityOfWorkstations(2).setWorkstationTypeId(7L)).addInComponent(1L, 10L, L_INTERMEDIATE_PRODUCT, new BigDecimal("2"))
+                .addInComponent(1L, 11L, L_COMPONENT, new BigDecimal("1"))
+                .addOutComponent(1L, 12L, L_FINAL_PRODUCT, BigDecimal.ONE)
+                .addOutComponent(2L, 13L, L_INTERMEDIATE_PRODUCT, new BigDecimal("3"))
+                .addInComponent(2L, 14L, L_COMPONENT, new BigDecimal("4"))
+                .addInComponent(2L, 15L, L_COMPONENT, new BigDecimal("5")).build();
+    }
+
+    @Test
+    public void shouldPlaceParentsBeforeChildren() {
+        // when
+        int[] traversalOrder = technologyStructure.getTraversalOrder();
+
+        // then
+        assertArrayEquals(new int[] { 1, 0, 2, 3 }, traversalOrder);
+        assertEquals(-1, technologyStructure.getParent(1));
+        assertEquals(1, technologyStructure.getParent(0));
+        assertEquals(2, technologyStructure.getParent(3));
+    }
+
+    @Test
+    public void shouldGroupComponentsByOperationWithInputsFirst() {
+        // given
+        int rootOperation = 1;
+        int childOperation = 2;
+
+        // when & then
+        assertEquals(2, technologyStructure.getInComponentsTo(rootOperation)
+                - technologyStructure.getInComponentsFrom(rootOperation));
+        assertEquals(1, technologyStructure.getOutComponentsTo(rootOperation)
+                - technologyStructure.getOutComponentsFrom(rootOperation));
+        assertEquals(technologyStructure.getInComponentsTo(childOperation),
+                technologyStructure.getOutComponentsFrom(childOperation));
+
+        for (int component = technologyStructure.getInComponentsFrom(childOperation); component < technologyStructure
+                .getOutComponentsTo(childOperation); component++) {
+            assertEquals(childOperation, technologyStructure.getOperation(component));
+            assertEquals(component >= technologyStructure.getOutComponentsFrom(childOperation),
+                    technologyStructure.isOutComponent(component));
+        }
+    }
+
+    @Test
+    public void shouldFindOutComponentProducingProduct() {
+        // when
+        int finalProductComponent = technologyStructure.findOutComponent(1, L_FINAL_PRODUCT);
+        int intermediateProductComponent = technologyStructure.findOutComponent(2, L_INTERMEDIATE_PRODUCT);
+
+        // then
+        assertEquals(12L, technologyStructure.getComponentId(finalProductComponent));
+        assertEquals(13L, technologyStructure.getComponentId(intermediateProductComponent));
+        assertEquals(-1, technologyStructure.findOutComponent(2, L_FINAL_PRODUCT));
+        assertEquals(-1, technologyStructure.findOutComponent(0, L_INTERMEDIATE_PRODUCT));
+    }
+
+    @Test
+    public void shouldShareSlotBetweenComponentsOfSameOperationTypeAndProduct() {
+        // given
+        int first = technologyStructure.getInComponentsFrom(2);
+        int second = first + 1;
+
+        // when
+        BigDecimal[] slotQuantities = technologyStructure.getSlotQuantities();
+
+        // then
+        assertEquals(technologyStructure.getSlot(first), technologyStructure.getSlot(second));
+        assertEquals(first, technologyStructure.getSlotComponent(technologyStructure.getSlot(second)));
+        assertEquals(new BigDecimal("5"), slotQuantities[technologyStructure.getSlot(first)]);
+        assertEquals(technologyStructure.getComponentsCount() - 1, technologyStructure.getSlotsCount());
+        assertFalse(technologyStructure.getSlot(technologyStructure.getInComponentsFrom(1)) == technologyStructure
+                .getSlot(first));
+        assertTrue(technologyStructure.areProductQuantitiesDivisible(1));
+        assertFalse(technologyStructure.isTjDivisible(3));
+    }
+
+    @Test
+    public void shouldKeepNormsOfOperations() {
+        // when
+        int operation = technologyStructure.getOperationIndex(2L);
+        int operationWithoutNorms = technologyStructure.getOperationIndex(4L);
+
+        // then
+        assertEquals(2, operation);
+        assertEquals(30, technologyStructure.getTj(operation));
+        assertEquals(120, technologyStructure.getTpz(operation));
+        assertEquals(new BigDecimal("0.5"), technologyStructure.getLaborUtilization(operation));
+        assertEquals(BigDecimal.ZERO, technologyStructure.getMachineUtilization(operation));
+        assertEquals(2, technologyStructure.getQuantityOfWorkstations(operation));
+        assertEquals(Long.valueOf(7L), technologyStructure.getWorkstationTypeId(operation));
+        assertEquals(0, technologyStructure.getTj(operationWithoutNorms));
+        assertNull(technologyStructure.getWorkstationTypeId(operationWithoutNorms));
+        assertEquals(-1, technologyStructure.getOperationIndex(5L));
+    }
+
+}
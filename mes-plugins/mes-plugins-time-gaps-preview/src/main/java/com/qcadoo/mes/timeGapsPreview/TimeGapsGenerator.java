@@ -23,26 +23,22 @@
  */
 package com.qcadoo.mes.timeGapsPreview;
 
-import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
-import org.joda.time.DateTime;
-import org.joda.time.Duration;
 import org.joda.time.Interval;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.qcadoo.mes.timeGapsPreview.constants.TimeGapsPreviewConstants;
 import com.qcadoo.mes.timeGapsPreview.provider.OperationalTaskIntervalsProvider;
 import com.qcadoo.mes.timeGapsPreview.provider.OrderAndChangeoverIntervalsProvider;
 import com.qcadoo.mes.timeGapsPreview.provider.ShiftIntervalsProvider;
-import com.qcadoo.mes.timeGapsPreview.util.TimeGapsBuilder;
-import com.qcadoo.mes.timeGapsPreview.util.TimeGapsBuilderImpl;
+import com.qcadoo.mes.timeGapsPreview.util.LineIntervals;
+import com.qcadoo.mes.timeGapsPreview.util.TimeGapsSweep;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 
@@ -62,42 +58,44 @@ public class TimeGapsGenerator {
     private DataDefinitionService dataDefinitionService;
 
     public TimeGapsSearchResult generate(final TimeGapsContext timeGapsContext) {
-        Multimap<Long, Interval> occupiedIntervals = createMultiMapWithKeys(timeGapsContext.getProductionLines());
-        occupiedIntervals.putAll(orderAndChangeoverIntervalsProvider.getIntervalsPerProductionLine(timeGapsContext));
-        occupiedIntervals.putAll(operationalTaskIntervalsProvider.getIntervalsPerProductionLine(timeGapsContext));
-        occupiedIntervals.putAll(shiftIntervalsProvider.getIntervalsPerProductionLine(timeGapsContext));
+        Interval searchInterval = timeGapsContext.getInterval();
+        long minDuration = timeGapsContext.getDuration().getMillis();
 
         Multimap<Long, Interval> timeGaps = HashMultimap.create();
-        for (Map.Entry<Long, Collection<Interval>> lineIntervals : occupiedIntervals.asMap().entrySet()) {
-            Collection<Interval> gapsForLine = invertOccupiedIntervals(timeGapsContext.getInterval(), lineIntervals.getValue());
-            Collection<Interval> gapsForLineFilteredByDuration = Collections2.filter(gapsForLine, new Predicate<Interval>() {
-
-                @Override
-                public boolean apply(final Interval interval) {
-                    if (interval == null) {
-                        return false;
-                    }
-                    return interval.toDuration().compareTo(timeGapsContext.getDuration()) >= 0;
-                }
-            });
-            timeGaps.putAll(lineIntervals.getKey(), gapsForLineFilteredByDuration);
+        for (Map.Entry<Long, LineIntervals> lineIntervals : getOccupiedIntervals(timeGapsContext).entrySet()) {
+            LineIntervals gapsForLine = TimeGapsSweep.findGaps(searchInterval.getStartMillis(), searchInterval.getEndMillis(),
+                    lineIntervals.getValue(), minDuration);
+            for (int i = 0; i < gapsForLine.size(); i++) {
+                timeGaps.put(lineIntervals.getKey(), gapsForLine.getInterval(i));
+            }
         }
         return TimeGapsSearchResult.create(timeGaps, getTimeGapDataDef());
     }
 
-    private Multimap<Long, Interval> createMultiMapWithKeys(final Set<Long> keys) {
-        Multimap<Long, Interval> multiMap = HashMultimap.create();
-        Interval emptyInterval = new Interval(new DateTime(0L), Duration.ZERO);
-        for (Long key : keys) {
-            multiMap.put(key, emptyInterval);
-        }
-        return multiMap;
+    /**
+     * Find first gaps not shorter than context duration, across all production lines of given context.
+     * 
+     * @param timeGapsContext
+     *            time gaps searching context
+     * @param limit
+     *            maximal number of returned gaps
+     * @return production line id and gap interval entries sorted by gap start
+     */
+    public List<Map.Entry<Long, Interval>> findFirstGaps(final TimeGapsContext timeGapsContext, final int limit) {
+        Interval searchInterval = timeGapsContext.getInterval();
+        return TimeGapsSweep.findFirstGaps(searchInterval.getStartMillis(), searchInterval.getEndMillis(),
+                getOccupiedIntervals(timeGapsContext), timeGapsContext.getDuration().getMillis(), limit);
     }
 
-    private Collection<Interval> invertOccupiedIntervals(final Interval domainInterval, final Iterable<Interval> occupiedIntervals) {
-        TimeGapsBuilder gapsBuilder = new TimeGapsBuilderImpl(domainInterval);
-        gapsBuilder.addOccupiedIntervals(occupiedIntervals);
-        return gapsBuilder.calculateGaps();
+    private Map<Long, LineIntervals> getOccupiedIntervals(final TimeGapsContext timeGapsContext) {
+        Map<Long, LineIntervals> occupiedIntervals = Maps.newHashMap();
+        for (Long productionLineId : timeGapsContext.getProductionLines()) {
+            occupiedIntervals.put(productionLineId, new LineIntervals());
+        }
+        orderAndChangeoverIntervalsProvider.addIntervalsPerProductionLine(timeGapsContext, occupiedIntervals);
+        operationalTaskIntervalsProvider.addIntervalsPerProductionLine(timeGapsContext, occupiedIntervals);
+        shiftIntervalsProvider.addIntervalsPerProductionLine(timeGapsContext, occupiedIntervals);
+        return occupiedIntervals;
     }
 
     private DataDefinition getTimeGapDataDef() {
@@ -27,6 +27,7 @@ import static com.qcadoo.model.api.search.SearchRestrictions.*;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.joda.time.Interval;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -35,6 +36,7 @@ import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.qcadoo.mes.timeGapsPreview.TimeGapsContext;
+import com.qcadoo.mes.timeGapsPreview.util.LineIntervals;
 import com.qcadoo.model.api.DataDefinition;
 import com.qcadoo.model.api.DataDefinitionService;
 import com.qcadoo.model.api.Entity;
@@ -74,6 +76,18 @@ public abstract class AbstractIntervalsProvider implements IntervalsProvider {
         return Multimaps.unmodifiableMultimap(intervals);
     }
 
+    @Override
+    public void addIntervalsPerProductionLine(final TimeGapsContext context, final Map<Long, LineIntervals> intervalsPerLine) {
+        // projections come sorted by start date, so intervals are appended in order
+        for (Entity datesProjection : getDatesProjection(context)) {
+            LineIntervals lineIntervals = intervalsPerLine.get(datesProjection.getField(PRODUCTION_LINE_ID_ALIAS));
+            if (lineIntervals != null) {
+                lineIntervals.add(datesProjection.getDateField(DATE_FROM_ALIAS).getTime(),
+                        datesProjection.getDateField(DATE_TO_ALIAS).getTime());
+            }
+        }
+    }
+
     protected SearchCriterion getSearchCriterion() {
         return null;
     }
@@ -23,13 +23,34 @@
  */
 package com.qcadoo.mes.timeGapsPreview.provider;
 
+import java.util.Map;
+
 import org.joda.time.Interval;
 
 import com.google.common.collect.Multimap;
 import com.qcadoo.mes.timeGapsPreview.TimeGapsContext;
+import com.qcadoo.mes.timeGapsPreview.util.LineIntervals;
 
 public interface IntervalsProvider {
 
     Multimap<Long, Interval> getIntervalsPerProductionLine(final TimeGapsContext context);
 
+    /**
+     * Append occupied intervals to the given intervals of their production lines. Intervals of lines missing in the given map are
+     * skipped.
+     * 
+     * @param context
+     *            time gaps searching context
+     * @param intervalsPerLine
+     *            occupied intervals by production line id
+     */
+    default void addIntervalsPerProductionLine(final TimeGapsContext context, final Map<Long, LineIntervals> intervalsPerLine) {
+        for (Map.Entry<Long, Interval> lineInterval : getIntervalsPerProductionLine(context).entries()) {
+            LineIntervals lineIntervals = intervalsPerLine.get(lineInterval.getKey());
+            if (lineIntervals != null) {
+                lineIntervals.add(lineInterval.getValue());
+            }
+        }
+    }
+
 }
@@ -25,10 +25,9 @@ package com.qcadoo.mes.timeGapsPreview.provider;
 
 import static com.qcadoo.mes.basic.ShiftsServiceImpl.ShiftHour;
 
-import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.joda.time.Interval;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,12 +35,11 @@ import org.springframework.stereotype.Service;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import com.qcadoo.mes.basic.ShiftsService;
 import com.qcadoo.mes.timeGapsPreview.TimeGapsContext;
 import com.qcadoo.mes.timeGapsPreview.provider.helper.ShiftIntervalsModelHelper;
-import com.qcadoo.mes.timeGapsPreview.util.TimeGapsBuilder;
-import com.qcadoo.mes.timeGapsPreview.util.TimeGapsBuilderImpl;
+import com.qcadoo.mes.timeGapsPreview.util.LineIntervals;
+import com.qcadoo.mes.timeGapsPreview.util.TimeGapsSweep;
 
 @Service
 public class ShiftIntervalsProvider implements IntervalsProvider {
@@ -54,30 +52,42 @@ public class ShiftIntervalsProvider implements IntervalsProvider {
 
     @Override
     public Multimap<Long, Interval> getIntervalsPerProductionLine(final TimeGapsContext context) {
-        Set<Interval> workIntervals = getWorkIntervals(context);
-        Collection<Interval> spareTimeIntervals = invertIntervals(context.getInterval(), workIntervals);
+        LineIntervals spareTimeIntervals = getSpareTimeIntervals(context);
         Multimap<Long, Interval> spareTimeMultiMap = HashMultimap.create();
         for (Long productionLne : context.getProductionLines()) {
-            spareTimeMultiMap.putAll(productionLne, spareTimeIntervals);
+            for (int i = 0; i < spareTimeIntervals.size(); i++) {
+                spareTimeMultiMap.put(productionLne, spareTimeIntervals.getInterval(i));
+            }
         }
         return spareTimeMultiMap;
     }
 
-    private Collection<Interval> invertIntervals(final Interval domainInterval, final Iterable<Interval> intervals) {
-        TimeGapsBuilder gapsBuilder = new TimeGapsBuilderImpl(domainInterval);
-        gapsBuilder.addOccupiedIntervals(intervals);
-        return gapsBuilder.calculateGaps();
+    @Override
+    public void addIntervalsPerProductionLine(final TimeGapsContext context, final Map<Long, LineIntervals> intervalsPerLine) {
+        // shifts are common for all lines, so spare time is calculated once
+        LineIntervals spareTimeIntervals = getSpareTimeIntervals(context);
+        for (Long productionLine : context.getProductionLines()) {
+            LineIntervals lineIntervals = intervalsPerLine.get(productionLine);
+            if (lineIntervals != null) {
+                lineIntervals.addAll(spareTimeIntervals);
+            }
+        }
+    }
+
+    private LineIntervals getSpareTimeIntervals(final TimeGapsContext context) {
+        Interval searchInterval = context.getInterval();
+        return TimeGapsSweep.findGaps(searchInterval.getStartMillis(), searchInterval.getEndMillis(), getWorkIntervals(context),
+                0L);
     }
 
-    private Set<Interval> getWorkIntervals(final TimeGapsContext context) {
+    private LineIntervals getWorkIntervals(final TimeGapsContext context) {
         Interval searchInterval = context.getInterval();
         Date fromDate = searchInterval.getStart().toDate();
         Date toDate = searchInterval.getEnd().toDate();
         List<ShiftHour> shiftHours = shiftsService.getHoursForAllShifts(fromDate, toDate);
-        Set<Interval> shiftWorkTimeIntervals = Sets.newHashSet();
+        LineIntervals shiftWorkTimeIntervals = new LineIntervals(shiftHours.size());
         for (ShiftHour shiftHour : shiftHours) {
-            Interval shiftWorkTimeInterval = new Interval(shiftHour.getDateFrom().getTime(), shiftHour.getDateTo().getTime());
-            shiftWorkTimeIntervals.add(shiftWorkTimeInterval);
+            shiftWorkTimeIntervals.add(shiftHour.getDateFrom().getTime(), shiftHour.getDateTo().getTime());
         }
         return shiftWorkTimeIntervals;
     }
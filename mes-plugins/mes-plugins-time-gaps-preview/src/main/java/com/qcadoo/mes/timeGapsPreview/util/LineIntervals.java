@@ -0,0 +1,146 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.timeGapsPreview.util;
+
+import java.util.Arrays;
+
+import org.joda.time.Interval;
+
+/**
+ * Growable list of intervals kept in two primitive arrays of start and end millis. Intervals added in start order (which is how
+ * providers read them) are never sorted again.
+ */
+public class LineIntervals {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] starts;
+
+    private long[] ends;
+
+    private int size;
+
+    private boolean sorted = true;
+
+    public LineIntervals() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public LineIntervals(final int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        starts = new long[capacity];
+        ends = new long[capacity];
+    }
+
+    public void add(final long start, final long end) {
+        if (start > end) {
+            return;
+        }
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        if (size > 0 && start < starts[size - 1]) {
+            sorted = false;
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    public void add(final Interval interval) {
+        if (interval != null) {
+            add(interval.getStartMillis(), interval.getEndMillis());
+        }
+    }
+
+    public void addAll(final LineIntervals intervals) {
+        for (int i = 0; i < intervals.size; i++) {
+            add(intervals.starts[i], intervals.ends[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getStart(final int index) {
+        return starts[index];
+    }
+
+    public long getEnd(final int index) {
+        return ends[index];
+    }
+
+    public Interval getInterval(final int index) {
+        return new Interval(starts[index], ends[index]);
+    }
+
+    /**
+     * Sorts intervals by start millis. Does nothing when intervals were added in start order.
+     */
+    public void sort() {
+        if (!sorted) {
+            sort(0, size - 1);
+            sorted = true;
+        }
+    }
+
+    private void sort(final int from, final int to) {
+        int left = from;
+        int right = to;
+        long pivot = starts[(from + to) >>> 1];
+        while (left <= right) {
+            while (starts[left] < pivot) {
+                left++;
+            }
+            while (starts[right] > pivot) {
+                right--;
+            }
+            if (left <= right) {
+                swap(left++, right--);
+            }
+        }
+        if (from < right) {
+            sort(from, right);
+        }
+        if (left < to) {
+            sort(left, to);
+        }
+    }
+
+    private void swap(final int first, final int second) {
+        long start = starts[first];
+        long end = ends[first];
+        starts[first] = starts[second];
+        ends[first] = ends[second];
+        starts[second] = start;
+        ends[second] = end;
+    }
+
+}
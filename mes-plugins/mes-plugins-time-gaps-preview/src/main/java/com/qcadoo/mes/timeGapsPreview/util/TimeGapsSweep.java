@@ -0,0 +1,163 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.timeGapsPreview.util;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.joda.time.Interval;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Finds time gaps with a single sweep over occupied intervals sorted by start. Occupied intervals may overlap, abut or exceed the
+ * search domain, they are merged on the fly.
+ */
+public final class TimeGapsSweep {
+
+    private TimeGapsSweep() {
+    }
+
+    /**
+     * Calculate gaps between occupied intervals inside the search domain.
+     * 
+     * @param domainStart
+     *            search domain start millis
+     * @param domainEnd
+     *            search domain end millis
+     * @param occupied
+     *            occupied intervals, sorted in place if needed
+     * @param minDuration
+     *            minimal duration of returned gaps in millis
+     * @return gaps sorted by start
+     */
+    public static LineIntervals findGaps(final long domainStart, final long domainEnd, final LineIntervals occupied,
+            final long minDuration) {
+        LineIntervals gaps = new LineIntervals();
+        GapsCursor<Object> cursor = new GapsCursor<Object>(null, domainStart, domainEnd, occupied, minDuration);
+        while (cursor.next()) {
+            gaps.add(cursor.gapStart, cursor.gapEnd);
+        }
+        return gaps;
+    }
+
+    /**
+     * Find first gaps of at least given duration across all lines, lines are swept lazily and only as far as needed.
+     * 
+     * @param occupiedPerLine
+     *            occupied intervals by line, sorted in place if needed
+     * @param limit
+     *            maximal number of returned gaps
+     * @return line and gap entries sorted by gap start
+     */
+    public static <K> List<Map.Entry<K, Interval>> findFirstGaps(final long domainStart, final long domainEnd,
+            final Map<K, LineIntervals> occupiedPerLine, final long minDuration, final int limit) {
+        Preconditions.checkArgument(limit >= 0, "Limit should be not negative.");
+
+        List<Map.Entry<K, Interval>> gaps = Lists.newArrayListWithCapacity(Math.min(limit, 64));
+        if (limit == 0) {
+            return gaps;
+        }
+
+        PriorityQueue<GapsCursor<K>> cursors = new PriorityQueue<GapsCursor<K>>(Math.max(occupiedPerLine.size(), 1),
+                Comparator.comparingLong(cursor -> cursor.gapStart));
+        for (Map.Entry<K, LineIntervals> lineIntervals : occupiedPerLine.entrySet()) {
+            GapsCursor<K> cursor = new GapsCursor<K>(lineIntervals.getKey(), domainStart, domainEnd, lineIntervals.getValue(),
+                    minDuration);
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+
+        while (gaps.size() < limit && !cursors.isEmpty()) {
+            GapsCursor<K> cursor = cursors.poll();
+            gaps.add(Maps.immutableEntry(cursor.key, new Interval(cursor.gapStart, cursor.gapEnd)));
+            if (cursor.next()) {
+                cursors.add(cursor);
+            }
+        }
+        return gaps;
+    }
+
+    private static final class GapsCursor<K> {
+
+        private final K key;
+
+        private final LineIntervals occupied;
+
+        private final long domainEnd;
+
+        private final long minDuration;
+
+        private int index;
+
+        private long position;
+
+        private long gapStart;
+
+        private long gapEnd;
+
+        private GapsCursor(final K key, final long domainStart, final long domainEnd, final LineIntervals occupied,
+                final long minDuration) {
+            this.key = key;
+            this.occupied = occupied;
+            this.domainEnd = domainEnd;
+            this.minDuration = minDuration;
+            this.position = domainStart;
+            occupied.sort();
+        }
+
+        private boolean next() {
+            while (position < domainEnd) {
+                long nextOccupiedStart = domainEnd;
+                while (index < occupied.size()) {
+                    if (occupied.getStart(index) <= position) {
+                        position = Math.max(position, occupied.getEnd(index));
+                        index++;
+                    } else {
+                        nextOccupiedStart = Math.min(occupied.getStart(index), domainEnd);
+                        break;
+                    }
+                }
+                if (position >= domainEnd) {
+                    return false;
+                }
+                long start = position;
+                position = nextOccupiedStart;
+                if (nextOccupiedStart - start >= minDuration) {
+                    gapStart = start;
+                    gapEnd = nextOccupiedStart;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+}
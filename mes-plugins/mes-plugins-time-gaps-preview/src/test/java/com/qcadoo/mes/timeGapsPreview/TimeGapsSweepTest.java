@@ -0,0 +1,127 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo Framework
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.timeGapsPreview;
+
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.timeGapsPreview.util.LineIntervals;
+import com.qcadoo.mes.timeGapsPreview.util.TimeGapsSweep;
+
+public class TimeGapsSweepTest {
+
+    private static final Long LINE_1_ID = 1L;
+
+    private static final Long LINE_2_ID = 2L;
+
+    private static final Long LINE_3_ID = 3L;
+
+    private static final DateTime FROM = new DateTime(2013, 1, 8, 0, 0, 0);
+
+    private static final DateTime TO = FROM.plusDays(1);
+
+    private static final long HOUR = 3600000L;
+
+    private LineIntervals makeLineIntervals(final int... hours) {
+        LineIntervals intervals = new LineIntervals(1);
+        for (int i = 0; i < hours.length; i += 2) {
+            intervals.add(hour(hours[i]), hour(hours[i + 1]));
+        }
+        return intervals;
+    }
+
+    private long hour(final int hour) {
+        return FROM.getMillis() + hour * HOUR;
+    }
+
+    private Interval interval(final int fromHour, final int toHour) {
+        return new Interval(hour(fromHour), hour(toHour));
+    }
+
+    @Test
+    public void shouldFindGapsBetweenUnsortedAndOverlappingIntervals() {
+        // given
+        LineIntervals occupied = makeLineIntervals(10, 12, -2, 1, 3, 5, 4, 6, 6, 7, 20, 26);
+
+        // when
+        LineIntervals gaps = TimeGapsSweep.findGaps(FROM.getMillis(), TO.getMillis(), occupied, 0L);
+
+        // then
+        Assert.assertEquals(3, gaps.size());
+        Assert.assertEquals(interval(1, 3), gaps.getInterval(0));
+        Assert.assertEquals(interval(7, 10), gaps.getInterval(1));
+        Assert.assertEquals(interval(12, 20), gaps.getInterval(2));
+    }
+
+    @Test
+    public void shouldFindGapsNotShorterThanGivenDuration() {
+        // given
+        LineIntervals occupied = makeLineIntervals(1, 3, 5, 8, 10, 24);
+
+        // when
+        LineIntervals gaps = TimeGapsSweep.findGaps(FROM.getMillis(), TO.getMillis(), occupied, 2 * HOUR);
+
+        // then
+        Assert.assertEquals(2, gaps.size());
+        Assert.assertEquals(interval(3, 5), gaps.getInterval(0));
+        Assert.assertEquals(interval(8, 10), gaps.getInterval(1));
+    }
+
+    @Test
+    public void shouldReturnWholeDomainIfThereIsNoOccupiedIntervals() {
+        // when
+        LineIntervals gaps = TimeGapsSweep.findGaps(FROM.getMillis(), TO.getMillis(), new LineIntervals(), 0L);
+
+        // then
+        Assert.assertEquals(1, gaps.size());
+        Assert.assertEquals(new Interval(FROM, TO), gaps.getInterval(0));
+    }
+
+    @Test
+    public void shouldFindFirstGapsAcrossAllLines() {
+        // given
+        Map<Long, LineIntervals> occupiedPerLine = Maps.newLinkedHashMap();
+        occupiedPerLine.put(LINE_1_ID, makeLineIntervals(0, 2, 3, 10, 12, 24));
+        occupiedPerLine.put(LINE_2_ID, makeLineIntervals(0, 5, 8, 24));
+        occupiedPerLine.put(LINE_3_ID, makeLineIntervals(0, 24));
+
+        // when
+        List<Map.Entry<Long, Interval>> gaps = TimeGapsSweep.findFirstGaps(FROM.getMillis(), TO.getMillis(), occupiedPerLine,
+                2 * HOUR, 2);
+
+        // then
+        List<Map.Entry<Long, Interval>> expectedGaps = Lists.newArrayList(Maps.immutableEntry(LINE_2_ID, interval(5, 8)),
+                Maps.immutableEntry(LINE_1_ID, interval(10, 12)));
+        Assert.assertEquals(expectedGaps, gaps);
+    }
+
+}
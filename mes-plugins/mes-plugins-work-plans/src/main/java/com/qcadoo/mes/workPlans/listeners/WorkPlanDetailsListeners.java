@@ -24,21 +24,15 @@
 package com.qcadoo.mes.workPlans.listeners;
 
 import com.google.common.collect.Lists;
-import com.lowagie.text.DocumentException;
-import com.lowagie.text.PageSize;
-import com.qcadoo.localization.api.utils.DateUtils;
 import com.qcadoo.mes.orders.constants.OrderFields;
 import com.qcadoo.mes.orders.util.OrderHelperService;
 import com.qcadoo.mes.technologies.BarcodeOperationComponentService;
 import com.qcadoo.mes.technologies.constants.TechnologyFields;
 import com.qcadoo.mes.workPlans.WorkPlansService;
 import com.qcadoo.mes.workPlans.constants.WorkPlanFields;
-import com.qcadoo.mes.workPlans.constants.WorkPlanType;
 import com.qcadoo.mes.workPlans.constants.WorkPlansConstants;
-import com.qcadoo.mes.workPlans.print.WorkPlanForDivisionPdfService;
-import com.qcadoo.mes.workPlans.print.WorkPlanPdfService;
+import com.qcadoo.mes.workPlans.print.WorkPlanDocumentsService;
 import com.qcadoo.model.api.Entity;
-import com.qcadoo.model.api.file.FileService;
 import com.qcadoo.report.api.ReportService;
 import com.qcadoo.security.api.SecurityService;
 import com.qcadoo.view.api.ComponentState;
@@ -52,20 +46,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 public class WorkPlanDetailsListeners {
 
-    @Autowired
-    private SecurityService securityService;
+    private static final String L_BACKGROUND_JOB_ID = "backgroundJobId";
 
     @Autowired
-    private FileService fileService;
+    private SecurityService securityService;
 
     @Autowired
     private ReportService reportService;
@@ -74,10 +65,7 @@ public class WorkPlanDetailsListeners {
     private WorkPlansService workPlanService;
 
     @Autowired
-    private WorkPlanPdfService workPlanPdfService;
-
-    @Autowired
-    private WorkPlanForDivisionPdfService workPlanForDivisionPdfService;
+    private WorkPlanDocumentsService workPlanDocumentsService;
 
     @Autowired
     private OrderHelperService orderHelperService;
@@ -88,16 +76,13 @@ public class WorkPlanDetailsListeners {
     @Transactional
     public void generateWorkPlan(final ViewDefinitionState view, final ComponentState state, final String[] args) {
         if (state instanceof FormComponent) {
-            FieldComponent generatedField = (FieldComponent) view.getComponentByReference(WorkPlanFields.GENERATED);
-            FieldComponent dateField = (FieldComponent) view.getComponentByReference(WorkPlanFields.DATE);
-            FieldComponent workerField = (FieldComponent) view.getComponentByReference(WorkPlanFields.WORKER);
-
             Entity workPlan = workPlanService.getWorkPlan((Long) state.getFieldValue());
 
             if (workPlan == null) {
                 state.addMessage("qcadooView.message.entityNotFound", MessageType.FAILURE);
                 return;
-            } else if (StringUtils.isNotBlank(workPlan.getStringField(WorkPlanFields.FILE_NAME))) {
+            } else if (workPlan.getBooleanField(WorkPlanFields.GENERATED)
+                    && StringUtils.isNotBlank(workPlan.getStringField(WorkPlanFields.FILE_NAME))) {
                 state.addMessage("workPlans.workPlanDetails.window.workPlan.documentsWasGenerated", MessageType.FAILURE);
                 return;
             }
@@ -121,32 +106,30 @@ public class WorkPlanDetailsListeners {
                 return;
             }
 
-            if ("0".equals(generatedField.getFieldValue())) {
-                workerField.setFieldValue(securityService.getCurrentUserName());
-                generatedField.setFieldValue("1");
-                dateField.setFieldValue(new SimpleDateFormat(DateUtils.L_DATE_TIME_FORMAT, view.getLocale()).format(new Date()));
-            }
-
             state.performEvent(view, "save", new String[0]);
 
-            workPlan = workPlanService.getWorkPlan((Long) state.getFieldValue());
-
             if (state.getFieldValue() == null || !((FormComponent) state).isValid()) {
-                workerField.setFieldValue(null);
-                generatedField.setFieldValue("0");
-                dateField.setFieldValue(null);
                 return;
             }
 
-            try {
-                generateWorkPlanDocuments(state, workPlan);
-                checkIfInactiveOrders(state, orders);
-                state.performEvent(view, "reset", new String[0]);
-            } catch (IOException e) {
-                throw new IllegalStateException(e.getMessage(), e);
-            } catch (DocumentException e) {
-                throw new IllegalStateException(e.getMessage(), e);
+            Optional<Long> jobId = workPlanDocumentsService.submitWorkPlanDocuments(workPlan.getId(),
+                    securityService.getCurrentUserName(), state.getLocale());
+
+            if (!jobId.isPresent()) {
+                state.addMessage("workPlans.workPlanDetails.window.workPlan.generationInProgress", MessageType.FAILURE);
+                return;
             }
+
+            checkIfInactiveOrders(state, orders);
+            state.performEvent(view, "reset", new String[0]);
+
+            FieldComponent backgroundJobIdField = (FieldComponent) view.getComponentByReference(L_BACKGROUND_JOB_ID);
+
+            backgroundJobIdField.setFieldValue(jobId.get());
+            backgroundJobIdField.requestComponentUpdateState();
+
+            state.addMessage("workPlans.workPlanDetails.window.workPlan.generationStarted", MessageType.INFO, false,
+                    String.valueOf(jobId.get()));
         }
     }
 
@@ -186,21 +169,6 @@ public class WorkPlanDetailsListeners {
         return true;
     }
 
-    @Transactional
-    private void generateWorkPlanDocuments(final ComponentState state, final Entity workPlan) throws IOException,
-            DocumentException {
-        Entity workPlanWithFilename = fileService.updateReportFileName(workPlan, WorkPlanFields.DATE,
-                "workPlans.workPlan.report.fileName");
-        workPlanPdfService.generateDocument(workPlanWithFilename, state.getLocale());
-        if (workPlan.getStringField(WorkPlanFields.TYPE).compareTo(WorkPlanType.BY_DIVISION.getStringValue()) == 0) {
-            String fileNameForDivision = "workPlans.workPlan.report.fileNameForDivision";
-            Entity workPlanForDivision = fileService.updateReportFileName(workPlanWithFilename, WorkPlanFields.DATE,
-                    fileNameForDivision);
-            workPlanForDivisionPdfService.generateDocument(workPlanForDivision, state.getLocale(), fileNameForDivision,
-                    PageSize.A4.rotate());
-        }
-    }
-
     public void printWorkPlan(final ViewDefinitionState view, final ComponentState state, final String[] args) {
         reportService.printGeneratedReport(view, state, new String[] { args[0], WorkPlansConstants.PLUGIN_IDENTIFIER,
                 WorkPlansConstants.MODEL_WORK_PLAN, args[1] });
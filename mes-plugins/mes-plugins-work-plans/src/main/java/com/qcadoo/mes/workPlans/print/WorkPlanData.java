@@ -0,0 +1,66 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.workPlans.print;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
+import com.qcadoo.model.api.Entity;
+
+/**
+ * Orders of a work plan together with everything the grouping containers need for them: product quantities and sorted operation
+ * components with product components already updated from production counting quantities.
+ */
+public class WorkPlanData {
+
+    private final List<Entity> orders;
+
+    private final Map<Long, OperationProductComponentWithQuantityContainer> productQuantities;
+
+    private final Map<Long, List<Entity>> operationComponents;
+
+    public WorkPlanData(final List<Entity> orders,
+            final Map<Long, OperationProductComponentWithQuantityContainer> productQuantities,
+            final Map<Long, List<Entity>> operationComponents) {
+        this.orders = ImmutableList.copyOf(orders);
+        this.productQuantities = ImmutableMap.copyOf(productQuantities);
+        this.operationComponents = ImmutableMap.copyOf(operationComponents);
+    }
+
+    public List<Entity> getOrders() {
+        return orders;
+    }
+
+    public OperationProductComponentWithQuantityContainer getProductQuantities(final Entity order) {
+        return productQuantities.get(order.getId());
+    }
+
+    public List<Entity> getOperationComponents(final Entity order) {
+        return operationComponents.get(order.getId());
+    }
+
+}
@@ -0,0 +1,212 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.workPlans.print;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityFields;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityRole;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.states.constants.OrderState;
+import com.qcadoo.mes.technologies.ProductQuantitiesService;
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.technologies.dto.OperationProductComponentWithQuantityContainer;
+import com.qcadoo.mes.workPlans.constants.WorkPlanFields;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.utils.EntityTreeUtilsService;
+
+/**
+ * Loads data of all orders of a work plan before it's grouped and printed. Product quantities are calculated for all orders at
+ * once, production counting quantities are read in one query and merges left by previous prints are removed in one statement
+ * per table.
+ */
+@Service
+public class WorkPlanDataService {
+
+    @Autowired
+    private ProductQuantitiesService productQuantitiesService;
+
+    @Autowired
+    private BasicProductionCountingService basicProductionCountingService;
+
+    @Autowired
+    private EntityTreeUtilsService entityTreeUtilsService;
+
+    @Autowired
+    private DataDefinitionService dataDefinitionService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    public WorkPlanData getWorkPlanData(final Entity workPlan) {
+        List<Entity> orders = Lists.newArrayList(workPlan.getHasManyField(WorkPlanFields.ORDERS));
+
+        if (orders.isEmpty()) {
+            return new WorkPlanData(orders, Collections.emptyMap(), Collections.emptyMap());
+        }
+
+        List<Long> orderIds = orders.stream().map(Entity::getId).collect(Collectors.toList());
+
+        removeAlreadyExistsMergesForOrders(orderIds);
+
+        Map<Long, OperationProductComponentWithQuantityContainer> productQuantities = productQuantitiesService
+                .getProductComponentQuantitiesForOrders(orders);
+        Map<Long, Map<Long, List<Entity>>> productionCountingQuantities = getProductionCountingQuantities(orders);
+        Map<Long, List<Entity>> operationComponents = Maps.newHashMap();
+
+        for (Entity order : orders) {
+            Map<Long, List<Entity>> productionCountingQuantitiesForOrder = productionCountingQuantities.get(order.getId());
+            List<Entity> operationComponentsForOrder = Lists.newArrayList();
+
+            for (Entity operationComponent : operationComponents(order.getBelongsToField(OrderFields.TECHNOLOGY))) {
+                if (productionCountingQuantitiesForOrder != null) {
+                    updateOperationProductComponents(operationComponent,
+                            productionCountingQuantitiesForOrder.getOrDefault(operationComponent.getId(),
+                                    Collections.emptyList()));
+                }
+
+                operationComponentsForOrder.add(operationComponent);
+            }
+
+            operationComponents.put(order.getId(), operationComponentsForOrder);
+        }
+
+        return new WorkPlanData(orders, productQuantities, operationComponents);
+    }
+
+    /**
+     * @return production counting quantities of orders which are no longer pending, by order id and operation component id
+     */
+    private Map<Long, Map<Long, List<Entity>>> getProductionCountingQuantities(final List<Entity> orders) {
+        Map<Long, Map<Long, List<Entity>>> productionCountingQuantities = Maps.newHashMap();
+
+        List<Long> orderIds = orders.stream()
+                .filter(order -> !OrderState.PENDING.getStringValue().equals(order.getStringField(OrderFields.STATE)))
+                .map(Entity::getId).collect(Collectors.toList());
+
+        if (orderIds.isEmpty()) {
+            return productionCountingQuantities;
+        }
+
+        for (Long orderId : orderIds) {
+            productionCountingQuantities.put(orderId, Maps.newHashMap());
+        }
+
+        for (Entity pcq : basicProductionCountingService.getMaterialsForOperationsFromProductionCountingQuantities(orderIds)) {
+            Long orderId = pcq.getBelongsToField(ProductionCountingQuantityFields.ORDER).getId();
+            Long operationComponentId = pcq.getBelongsToField(ProductionCountingQuantityFields.TECHNOLOGY_OPERATION_COMPONENT)
+                    .getId();
+
+            productionCountingQuantities.get(orderId).computeIfAbsent(operationComponentId, id -> Lists.newArrayList()).add(pcq);
+        }
+
+        return productionCountingQuantities;
+    }
+
+    private void updateOperationProductComponents(final Entity operationComponent,
+            final List<Entity> productionCountingQuantities) {
+        List<Entity> inComponents = updateOperationProductComponents(operationComponent, productionCountingQuantities,
+                TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS,
+                ProductionCountingQuantityRole.USED.getStringValue(), dataDefinitionService.get(
+                        TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_OPERATION_PRODUCT_IN_COMPONENT));
+
+        List<Entity> outComponents = updateOperationProductComponents(operationComponent, productionCountingQuantities,
+                TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS,
+                ProductionCountingQuantityRole.PRODUCED.getStringValue(), dataDefinitionService.get(
+                        TechnologiesConstants.PLUGIN_IDENTIFIER, TechnologiesConstants.MODEL_OPERATION_PRODUCT_OUT_COMPONENT));
+
+        operationComponent.setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS, inComponents);
+        operationComponent.setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS, outComponents);
+    }
+
+    private List<Entity> updateOperationProductComponents(final Entity operationComponent,
+            final List<Entity> productionCountingQuantities, final String componentsField, final String role,
+            final DataDefinition dataDefinition) {
+        List<Entity> productionCountingQuantitiesForRole = productionCountingQuantities.stream()
+                .filter(pcq -> role.equals(pcq.getStringField(ProductionCountingQuantityFields.ROLE)))
+                .collect(Collectors.toList());
+
+        if (productionCountingQuantitiesForRole.isEmpty()) {
+            return Lists.newArrayList();
+        }
+
+        Map<Long, Entity> existingProductComponents = Maps.newHashMap();
+
+        for (Entity productComponent : operationComponent.getHasManyField(componentsField)) {
+            existingProductComponents.putIfAbsent(
+                    productComponent.getBelongsToField(OperationProductInComponentFields.PRODUCT).getId(), productComponent);
+        }
+
+        List<Entity> mergedProductComponents = Lists.newArrayList();
+
+        for (Entity pcq : productionCountingQuantitiesForRole) {
+            Entity product = pcq.getBelongsToField(ProductionCountingQuantityFields.PRODUCT);
+            BigDecimal plannedQuantity = pcq.getDecimalField(ProductionCountingQuantityFields.PLANNED_QUANTITY);
+            Entity existingComponent = existingProductComponents.get(product.getId());
+
+            if (existingComponent != null) {
+                existingComponent.setField(OperationProductInComponentFields.QUANTITY, plannedQuantity);
+                mergedProductComponents.add(existingComponent);
+            } else {
+                Entity newComponent = dataDefinition.create();
+                newComponent.setField(OperationProductInComponentFields.PRODUCT, product);
+                newComponent.setField(OperationProductInComponentFields.QUANTITY, plannedQuantity);
+                newComponent.setField(OperationProductInComponentFields.OPERATION_COMPONENT, operationComponent);
+                mergedProductComponents.add(newComponent);
+            }
+        }
+
+        return mergedProductComponents;
+    }
+
+    private List<Entity> operationComponents(final Entity technology) {
+        return entityTreeUtilsService.getSortedEntities(technology.getTreeField(TechnologyFields.OPERATION_COMPONENTS));
+    }
+
+    private void removeAlreadyExistsMergesForOrders(final List<Long> orderIds) {
+        Map<String, Object> params = Collections.singletonMap("orderIds", orderIds);
+
+        jdbcTemplate.update("DELETE FROM technologies_technologyoperationcomponentmergeproductin WHERE order_id IN (:orderIds)",
+                params);
+        jdbcTemplate.update("DELETE FROM technologies_technologyoperationcomponentmergeproductout WHERE order_id IN (:orderIds)",
+                params);
+    }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.workPlans.print;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.PageSize;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJob;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobContext;
+import com.qcadoo.mes.basic.backgroundJobs.BackgroundJobService;
+import com.qcadoo.mes.workPlans.WorkPlansService;
+import com.qcadoo.mes.workPlans.constants.WorkPlanFields;
+import com.qcadoo.mes.workPlans.constants.WorkPlanType;
+import com.qcadoo.mes.workPlans.constants.WorkPlansConstants;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.file.FileService;
+
+@Service
+public class WorkPlanDocumentsService {
+
+    private static final String L_JOB_TYPE = "workPlanDocuments";
+
+    private static final String L_FILE_NAME = "workPlans.workPlan.report.fileName";
+
+    private static final String L_FILE_NAME_FOR_DIVISION = "workPlans.workPlan.report.fileNameForDivision";
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private WorkPlansService workPlanService;
+
+    @Autowired
+    private WorkPlanPdfService workPlanPdfService;
+
+    @Autowired
+    private WorkPlanForDivisionPdfService workPlanForDivisionPdfService;
+
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    /**
+     * Generates work plan documents in background. The work plan is marked as generated, with date and worker, only when all its
+     * documents have been generated.
+     *
+     * @return id of the background job or empty if documents of the work plan are already being generated
+     */
+    public Optional<Long> submitWorkPlanDocuments(final Long workPlanId, final String worker, final Locale locale) {
+        return backgroundJobService.submit(L_JOB_TYPE, String.valueOf(workPlanId), new BackgroundJob() {
+
+            @Override
+            public void run(final BackgroundJobContext context) throws Exception {
+                Entity workPlan = workPlanService.getWorkPlan(workPlanId);
+
+                workPlan.setField(WorkPlanFields.DATE, new Date());
+                workPlan.setField(WorkPlanFields.WORKER, worker);
+
+                Entity workPlanWithFilename = generateWorkPlanDocument(workPlan, locale);
+
+                context.setProgress(50);
+
+                if (context.isCancelled()) {
+                    return;
+                }
+
+                if (isByDivision(workPlan)) {
+                    generateWorkPlanForDivisionDocument(workPlanWithFilename, locale);
+                }
+
+                if (context.isCancelled()) {
+                    return;
+                }
+
+                Entity generatedWorkPlan = workPlanService.getWorkPlan(workPlanId);
+
+                generatedWorkPlan.setField(WorkPlanFields.GENERATED, true);
+                generatedWorkPlan.getDataDefinition().save(generatedWorkPlan);
+
+                context.setResultUrl("/generateSavedReport/" + WorkPlansConstants.PLUGIN_IDENTIFIER + "/"
+                        + WorkPlansConstants.MODEL_WORK_PLAN + ".pdf?id=" + workPlanId);
+            }
+
+            @Override
+            public void onFailure() {
+                Entity workPlan = workPlanService.getWorkPlan(workPlanId);
+
+                if (workPlan != null) {
+                    workPlan.setField(WorkPlanFields.GENERATED, false);
+                    workPlan.setField(WorkPlanFields.DATE, null);
+                    workPlan.setField(WorkPlanFields.WORKER, null);
+                    workPlan.setField(WorkPlanFields.FILE_NAME, null);
+
+                    workPlan.getDataDefinition().save(workPlan);
+                }
+            }
+
+        });
+    }
+
+    private Entity generateWorkPlanDocument(final Entity workPlan, final Locale locale) throws IOException, DocumentException {
+        Entity workPlanWithFilename = fileService.updateReportFileName(workPlan, WorkPlanFields.DATE, L_FILE_NAME);
+
+        workPlanPdfService.generateDocument(workPlanWithFilename, locale);
+
+        return workPlanWithFilename;
+    }
+
+    private void generateWorkPlanForDivisionDocument(final Entity workPlanWithFilename, final Locale locale) throws IOException,
+            DocumentException {
+        Entity workPlanForDivision = fileService.updateReportFileName(workPlanWithFilename, WorkPlanFields.DATE,
+                L_FILE_NAME_FOR_DIVISION);
+
+        workPlanForDivisionPdfService.generateDocument(workPlanForDivision, locale, L_FILE_NAME_FOR_DIVISION,
+                PageSize.A4.rotate());
+    }
+
+    private boolean isByDivision(final Entity workPlan) {
+        return WorkPlanType.BY_DIVISION.getStringValue().equals(workPlan.getStringField(WorkPlanFields.TYPE));
+    }
+
+}
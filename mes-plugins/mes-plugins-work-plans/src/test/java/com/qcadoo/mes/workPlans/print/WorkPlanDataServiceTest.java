@@ -0,0 +1,256 @@
+/**
+ * ***************************************************************************
+ * Copyright (c) 2010 Qcadoo Limited
+ * Project: Qcadoo MES
+ * Version: 1.4
+ *
+ * This file is part of Qcadoo.
+ *
+ * Qcadoo is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation; either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ * ***************************************************************************
+ */
+package com.qcadoo.mes.workPlans.print;
+
+import static com.qcadoo.testing.model.EntityTestUtils.mockEntity;
+import static com.qcadoo.testing.model.EntityTestUtils.stubBelongsToField;
+import static com.qcadoo.testing.model.EntityTestUtils.stubDecimalField;
+import static com.qcadoo.testing.model.EntityTestUtils.stubHasManyField;
+import static com.qcadoo.testing.model.EntityTestUtils.stubId;
+import static com.qcadoo.testing.model.EntityTestUtils.stubStringField;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.qcadoo.mes.basicProductionCounting.BasicProductionCountingService;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityFields;
+import com.qcadoo.mes.basicProductionCounting.constants.ProductionCountingQuantityRole;
+import com.qcadoo.mes.orders.constants.OrderFields;
+import com.qcadoo.mes.orders.states.constants.OrderState;
+import com.qcadoo.mes.technologies.ProductQuantitiesService;
+import com.qcadoo.mes.technologies.constants.OperationProductInComponentFields;
+import com.qcadoo.mes.technologies.constants.TechnologiesConstants;
+import com.qcadoo.mes.technologies.constants.TechnologyFields;
+import com.qcadoo.mes.technologies.constants.TechnologyOperationComponentFields;
+import com.qcadoo.mes.workPlans.constants.WorkPlanFields;
+import com.qcadoo.model.api.DataDefinition;
+import com.qcadoo.model.api.DataDefinitionService;
+import com.qcadoo.model.api.Entity;
+import com.qcadoo.model.api.EntityTree;
+import com.qcadoo.model.api.utils.EntityTreeUtilsService;
+
+public class WorkPlanDataServiceTest {
+
+    private static final Long L_PENDING_ORDER_ID = 1L;
+
+    private static final Long L_ACCEPTED_ORDER_ID = 2L;
+
+    private WorkPlanDataService workPlanDataService;
+
+    @Mock
+    private ProductQuantitiesService productQuantitiesService;
+
+    @Mock
+    private BasicProductionCountingService basicProductionCountingService;
+
+    @Mock
+    private EntityTreeUtilsService entityTreeUtilsService;
+
+    @Mock
+    private DataDefinitionService dataDefinitionService;
+
+    @Mock
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DataDefinition operationProductInComponentDD, operationProductOutComponentDD;
+
+    private Entity workPlan, pendingOrder, acceptedOrder, pendingOperationComponent, acceptedOperationComponent,
+            firstOperationComponent, existingProduct, newProduct, existingInComponent, newInComponent;
+
+    @Before
+    public final void init() {
+        MockitoAnnotations.initMocks(this);
+
+        workPlanDataService = new WorkPlanDataService();
+
+        ReflectionTestUtils.setField(workPlanDataService, "productQuantitiesService", productQuantitiesService);
+        ReflectionTestUtils.setField(workPlanDataService, "basicProductionCountingService", basicProductionCountingService);
+        ReflectionTestUtils.setField(workPlanDataService, "entityTreeUtilsService", entityTreeUtilsService);
+        ReflectionTestUtils.setField(workPlanDataService, "dataDefinitionService", dataDefinitionService);
+        ReflectionTestUtils.setField(workPlanDataService, "jdbcTemplate", jdbcTemplate);
+
+        given(dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_OPERATION_PRODUCT_IN_COMPONENT)).willReturn(operationProductInComponentDD);
+        given(dataDefinitionService.get(TechnologiesConstants.PLUGIN_IDENTIFIER,
+                TechnologiesConstants.MODEL_OPERATION_PRODUCT_OUT_COMPONENT)).willReturn(operationProductOutComponentDD);
+
+        existingProduct = mockEntity();
+        stubId(existingProduct, 10L);
+
+        newProduct = mockEntity();
+        stubId(newProduct, 11L);
+
+        existingInComponent = mockEntity();
+        stubBelongsToField(existingInComponent, OperationProductInComponentFields.PRODUCT, existingProduct);
+
+        newInComponent = mockEntity();
+        given(operationProductInComponentDD.create()).willReturn(newInComponent);
+
+        pendingOperationComponent = mockOperationComponent(20L);
+        acceptedOperationComponent = mockOperationComponent(21L, existingInComponent);
+        firstOperationComponent = mockOperationComponent(22L);
+
+        pendingOrder = mockOrder(L_PENDING_ORDER_ID, OrderState.PENDING, pendingOperationComponent);
+        acceptedOrder = mockOrder(L_ACCEPTED_ORDER_ID, OrderState.ACCEPTED, firstOperationComponent,
+                acceptedOperationComponent);
+
+        workPlan = mockEntity();
+        stubHasManyField(workPlan, WorkPlanFields.ORDERS, Lists.newArrayList(pendingOrder, acceptedOrder));
+
+        given(basicProductionCountingService.getMaterialsForOperationsFromProductionCountingQuantities(
+                Lists.newArrayList(L_ACCEPTED_ORDER_ID))).willReturn(
+                Lists.newArrayList(
+                        mockProductionCountingQuantity(acceptedOrder, acceptedOperationComponent, existingProduct,
+                                ProductionCountingQuantityRole.USED, new BigDecimal("5")),
+                        mockProductionCountingQuantity(acceptedOrder, acceptedOperationComponent, newProduct,
+                                ProductionCountingQuantityRole.USED, new BigDecimal("7"))));
+    }
+
+    @Test
+    public final void shouldLoadProductionCountingQuantitiesOfNonPendingOrdersInOneCall() {
+        // when
+        WorkPlanData workPlanData = workPlanDataService.getWorkPlanData(workPlan);
+
+        // then
+        assertEquals(Lists.newArrayList(pendingOrder, acceptedOrder), workPlanData.getOrders());
+        assertEquals(Lists.newArrayList(pendingOperationComponent), workPlanData.getOperationComponents(pendingOrder));
+        assertEquals(Lists.newArrayList(firstOperationComponent, acceptedOperationComponent),
+                workPlanData.getOperationComponents(acceptedOrder));
+
+        verify(basicProductionCountingService, times(1)).getMaterialsForOperationsFromProductionCountingQuantities(
+                Lists.newArrayList(L_ACCEPTED_ORDER_ID));
+        verify(productQuantitiesService, times(1)).getProductComponentQuantitiesForOrders(
+                Lists.newArrayList(pendingOrder, acceptedOrder));
+        verify(jdbcTemplate, times(2)).update(anyString(), anyMap());
+    }
+
+    @Test
+    public final void shouldMergeProductionCountingQuantitiesIntoComponentsOfTheirOperation() {
+        // when
+        workPlanDataService.getWorkPlanData(workPlan);
+
+        // then
+        verify(existingInComponent).setField(OperationProductInComponentFields.QUANTITY, new BigDecimal("5"));
+        verify(newInComponent).setField(OperationProductInComponentFields.PRODUCT, newProduct);
+        verify(newInComponent).setField(OperationProductInComponentFields.QUANTITY, new BigDecimal("7"));
+        verify(newInComponent).setField(OperationProductInComponentFields.OPERATION_COMPONENT, acceptedOperationComponent);
+
+        verify(acceptedOperationComponent).setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS,
+                Lists.newArrayList(existingInComponent, newInComponent));
+        verify(acceptedOperationComponent).setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS,
+                Lists.newArrayList());
+    }
+
+    @Test
+    public final void shouldClearComponentsOfOperationsWithoutQuantitiesAndKeepComponentsOfPendingOrders() {
+        // when
+        workPlanDataService.getWorkPlanData(workPlan);
+
+        // then
+        verify(firstOperationComponent).setField(TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS,
+                Lists.newArrayList());
+        verify(pendingOperationComponent, never()).setField(
+                eq(TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS), any());
+    }
+
+    @Test
+    public final void shouldNotLoadAnythingForWorkPlanWithoutOrders() {
+        // given
+        stubHasManyField(workPlan, WorkPlanFields.ORDERS, Collections.emptyList());
+
+        // when
+        WorkPlanData workPlanData = workPlanDataService.getWorkPlanData(workPlan);
+
+        // then
+        assertEquals(Collections.emptyList(), workPlanData.getOrders());
+
+        verify(basicProductionCountingService, never()).getMaterialsForOperationsFromProductionCountingQuantities(
+                anyCollection());
+        verify(jdbcTemplate, never()).update(anyString(), anyMap());
+    }
+
+    private Entity mockOrder(final Long id, final OrderState state, final Entity... operationComponents) {
+        Entity order = mockEntity();
+        Entity technology = mockEntity();
+        EntityTree operationComponentsTree = mock(EntityTree.class);
+
+        stubId(order, id);
+        stubStringField(order, OrderFields.STATE, state.getStringValue());
+        stubBelongsToField(order, OrderFields.TECHNOLOGY, technology);
+
+        given(technology.getTreeField(TechnologyFields.OPERATION_COMPONENTS)).willReturn(operationComponentsTree);
+        given(entityTreeUtilsService.getSortedEntities(operationComponentsTree)).willReturn(
+                Lists.newArrayList(operationComponents));
+
+        return order;
+    }
+
+    private Entity mockOperationComponent(final Long id, final Entity... inComponents) {
+        Entity operationComponent = mockEntity();
+
+        stubId(operationComponent, id);
+        stubHasManyField(operationComponent, TechnologyOperationComponentFields.OPERATION_PRODUCT_IN_COMPONENTS,
+                Lists.newArrayList(inComponents));
+        stubHasManyField(operationComponent, TechnologyOperationComponentFields.OPERATION_PRODUCT_OUT_COMPONENTS,
+                Collections.emptyList());
+
+        return operationComponent;
+    }
+
+    private Entity mockProductionCountingQuantity(final Entity order, final Entity operationComponent, final Entity product,
+            final ProductionCountingQuantityRole role, final BigDecimal plannedQuantity) {
+        Entity productionCountingQuantity = mockEntity();
+
+        stubBelongsToField(productionCountingQuantity, ProductionCountingQuantityFields.ORDER, order);
+        stubBelongsToField(productionCountingQuantity, ProductionCountingQuantityFields.TECHNOLOGY_OPERATION_COMPONENT,
+                operationComponent);
+        stubBelongsToField(productionCountingQuantity, ProductionCountingQuantityFields.PRODUCT, product);
+        stubStringField(productionCountingQuantity, ProductionCountingQuantityFields.ROLE, role.getStringValue());
+        stubDecimalField(productionCountingQuantity, ProductionCountingQuantityFields.PLANNED_QUANTITY, plannedQuantity);
+
+        return productionCountingQuantity;
+    }
+
+}